@@ -1,24 +1,49 @@
 package app.revanced.extension.all.misc.directory.documentsprovider;
 
 import android.annotation.SuppressLint;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.ProviderInfo;
+import android.content.res.AssetFileDescriptor;
+import android.database.AbstractCursor;
 import android.database.Cursor;
 import android.database.MatrixCursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Point;
+import android.media.ThumbnailUtils;
+import android.os.Build;
+import android.os.Bundle;
 import android.os.CancellationSignal;
 import android.os.ParcelFileDescriptor;
 import android.provider.DocumentsContract;
 import android.provider.DocumentsProvider;
+import android.provider.MediaStore;
 import android.system.ErrnoException;
 import android.system.Os;
+import android.system.OsConstants;
 import android.system.StructStat;
 import android.util.Log;
 import android.webkit.MimeTypeMap;
 
+import androidx.annotation.RequiresApi;
+
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 /**
@@ -33,8 +58,32 @@ public class InternalDataDocumentsProvider extends DocumentsProvider {
                     "_size", "full_path", "lstat_info"};
     private static final int S_IFLNK = 0x8000;
 
+    /**
+     * How long the search index is used before the data directory is walked again.
+     * The app itself can change files at any time, so the index cannot be kept forever.
+     */
+    private static final long SEARCH_INDEX_MAX_AGE_MS = 30_000;
+    private static final int MAX_SEARCH_RESULTS = 500;
+    private static final String THUMBNAIL_DIRECTORY_NAME = "revanced_document_thumbnails";
+
     private String packageName;
     private File dataDirectory;
+    /**
+     * Thumbnails are cached in the data directory, but are not listed or found by searches.
+     */
+    private File thumbnailDirectory;
+    /**
+     * Path of {@link #thumbnailDirectory} relative to the data directory, as used by the search index.
+     */
+    private String thumbnailRelativePath;
+
+    /**
+     * Relative paths of all files in the data directory, and the lower case file names at the same indices.
+     * Null if the index must be built again.
+     */
+    private String[] searchIndexPaths;
+    private String[] searchIndexNames;
+    private long searchIndexTime;
 
     /**
      * Recursively delete a file or directory and all its children.
@@ -89,6 +138,151 @@ public class InternalDataDocumentsProvider extends DocumentsProvider {
         return mimeType != null ? mimeType : "application/octet-stream";
     }
 
+    private static boolean isSymbolicLink(File file) {
+        try {
+            return OsConstants.S_ISLNK(Os.lstat(file.getPath()).st_mode);
+        } catch (ErrnoException e) {
+            return false;
+        }
+    }
+
+    private static boolean supportsThumbnail(String mimeType) {
+        return mimeType.startsWith("image/") || mimeType.startsWith("video/");
+    }
+
+    /**
+     * @return A file in the directory with the given name,
+     *         or with a number appended to the name if a file with the name already exists.
+     */
+    private static File findAvailableFile(File directory, String displayName) {
+        File file = new File(directory, displayName);
+
+        int i = 2;
+        while (file.exists()) {
+            file = new File(directory, displayName + " (" + i + ")");
+            i++;
+        }
+        return file;
+    }
+
+    private static String getChildDocumentId(String parentDocumentId, String displayName) {
+        if (parentDocumentId.endsWith("/")) {
+            return parentDocumentId + displayName;
+        }
+        return parentDocumentId + "/" + displayName;
+    }
+
+    /**
+     * Copy a file using {@link FileChannel#transferTo}, so the data is copied by the kernel
+     * and not through buffers of this process.
+     */
+    private static void copyFile(File source, File target) throws IOException {
+        try (FileInputStream in = new FileInputStream(source);
+             FileOutputStream out = new FileOutputStream(target)) {
+            FileChannel inChannel = in.getChannel();
+            FileChannel outChannel = out.getChannel();
+
+            final long size = inChannel.size();
+            long position = 0;
+            while (position < size) {
+                final long transferred = inChannel.transferTo(position, size - position, outChannel);
+                if (transferred <= 0) {
+                    throw new IOException("Failed to copy " + source.getPath());
+                }
+                position += transferred;
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        target.setLastModified(source.lastModified());
+    }
+
+    /**
+     * Recursively copy a file or directory and all its children.
+     * Symbolic links are copied as links and are not followed.
+     */
+    private static void copyRecursively(File source, File target) throws IOException {
+        if (isSymbolicLink(source)) {
+            try {
+                Os.symlink(Os.readlink(source.getPath()), target.getPath());
+            } catch (ErrnoException e) {
+                throw new IOException("Failed to copy link " + source.getPath(), e);
+            }
+            return;
+        }
+
+        if (!source.isDirectory()) {
+            copyFile(source, target);
+            return;
+        }
+
+        if (!target.mkdir()) {
+            throw new IOException("Failed to create directory " + target.getPath());
+        }
+
+        String[] names = source.list();
+        if (names != null) {
+            for (String name : names) {
+                copyRecursively(new File(source, name), new File(target, name));
+            }
+        }
+    }
+
+    /**
+     * @return A hex SHA-256 digest of the path, last modified time and size of the file,
+     *         so a thumbnail is created again if the file changes.
+     */
+    private static String getThumbnailKey(File file) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(file.getPath().getBytes(StandardCharsets.UTF_8));
+            digest.update(ByteBuffer.allocate(2 * Long.BYTES)
+                    .putLong(file.lastModified())
+                    .putLong(file.length())
+                    .array());
+
+            StringBuilder key = new StringBuilder(64);
+            for (byte value : digest.digest()) {
+                key.append(String.format(Locale.ROOT, "%02x", value));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android version supports SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decode an image or a video frame, scaled down to about the requested size.
+     *
+     * @return The thumbnail, or null if the file could not be decoded.
+     */
+    private static Bitmap createThumbnail(File file, String mimeType, Point sizeHint) {
+        if (mimeType.startsWith("video/")) {
+            //noinspection deprecation
+            return ThumbnailUtils.createVideoThumbnail(file.getPath(), MediaStore.Images.Thumbnails.MINI_KIND);
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        // Only decode every n-th pixel, where n is the largest power of 2
+        // that does not make the image smaller than requested.
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= sizeHint.x
+                && options.outHeight / (sampleSize * 2) >= sizeHint.y) {
+            sampleSize *= 2;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
     @Override
     public final boolean onCreate() {
         return true;
@@ -100,28 +294,45 @@ public class InternalDataDocumentsProvider extends DocumentsProvider {
 
         this.packageName = context.getPackageName();
         this.dataDirectory = context.getFilesDir().getParentFile();
+        this.thumbnailDirectory = new File(context.getCacheDir(), THUMBNAIL_DIRECTORY_NAME);
+        String dataDirectoryPath = dataDirectory.getPath() + "/";
+        this.thumbnailRelativePath = thumbnailDirectory.getPath().startsWith(dataDirectoryPath)
+                ? thumbnailDirectory.getPath().substring(dataDirectoryPath.length())
+                : null;
+    }
+
+    @Override
+    public final String copyDocument(String sourceDocumentId, String targetParentDocumentId) throws FileNotFoundException {
+        File source = resolveDocumentId(sourceDocumentId);
+        File directory = resolveDocumentId(targetParentDocumentId);
+
+        // Do not copy a directory into itself
+        if ((directory.getPath() + "/").startsWith(source.getPath() + "/")) {
+            throw new FileNotFoundException("Cannot copy " + sourceDocumentId + " into itself");
+        }
+
+        File target = findAvailableFile(directory, source.getName());
+        final boolean copied = copyOrDeleteTarget(source, target);
+        invalidateSearchIndex();
+        if (!copied) {
+            throw new FileNotFoundException("Failed to copy document " + sourceDocumentId + " to " + targetParentDocumentId);
+        }
+
+        return getChildDocumentId(targetParentDocumentId, target.getName());
     }
 
     @Override
     public final String createDocument(String parentDocumentId, String mimeType, String displayName) throws FileNotFoundException {
         File directory = resolveDocumentId(parentDocumentId);
-        File file = new File(directory, displayName);
-
         // If file already exists, append a number to the name
-        int i = 2;
-        while (file.exists()) {
-            file = new File(directory, displayName + " (" + i + ")");
-            i++;
-        }
+        File file = findAvailableFile(directory, displayName);
 
         try {
             // Create the file or directory
             if (mimeType.equals(DocumentsContract.Document.MIME_TYPE_DIR) ? file.mkdir() : file.createNewFile()) {
+                invalidateSearchIndex();
                 // Return the document ID of the new entity
-                if (!parentDocumentId.endsWith("/")) {
-                    parentDocumentId = parentDocumentId + "/";
-                }
-                return parentDocumentId + file.getName();
+                return getChildDocumentId(parentDocumentId, file.getName());
             }
         } catch (IOException e) {
             // Do nothing. We are throwing a FileNotFoundException later if the file could not be created.
@@ -132,7 +343,9 @@ public class InternalDataDocumentsProvider extends DocumentsProvider {
     @Override
     public final void deleteDocument(String documentId) throws FileNotFoundException {
         File file = resolveDocumentId(documentId);
-        if (!deleteRecursively(file)) {
+        final boolean deleted = deleteRecursively(file);
+        invalidateSearchIndex();
+        if (!deleted) {
             throw new FileNotFoundException("Failed to delete document " + documentId);
         }
     }
@@ -153,25 +366,126 @@ public class InternalDataDocumentsProvider extends DocumentsProvider {
         File dest = resolveDocumentId(targetParentDocumentId);
 
         File file = new File(dest, source.getName());
-        if (!file.exists() && source.renameTo(file)) {
-            // Return the new document ID
-            if (targetParentDocumentId.endsWith("/")) {
-                return targetParentDocumentId + file.getName();
+        if (!file.exists()) {
+            boolean moved = source.renameTo(file);
+            if (!moved && !(dest.getPath() + "/").startsWith(source.getPath() + "/")) {
+                // Rename fails if the target is on a different mount point, so copy and delete instead.
+                // If the source is only partially deleted, the target is kept since it is the only complete copy.
+                moved = copyOrDeleteTarget(source, file) && deleteRecursively(source);
+            }
+            invalidateSearchIndex();
+
+            if (moved) {
+                // Return the new document ID
+                return getChildDocumentId(targetParentDocumentId, file.getName());
             }
-            return targetParentDocumentId + "/" + file.getName();
         }
 
         throw new FileNotFoundException("Failed to move document from " + sourceDocumentId + " to " + targetParentDocumentId);
     }
 
+    /**
+     * Copy a file or directory, and delete anything already copied if the copy fails.
+     *
+     * @return If the source was copied.
+     */
+    private static boolean copyOrDeleteTarget(File source, File target) {
+        boolean copied = false;
+        try {
+            copyRecursively(source, target);
+            copied = true;
+        } catch (IOException e) {
+            Log.e("InternalDocumentsProvider", "Failed to copy " + source.getPath(), e);
+        } finally {
+            if (!copied) {
+                deleteRecursively(target);
+            }
+        }
+        return copied;
+    }
+
     @Override
     public final ParcelFileDescriptor openDocument(String documentId, String mode, CancellationSignal signal) throws FileNotFoundException {
         File file = resolveDocumentId(documentId);
         return ParcelFileDescriptor.open(file, ParcelFileDescriptor.parseMode(mode));
     }
 
+    @Override
+    public final AssetFileDescriptor openDocumentThumbnail(String documentId, Point sizeHint, CancellationSignal signal) throws FileNotFoundException {
+        File file = resolveDocumentId(documentId);
+        String mimeType = resolveMimeType(file);
+        if (!supportsThumbnail(mimeType)) {
+            throw new FileNotFoundException("No thumbnail for " + documentId);
+        }
+
+        // A modified file has a different key, so its thumbnail is created again.
+        File thumbnail = new File(thumbnailDirectory, getThumbnailKey(file)
+                + "_" + sizeHint.x + "x" + sizeHint.y + ".jpg");
+        if (!thumbnail.exists()) {
+            Bitmap bitmap = createThumbnail(file, mimeType, sizeHint);
+            if (bitmap == null) {
+                throw new FileNotFoundException("Failed to decode thumbnail for " + documentId);
+            }
+
+            //noinspection ResultOfMethodCallIgnored
+            thumbnailDirectory.mkdirs();
+            // Write to a temporary file first, so a concurrent request never reads a partial thumbnail.
+            File temporary = new File(thumbnailDirectory, thumbnail.getName() + ".tmp" + Thread.currentThread().getId());
+            try (FileOutputStream out = new FileOutputStream(temporary)) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+            } catch (IOException e) {
+                //noinspection ResultOfMethodCallIgnored
+                temporary.delete();
+                throw new FileNotFoundException("Failed to save thumbnail for " + documentId);
+            } finally {
+                bitmap.recycle();
+            }
+
+            if (!temporary.renameTo(thumbnail)) {
+                //noinspection ResultOfMethodCallIgnored
+                temporary.delete();
+                throw new FileNotFoundException("Failed to save thumbnail for " + documentId);
+            }
+        }
+
+        ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(thumbnail, ParcelFileDescriptor.MODE_READ_ONLY);
+        return new AssetFileDescriptor(descriptor, 0, AssetFileDescriptor.UNKNOWN_LENGTH);
+    }
+
     @Override
     public final Cursor queryChildDocuments(String parentDocumentId, String[] projection, String sortOrder) throws FileNotFoundException {
+        return queryChildDocuments(parentDocumentId, projection, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Supports paging with {@link ContentResolver#QUERY_ARG_OFFSET} and {@link ContentResolver#QUERY_ARG_LIMIT}.
+     */
+    @Override
+    @RequiresApi(Build.VERSION_CODES.O)
+    public final Cursor queryChildDocuments(String parentDocumentId, String[] projection, Bundle queryArgs) throws FileNotFoundException {
+        if (queryArgs == null) {
+            return queryChildDocuments(parentDocumentId, projection, 0, Integer.MAX_VALUE);
+        }
+
+        final int offset = Math.max(0, queryArgs.getInt(ContentResolver.QUERY_ARG_OFFSET, 0));
+        final int limit = queryArgs.getInt(ContentResolver.QUERY_ARG_LIMIT, Integer.MAX_VALUE);
+        DocumentListCursor cursor = queryChildDocuments(parentDocumentId, projection,
+                offset, limit < 0 ? Integer.MAX_VALUE : limit);
+
+        Bundle extras = new Bundle();
+        extras.putStringArray(ContentResolver.EXTRA_HONORED_ARGS, new String[]{
+                ContentResolver.QUERY_ARG_OFFSET, ContentResolver.QUERY_ARG_LIMIT
+        });
+        extras.putInt(ContentResolver.EXTRA_TOTAL_COUNT, cursor.totalCount);
+        cursor.setExtras(extras);
+        return cursor;
+    }
+
+    /**
+     * Lists only the names of the children. Files are checked only when the rows are read,
+     * so a client reading a page of a large directory does not wait for every file to be checked.
+     */
+    private DocumentListCursor queryChildDocuments(String parentDocumentId, String[] projection, int offset, int limit) throws FileNotFoundException {
         if (parentDocumentId.endsWith("/")) {
             parentDocumentId = parentDocumentId.substring(0, parentDocumentId.length() - 1);
         }
@@ -180,14 +494,52 @@ public class InternalDataDocumentsProvider extends DocumentsProvider {
             projection = directoryColumns;
         }
 
+        File directory = resolveDocumentId(parentDocumentId);
+        String[] names = directory.list();
+        if (names == null) {
+            names = new String[0];
+        }
+        if (directory.equals(thumbnailDirectory.getParentFile())) {
+            List<String> visibleNames = new ArrayList<>(names.length);
+            for (String name : names) {
+                if (!name.equals(THUMBNAIL_DIRECTORY_NAME)) visibleNames.add(name);
+            }
+            names = visibleNames.toArray(new String[0]);
+        }
+        // Sort so pages are in the same order between queries.
+        Arrays.sort(names);
+
+        final int start = Math.min(offset, names.length);
+        final int end = (int) Math.min((long) start + limit, names.length);
+        return new DocumentListCursor(projection, parentDocumentId, directory,
+                Arrays.copyOfRange(names, start, end), names.length);
+    }
+
+    @Override
+    public final Cursor querySearchDocuments(String rootId, String query, String[] projection) throws FileNotFoundException {
+        if (projection == null) {
+            projection = directoryColumns;
+        }
+
         MatrixCursor cursor = new MatrixCursor(projection);
-        File children = resolveDocumentId(parentDocumentId);
+        String lowerCaseQuery = query.toLowerCase(Locale.ROOT);
+
+        String[] paths;
+        String[] names;
+        synchronized (this) {
+            buildSearchIndexIfNeeded();
+            paths = searchIndexPaths;
+            names = searchIndexNames;
+        }
 
-        // Collect all children
-        File[] files = children.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                addRowForDocument(cursor, parentDocumentId + "/" + file.getName(), file);
+        int resultCount = 0;
+        for (int i = 0, length = names.length; i < length && resultCount < MAX_SEARCH_RESULTS; i++) {
+            if (names[i].contains(lowerCaseQuery)) {
+                File file = new File(dataDirectory, paths[i]);
+                if (file.exists()) {
+                    addRowForDocument(cursor, packageName + "/" + paths[i], file);
+                    resultCount++;
+                }
             }
         }
         return cursor;
@@ -220,7 +572,8 @@ public class InternalDataDocumentsProvider extends DocumentsProvider {
         row.add(DocumentsContract.Root.COLUMN_SUMMARY, this.packageName);
         row.add(DocumentsContract.Root.COLUMN_FLAGS,
                 DocumentsContract.Root.FLAG_LOCAL_ONLY |
-                        DocumentsContract.Root.FLAG_SUPPORTS_IS_CHILD);
+                        DocumentsContract.Root.FLAG_SUPPORTS_IS_CHILD |
+                        DocumentsContract.Root.FLAG_SUPPORTS_SEARCH);
         row.add(DocumentsContract.Root.COLUMN_TITLE, appName);
         row.add(DocumentsContract.Root.COLUMN_MIME_TYPES, "*/*");
         row.add(DocumentsContract.Root.COLUMN_ICON, info.icon);
@@ -235,7 +588,9 @@ public class InternalDataDocumentsProvider extends DocumentsProvider {
     @Override
     public final String renameDocument(String documentId, String displayName) throws FileNotFoundException {
         File file = resolveDocumentId(documentId);
-        if (!file.renameTo(new File(file.getParentFile(), displayName))) {
+        final boolean renamed = file.renameTo(new File(file.getParentFile(), displayName));
+        invalidateSearchIndex();
+        if (!renamed) {
             throw new FileNotFoundException("Failed to rename document from " + documentId + " to " + displayName);
         }
 
@@ -243,6 +598,54 @@ public class InternalDataDocumentsProvider extends DocumentsProvider {
         return documentId.substring(0, documentId.lastIndexOf('/', documentId.length() - 2)) + "/" + displayName;
     }
 
+    private synchronized void invalidateSearchIndex() {
+        searchIndexPaths = null;
+        searchIndexNames = null;
+    }
+
+    /**
+     * Walk the data directory and save the path of every file,
+     * so searches do not need to walk the directory for each query.
+     * Symbolic links to directories are not followed.
+     */
+    private synchronized void buildSearchIndexIfNeeded() {
+        final long now = System.currentTimeMillis();
+        if (searchIndexPaths != null && now - searchIndexTime < SEARCH_INDEX_MAX_AGE_MS) {
+            return;
+        }
+
+        List<String> paths = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        ArrayDeque<String> directories = new ArrayDeque<>();
+        directories.add("");
+
+        while (!directories.isEmpty()) {
+            String relativeDirectory = directories.poll();
+            File directory = relativeDirectory.isEmpty()
+                    ? dataDirectory
+                    : new File(dataDirectory, relativeDirectory);
+            String[] children = directory.list();
+            if (children == null) continue;
+
+            for (String child : children) {
+                String path = relativeDirectory.isEmpty() ? child : relativeDirectory + "/" + child;
+                if (path.equals(thumbnailRelativePath)) continue;
+
+                paths.add(path);
+                names.add(child.toLowerCase(Locale.ROOT));
+
+                File file = new File(directory, child);
+                if (file.isDirectory() && !isSymbolicLink(file)) {
+                    directories.add(path);
+                }
+            }
+        }
+
+        searchIndexPaths = paths.toArray(new String[0]);
+        searchIndexNames = names.toArray(new String[0]);
+        searchIndexTime = now;
+    }
+
     /**
      * Resolve a file instance for a given document ID.
      *
@@ -285,6 +688,20 @@ public class InternalDataDocumentsProvider extends DocumentsProvider {
             file = resolveDocumentId(documentId);
         }
 
+        cursor.addRow(getDocumentRow(cursor.getColumnNames(), documentId, file));
+    }
+
+    /**
+     * Get all file properties for the columns of a projection.
+     *
+     * @param projection The columns to get the values for.
+     * @param documentId The document ID of the file.
+     * @param file       The file to get the values for.
+     * @return The values in the order of the projection columns.
+     */
+    private static Object[] getDocumentRow(String[] projection, String documentId, File file) {
+        String mimeType = resolveMimeType(file);
+
         int flags = 0;
         if (file.isDirectory()) {
             // Prefer list view for directories
@@ -302,18 +719,50 @@ public class InternalDataDocumentsProvider extends DocumentsProvider {
                     DocumentsContract.Document.FLAG_SUPPORTS_MOVE;
         }
 
-        MatrixCursor.RowBuilder row = cursor.newRow();
-        row.add(DocumentsContract.Document.COLUMN_DOCUMENT_ID, documentId);
-        row.add(DocumentsContract.Document.COLUMN_DISPLAY_NAME, file.getName());
-        row.add(DocumentsContract.Document.COLUMN_SIZE, file.length());
-        row.add(DocumentsContract.Document.COLUMN_MIME_TYPE, resolveMimeType(file));
-        row.add(DocumentsContract.Document.COLUMN_LAST_MODIFIED, file.lastModified());
-        row.add(DocumentsContract.Document.COLUMN_FLAGS, flags);
+        // Copying only needs read access to the source.
+        flags = flags | DocumentsContract.Document.FLAG_SUPPORTS_COPY;
 
-        // Custom columns
-        row.add("full_path", file.getAbsolutePath());
+        if (supportsThumbnail(mimeType)) {
+            flags = flags | DocumentsContract.Document.FLAG_SUPPORTS_THUMBNAIL;
+        }
 
-        // Add lstat column
+        Object[] row = new Object[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            switch (projection[i]) {
+                case DocumentsContract.Document.COLUMN_DOCUMENT_ID:
+                    row[i] = documentId;
+                    break;
+                case DocumentsContract.Document.COLUMN_DISPLAY_NAME:
+                    row[i] = file.getName();
+                    break;
+                case DocumentsContract.Document.COLUMN_SIZE:
+                    row[i] = file.length();
+                    break;
+                case DocumentsContract.Document.COLUMN_MIME_TYPE:
+                    row[i] = mimeType;
+                    break;
+                case DocumentsContract.Document.COLUMN_LAST_MODIFIED:
+                    row[i] = file.lastModified();
+                    break;
+                case DocumentsContract.Document.COLUMN_FLAGS:
+                    row[i] = flags;
+                    break;
+                // Custom columns
+                case "full_path":
+                    row[i] = file.getAbsolutePath();
+                    break;
+                case "lstat_info":
+                    row[i] = getLstatInfo(file);
+                    break;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * @return The lstat mode, user and group, and the link target if the file is a symbolic link.
+     */
+    private static String getLstatInfo(File file) {
         String path = file.getPath();
         try {
             StringBuilder sb = new StringBuilder();
@@ -328,9 +777,109 @@ public class InternalDataDocumentsProvider extends DocumentsProvider {
                 sb.append(";");
                 sb.append(Os.readlink(path));
             }
-            row.add("lstat_info", sb.toString());
+            return sb.toString();
         } catch (Exception ex) {
             Log.e("InternalDocumentsProvider", "Failed to get lstat info for " + path, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Cursor over the children of a directory that reads the file properties of a row
+     * only when the row is accessed.
+     */
+    private static final class DocumentListCursor extends AbstractCursor {
+        private final String[] projection;
+        private final String parentDocumentId;
+        private final File directory;
+        private final String[] names;
+        /**
+         * Number of children in the directory, including children not in this page.
+         */
+        final int totalCount;
+
+        private Object[] row;
+
+        DocumentListCursor(String[] projection, String parentDocumentId, File directory, String[] names, int totalCount) {
+            this.projection = projection;
+            this.parentDocumentId = parentDocumentId;
+            this.directory = directory;
+            this.names = names;
+            this.totalCount = totalCount;
+        }
+
+        @Override
+        public boolean onMove(int oldPosition, int newPosition) {
+            String name = names[newPosition];
+            row = getDocumentRow(projection, parentDocumentId + "/" + name, new File(directory, name));
+            return true;
+        }
+
+        private Object get(int column) {
+            if (column < 0 || column >= projection.length) {
+                throw new IndexOutOfBoundsException("Requested column: " + column);
+            }
+            if (row == null) {
+                throw new IllegalStateException("Cursor is not positioned on a row");
+            }
+            return row[column];
+        }
+
+        @Override
+        public int getCount() {
+            return names.length;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return projection;
+        }
+
+        @Override
+        public int getType(int column) {
+            Object value = get(column);
+            if (value == null) return FIELD_TYPE_NULL;
+            if (value instanceof Number) return FIELD_TYPE_INTEGER;
+            return FIELD_TYPE_STRING;
+        }
+
+        @Override
+        public String getString(int column) {
+            Object value = get(column);
+            return value == null ? null : value.toString();
+        }
+
+        @Override
+        public short getShort(int column) {
+            return (short) getLong(column);
+        }
+
+        @Override
+        public int getInt(int column) {
+            return (int) getLong(column);
+        }
+
+        @Override
+        public long getLong(int column) {
+            Object value = get(column);
+            if (value == null) return 0;
+            if (value instanceof Number) return ((Number) value).longValue();
+            return Long.parseLong(value.toString());
+        }
+
+        @Override
+        public float getFloat(int column) {
+            return getLong(column);
+        }
+
+        @Override
+        public double getDouble(int column) {
+            return getLong(column);
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return get(column) == null;
         }
     }
 }
@@ -4,9 +4,9 @@ import nl.nu.performance.api.client.interfaces.Block;
 import nl.nu.performance.api.client.unions.SmallArticleLinkFlavor;
 import nl.nu.performance.api.client.objects.*;
 
-import java.util.ArrayList;
 import java.util.List;
 
+import app.revanced.extension.shared.ListFilter;
 import app.revanced.extension.shared.Logger;
 
 @SuppressWarnings("unused")
@@ -23,92 +23,87 @@ public class HideAdsPatch {
 
     public static void filterAds(List<Block> blocks) {
         try {
-            ArrayList<Block> cleanedList = new ArrayList<>();
+            // Filter list in-place to not deal with moving the result to the correct register in smali.
+            ListFilter.removeMatching(blocks, new AdBlockFilter());
+        } catch (Exception ex) {
+            Logger.printException(() -> "filterAds failure", ex);
+        }
+    }
 
-            boolean skipFullHeader = false;
-            boolean skipUntilDivider = false;
+    /**
+     * Filter state is carried between blocks, so a new instance must be used for each list.
+     */
+    private static final class AdBlockFilter implements ListFilter.IndexFilter<Block> {
+        private boolean skipFullHeader;
+        private boolean skipUntilDivider;
+
+        @Override
+        public boolean shouldRemove(List<Block> blocks, int index) {
+            Block currentBlock = blocks.get(index);
+
+            // Because of pagination, we might not see the Divider in front of it.
+            // Just remove it as is and leave potential extra spacing visible on the screen.
+            if (currentBlock instanceof DpgBannerBlock) {
+                return true;
+            }
 
-            int index = 0;
-            while (index < blocks.size()) {
-                Block currentBlock = blocks.get(index);
+            if (index + 1 < blocks.size()) {
+                Block nextBlock = blocks.get(index + 1);
 
-                // Because of pagination, we might not see the Divider in front of it.
-                // Just remove it as is and leave potential extra spacing visible on the screen.
-                if (currentBlock instanceof DpgBannerBlock) {
-                    index++;
-                    continue;
+                // Filter Divider -> DpgMediaBanner -> Divider.
+                // The banner itself is removed when it's checked.
+                if (currentBlock instanceof DividerBlock && nextBlock instanceof DpgBannerBlock) {
+                    return true;
                 }
 
-                if (index + 1 < blocks.size()) {
-                    // Filter Divider -> DpgMediaBanner -> Divider.
-                    if (currentBlock instanceof DividerBlock
-                            && blocks.get(index + 1) instanceof DpgBannerBlock) {
-                        index += 2;
-                        continue;
-                    }
-
-                    // Filter Divider -> LinkBlock (... -> LinkBlock -> LinkBlock-> LinkBlock -> Divider).
-                    if (currentBlock instanceof DividerBlock
-                            && blocks.get(index + 1) instanceof LinkBlock linkBlock) {
-                        Link link = linkBlock.getLink();
-                        if (link != null && link.getTitle() != null) {
-                            for (String blockedLinkBlock : blockedLinkBlocks) {
-                                if (blockedLinkBlock.equals(link.getTitle().getText())) {
-                                    skipUntilDivider = true;
-                                    break;
-                                }
-                            }
-                            if (skipUntilDivider) {
-                                index++;
-                                continue;
+                // Filter Divider -> LinkBlock (... -> LinkBlock -> LinkBlock-> LinkBlock -> Divider).
+                if (currentBlock instanceof DividerBlock && nextBlock instanceof LinkBlock linkBlock) {
+                    Link link = linkBlock.getLink();
+                    if (link != null && link.getTitle() != null) {
+                        for (String blockedLinkBlock : blockedLinkBlocks) {
+                            if (blockedLinkBlock.equals(link.getTitle().getText())) {
+                                skipUntilDivider = true;
+                                break;
                             }
                         }
+                        if (skipUntilDivider) {
+                            return true;
+                        }
                     }
                 }
+            }
 
-                // Skip LinkBlocks with a "flavor" claiming to be "isPartner" (sponsored inline ads).
-                if (currentBlock instanceof LinkBlock linkBlock
-                        && linkBlock.getLink() != null
-                        && linkBlock.getLink().getLinkFlavor() instanceof SmallArticleLinkFlavor smallArticleLinkFlavor
-                        && smallArticleLinkFlavor.isPartner() != null
-                        && smallArticleLinkFlavor.isPartner()) {
-                    index++;
-                    continue;
-                }
+            // Skip LinkBlocks with a "flavor" claiming to be "isPartner" (sponsored inline ads).
+            if (currentBlock instanceof LinkBlock linkBlock
+                    && linkBlock.getLink() != null
+                    && linkBlock.getLink().getLinkFlavor() instanceof SmallArticleLinkFlavor smallArticleLinkFlavor
+                    && smallArticleLinkFlavor.isPartner() != null
+                    && smallArticleLinkFlavor.isPartner()) {
+                return true;
+            }
 
-                if (currentBlock instanceof DividerBlock) {
-                    skipUntilDivider = false;
-                }
+            if (currentBlock instanceof DividerBlock) {
+                skipUntilDivider = false;
+            }
 
-                // Filter HeaderBlock with known ads until next HeaderBlock.
-                if (currentBlock instanceof HeaderBlock headerBlock) {
-                    StyledText headerText = headerBlock.getTitle();
-                    if (headerText != null) {
-                        skipFullHeader = false;
-                        for (String blockedHeaderBlock : blockedHeaderBlocks) {
-                            if (blockedHeaderBlock.equals(headerText.getText())) {
-                                skipFullHeader = true;
-                                break;
-                            }
-                        }
-                        if (skipFullHeader) {
-                            index++;
-                            continue;
+            // Filter HeaderBlock with known ads until next HeaderBlock.
+            if (currentBlock instanceof HeaderBlock headerBlock) {
+                StyledText headerText = headerBlock.getTitle();
+                if (headerText != null) {
+                    skipFullHeader = false;
+                    for (String blockedHeaderBlock : blockedHeaderBlocks) {
+                        if (blockedHeaderBlock.equals(headerText.getText())) {
+                            skipFullHeader = true;
+                            break;
                         }
                     }
+                    if (skipFullHeader) {
+                        return true;
+                    }
                 }
-
-                if (!skipFullHeader && !skipUntilDivider) {
-                    cleanedList.add(currentBlock);
-                }
-                index++;
             }
 
-            // Replace list in-place to not deal with moving the result to the correct register in smali.
-            blocks.clear();
-            blocks.addAll(cleanedList);
-        } catch (Exception ex) {
-            Logger.printException(() -> "filterAds failure", ex);
+            return skipFullHeader || skipUntilDivider;
         }
     }
 }
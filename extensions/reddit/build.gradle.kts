@@ -1,3 +1,4 @@
 dependencies {
+    compileOnly(project(":extensions:shared:library"))
     compileOnly(project(":extensions:reddit:stub"))
 }
@@ -2,9 +2,10 @@ package app.revanced.extension.reddit.patches;
 
 import com.reddit.domain.model.ILink;
 
-import java.util.ArrayList;
 import java.util.List;
 
+import app.revanced.extension.shared.ListFilter;
+
 @SuppressWarnings("unused")
 public final class FilterPromotedLinksPatch {
 
@@ -14,14 +15,8 @@ public final class FilterPromotedLinksPatch {
      * Filters list from promoted links.
      **/
     public static List<?> filterChildren(final Iterable<?> links) {
-        final List<Object> filteredList = new ArrayList<>();
-
-        for (Object item : links) {
-            if (item instanceof ILink && ((ILink) item).getPromoted()) continue;
-
-            filteredList.add(item);
-        }
-
-        return filteredList;
+        // The links may be an immutable list, so a new list is returned.
+        return ListFilter.copyNotMatching(links,
+                item -> item instanceof ILink && ((ILink) item).getPromoted());
     }
 }
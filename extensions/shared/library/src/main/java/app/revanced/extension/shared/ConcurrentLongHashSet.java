@@ -0,0 +1,255 @@
+package app.revanced.extension.shared;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe set of primitive long values, with an optional count for each value.
+ * <p>
+ * Adding, counting and lookups are lock free and do not allocate,
+ * except when the table grows, which takes a lock and copies the table.
+ * Values are never removed.
+ * <p>
+ * Intended for tracking values seen by frequently called hooks,
+ * where a <code>ConcurrentHashMap&lt;Long, ?&gt;</code> would box the value for each call.
+ */
+public final class ConcurrentLongHashSet {
+
+    /**
+     * Marks an empty slot in {@link Table#values}.
+     */
+    private static final long EMPTY = 0;
+
+    /**
+     * Marks a slot in {@link Table#values} that was empty when the table was copied to a larger table.
+     */
+    private static final long MOVED = Long.MIN_VALUE;
+
+    /**
+     * Marks a slot in {@link Table#counts} that was copied to a larger table.
+     * Counts are otherwise never negative.
+     */
+    private static final long MOVED_COUNT = -1;
+
+    private static final class Table {
+        static final int NOT_FOUND = -1;
+        static final int TABLE_MOVED = -2;
+
+        final AtomicLongArray values;
+        final AtomicLongArray counts;
+        final int mask;
+
+        Table(int capacity) {
+            values = new AtomicLongArray(capacity);
+            counts = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+        }
+
+        /**
+         * @return The index of the value, {@link #NOT_FOUND},
+         *         or {@link #TABLE_MOVED} if this table was replaced by a larger table.
+         *         If the value was inserted, returns <code>-3 - index</code>.
+         */
+        int find(long value, boolean insert) {
+            int index = LongHashSet.hashIndex(value, mask);
+            while (true) {
+                long existing = values.get(index);
+                if (existing == EMPTY) {
+                    if (!insert) return NOT_FOUND;
+                    if (values.compareAndSet(index, EMPTY, value)) return -3 - index;
+                    // Another thread changed the slot. Check it again.
+                    existing = values.get(index);
+                }
+                if (existing == value) return index;
+                if (existing == MOVED) return TABLE_MOVED;
+                index = (index + 1) & mask;
+            }
+        }
+    }
+
+    private volatile Table table;
+
+    /**
+     * Number of values in {@link #table}, used to decide when to grow.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * The values {@link #EMPTY} and {@link #MOVED} cannot be stored in the table,
+     * and use these slots instead.
+     */
+    private final AtomicIntegerArray specialPresent = new AtomicIntegerArray(2);
+    private final AtomicLongArray specialCounts = new AtomicLongArray(2);
+
+    public ConcurrentLongHashSet(int expectedSize) {
+        table = new Table(Integer.highestOneBit(Math.max(8, expectedSize * 2 - 1)) << 1);
+    }
+
+    private static int specialIndex(long value) {
+        if (value == EMPTY) return 0;
+        if (value == MOVED) return 1;
+        return -1;
+    }
+
+    /**
+     * @return If the value was not in the set before.
+     */
+    public boolean add(long value) {
+        final int specialIndex = specialIndex(value);
+        if (specialIndex >= 0) {
+            return specialPresent.compareAndSet(specialIndex, 0, 1);
+        }
+
+        while (true) {
+            final int result = table.find(value, true);
+            if (result == Table.TABLE_MOVED) {
+                awaitGrow();
+                continue;
+            }
+            if (result >= 0) return false;
+
+            growIfNeeded(size.incrementAndGet());
+            return true;
+        }
+    }
+
+    /**
+     * Adds the value if needed, and increments the count of the value.
+     *
+     * @return The count after incrementing. A count of 1 means the value was not counted before.
+     */
+    public long incrementCount(long value) {
+        final int specialIndex = specialIndex(value);
+        if (specialIndex >= 0) {
+            specialPresent.set(specialIndex, 1);
+            return specialCounts.incrementAndGet(specialIndex);
+        }
+
+        while (true) {
+            final Table current = table;
+            final int result = current.find(value, true);
+            if (result == Table.TABLE_MOVED) {
+                awaitGrow();
+                continue;
+            }
+
+            final int index;
+            if (result < 0) {
+                index = -3 - result;
+                // If the table grows now, the count below is made in the larger table.
+                growIfNeeded(size.incrementAndGet());
+            } else {
+                index = result;
+            }
+
+            while (true) {
+                final long count = current.counts.get(index);
+                if (count == MOVED_COUNT) break; // Count the value in the larger table.
+                if (current.counts.compareAndSet(index, count, count + 1)) {
+                    return count + 1;
+                }
+            }
+
+            awaitGrow();
+        }
+    }
+
+    public boolean contains(long value) {
+        final int specialIndex = specialIndex(value);
+        if (specialIndex >= 0) {
+            return specialPresent.get(specialIndex) != 0;
+        }
+
+        while (true) {
+            final int result = table.find(value, false);
+            if (result != Table.TABLE_MOVED) return result >= 0;
+            awaitGrow();
+        }
+    }
+
+    /**
+     * Callback for {@link #forEach(Consumer)}.
+     */
+    public interface Consumer {
+        /**
+         * @param count The count of the value, or zero if the value was only added and never counted.
+         */
+        void accept(long value, long count);
+    }
+
+    /**
+     * Calls the consumer for all values, in no particular order.
+     * Values added while iterating may not be included.
+     */
+    public synchronized void forEach(Consumer consumer) {
+        // Synchronized so the table does not grow while iterating.
+        for (int i = 0; i < specialPresent.length(); i++) {
+            if (specialPresent.get(i) != 0) {
+                consumer.accept(i == 0 ? EMPTY : MOVED, specialCounts.get(i));
+            }
+        }
+
+        final Table current = table;
+        for (int i = 0, length = current.values.length(); i < length; i++) {
+            final long value = current.values.get(i);
+            if (value != EMPTY && value != MOVED) {
+                consumer.accept(value, current.counts.get(i));
+            }
+        }
+    }
+
+    public int size() {
+        int specialSize = 0;
+        for (int i = 0; i < specialPresent.length(); i++) {
+            if (specialPresent.get(i) != 0) specialSize++;
+        }
+        return size.get() + specialSize;
+    }
+
+    private void growIfNeeded(int newSize) {
+        // Load factor of at most 0.5 keeps probe sequences short.
+        if (newSize * 2 > table.values.length()) {
+            grow();
+        }
+    }
+
+    /**
+     * Waits for another thread to finish growing the table.
+     */
+    private synchronized void awaitGrow() {
+        // Nothing to do. Growing holds the lock until the larger table is set.
+    }
+
+    private synchronized void grow() {
+        final Table current = table;
+        if (size.get() * 2 <= current.values.length()) {
+            return; // Another thread already grew the table.
+        }
+
+        final Table larger = new Table(current.values.length() * 2);
+        for (int i = 0, length = current.values.length(); i < length; i++) {
+            // Mark empty slots, so other threads cannot add to this table after the slot was copied.
+            long value;
+            do {
+                value = current.values.get(i);
+            } while (value == EMPTY && !current.values.compareAndSet(i, EMPTY, MOVED));
+            if (value == EMPTY) continue;
+
+            // Mark the count, so other threads count the value in the larger table.
+            long count;
+            do {
+                count = current.counts.get(i);
+            } while (!current.counts.compareAndSet(i, count, MOVED_COUNT));
+
+            int index = LongHashSet.hashIndex(value, larger.mask);
+            while (larger.values.get(index) != EMPTY) {
+                index = (index + 1) & larger.mask;
+            }
+            larger.values.set(index, value);
+            larger.counts.set(index, count);
+        }
+
+        table = larger;
+    }
+}
@@ -0,0 +1,44 @@
+package app.revanced.extension.shared;
+
+import java.util.Collection;
+
+/**
+ * Set of enum values stored as a bitset of the enum ordinals.
+ * <p>
+ * Intended for filtering host app objects by an enum type, where the
+ * blocked types are known only by name. The names are resolved to ordinals once,
+ * and each lookup is then a single bit test instead of a String conversion and hash lookup.
+ */
+public final class EnumOrdinalSet {
+
+    private final long[] words;
+
+    /**
+     * @param values All values of the enum type, from <code>EnumType.values()</code>.
+     * @param names  Names of the values to include. Names not found are ignored.
+     */
+    public <E extends Enum<E>> EnumOrdinalSet(E[] values, Collection<String> names) {
+        words = new long[(values.length + 63) >>> 6];
+
+        for (E value : values) {
+            // Use toString() and not name(), since the names are matched against toString().
+            if (names.contains(value.toString())) {
+                final int ordinal = value.ordinal();
+                words[ordinal >>> 6] |= 1L << ordinal;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) return false;
+        }
+        return true;
+    }
+
+    public boolean contains(Enum<?> value) {
+        final int ordinal = value.ordinal();
+        final int wordIndex = ordinal >>> 6;
+        return wordIndex < words.length && (words[wordIndex] & (1L << ordinal)) != 0;
+    }
+}
@@ -0,0 +1,138 @@
+package app.revanced.extension.shared;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Removes elements from host app lists in a single pass.
+ * <p>
+ * Removing elements one at a time with {@link Iterator#remove()} from an array backed list
+ * shifts all remaining elements on each removal, which is quadratic for large lists.
+ * Instead, kept elements are moved forward in place and the end of the list is truncated once.
+ * <p>
+ * {@link java.util.Collection#removeIf} is not used because it requires Android 7.0+.
+ */
+public final class ListFilter {
+
+    /**
+     * @param <T> List element type.
+     */
+    @FunctionalInterface
+    public interface ElementFilter<T> {
+        /**
+         * @return If the element should be removed.
+         */
+        boolean shouldRemove(T element);
+    }
+
+    /**
+     * Filter that can look at the elements that come after the element being checked.
+     *
+     * @param <T> List element type.
+     */
+    @FunctionalInterface
+    public interface IndexFilter<T> {
+        /**
+         * Called once for each index, in ascending order.
+         * <p>
+         * While filtering, only elements at or after <code>index</code> are
+         * guaranteed to be the original list elements.
+         *
+         * @return If the element at the index should be removed.
+         */
+        boolean shouldRemove(List<T> list, int index);
+    }
+
+    private ListFilter() {
+    }
+
+    /**
+     * Removes all elements matching the filter.
+     *
+     * @return The number of elements removed.
+     */
+    public static <T> int removeMatching(List<T> list, ElementFilter<? super T> filter) {
+        return removeMatching(list, (source, index) -> filter.shouldRemove(source.get(index)));
+    }
+
+    /**
+     * Removes all elements matching the filter.
+     *
+     * @return The number of elements removed.
+     */
+    public static <T> int removeMatching(List<T> list, IndexFilter<T> filter) {
+        final int size = list.size();
+
+        if (!(list instanceof RandomAccess)) {
+            // Linked list. Index lookups are slow but iterator removal is fast.
+            // Removal uses a second pass so the filter can still look ahead at unfiltered elements.
+            boolean[] remove = new boolean[size];
+            int removedCount = 0;
+            for (int i = 0; i < size; i++) {
+                if (filter.shouldRemove(list, i)) {
+                    remove[i] = true;
+                    removedCount++;
+                }
+            }
+            if (removedCount > 0) {
+                Iterator<T> iterator = list.iterator();
+                for (int i = 0; iterator.hasNext(); i++) {
+                    iterator.next();
+                    if (remove[i]) iterator.remove();
+                }
+            }
+            return removedCount;
+        }
+
+        int writeIndex = 0;
+        int readIndex = 0;
+        try {
+            for (; readIndex < size; readIndex++) {
+                if (filter.shouldRemove(list, readIndex)) {
+                    continue;
+                }
+
+                if (writeIndex != readIndex) {
+                    list.set(writeIndex, list.get(readIndex));
+                }
+                writeIndex++;
+            }
+        } finally {
+            // If the filter threw an exception, keep all elements not yet filtered
+            // so the list is not left with duplicate elements.
+            for (; readIndex < size; readIndex++, writeIndex++) {
+                if (writeIndex != readIndex) {
+                    list.set(writeIndex, list.get(readIndex));
+                }
+            }
+
+            if (writeIndex < size) {
+                list.subList(writeIndex, size).clear();
+            }
+        }
+
+        return size - writeIndex;
+    }
+
+    /**
+     * For sources that cannot be modified.
+     *
+     * @return A new list of all elements not matching the filter.
+     */
+    public static <T> ArrayList<T> copyNotMatching(Iterable<T> source, ElementFilter<? super T> filter) {
+        ArrayList<T> result = (source instanceof Collection)
+                ? new ArrayList<>(((Collection<T>) source).size())
+                : new ArrayList<>();
+
+        for (T element : source) {
+            if (!filter.shouldRemove(element)) {
+                result.add(element);
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,101 @@
+package app.revanced.extension.shared;
+
+import java.util.Collection;
+
+/**
+ * Immutable set of primitive long values, using open addressing with linear probing.
+ * <p>
+ * Intended for lookups in frequently called hooks, where a <code>HashSet&lt;Long&gt;</code>
+ * would box the value and follow several references for each lookup.
+ * Lookups do not allocate and are safe to call from any thread.
+ */
+public final class LongHashSet {
+
+    /**
+     * Marks an empty slot. The value itself is tracked by {@link #containsEmptyValue}.
+     */
+    private static final long EMPTY = 0;
+
+    private final long[] table;
+    private final int mask;
+    private final boolean containsEmptyValue;
+    private final int size;
+
+    public LongHashSet(Collection<Long> values) {
+        // Load factor of at most 0.5 keeps probe sequences short.
+        int capacity = Integer.highestOneBit(Math.max(4, values.size() * 2 - 1)) << 1;
+        table = new long[capacity];
+        mask = capacity - 1;
+
+        boolean containsEmpty = false;
+        int count = 0;
+        for (Long boxed : values) {
+            final long value = boxed;
+            if (value == EMPTY) {
+                if (!containsEmpty) count++;
+                containsEmpty = true;
+                continue;
+            }
+
+            int index = hashIndex(value, mask);
+            while (true) {
+                final long existing = table[index];
+                if (existing == EMPTY) {
+                    table[index] = value;
+                    count++;
+                    break;
+                }
+                if (existing == value) {
+                    break;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        containsEmptyValue = containsEmpty;
+        size = count;
+    }
+
+    /**
+     * Spreads the bits of the value, since values such as ids often differ only in the high or low bits.
+     */
+    static int hashIndex(long value, int mask) {
+        final long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsEmptyValue;
+        }
+
+        int index = hashIndex(value, mask);
+        while (true) {
+            final long existing = table[index];
+            if (existing == value) return true;
+            if (existing == EMPTY) return false;
+            index = (index + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return All values of this set, in no particular order.
+     */
+    public long[] toArray() {
+        long[] values = new long[size];
+        int i = 0;
+        if (containsEmptyValue) values[i++] = EMPTY;
+        for (long value : table) {
+            if (value != EMPTY) values[i++] = value;
+        }
+        return values;
+    }
+}
@@ -56,6 +56,7 @@ import java.util.regex.Pattern;
 import app.revanced.extension.shared.settings.AppLanguage;
 import app.revanced.extension.shared.settings.BaseSettings;
 import app.revanced.extension.shared.settings.BooleanSetting;
+import app.revanced.extension.shared.settings.Setting;
 import app.revanced.extension.shared.settings.preference.ReVancedAboutPreference;
 import app.revanced.extension.shared.ui.Dim;
 
@@ -419,6 +420,10 @@ public class Utils {
         // Must initially set context to check the app language.
         context = appContext;
 
+        // Settings are created on the main thread. Read all stored values in the background,
+        // so settings created afterward do not each read from the shared preferences.
+        runOnBackgroundThread(Setting::loadAllValues);
+
         AppLanguage language = BaseSettings.REVANCED_LANGUAGE.get();
         if (language != AppLanguage.DEFAULT) {
             // Create a new context with the desired language.
@@ -1,13 +1,15 @@
 package app.revanced.extension.shared.patches;
 
-import static java.lang.Boolean.TRUE;
-
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import app.revanced.extension.shared.ConcurrentLongHashSet;
 import app.revanced.extension.shared.Logger;
+import app.revanced.extension.shared.LongHashSet;
 import app.revanced.extension.shared.settings.BaseSettings;
 
 @SuppressWarnings("unused")
@@ -21,17 +23,50 @@ public final class EnableDebuggingPatch {
      */
     private static final boolean LOG_FEATURE_FLAGS = BaseSettings.DEBUG.get();
 
-    private static final ConcurrentMap<Long, Boolean> featureFlags = LOG_FEATURE_FLAGS
-            ? new ConcurrentHashMap<>(800, 0.5f, 1)
+    /**
+     * If the number of times each boolean flag is read is counted.
+     */
+    private static final boolean COUNT_FEATURE_FLAG_ACCESS = LOG_FEATURE_FLAGS
+            && BaseSettings.DEBUG_FEATURE_FLAG_ACCESS_COUNTS.get();
+
+    /**
+     * Number of boolean flag reads between logging the access counts.
+     * Must be a power of 2.
+     */
+    private static final int ACCESS_COUNT_LOG_INTERVAL = 1 << 20;
+
+    /**
+     * Only every n-th boolean flag read is timed, so timing does not cost more than the hook itself.
+     * Must be a power of 2.
+     */
+    private static final int TIMING_SAMPLE_INTERVAL = 64;
+
+    /**
+     * Number of flags with the highest access counts to log.
+     */
+    private static final int ACCESS_COUNT_LOG_LIMIT = 25;
+
+    private static final ConcurrentLongHashSet featureFlags = LOG_FEATURE_FLAGS
+            ? new ConcurrentLongHashSet(1024)
             : null;
 
-    private static final Set<Long> DISABLED_FEATURE_FLAGS = parseFlags(BaseSettings.DISABLED_FEATURE_FLAGS.get());
+    private static final LongHashSet DISABLED_FEATURE_FLAGS = new LongHashSet(
+            parseFlags(BaseSettings.DISABLED_FEATURE_FLAGS.get()));
+
+    /**
+     * Approximate number of boolean flag reads.
+     * Intentionally not atomic, since it is only used to decide when to sample and log.
+     */
+    private static int booleanFlagReads;
+
+    private static final AtomicLong sampledNanos = new AtomicLong();
+    private static final AtomicLong sampledReads = new AtomicLong();
 
     // Log all disabled flags on app startup.
     static {
         if (LOG_FEATURE_FLAGS && !DISABLED_FEATURE_FLAGS.isEmpty()) {
             StringBuilder sb = new StringBuilder("Disabled feature flags:\n");
-            for (Long flag : DISABLED_FEATURE_FLAGS) {
+            for (long flag : DISABLED_FEATURE_FLAGS.toArray()) {
                 sb.append("  ").append(flag).append('\n');
             }
             Logger.printDebug(sb::toString);
@@ -43,10 +78,15 @@ public final class EnableDebuggingPatch {
      */
     public static boolean isBooleanFeatureFlagEnabled(boolean value, Long flag) {
         if (LOG_FEATURE_FLAGS && value) {
-            if (DISABLED_FEATURE_FLAGS.contains(flag)) {
+            if (COUNT_FEATURE_FLAG_ACCESS) {
+                return countBooleanFeatureFlag(flag);
+            }
+
+            final long flagValue = flag;
+            if (DISABLED_FEATURE_FLAGS.contains(flagValue)) {
                 return false;
             }
-            if (featureFlags.putIfAbsent(flag, TRUE) == null) {
+            if (featureFlags.add(flagValue)) {
                 Logger.printDebug(() -> "boolean feature is enabled: " + flag);
             }
         }
@@ -54,12 +94,56 @@ public final class EnableDebuggingPatch {
         return value;
     }
 
+    /**
+     * Same as {@link #isBooleanFeatureFlagEnabled(boolean, Long)} for an enabled flag,
+     * but also counts how often each flag is read and samples the time spent in the hook.
+     */
+    private static boolean countBooleanFeatureFlag(Long flag) {
+        final int reads = ++booleanFlagReads;
+        final boolean sample = (reads & (TIMING_SAMPLE_INTERVAL - 1)) == 0;
+        final long start = sample ? System.nanoTime() : 0;
+
+        final long flagValue = flag;
+        final boolean enabled = !DISABLED_FEATURE_FLAGS.contains(flagValue);
+        if (featureFlags.incrementCount(flagValue) == 1 && enabled) {
+            Logger.printDebug(() -> "boolean feature is enabled: " + flag);
+        }
+
+        if (sample) {
+            sampledNanos.addAndGet(System.nanoTime() - start);
+            sampledReads.incrementAndGet();
+        }
+        if ((reads & (ACCESS_COUNT_LOG_INTERVAL - 1)) == 0) {
+            Logger.printDebug(EnableDebuggingPatch::getAccessCountStatistics);
+        }
+
+        return enabled;
+    }
+
+    /**
+     * @return The boolean flags read most often, and the average time spent in the hook.
+     */
+    private static String getAccessCountStatistics() {
+        List<long[]> counts = new ArrayList<>(featureFlags.size());
+        featureFlags.forEach((flag, count) -> counts.add(new long[]{flag, count}));
+        Collections.sort(counts, (first, second) -> Long.compare(second[1], first[1]));
+
+        final long samples = sampledReads.get();
+        StringBuilder sb = new StringBuilder("Feature flag reads. Average hook time: ")
+                .append(samples == 0 ? 0 : sampledNanos.get() / samples).append("ns\n");
+        for (int i = 0, size = Math.min(ACCESS_COUNT_LOG_LIMIT, counts.size()); i < size; i++) {
+            long[] flagCount = counts.get(i);
+            sb.append("  ").append(flagCount[0]).append(" reads: ").append(flagCount[1]).append('\n');
+        }
+        return sb.toString();
+    }
+
     /**
      * Injection point.
      */
     public static double isDoubleFeatureFlagEnabled(double value, long flag, double defaultValue) {
         if (LOG_FEATURE_FLAGS && defaultValue != value) {
-            if (featureFlags.putIfAbsent(flag, true) == null) {
+            if (featureFlags.add(flag)) {
                 // Align the log outputs to make post processing easier.
                 Logger.printDebug(() -> " double feature is enabled: " + flag
                         + " value: " + value + (defaultValue == 0 ? "" : " default: " + defaultValue));
@@ -74,7 +158,7 @@ public final class EnableDebuggingPatch {
      */
     public static long isLongFeatureFlagEnabled(long value, long flag, long defaultValue) {
         if (LOG_FEATURE_FLAGS && defaultValue != value) {
-            if (featureFlags.putIfAbsent(flag, true) == null) {
+            if (featureFlags.add(flag)) {
                 Logger.printDebug(() -> "   long feature is enabled: " + flag
                         + " value: " + value + (defaultValue == 0 ? "" : " default: " + defaultValue));
             }
@@ -88,7 +172,7 @@ public final class EnableDebuggingPatch {
      */
     public static String isStringFeatureFlagEnabled(String value, long flag, String defaultValue) {
         if (LOG_FEATURE_FLAGS && !defaultValue.equals(value)) {
-            if (featureFlags.putIfAbsent(flag, true) == null) {
+            if (featureFlags.add(flag)) {
                 Logger.printDebug(() -> " string feature is enabled: " + flag
                         + " value: " + value + (defaultValue.isEmpty() ? "" : " default: " + defaultValue));
             }
@@ -102,11 +186,12 @@ public final class EnableDebuggingPatch {
      * @return Set of all known flags
      */
     public static Set<Long> getAllLoggedFlags() {
+        Set<Long> flags = new HashSet<>();
         if (featureFlags != null) {
-            return new HashSet<>(featureFlags.keySet());
+            featureFlags.forEach((flag, count) -> flags.add(flag));
         }
 
-        return new HashSet<>();
+        return flags;
     }
 
     /**
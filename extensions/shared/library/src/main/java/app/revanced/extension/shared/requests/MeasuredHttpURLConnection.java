@@ -0,0 +1,353 @@
+package app.revanced.extension.shared.requests;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.security.Permission;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the network call of a connection created by {@link Requester} to {@link RequestMetrics},
+ * so the calling code does not need to.
+ * <p>
+ * Timing starts when the connection is opened or the request body is written,
+ * and ends when the response code is received. Transfer sizes are the bytes written
+ * and read by the calling code.
+ */
+final class MeasuredHttpURLConnection extends HttpURLConnection {
+
+    private final HttpURLConnection connection;
+    private final String metricsName;
+
+    @Nullable
+    private RequestMetrics.Sample sample;
+
+    MeasuredHttpURLConnection(HttpURLConnection connection, String metricsName) {
+        super(connection.getURL());
+        this.connection = connection;
+        this.metricsName = metricsName;
+    }
+
+    private RequestMetrics.Sample getSample() {
+        if (sample == null) {
+            sample = RequestMetrics.start(metricsName);
+        }
+        return sample;
+    }
+
+    /**
+     * Counts the bytes of the request body.
+     */
+    private final class MeasuredOutputStream extends FilterOutputStream {
+        MeasuredOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            getSample().setBytesSent(1);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            getSample().setBytesSent(len);
+        }
+    }
+
+    /**
+     * Counts the bytes of the response body.
+     */
+    private final class MeasuredInputStream extends FilterInputStream {
+        MeasuredInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int value = in.read();
+            if (value >= 0) getSample().addBytesReceived(1);
+            return value;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            final int bytesRead = in.read(b, off, len);
+            if (bytesRead > 0) getSample().addBytesReceived(bytesRead);
+            return bytesRead;
+        }
+    }
+
+    @Override
+    public void connect() throws IOException {
+        RequestMetrics.Sample sample = getSample();
+        try {
+            connection.connect();
+        } catch (IOException | RuntimeException ex) {
+            sample.fail(ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        RequestMetrics.Sample sample = getSample();
+        try {
+            return new MeasuredOutputStream(connection.getOutputStream());
+        } catch (IOException | RuntimeException ex) {
+            sample.fail(ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        RequestMetrics.Sample sample = getSample();
+        try {
+            final int responseCode = connection.getResponseCode();
+            sample.complete(responseCode, -1);
+            return responseCode;
+        } catch (IOException | RuntimeException ex) {
+            sample.fail(ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        // Record the response, if the calling code reads the response without checking the response code.
+        getResponseCode();
+        return new MeasuredInputStream(connection.getInputStream());
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return connection.getErrorStream();
+    }
+
+    @Override
+    public String getResponseMessage() throws IOException {
+        return connection.getResponseMessage();
+    }
+
+    @Override
+    public void disconnect() {
+        connection.disconnect();
+    }
+
+    @Override
+    public boolean usingProxy() {
+        return connection.usingProxy();
+    }
+
+    @Override
+    public URL getURL() {
+        return connection.getURL();
+    }
+
+    @Override
+    public void setRequestMethod(String method) throws ProtocolException {
+        connection.setRequestMethod(method);
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return connection.getRequestMethod();
+    }
+
+    @Override
+    public void setRequestProperty(String key, String value) {
+        connection.setRequestProperty(key, value);
+    }
+
+    @Override
+    public void addRequestProperty(String key, String value) {
+        connection.addRequestProperty(key, value);
+    }
+
+    @Override
+    public String getRequestProperty(String key) {
+        return connection.getRequestProperty(key);
+    }
+
+    @Override
+    public Map<String, List<String>> getRequestProperties() {
+        return connection.getRequestProperties();
+    }
+
+    @Override
+    public void setFixedLengthStreamingMode(int contentLength) {
+        connection.setFixedLengthStreamingMode(contentLength);
+    }
+
+    @Override
+    public void setFixedLengthStreamingMode(long contentLength) {
+        connection.setFixedLengthStreamingMode(contentLength);
+    }
+
+    @Override
+    public void setChunkedStreamingMode(int chunkLength) {
+        connection.setChunkedStreamingMode(chunkLength);
+    }
+
+    @Override
+    public void setInstanceFollowRedirects(boolean followRedirects) {
+        connection.setInstanceFollowRedirects(followRedirects);
+    }
+
+    @Override
+    public boolean getInstanceFollowRedirects() {
+        return connection.getInstanceFollowRedirects();
+    }
+
+    @Override
+    public void setConnectTimeout(int timeout) {
+        connection.setConnectTimeout(timeout);
+    }
+
+    @Override
+    public int getConnectTimeout() {
+        return connection.getConnectTimeout();
+    }
+
+    @Override
+    public void setReadTimeout(int timeout) {
+        connection.setReadTimeout(timeout);
+    }
+
+    @Override
+    public int getReadTimeout() {
+        return connection.getReadTimeout();
+    }
+
+    @Override
+    public void setDoInput(boolean doInput) {
+        connection.setDoInput(doInput);
+    }
+
+    @Override
+    public boolean getDoInput() {
+        return connection.getDoInput();
+    }
+
+    @Override
+    public void setDoOutput(boolean doOutput) {
+        connection.setDoOutput(doOutput);
+    }
+
+    @Override
+    public boolean getDoOutput() {
+        return connection.getDoOutput();
+    }
+
+    @Override
+    public void setUseCaches(boolean useCaches) {
+        connection.setUseCaches(useCaches);
+    }
+
+    @Override
+    public boolean getUseCaches() {
+        return connection.getUseCaches();
+    }
+
+    @Override
+    public void setAllowUserInteraction(boolean allowUserInteraction) {
+        connection.setAllowUserInteraction(allowUserInteraction);
+    }
+
+    @Override
+    public boolean getAllowUserInteraction() {
+        return connection.getAllowUserInteraction();
+    }
+
+    @Override
+    public void setIfModifiedSince(long ifModifiedSince) {
+        connection.setIfModifiedSince(ifModifiedSince);
+    }
+
+    @Override
+    public long getIfModifiedSince() {
+        return connection.getIfModifiedSince();
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        return connection.getHeaderField(name);
+    }
+
+    @Override
+    public String getHeaderField(int n) {
+        return connection.getHeaderField(n);
+    }
+
+    @Override
+    public String getHeaderFieldKey(int n) {
+        return connection.getHeaderFieldKey(n);
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        return connection.getHeaderFields();
+    }
+
+    @Override
+    public int getHeaderFieldInt(String name, int defaultValue) {
+        return connection.getHeaderFieldInt(name, defaultValue);
+    }
+
+    @Override
+    public long getHeaderFieldDate(String name, long defaultValue) {
+        return connection.getHeaderFieldDate(name, defaultValue);
+    }
+
+    @Override
+    public int getContentLength() {
+        return connection.getContentLength();
+    }
+
+    @Override
+    public String getContentType() {
+        return connection.getContentType();
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return connection.getContentEncoding();
+    }
+
+    @Override
+    public long getExpiration() {
+        return connection.getExpiration();
+    }
+
+    @Override
+    public long getDate() {
+        return connection.getDate();
+    }
+
+    @Override
+    public long getLastModified() {
+        return connection.getLastModified();
+    }
+
+    @Override
+    public Permission getPermission() throws IOException {
+        return connection.getPermission();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return connection.toString();
+    }
+}
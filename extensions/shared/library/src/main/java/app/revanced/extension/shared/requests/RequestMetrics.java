@@ -0,0 +1,406 @@
+package app.revanced.extension.shared.requests;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import app.revanced.extension.shared.Logger;
+
+/**
+ * Latency, transfer size, status code and failure statistics of network calls,
+ * grouped by {@link Route} (or by a fixed name for calls that do not use a route).
+ * <p>
+ * All recording is lock-free and safe to call from any thread.
+ * Values do not persist on app shut down.
+ * <p>
+ * Connections created by {@link Requester} are recorded automatically.
+ * Other network calls are recorded using:
+ * <pre>
+ * RequestMetrics.Sample sample = RequestMetrics.start(name);
+ * try {
+ *     HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+ *     final int responseCode = connection.getResponseCode();
+ *     sample.complete(connection, responseCode);
+ * } catch (IOException ex) {
+ *     sample.fail(ex);
+ * }
+ * </pre>
+ */
+public final class RequestMetrics {
+
+    /**
+     * Upper bounds (exclusive) in milliseconds of each latency histogram bucket.
+     * The last bucket holds everything equal or larger than the last bound.
+     */
+    private static final long[] LATENCY_BUCKET_BOUNDS_MILLISECONDS = {
+            25, 50, 100, 200, 400, 800, 1600, 3200, 6400, 12800
+    };
+
+    /**
+     * Status code classes 1xx to 5xx. Index 0 is for out of range codes.
+     */
+    private static final int STATUS_CODE_CLASSES = 6;
+
+    private static final Map<String, RouteStats> statsByName = new ConcurrentHashMap<>();
+
+    private RequestMetrics() {
+    }
+
+    /**
+     * Statistics of a single route.
+     */
+    public static final class RouteStats {
+        @NonNull
+        public final String name;
+
+        private final AtomicLong callCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private final AtomicLong timeoutCount = new AtomicLong();
+        private final AtomicLong latencyTotal = new AtomicLong();
+        private final AtomicLong latencyMin = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong latencyMax = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private final AtomicLongArray latencyHistogram
+                = new AtomicLongArray(LATENCY_BUCKET_BOUNDS_MILLISECONDS.length + 1);
+        private final AtomicLongArray statusCodeClasses = new AtomicLongArray(STATUS_CODE_CLASSES);
+        private final Map<Integer, AtomicLong> statusCodes = new ConcurrentHashMap<>();
+
+        private RouteStats(@NonNull String name) {
+            this.name = name;
+        }
+
+        private void recordLatency(long latencyMillis) {
+            callCount.incrementAndGet();
+            latencyTotal.addAndGet(latencyMillis);
+            latencyHistogram.incrementAndGet(getLatencyBucketIndex(latencyMillis));
+
+            long current;
+            while (latencyMillis < (current = latencyMin.get())) {
+                if (latencyMin.compareAndSet(current, latencyMillis)) break;
+            }
+            while (latencyMillis > (current = latencyMax.get())) {
+                if (latencyMax.compareAndSet(current, latencyMillis)) break;
+            }
+        }
+
+        private void reset() {
+            callCount.set(0);
+            failureCount.set(0);
+            timeoutCount.set(0);
+            latencyTotal.set(0);
+            latencyMin.set(Long.MAX_VALUE);
+            latencyMax.set(0);
+            bytesSent.set(0);
+            bytesReceived.set(0);
+            for (int i = 0, length = latencyHistogram.length(); i < length; i++) {
+                latencyHistogram.set(i, 0);
+            }
+            for (int i = 0; i < STATUS_CODE_CLASSES; i++) {
+                statusCodeClasses.set(i, 0);
+            }
+            for (AtomicLong counter : statusCodes.values()) {
+                counter.set(0);
+            }
+        }
+
+        private void recordStatusCode(int responseCode) {
+            final int statusClass = responseCode / 100;
+            statusCodeClasses.incrementAndGet(statusClass > 0 && statusClass < STATUS_CODE_CLASSES
+                    ? statusClass
+                    : 0);
+
+            AtomicLong counter = statusCodes.get(responseCode);
+            if (counter == null) {
+                AtomicLong newCounter = new AtomicLong();
+                counter = statusCodes.putIfAbsent(responseCode, newCounter);
+                if (counter == null) counter = newCounter;
+            }
+            counter.incrementAndGet();
+        }
+
+        public long getCallCount() {
+            return callCount.get();
+        }
+
+        public long getFailureCount() {
+            return failureCount.get();
+        }
+
+        public long getTimeoutCount() {
+            return timeoutCount.get();
+        }
+
+        public long getLatencyAverage() {
+            final long count = callCount.get();
+            return count == 0 ? 0 : latencyTotal.get() / count;
+        }
+
+        public long getLatencyMin() {
+            final long min = latencyMin.get();
+            return min == Long.MAX_VALUE ? 0 : min;
+        }
+
+        public long getLatencyMax() {
+            return latencyMax.get();
+        }
+
+        /**
+         * @param percentile Value between 0 and 1.
+         * @return Estimated latency of the percentile, which is the upper bound
+         *         of the histogram bucket the percentile falls in.
+         */
+        public long getLatencyPercentile(double percentile) {
+            final long count = callCount.get();
+            if (count == 0) return 0;
+
+            final long target = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0, length = latencyHistogram.length(); i < length; i++) {
+                seen += latencyHistogram.get(i);
+                if (seen >= target) {
+                    return i < LATENCY_BUCKET_BOUNDS_MILLISECONDS.length
+                            ? LATENCY_BUCKET_BOUNDS_MILLISECONDS[i]
+                            : getLatencyMax();
+                }
+            }
+            return getLatencyMax();
+        }
+
+        public long getBytesSent() {
+            return bytesSent.get();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.get();
+        }
+
+        /**
+         * For calls where the response size is known only after the response is fully read.
+         */
+        public void addBytesReceived(long bytes) {
+            bytesReceived.addAndGet(bytes);
+        }
+
+        /**
+         * @return Number of responses for each status code class, where index 2 is 2xx, index 4 is 4xx, etc.
+         */
+        public long getStatusCodeClassCount(int statusClass) {
+            return statusCodeClasses.get(statusClass);
+        }
+
+        private JSONObject toJSON() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("name", name);
+            json.put("calls", getCallCount());
+            json.put("failures", getFailureCount());
+            json.put("timeouts", getTimeoutCount());
+            json.put("latencyAverage", getLatencyAverage());
+            json.put("latencyMin", getLatencyMin());
+            json.put("latencyMax", getLatencyMax());
+            json.put("latencyP50", getLatencyPercentile(0.5));
+            json.put("latencyP90", getLatencyPercentile(0.9));
+            json.put("latencyP99", getLatencyPercentile(0.99));
+            json.put("bytesSent", getBytesSent());
+            json.put("bytesReceived", getBytesReceived());
+
+            JSONArray histogram = new JSONArray();
+            for (int i = 0, length = latencyHistogram.length(); i < length; i++) {
+                histogram.put(latencyHistogram.get(i));
+            }
+            json.put("latencyHistogram", histogram);
+
+            JSONObject codes = new JSONObject();
+            for (Map.Entry<Integer, AtomicLong> entry : statusCodes.entrySet()) {
+                final long count = entry.getValue().get();
+                if (count > 0) codes.put(String.valueOf(entry.getKey()), count);
+            }
+            json.put("statusCodes", codes);
+
+            return json;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(name);
+            builder.append("\ncalls: ").append(getCallCount())
+                    .append(" failures: ").append(getFailureCount())
+                    .append(" timeouts: ").append(getTimeoutCount())
+                    .append("\nlatency avg: ").append(getLatencyAverage())
+                    .append("ms min: ").append(getLatencyMin())
+                    .append("ms max: ").append(getLatencyMax())
+                    .append("ms p50: ").append(getLatencyPercentile(0.5))
+                    .append("ms p90: ").append(getLatencyPercentile(0.9))
+                    .append("ms\nbytes sent: ").append(getBytesSent())
+                    .append(" received: ").append(getBytesReceived())
+                    .append("\nstatus:");
+            for (int i = 1; i < STATUS_CODE_CLASSES; i++) {
+                final long count = statusCodeClasses.get(i);
+                if (count > 0) builder.append(' ').append(i).append("xx=").append(count);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * A single network call in progress.
+     * Only the first call to {@link #complete(int, long)} or {@link #fail(Exception)} is recorded.
+     */
+    public static final class Sample {
+        private final RouteStats stats;
+        private final long startTime;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private Sample(RouteStats stats) {
+            this.stats = stats;
+            this.startTime = System.currentTimeMillis();
+        }
+
+        /**
+         * @param bytes Size of the request body.
+         */
+        public void setBytesSent(long bytes) {
+            stats.bytesSent.addAndGet(bytes);
+        }
+
+        /**
+         * For calls where the response size is known only while the response is read.
+         */
+        public void addBytesReceived(long bytes) {
+            stats.bytesReceived.addAndGet(bytes);
+        }
+
+        /**
+         * Record a server response.
+         *
+         * @param responseCode  HTTP response code.
+         * @param bytesReceived Response body size, or a negative value if not known.
+         */
+        public void complete(int responseCode, long bytesReceived) {
+            if (!finished.compareAndSet(false, true)) return;
+
+            stats.recordLatency(System.currentTimeMillis() - startTime);
+            stats.recordStatusCode(responseCode);
+            if (bytesReceived > 0) {
+                stats.bytesReceived.addAndGet(bytesReceived);
+            }
+        }
+
+        /**
+         * Record a server response, using the declared content length as the response size.
+         */
+        public void complete(HttpURLConnection connection, int responseCode) {
+            complete(responseCode, connection.getContentLength());
+        }
+
+        /**
+         * Record a call that failed before a response was received.
+         */
+        public void fail(@Nullable Exception ex) {
+            if (!finished.compareAndSet(false, true)) return;
+
+            stats.recordLatency(System.currentTimeMillis() - startTime);
+            stats.failureCount.incrementAndGet();
+            if (ex instanceof SocketTimeoutException) {
+                stats.timeoutCount.incrementAndGet();
+            }
+        }
+    }
+
+    private static int getLatencyBucketIndex(long latencyMillis) {
+        final int length = LATENCY_BUCKET_BOUNDS_MILLISECONDS.length;
+        for (int i = 0; i < length; i++) {
+            if (latencyMillis < LATENCY_BUCKET_BOUNDS_MILLISECONDS[i]) return i;
+        }
+        return length;
+    }
+
+    @NonNull
+    public static RouteStats getStats(@NonNull String name) {
+        Objects.requireNonNull(name);
+        RouteStats stats = statsByName.get(name);
+        if (stats == null) {
+            RouteStats newStats = new RouteStats(name);
+            stats = statsByName.putIfAbsent(name, newStats);
+            if (stats == null) stats = newStats;
+        }
+        return stats;
+    }
+
+    /**
+     * Start timing a network call that does not use a {@link Route}.
+     *
+     * @param name Name used to group the call in the statistics.
+     */
+    public static Sample start(@NonNull String name) {
+        return new Sample(getStats(name));
+    }
+
+    /**
+     * @return All routes with at least one call, sorted by total time spent waiting.
+     */
+    public static List<RouteStats> getAllStats() {
+        List<RouteStats> list = new ArrayList<>();
+        for (RouteStats stats : statsByName.values()) {
+            if (stats.getCallCount() > 0) list.add(stats);
+        }
+        Collections.sort(list, (first, second)
+                -> Long.compare(second.latencyTotal.get(), first.latencyTotal.get()));
+        return list;
+    }
+
+    /**
+     * @return Human readable summary of all routes.
+     */
+    public static String getSummary() {
+        StringBuilder builder = new StringBuilder();
+        for (RouteStats stats : getAllStats()) {
+            if (builder.length() > 0) builder.append("\n\n");
+            builder.append(stats);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return All statistics as a JSON array string.
+     */
+    public static String exportToJSON() {
+        JSONArray array = new JSONArray();
+        try {
+            for (RouteStats stats : getAllStats()) {
+                array.put(stats.toJSON());
+            }
+            return array.toString(2);
+        } catch (JSONException ex) {
+            Logger.printException(() -> "exportToJSON failure", ex); // Should never happen.
+            return "";
+        }
+    }
+
+    /**
+     * Clears all statistics.
+     * Counters are reset in place, so calls in progress and callers holding
+     * a {@link RouteStats} continue to record to the same statistics.
+     */
+    public static void reset() {
+        for (RouteStats stats : statsByName.values()) {
+            stats.reset();
+        }
+    }
+}
@@ -1,62 +1,387 @@
 package app.revanced.extension.shared.requests;
 
+import android.content.Context;
+import android.util.JsonReader;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+
+import app.revanced.extension.shared.Logger;
 import app.revanced.extension.shared.Utils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
+/**
+ * Connection pooling and response compression are handled by the platform {@link HttpURLConnection}.
+ * Keep-alive connections are pooled per host, but a connection is returned to the pool
+ * only if the response stream is fully read and closed without calling {@link HttpURLConnection#disconnect()}.
+ * Responses are gzip compressed if the calling code does not set an 'Accept-Encoding' header.
+ */
 public class Requester {
+    /**
+     * Maximum number of GET responses kept in memory and in the cache directory for conditional requests.
+     */
+    private static final int ETAG_CACHE_LIMIT = 50;
+
+    private static final String ETAG_CACHE_DIRECTORY_NAME = "revanced_etag_responses";
+
+    /**
+     * Previous response bodies of conditional GET requests, keyed by the request url.
+     * Responses are also saved to the app cache directory, so they are still used after the app restarts.
+     */
+    @GuardedBy("itself")
+    private static final Map<String, ETagResponse> eTagResponses = new LinkedHashMap<>(ETAG_CACHE_LIMIT, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Entry<String, ETagResponse> eldest) {
+            return size() > ETAG_CACHE_LIMIT;
+        }
+    };
+
+    /**
+     * @param eTag ETag of the response, or null if the response has not yet been received.
+     */
+    private record ETagResponse(@Nullable String eTag, @Nullable String body) {
+        static final ETagResponse PENDING = new ETagResponse(null, null);
+    }
+
+    @Nullable
+    private static volatile String userAgent;
+
     private Requester() {
     }
 
+    private static String getUserAgent() {
+        String agent = userAgent;
+        if (agent == null) {
+            agent = System.getProperty("http.agent")
+                    + "; ReVanced/" + Utils.getAppVersionName()
+                    + " (" + Utils.getPatchesReleaseVersion() + ")";
+            userAgent = agent;
+        }
+        return agent;
+    }
+
     public static HttpURLConnection getConnectionFromRoute(String apiUrl, Route route, String... params) throws IOException {
         return getConnectionFromCompiledRoute(apiUrl, route.compile(params));
     }
 
+    /**
+     * The returned connection records the call to {@link RequestMetrics}.
+     */
     public static HttpURLConnection getConnectionFromCompiledRoute(String apiUrl, Route.CompiledRoute route) throws IOException {
+        return getConnectionFromCompiledRoute(apiUrl, route, route.getBaseRoute().getMetricsName());
+    }
+
+    /**
+     * @param metricsName Name the call is recorded with in {@link RequestMetrics}.
+     */
+    public static HttpURLConnection getConnectionFromCompiledRoute(String apiUrl, Route.CompiledRoute route, String metricsName) throws IOException {
         String url = apiUrl + route.getCompiledRoute();
         HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-        // Request data is in the URL parameters and no body is sent.
-        // The calling code must set a length if using a request body.
-        connection.setFixedLengthStreamingMode(0);
-        connection.setRequestMethod(route.getMethod().name());
-        String agentString = System.getProperty("http.agent")
-                + "; ReVanced/" + Utils.getAppVersionName()
-                + " (" + Utils.getPatchesReleaseVersion() + ")";
-        connection.setRequestProperty("User-Agent", agentString);
+        final Route.Method method = route.getMethod();
+        if (method == Route.Method.POST) {
+            // Request data is in the URL parameters and no body is sent.
+            // The calling code must set a length if using a request body.
+            connection.setFixedLengthStreamingMode(0);
+        }
+        connection.setRequestMethod(method.name());
+        connection.setRequestProperty("User-Agent", getUserAgent());
+
+        return new MeasuredHttpURLConnection(connection, metricsName);
+    }
+
+    /**
+     * Same as {@link #getConnectionFromRoute(String, Route, String...)}, except if a previous response
+     * for the same url included an ETag then the request is sent with 'If-None-Match'.
+     * <p>
+     * If the server data has not changed, the response code is {@link HttpURLConnection#HTTP_NOT_MODIFIED}
+     * with no response body, and the calling code must treat it the same as a successful response.
+     * The parse methods of this class then return the previous response body,
+     * or throw an {@link IOException} if the previous response body is no longer available.
+     */
+    public static HttpURLConnection getConditionalConnectionFromRoute(String apiUrl, Route route, String... params) throws IOException {
+        if (route.getMethod() != Route.Method.GET) {
+            throw new IllegalArgumentException("Only GET routes can be conditional");
+        }
+
+        HttpURLConnection connection = getConnectionFromRoute(apiUrl, route, params);
+        String url = connection.getURL().toString();
+
+        ETagResponse previous;
+        synchronized (eTagResponses) {
+            previous = eTagResponses.get(url);
+        }
+        if (previous == null) {
+            ETagResponse saved = readETagResponse(url);
+            synchronized (eTagResponses) {
+                previous = eTagResponses.get(url);
+                if (previous == null) {
+                    previous = saved == null ? ETagResponse.PENDING : saved;
+                    eTagResponses.put(url, previous);
+                }
+            }
+        }
+        if (previous.eTag != null) {
+            connection.setRequestProperty("If-None-Match", previous.eTag);
+        }
 
         return connection;
     }
 
+    /**
+     * @return If the response code is successful, including a not modified response of a conditional request.
+     */
+    public static boolean isSuccessResponseCode(int responseCode) {
+        return responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * @return The response body stream. Decompresses the stream if the response is gzip encoded
+     *         and the platform did not already transparently decompress it.
+     */
+    private static InputStream getInputStream(HttpURLConnection connection, InputStream inputStream) throws IOException {
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+            return new GZIPInputStream(inputStream);
+        }
+        return inputStream;
+    }
+
     /**
      * Parse the {@link HttpURLConnection}, and closes the underlying InputStream.
      */
     private static String parseInputStreamAndClose(InputStream inputStream) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-            StringBuilder jsonBuilder = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                jsonBuilder.append(line);
-                jsonBuilder.append('\n');
+        try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[8192];
+            int charsRead;
+            while ((charsRead = reader.read(buffer)) >= 0) {
+                builder.append(buffer, 0, charsRead);
             }
-            return jsonBuilder.toString();
+            return builder.toString();
         }
     }
 
+    /**
+     * @return The file of a previous response, or null if the cache directory is not available.
+     */
+    @Nullable
+    private static File getETagResponseFile(String url) {
+        Context context = Utils.getContext();
+        if (context == null) {
+            return null;
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte value : digest) {
+                name.append(Character.forDigit((value >> 4) & 0xF, 16))
+                        .append(Character.forDigit(value & 0xF, 16));
+            }
+            return new File(new File(context.getCacheDir(), ETAG_CACHE_DIRECTORY_NAME), name.toString());
+        } catch (NoSuchAlgorithmException ex) {
+            Logger.printException(() -> "getETagResponseFile failure", ex); // Should never happen.
+            return null;
+        }
+    }
+
+    @Nullable
+    private static ETagResponse readETagResponse(String url) {
+        File file = getETagResponseFile(url);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (!url.equals(in.readUTF())) {
+                return null;
+            }
+            String eTag = in.readUTF();
+            final int length = in.readInt();
+            // The body is the rest of the file, so a corrupt length cannot be larger than the file.
+            if (length < 0 || length > file.length()) {
+                throw new IOException("Invalid body length: " + length);
+            }
+            byte[] body = new byte[length];
+            in.readFully(body);
+            return new ETagResponse(eTag, new String(body, StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            Logger.printInfo(() -> "Could not read previous response of: " + url, ex);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return null;
+        }
+    }
+
+    private static void writeETagResponse(String url, ETagResponse response) {
+        File file = getETagResponseFile(url);
+        if (file == null) {
+            return;
+        }
+
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Logger.printDebug(() -> "Could not create directory: " + directory);
+            return;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeUTF(url);
+            out.writeUTF(response.eTag);
+            byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(body.length);
+            out.write(body);
+        } catch (IOException ex) {
+            Logger.printInfo(() -> "Could not save response of: " + url, ex);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return;
+        }
+
+        // Remove the least recently saved responses.
+        File[] files = directory.listFiles();
+        if (files != null && files.length > ETAG_CACHE_LIMIT) {
+            Arrays.sort(files, (first, second) -> Long.compare(first.lastModified(), second.lastModified()));
+            for (int i = 0, remove = files.length - ETAG_CACHE_LIMIT; i < remove; i++) {
+                //noinspection ResultOfMethodCallIgnored
+                files[i].delete();
+            }
+        }
+    }
+
+    /**
+     * @return The previous response body, if the response is 'not modified' of a conditional request.
+     * @throws IOException If the response is 'not modified' but the previous response is no longer available.
+     *                     The previous response is then forgotten, so the next request is not conditional.
+     */
+    @Nullable
+    private static String getNotModifiedResponse(HttpURLConnection connection) throws IOException {
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return null;
+        }
+        connection.getInputStream().close();
+
+        String url = connection.getURL().toString();
+        ETagResponse previous;
+        synchronized (eTagResponses) {
+            previous = eTagResponses.get(url);
+        }
+        if (previous == null || previous.body == null) {
+            previous = readETagResponse(url);
+        }
+
+        if (previous == null) {
+            synchronized (eTagResponses) {
+                eTagResponses.remove(url);
+            }
+            File file = getETagResponseFile(url);
+            if (file != null) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+            throw new IOException("Not modified response without a previous response: " + url);
+        }
+
+        return previous.body;
+    }
+
+    /**
+     * @return The ETag of the response, if the response should be saved for the next conditional request.
+     */
+    @Nullable
+    private static String getETagToSave(HttpURLConnection connection) {
+        if (!Route.Method.GET.name().equals(connection.getRequestMethod())) {
+            return null;
+        }
+
+        String eTag = connection.getHeaderField("ETag");
+        if (eTag == null) {
+            return null;
+        }
+
+        synchronized (eTagResponses) {
+            // Only save responses of conditional requests.
+            return eTagResponses.containsKey(connection.getURL().toString())
+                    ? eTag
+                    : null;
+        }
+    }
+
+    private static void saveETagResponse(HttpURLConnection connection, String eTag, String body) {
+        String url = connection.getURL().toString();
+        ETagResponse response = new ETagResponse(eTag, body);
+        synchronized (eTagResponses) {
+            eTagResponses.put(url, response);
+        }
+        writeETagResponse(url, response);
+    }
+
+    /**
+     * Returns a streaming JSON reader of the response, for responses that are large
+     * or where only some of the data is used. The calling code must close the reader.
+     * <p>
+     * This does not close the url connection.
+     */
+    public static JsonReader parseJsonReader(HttpURLConnection connection) throws IOException {
+        String notModifiedBody = getNotModifiedResponse(connection);
+        if (notModifiedBody != null) {
+            return new JsonReader(new StringReader(notModifiedBody));
+        }
+
+        String eTag = getETagToSave(connection);
+        if (eTag != null) {
+            // The complete response is needed for the next conditional request.
+            String body = parseInputStreamAndClose(getInputStream(connection, connection.getInputStream()));
+            saveETagResponse(connection, eTag, body);
+            return new JsonReader(new StringReader(body));
+        }
+
+        return new JsonReader(new BufferedReader(new InputStreamReader(
+                getInputStream(connection, connection.getInputStream()), StandardCharsets.UTF_8)));
+    }
+
     /**
      * Parse the {@link HttpURLConnection} response as a String.
      * This does not close the url connection. If further requests to this host are unlikely
      * in the near future, then instead use {@link #parseStringAndDisconnect(HttpURLConnection)}.
      */
     public static String parseString(HttpURLConnection connection) throws IOException {
-        return parseInputStreamAndClose(connection.getInputStream());
+        String notModifiedBody = getNotModifiedResponse(connection);
+        if (notModifiedBody != null) {
+            return notModifiedBody;
+        }
+
+        String body = parseInputStreamAndClose(getInputStream(connection, connection.getInputStream()));
+        String eTag = getETagToSave(connection);
+        if (eTag != null) {
+            saveETagResponse(connection, eTag, body);
+        }
+        return body;
     }
 
     /**
@@ -81,7 +406,7 @@ public class Requester {
         if (errorStream == null) {
             return "";
         }
-        return parseInputStreamAndClose(errorStream);
+        return parseInputStreamAndClose(getInputStream(connection, errorStream));
     }
 
     /**
@@ -18,6 +18,14 @@ public class Route {
         return method;
     }
 
+    /**
+     * @return Name used by {@link RequestMetrics}. The route path without any query parameters.
+     */
+    public String getMetricsName() {
+        final int queryIndex = route.indexOf('?');
+        return method.name() + ' ' + (queryIndex < 0 ? route : route.substring(0, queryIndex));
+    }
+
     public CompiledRoute compile(String... params) {
         if (params.length != paramCount)
             throw new IllegalArgumentException("Error compiling route [" + route + "], incorrect amount of parameters provided. " +
@@ -48,6 +56,10 @@ public class Route {
         public Method getMethod() {
             return baseRoute.method;
         }
+
+        public Route getBaseRoute() {
+            return baseRoute;
+        }
     }
 
     private int countMatches(CharSequence seq, char c) {
@@ -44,4 +44,5 @@ public class BaseSettings {
     public static final IntegerSetting CUSTOM_BRANDING_NAME = new IntegerSetting("revanced_custom_branding_name", 1, true);
 
     public static final StringSetting DISABLED_FEATURE_FLAGS = new StringSetting("revanced_disabled_feature_flags", "", true, parent(DEBUG));
+    public static final BooleanSetting DEBUG_FEATURE_FLAG_ACCESS_COUNTS = new BooleanSetting("revanced_debug_feature_flag_access_counts", FALSE, true, parent(DEBUG));
 }
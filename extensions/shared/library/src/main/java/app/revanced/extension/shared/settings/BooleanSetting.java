@@ -46,11 +46,16 @@ public class BooleanSetting extends Setting<Boolean> {
      * accidental usage when {@link #save(Boolean)} was intnded.
      */
     public static void privateSetValue(@NonNull BooleanSetting setting, @NonNull Boolean newValue) {
+        final boolean changed = !setting.value.equals(newValue);
         setting.value = Objects.requireNonNull(newValue);
 
         if (setting.isSetToDefault()) {
             setting.removeFromPreferences();
         }
+
+        if (changed) {
+            setting.valueChanged();
+        }
     }
 
     @Override
@@ -17,6 +17,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import app.revanced.extension.shared.Logger;
 import app.revanced.extension.shared.StringRef;
@@ -115,6 +117,44 @@ public abstract class Setting<T> {
 
     private static final List<ImportExportCallback> importExportCallbacks = new ArrayList<>();
 
+    /**
+     * Listener of changes to the value of a setting.
+     */
+    public interface ChangeListener<T> {
+        /**
+         * Called on the thread that changed the value, after the value is changed.
+         */
+        void settingChanged(Setting<T> setting, T newValue);
+    }
+
+    /**
+     * Incremented every time any setting value changes.
+     */
+    private static final AtomicInteger version = new AtomicInteger();
+
+    /**
+     * @return A number that changes every time any setting value changes.
+     *         Code that uses values derived from many settings can compare this with the version
+     *         the values were derived with, instead of comparing each setting value.
+     */
+    public static int getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Adds a listener that is called if the value of any of the settings changes.
+     */
+    public static void addChangeListener(Runnable listener, Setting<?>... settings) {
+        Objects.requireNonNull(listener);
+        for (Setting<?> setting : settings) {
+            addRunnableListener(setting, listener);
+        }
+    }
+
+    private static <T> void addRunnableListener(Setting<T> setting, Runnable listener) {
+        setting.addChangeListener((changedSetting, newValue) -> listener.run());
+    }
+
     /**
      * Adds a callback for {@link #importFromJSON(Context, String)} and {@link #exportToJson(Context)}.
      */
@@ -138,6 +178,35 @@ public abstract class Setting<T> {
      */
     public static final SharedPrefCategory preferences = new SharedPrefCategory("revanced_prefs");
 
+    /**
+     * Total time spent loading the values of all settings, which is the startup cost of the settings classes.
+     */
+    private static long loadNanos;
+
+    /**
+     * Number of settings loaded using {@link SharedPrefCategory#loadAllValues()}.
+     */
+    private static int bulkLoadedCount;
+
+    /**
+     * Reads all stored setting values at once, so settings created afterward
+     * do not read each value from the shared preferences.
+     * Called from a background thread when the app starts.
+     */
+    public static void loadAllValues() {
+        final long start = System.currentTimeMillis();
+        preferences.loadAllValues();
+        Logger.printDebug(() -> "Loaded all setting values in: " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * @return Number of settings created, and how long loading their values took.
+     */
+    public static String getLoadStatistics() {
+        return "Loaded " + SETTINGS.size() + " settings (" + bulkLoadedCount + " from all values) in: "
+                + (loadNanos / 1000) + "us";
+    }
+
     @Nullable
     public static Setting<?> getSettingFromPath(String str) {
         return PATH_TO_SETTINGS.get(str);
@@ -199,6 +268,12 @@ public abstract class Setting<T> {
      */
     protected volatile T value;
 
+    /**
+     * Created when the first listener is added, since most settings have no listeners.
+     */
+    @Nullable
+    private volatile List<ChangeListener<T>> changeListeners;
+
     public Setting(String key, T defaultValue) {
         this(key, defaultValue, false, true, null, null);
     }
@@ -254,7 +329,10 @@ public abstract class Setting<T> {
                     + " error: Duplicate Setting key found: " + key);
         }
 
+        final long start = System.nanoTime();
+        if (preferences.isAllValuesLoaded()) bulkLoadedCount++;
         load();
+        loadNanos += System.nanoTime() - start;
     }
 
     /**
@@ -319,6 +397,7 @@ public abstract class Setting<T> {
      * accidental usage when {@link #save(Object)} was intended.
      */
     public static void privateSetValueFromString(Setting<?> setting, String newValue) {
+        Object oldValue = setting.value;
         setting.setValueFromString(newValue);
 
         // Clear the preference value since default is used, to allow changing
@@ -327,6 +406,10 @@ public abstract class Setting<T> {
         if (setting.isSetToDefault()) {
             setting.removeFromPreferences();
         }
+
+        if (!oldValue.equals(setting.value)) {
+            setting.valueChanged();
+        }
     }
 
     /**
@@ -355,6 +438,46 @@ public abstract class Setting<T> {
         } else {
             saveToPreferences();
         }
+
+        valueChanged();
+    }
+
+    /**
+     * Adds a listener that is called every time the value of this setting changes.
+     */
+    public synchronized void addChangeListener(ChangeListener<T> listener) {
+        List<ChangeListener<T>> listeners = changeListeners;
+        if (listeners == null) {
+            listeners = new CopyOnWriteArrayList<>();
+            changeListeners = listeners;
+        }
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    public synchronized void removeChangeListener(ChangeListener<T> listener) {
+        List<ChangeListener<T>> listeners = changeListeners;
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Must be called after {@link #value} is changed, except when loading the value.
+     */
+    protected final void valueChanged() {
+        version.incrementAndGet();
+
+        List<ChangeListener<T>> listeners = changeListeners;
+        if (listeners == null) return;
+
+        final T newValue = value;
+        for (ChangeListener<T> listener : listeners) {
+            try {
+                listener.settingChanged(this, newValue);
+            } catch (Exception ex) {
+                Logger.printException(() -> "Setting change listener failure: " + key, ex);
+            }
+        }
     }
 
     /**
@@ -0,0 +1,71 @@
+package app.revanced.extension.shared.settings.preference;
+
+import static app.revanced.extension.shared.StringRef.str;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.preference.Preference;
+import android.util.AttributeSet;
+import android.util.Pair;
+import android.widget.LinearLayout;
+
+import app.revanced.extension.shared.Utils;
+import app.revanced.extension.shared.requests.RequestMetrics;
+import app.revanced.extension.shared.ui.CustomDialog;
+
+/**
+ * A custom preference that shows the network call statistics of {@link RequestMetrics},
+ * with options to copy the statistics as JSON to the clipboard or reset them.
+ */
+@SuppressWarnings({"deprecation", "unused"})
+public class RequestMetricsPreference extends Preference {
+
+    {
+        setOnPreferenceClickListener(pref -> {
+            showMetricsDialog();
+            return true;
+        });
+    }
+
+    public RequestMetricsPreference(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        super(context, attrs, defStyleAttr, defStyleRes);
+    }
+    public RequestMetricsPreference(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+    public RequestMetricsPreference(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+    public RequestMetricsPreference(Context context) {
+        super(context);
+    }
+
+    private void showMetricsDialog() {
+        String summary = RequestMetrics.getSummary();
+        if (summary.isEmpty()) {
+            Utils.showToastShort(str("revanced_debug_network_metrics_none_found"));
+            return;
+        }
+
+        Pair<Dialog, LinearLayout> dialogPair = CustomDialog.create(
+                getContext(),
+                getTitle() != null ? getTitle().toString() : "",
+                summary,
+                null,
+                str("revanced_settings_import_copy"),
+                () -> {
+                    Utils.setClipboard(RequestMetrics.exportToJSON());
+                    Utils.showToastShort(str("revanced_debug_network_metrics_copied_to_clipboard"));
+                },
+                () -> {},
+                str("revanced_settings_reset"),
+                () -> {
+                    RequestMetrics.reset();
+                    Utils.showToastShort(str("revanced_debug_network_metrics_reset_toast"));
+                },
+                true
+        );
+
+        dialogPair.first.show();
+    }
+}
@@ -8,6 +8,8 @@ import androidx.annotation.Nullable;
 import app.revanced.extension.shared.Logger;
 import app.revanced.extension.shared.Utils;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -25,9 +27,114 @@ public class SharedPrefCategory {
     @NonNull
     public final SharedPreferences preferences;
 
+    /**
+     * Copy of all stored values, loaded by {@link #loadAllValues()}.
+     * Reading many values from the copy does not lock {@link #preferences} for each value.
+     * Cleared if any value is changed.
+     */
+    @Nullable
+    private volatile Map<String, ?> loadedValues;
+
+    /**
+     * Number of times values were changed, to discard loaded values that are outdated.
+     */
+    private int changeCount;
+
+    /**
+     * Clears the loaded values if a value is changed without using this class, such as by a preference fragment.
+     * Must be a field since {@link SharedPreferences} only keeps a weak reference to listeners.
+     */
+    private final SharedPreferences.OnSharedPreferenceChangeListener changeListener =
+            (sharedPreferences, key) -> valuesChanged();
+
     public SharedPrefCategory(@NonNull String name) {
         this.name = Objects.requireNonNull(name);
         preferences = Objects.requireNonNull(Utils.getContext()).getSharedPreferences(name, Context.MODE_PRIVATE);
+        preferences.registerOnSharedPreferenceChangeListener(changeListener);
+    }
+
+    /**
+     * Reads all stored values at once. Should be called from a background thread
+     * before many values are read, such as before the settings classes are loaded.
+     */
+    public void loadAllValues() {
+        final int startChangeCount;
+        synchronized (this) {
+            startChangeCount = changeCount;
+        }
+
+        Map<String, ?> values = new HashMap<>(preferences.getAll());
+
+        synchronized (this) {
+            // A value changed while reading, and the copy may not include it.
+            if (startChangeCount == changeCount) {
+                loadedValues = values;
+            }
+        }
+    }
+
+    /**
+     * @return If the values loaded by {@link #loadAllValues()} are used.
+     */
+    public boolean isAllValuesLoaded() {
+        return loadedValues != null;
+    }
+
+    /**
+     * Must be called after a value is changed in {@link #preferences}.
+     */
+    private synchronized void valuesChanged() {
+        changeCount++;
+        loadedValues = null;
+    }
+
+    // The read methods throw ClassCastException if the stored value is a different type,
+    // same as the methods of SharedPreferences.
+
+    @Nullable
+    private String readString(@NonNull String key, @Nullable String _default) {
+        Map<String, ?> values = loadedValues;
+        if (values == null) {
+            return preferences.getString(key, _default);
+        }
+        Object value = values.get(key);
+        return value == null ? _default : (String) value;
+    }
+
+    private boolean readBoolean(@NonNull String key, boolean _default) {
+        Map<String, ?> values = loadedValues;
+        if (values == null) {
+            return preferences.getBoolean(key, _default);
+        }
+        Object value = values.get(key);
+        return value == null ? _default : (Boolean) value;
+    }
+
+    private int readInt(@NonNull String key, int _default) {
+        Map<String, ?> values = loadedValues;
+        if (values == null) {
+            return preferences.getInt(key, _default);
+        }
+        Object value = values.get(key);
+        return value == null ? _default : (Integer) value;
+    }
+
+    private long readLong(@NonNull String key, long _default) {
+        Map<String, ?> values = loadedValues;
+        if (values == null) {
+            return preferences.getLong(key, _default);
+        }
+        Object value = values.get(key);
+        return value == null ? _default : (Long) value;
+    }
+
+    private float readFloat(@NonNull String key, float _default) {
+        Map<String, ?> values = loadedValues;
+        if (values == null) {
+            return preferences.getFloat(key, _default);
+        }
+        Object value = values.get(key);
+        return value == null ? _default : (Float) value;
     }
 
     private void removeConflictingPreferenceKeyValue(@NonNull String key) {
@@ -37,6 +144,7 @@ public class SharedPrefCategory {
 
     private void saveObjectAsString(@NonNull String key, @Nullable Object value) {
         preferences.edit().putString(key, (value == null ? null : value.toString())).apply();
+        valuesChanged();
     }
 
     /**
@@ -44,10 +152,12 @@ public class SharedPrefCategory {
      */
     public void removeKey(@NonNull String key) {
         preferences.edit().remove(Objects.requireNonNull(key)).apply();
+        valuesChanged();
     }
 
     public void saveBoolean(@NonNull String key, boolean value) {
         preferences.edit().putBoolean(key, value).apply();
+        valuesChanged();
     }
 
     /**
@@ -89,7 +199,7 @@ public class SharedPrefCategory {
     public String getString(@NonNull String key, @NonNull String _default) {
         Objects.requireNonNull(_default);
         try {
-            return preferences.getString(key, _default);
+            return readString(key, _default);
         } catch (ClassCastException ex) {
             // Value stored is a completely different type (should never happen).
             removeConflictingPreferenceKeyValue(key);
@@ -101,7 +211,7 @@ public class SharedPrefCategory {
     public <T extends Enum<?>> T getEnum(@NonNull String key, @NonNull T _default) {
         Objects.requireNonNull(_default);
         try {
-            String enumName = preferences.getString(key, null);
+            String enumName = readString(key, null);
             if (enumName != null) {
                 try {
                     // noinspection unchecked
@@ -121,7 +231,7 @@ public class SharedPrefCategory {
 
     public boolean getBoolean(@NonNull String key, boolean _default) {
         try {
-            return preferences.getBoolean(key, _default);
+            return readBoolean(key, _default);
         } catch (ClassCastException ex) {
             // Value stored is a completely different type (should never happen).
             removeConflictingPreferenceKeyValue(key);
@@ -132,14 +242,14 @@ public class SharedPrefCategory {
     @NonNull
     public Integer getIntegerString(@NonNull String key, @NonNull Integer _default) {
         try {
-            String value = preferences.getString(key, null);
+            String value = readString(key, null);
             if (value != null) {
                 return Integer.valueOf(value);
             }
         } catch (ClassCastException | NumberFormatException ex) {
             try {
                 // Old data previously stored as primitive.
-                return preferences.getInt(key, _default);
+                return readInt(key, _default);
             } catch (ClassCastException ex2) {
                 // Value stored is a completely different type (should never happen).
                 removeConflictingPreferenceKeyValue(key);
@@ -151,13 +261,13 @@ public class SharedPrefCategory {
     @NonNull
     public Long getLongString(@NonNull String key, @NonNull Long _default) {
         try {
-            String value = preferences.getString(key, null);
+            String value = readString(key, null);
             if (value != null) {
                 return Long.valueOf(value);
             }
         } catch (ClassCastException | NumberFormatException ex) {
             try {
-                return preferences.getLong(key, _default);
+                return readLong(key, _default);
             } catch (ClassCastException ex2) {
                 removeConflictingPreferenceKeyValue(key);
             }
@@ -168,13 +278,13 @@ public class SharedPrefCategory {
     @NonNull
     public Float getFloatString(@NonNull String key, @NonNull Float _default) {
         try {
-            String value = preferences.getString(key, null);
+            String value = readString(key, null);
             if (value != null) {
                 return Float.valueOf(value);
             }
         } catch (ClassCastException | NumberFormatException ex) {
             try {
-                return preferences.getFloat(key, _default);
+                return readFloat(key, _default);
             } catch (ClassCastException ex2) {
                 removeConflictingPreferenceKeyValue(key);
             }
@@ -57,7 +57,10 @@ public class SpoofVideoStreamsPatch {
      * @param language Language override for non-authenticated requests.
      */
     public static void setLanguageOverride(@Nullable AppLanguage language) {
-        languageOverride = language;
+        if (languageOverride != language) {
+            languageOverride = language;
+            StreamingDataRequest.clearRequestBodies();
+        }
     }
 
     public static void setClientsToUse(List<ClientType> availableClients, ClientType client) {
@@ -4,10 +4,11 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.Locale;
 
-import app.revanced.extension.shared.Logger;
 import app.revanced.extension.shared.requests.Requester;
 import app.revanced.extension.shared.requests.Route;
 import app.revanced.extension.shared.settings.AppLanguage;
@@ -29,22 +30,23 @@ final class PlayerRoutes {
      */
     private static final int CONNECTION_TIMEOUT_MILLISECONDS = 10 * 1000; // 10 Seconds.
 
-    private PlayerRoutes() {
-    }
-
-    static String createInnertubeBody(ClientType clientType, String videoId) {
-        JSONObject innerTubeBody = new JSONObject();
-
-        try {
-            JSONObject context = new JSONObject();
-
-            AppLanguage language = SpoofVideoStreamsPatch.getLanguageOverride();
-            if (language == null) {
-                // Force original audio has not overrode the language.
-                language = AppLanguage.DEFAULT;
-            }
-            //noinspection ExtractMethodRecommender
-            Locale streamLocale = language.getLocale();
+    /**
+     * Request body of a client type and locale, with a slot for the video id.
+     * The body is the same for all videos, so it's encoded once and not for every request.
+     */
+    private static final class InnertubeBodyTemplate {
+        final Locale locale;
+        /**
+         * UTF-8 body before the video id.
+         */
+        final byte[] prefix;
+        /**
+         * UTF-8 body after the video id.
+         */
+        final byte[] suffix;
+
+        InnertubeBodyTemplate(ClientType clientType, Locale locale) throws JSONException {
+            this.locale = locale;
 
             JSONObject client = new JSONObject();
             client.put("deviceMake", clientType.deviceMake);
@@ -56,24 +58,82 @@ final class PlayerRoutes {
             if (clientType.androidSdkVersion != null) {
                 client.put("androidSdkVersion", clientType.androidSdkVersion);
             }
-            client.put("hl", streamLocale.getLanguage());
-            client.put("gl", streamLocale.getCountry());
+            client.put("hl", locale.getLanguage());
+            client.put("gl", locale.getCountry());
+
+            JSONObject context = new JSONObject();
             context.put("client", client);
 
+            JSONObject innerTubeBody = new JSONObject();
             innerTubeBody.put("context", context);
             innerTubeBody.put("contentCheckOk", true);
             innerTubeBody.put("racyCheckOk", true);
-            innerTubeBody.put("videoId", videoId);
-        } catch (JSONException e) {
-            Logger.printException(() -> "Failed to create innerTubeBody", e);
+
+            // Remove the closing brace, so the video id can be added as the last key.
+            String body = innerTubeBody.toString();
+            prefix = (body.substring(0, body.length() - 1) + ",\"videoId\":").getBytes(StandardCharsets.UTF_8);
+            suffix = "}".getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Templates by client type ordinal. Cleared if the language override changes.
+     */
+    private static volatile InnertubeBodyTemplate[] bodyTemplates = new InnertubeBodyTemplate[ClientType.values().length];
+
+    private PlayerRoutes() {
+    }
+
+    static void clearInnertubeBodyTemplates() {
+        bodyTemplates = new InnertubeBodyTemplate[ClientType.values().length];
+    }
+
+    private static InnertubeBodyTemplate getInnertubeBodyTemplate(ClientType clientType) throws JSONException {
+        AppLanguage language = SpoofVideoStreamsPatch.getLanguageOverride();
+        if (language == null) {
+            // Force original audio has not overrode the language.
+            language = AppLanguage.DEFAULT;
+        }
+        // The default language is the current app language, which can change without clearing the templates.
+        Locale streamLocale = language.getLocale();
+
+        InnertubeBodyTemplate[] templates = bodyTemplates;
+        InnertubeBodyTemplate template = templates[clientType.ordinal()];
+        if (template == null || !template.locale.equals(streamLocale)) {
+            template = new InnertubeBodyTemplate(clientType, streamLocale);
+            // Templates are immutable, so a race only creates the same template twice.
+            templates[clientType.ordinal()] = template;
+        }
+
+        return template;
+    }
+
+    /**
+     * Writes the request body of the client type and video to the connection.
+     *
+     * @return The number of bytes written.
+     */
+    static int writeInnertubeBody(HttpURLConnection connection, ClientType clientType, String videoId)
+            throws IOException, JSONException {
+        InnertubeBodyTemplate template = getInnertubeBodyTemplate(clientType);
+        byte[] videoIdBytes = JSONObject.quote(videoId).getBytes(StandardCharsets.UTF_8);
+        final int length = template.prefix.length + videoIdBytes.length + template.suffix.length;
+
+        connection.setFixedLengthStreamingMode(length);
+        try (OutputStream outputStream = connection.getOutputStream()) {
+            outputStream.write(template.prefix);
+            outputStream.write(videoIdBytes);
+            outputStream.write(template.suffix);
         }
 
-        return innerTubeBody.toString();
+        return length;
     }
 
     @SuppressWarnings("SameParameterValue")
     static HttpURLConnection getPlayerResponseConnectionFromRoute(Route.CompiledRoute route, ClientType clientType) throws IOException {
-        var connection = Requester.getConnectionFromCompiledRoute(YT_API_URL, route);
+        // Each client type is tracked separately in the network statistics.
+        var connection = Requester.getConnectionFromCompiledRoute(YT_API_URL, route,
+                route.getBaseRoute().getMetricsName() + " " + clientType);
 
         connection.setRequestProperty("Content-Type", "application/json");
         connection.setRequestProperty("User-Agent", clientType.userAgent);
@@ -13,7 +13,6 @@ import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -65,6 +64,13 @@ public class StreamingDataRequest {
         Logger.printDebug(() -> "Available spoof clients: " + Arrays.toString(clientOrderToUse));
     }
 
+    /**
+     * Clears the request bodies encoded for the current language.
+     */
+    public static void clearRequestBodies() {
+        PlayerRoutes.clearInnertubeBodyTemplates();
+    }
+
     private static final String AUTHORIZATION_HEADER = "Authorization";
 
     private static final String[] REQUEST_HEADER_KEYS = {
@@ -152,7 +158,6 @@ public class StreamingDataRequest {
         Objects.requireNonNull(playerHeaders);
 
         final long startTime = System.currentTimeMillis();
-
         try {
             HttpURLConnection connection = PlayerRoutes.getPlayerResponseConnectionFromRoute(GET_STREAMING_DATA, clientType);
             connection.setConnectTimeout(HTTP_TIMEOUT_MILLISECONDS);
@@ -185,10 +190,7 @@ public class StreamingDataRequest {
 
             Logger.printDebug(() -> "Fetching video streams for: " + videoId + " using client: " + clientType);
 
-            String innerTubeBody = PlayerRoutes.createInnertubeBody(clientType, videoId);
-            byte[] requestBody = innerTubeBody.getBytes(StandardCharsets.UTF_8);
-            connection.setFixedLengthStreamingMode(requestBody.length);
-            connection.getOutputStream().write(requestBody);
+            PlayerRoutes.writeInnertubeBody(connection, clientType, videoId);
 
             final int responseCode = connection.getResponseCode();
             if (responseCode == 200) return connection;
@@ -238,6 +240,7 @@ public class StreamingDataRequest {
                             while ((bytesRead = inputStream.read(buffer)) >= 0) {
                                 baos.write(buffer, 0, bytesRead);
                             }
+
                             if (clientType == ClientType.ANDROID_CREATOR && liveStreamBufferSearch.matches(buffer)) {
                                 Logger.printDebug(() -> "Skipping Android Studio as video is a livestream: " + videoId);
                             } else {
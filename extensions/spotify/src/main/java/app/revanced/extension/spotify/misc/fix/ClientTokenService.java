@@ -3,6 +3,7 @@ package app.revanced.extension.spotify.misc.fix;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import app.revanced.extension.shared.Logger;
+import app.revanced.extension.shared.requests.RequestMetrics;
 import app.revanced.extension.spotify.misc.fix.clienttoken.data.v0.ClienttokenHttp.*;
 
 import java.io.IOException;
@@ -15,6 +16,7 @@ import static app.revanced.extension.spotify.misc.fix.Constants.*;
 class ClientTokenService {
     private static final String IOS_CLIENT_ID = "58bd3c95768941ea9eb4350aaa033eb3";
     private static final String IOS_USER_AGENT;
+    private static final String CLIENT_TOKEN_METRICS_NAME = "POST clienttoken";
 
     static {
         String clientVersion = getClientVersion();
@@ -89,7 +91,16 @@ class ClientTokenService {
 
         byte[] requestArray = request.toByteArray();
         urlConnection.setFixedLengthStreamingMode(requestArray.length);
-        urlConnection.getOutputStream().write(requestArray);
+
+        RequestMetrics.Sample sample = RequestMetrics.start(CLIENT_TOKEN_METRICS_NAME);
+        sample.setBytesSent(requestArray.length);
+        try {
+            urlConnection.getOutputStream().write(requestArray);
+            sample.complete(urlConnection, urlConnection.getResponseCode());
+        } catch (IOException ex) {
+            sample.fail(ex);
+            throw ex;
+        }
 
         try (InputStream inputStream = urlConnection.getInputStream()) {
             return ClientTokenResponse.parseFrom(inputStream);
@@ -0,0 +1,237 @@
+package app.revanced.extension.tiktok.feedfilter;
+
+import com.ss.android.ugc.aweme.feed.model.Aweme;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import app.revanced.extension.shared.Logger;
+import app.revanced.extension.shared.settings.Setting;
+import app.revanced.extension.tiktok.settings.Settings;
+
+/**
+ * Combines the enabled {@link IFilter} into a single predicate.
+ * <p>
+ * Filter settings are checked once per feed list and not once per feed item.
+ * If any setting changed, the enabled filters are compiled again
+ * so changes apply to the next loaded feed without restarting the app.
+ * <p>
+ * A feed item is removed if any filter matches, so the filters are ordered to find a match
+ * with the least work: cheap filters that often match are called first.
+ * Filter cost and match rate are observed while filtering.
+ */
+final class FeedFilterPipeline {
+
+    /**
+     * All settings that affect which filters are enabled or how they filter.
+     */
+    private static final Setting<?>[] FILTER_SETTINGS = {
+            Settings.REMOVE_ADS,
+            Settings.HIDE_LIVE,
+            Settings.HIDE_SHOP,
+            Settings.HIDE_STORY,
+            Settings.HIDE_IMAGE,
+            Settings.MIN_MAX_VIEWS,
+            Settings.MIN_MAX_LIKES
+    };
+
+    /**
+     * Number of filter calls between re-ordering the compiled filters.
+     */
+    private static final int REORDER_INTERVAL = 512;
+
+    /**
+     * Only every n-th filter call is timed, so timing does not cost more than the filter itself.
+     * Must be a power of 2.
+     */
+    private static final int TIMING_SAMPLE_INTERVAL = 32;
+
+    private static final class Stage {
+        final IFilter filter;
+        /**
+         * The filter with the settings of the last compile.
+         */
+        volatile IFilter compiled;
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong sampledNanos = new AtomicLong();
+        final AtomicLong sampledCalls = new AtomicLong();
+
+        Stage(IFilter filter) {
+            this.filter = filter;
+            this.compiled = filter;
+        }
+
+        boolean test(Aweme item) {
+            final IFilter filter = compiled;
+            final boolean filtered;
+            if ((calls.incrementAndGet() & (TIMING_SAMPLE_INTERVAL - 1)) == 0) {
+                final long start = System.nanoTime();
+                filtered = filter.getFiltered(item);
+                sampledNanos.addAndGet(System.nanoTime() - start);
+                sampledCalls.incrementAndGet();
+            } else {
+                filtered = filter.getFiltered(item);
+            }
+
+            if (filtered) hits.incrementAndGet();
+            return filtered;
+        }
+
+        /**
+         * @return Expected time spent by this filter for each feed item it removes.
+         *         Lower values should be called first.
+         */
+        double getRank() {
+            final long callCount = calls.get();
+            final long sampleCount = sampledCalls.get();
+            // Until the filter was timed, assume all filters cost the same.
+            final double cost = sampleCount == 0
+                    ? 1
+                    : Math.max(1, (double) sampledNanos.get() / sampleCount);
+            // Add one so filters that have not matched yet are still ranked by cost.
+            final double matchRate = (hits.get() + 1.0) / (callCount + 1.0);
+            return cost / matchRate;
+        }
+
+        String getName() {
+            return filter.getClass().getSimpleName();
+        }
+    }
+
+    private final Stage[] allStages;
+
+    /**
+     * Setting values the current stages were compiled with.
+     */
+    private final Object[] compiledSettingValues = new Object[FILTER_SETTINGS.length];
+
+    /**
+     * Enabled stages in the order they are called.
+     * Replaced and never modified, so filtering threads do not need to synchronize.
+     */
+    private volatile Stage[] compiledStages;
+
+    private final AtomicLong itemsSinceReorder = new AtomicLong();
+
+    FeedFilterPipeline(List<IFilter> filters) {
+        allStages = new Stage[filters.size()];
+        for (int i = 0, size = filters.size(); i < size; i++) {
+            allStages[i] = new Stage(filters.get(i));
+        }
+    }
+
+    /**
+     * Compiles the filters again if any filter setting has changed.
+     * Should be called once before filtering each feed list.
+     */
+    synchronized void update() {
+        boolean settingsChanged = compiledStages == null;
+
+        for (int i = 0; i < FILTER_SETTINGS.length; i++) {
+            Object value = FILTER_SETTINGS[i].get();
+            if (!Objects.equals(value, compiledSettingValues[i])) {
+                compiledSettingValues[i] = value;
+                settingsChanged = true;
+            }
+        }
+
+        if (settingsChanged) {
+            compile();
+        } else if (itemsSinceReorder.get() >= REORDER_INTERVAL) {
+            reorder(compiledStages);
+        }
+    }
+
+    private void compile() {
+        List<Stage> enabled = new ArrayList<>(allStages.length);
+        for (Stage stage : allStages) {
+            try {
+                IFilter compiled = stage.filter.compile();
+                if (compiled.getEnabled()) {
+                    stage.compiled = compiled;
+                    enabled.add(stage);
+                }
+            } catch (Exception ex) {
+                Logger.printException(() -> "Could not compile filter: " + stage.getName(), ex);
+            }
+        }
+
+        reorder(enabled.toArray(new Stage[0]));
+    }
+
+    private void reorder(Stage[] stages) {
+        // Ranks change while other threads filter, so use a snapshot for sorting.
+        final int count = stages.length;
+        double[] ranks = new double[count];
+        Stage[] ordered = Arrays.copyOf(stages, count);
+        for (int i = 0; i < count; i++) {
+            ranks[i] = ordered[i].getRank();
+        }
+
+        // Insertion sort. There are only a few filters.
+        for (int i = 1; i < count; i++) {
+            Stage stage = ordered[i];
+            double rank = ranks[i];
+            int j = i - 1;
+            for (; j >= 0 && ranks[j] > rank; j--) {
+                ordered[j + 1] = ordered[j];
+                ranks[j + 1] = ranks[j];
+            }
+            ordered[j + 1] = stage;
+            ranks[j + 1] = rank;
+        }
+
+        itemsSinceReorder.set(0);
+        compiledStages = ordered;
+
+        Logger.printDebug(() -> "Compiled feed filters: " + Arrays.toString(getNames(ordered))
+                + "\n" + getStatistics());
+    }
+
+    /**
+     * @return If the item matches any enabled filter.
+     */
+    boolean shouldFilter(Aweme item) {
+        itemsSinceReorder.incrementAndGet();
+
+        for (Stage stage : compiledStages) {
+            if (stage.test(item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isEmpty() {
+        Stage[] stages = compiledStages;
+        return stages == null || stages.length == 0;
+    }
+
+    /**
+     * @return Number of calls, items removed, and sampled average time of each filter.
+     */
+    private String getStatistics() {
+        StringBuilder builder = new StringBuilder();
+        for (Stage stage : allStages) {
+            final long sampleCount = stage.sampledCalls.get();
+            if (builder.length() > 0) builder.append('\n');
+            builder.append(stage.getName())
+                    .append(" calls: ").append(stage.calls.get())
+                    .append(" removed: ").append(stage.hits.get())
+                    .append(" avg ns: ").append(sampleCount == 0 ? 0 : stage.sampledNanos.get() / sampleCount);
+        }
+        return builder.toString();
+    }
+
+    private static String[] getNames(Stage[] stages) {
+        String[] names = new String[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            names[i] = stages[i].getName();
+        }
+        return names;
+    }
+}
@@ -4,11 +4,12 @@ import com.ss.android.ugc.aweme.feed.model.Aweme;
 import com.ss.android.ugc.aweme.feed.model.FeedItemList;
 import com.ss.android.ugc.aweme.follow.presenter.FollowFeedList;
 
-import java.util.Iterator;
 import java.util.List;
 
+import app.revanced.extension.shared.ListFilter;
+
 public final class FeedItemsFilter {
-    private static final List<IFilter> FILTERS = List.of(
+    private static final FeedFilterPipeline PIPELINE = new FeedFilterPipeline(List.of(
             new AdsFilter(),
             new LiveFilter(),
             new StoryFilter(),
@@ -16,7 +17,7 @@ public final class FeedItemsFilter {
             new ViewCountFilter(),
             new LikeCountFilter(),
             new ShopFilter()
-    );
+    ));
 
     public static void filter(FeedItemList feedItemList) {
         filterFeedList(feedItemList.items, item -> item);
@@ -27,24 +28,13 @@ public final class FeedItemsFilter {
     }
 
     private static <T> void filterFeedList(List<T> list, AwemeExtractor<T> extractor) {
-        // Could be simplified with removeIf() but requires Android 7.0+ while TikTok supports 4.0+.
-        Iterator<T> iterator = list.iterator();
-        while (iterator.hasNext()) {
-            T container = iterator.next();
-            Aweme item = extractor.extract(container);
-            if (item != null && shouldFilter(item)) {
-                iterator.remove();
-            }
-        }
-    }
+        PIPELINE.update();
+        if (PIPELINE.isEmpty()) return;
 
-    private static boolean shouldFilter(Aweme item) {
-        for (IFilter filter : FILTERS) {
-            if (filter.getEnabled() && filter.getFiltered(item)) {
-                return true;
-            }
-        }
-        return false;
+        ListFilter.removeMatching(list, container -> {
+            Aweme item = extractor.extract(container);
+            return item != null && PIPELINE.shouldFilter(item);
+        });
     }
 
     @FunctionalInterface
@@ -3,6 +3,20 @@ package app.revanced.extension.tiktok.feedfilter;
 import com.ss.android.ugc.aweme.feed.model.Aweme;
 
 public interface IFilter {
+    /**
+     * Called only when the filter pipeline is compiled, and not for each feed item.
+     * Filters with settings that need parsing should parse them into a new filter
+     * that does not change afterwards, so it can be used by multiple threads.
+     *
+     * @return A filter with the current settings.
+     */
+    default IFilter compile() {
+        return this;
+    }
+
+    /**
+     * Called on the filter returned by {@link #compile()}. Must not have side effects.
+     */
     boolean getEnabled();
 
     boolean getFiltered(Aweme item);
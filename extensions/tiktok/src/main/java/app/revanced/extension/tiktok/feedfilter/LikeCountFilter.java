@@ -17,9 +17,14 @@ public final class LikeCountFilter implements IFilter {
         maxLike = minMax[1];
     }
 
+    @Override
+    public IFilter compile() {
+        return new LikeCountFilter();
+    }
+
     @Override
     public boolean getEnabled() {
-        return true;
+        return minLike > 0 || maxLike < Long.MAX_VALUE;
     }
 
     @Override
@@ -16,9 +16,14 @@ public class ViewCountFilter implements IFilter {
         maxView = minMax[1];
     }
 
+    @Override
+    public IFilter compile() {
+        return new ViewCountFilter();
+    }
+
     @Override
     public boolean getEnabled() {
-        return true;
+        return minView > 0 || maxView < Long.MAX_VALUE;
     }
 
     @Override
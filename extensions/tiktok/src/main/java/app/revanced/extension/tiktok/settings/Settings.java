@@ -9,13 +9,13 @@ import app.revanced.extension.shared.settings.FloatSetting;
 import app.revanced.extension.shared.settings.StringSetting;
 
 public class Settings extends BaseSettings {
-    public static final BooleanSetting REMOVE_ADS = new BooleanSetting("remove_ads", TRUE, true);
-    public static final BooleanSetting HIDE_LIVE = new BooleanSetting("hide_live", FALSE, true);
-    public static final BooleanSetting HIDE_SHOP = new BooleanSetting("hide_shop", FALSE, true);
-    public static final BooleanSetting HIDE_STORY = new BooleanSetting("hide_story", FALSE, true);
-    public static final BooleanSetting HIDE_IMAGE = new BooleanSetting("hide_image", FALSE, true);
-    public static final StringSetting MIN_MAX_VIEWS = new StringSetting("min_max_views", "0-" + Long.MAX_VALUE, true);
-    public static final StringSetting MIN_MAX_LIKES = new StringSetting("min_max_likes", "0-" + Long.MAX_VALUE, true);
+    public static final BooleanSetting REMOVE_ADS = new BooleanSetting("remove_ads", TRUE);
+    public static final BooleanSetting HIDE_LIVE = new BooleanSetting("hide_live", FALSE);
+    public static final BooleanSetting HIDE_SHOP = new BooleanSetting("hide_shop", FALSE);
+    public static final BooleanSetting HIDE_STORY = new BooleanSetting("hide_story", FALSE);
+    public static final BooleanSetting HIDE_IMAGE = new BooleanSetting("hide_image", FALSE);
+    public static final StringSetting MIN_MAX_VIEWS = new StringSetting("min_max_views", "0-" + Long.MAX_VALUE);
+    public static final StringSetting MIN_MAX_LIKES = new StringSetting("min_max_likes", "0-" + Long.MAX_VALUE);
     public static final StringSetting DOWNLOAD_PATH = new StringSetting("down_path", "DCIM/TikTok");
     public static final BooleanSetting DOWNLOAD_WATERMARK = new BooleanSetting("down_watermark", TRUE);
     public static final BooleanSetting CLEAR_DISPLAY = new BooleanSetting("clear_display", FALSE);
@@ -1,4 +1,5 @@
 dependencies {
+    compileOnly(project(":extensions:shared:library"))
     compileOnly(project(":extensions:tumblr:stub"))
 }
 
@@ -1,11 +1,15 @@
 package app.revanced.extension.tumblr.patches;
 
 import com.tumblr.rumblr.model.TimelineObject;
+import com.tumblr.rumblr.model.TimelineObjectType;
 import com.tumblr.rumblr.model.Timelineable;
 
 import java.util.HashSet;
 import java.util.List;
 
+import app.revanced.extension.shared.EnumOrdinalSet;
+import app.revanced.extension.shared.ListFilter;
+
 public final class TimelineFilterPatch {
     private static final HashSet<String> blockedObjectTypes = new HashSet<>();
 
@@ -17,16 +21,23 @@ public final class TimelineFilterPatch {
         blockedObjectTypes.add("BLOCKED_OBJECT_DUMMY");
     }
 
+    /**
+     * {@link #blockedObjectTypes} resolved to the enum values.
+     * Declared after the static block so it's initialized after the patch inserted filters are added.
+     */
+    private static final EnumOrdinalSet blockedTypes =
+            new EnumOrdinalSet(TimelineObjectType.values(), blockedObjectTypes);
+
     // Calls to this method are injected where the list of Timeline objects is first received.
     // We modify the list filter out elements that we want to hide.
     public static void filterTimeline(final List<TimelineObject<? extends Timelineable>> timelineObjects) {
-        final var iterator = timelineObjects.iterator();
-        while (iterator.hasNext()) {
-            var timelineElement = iterator.next();
-            if (timelineElement == null) continue;
-
-            String elementType = timelineElement.getData().getTimelineObjectType().toString();
-            if (blockedObjectTypes.contains(elementType)) iterator.remove();
-        }
+        if (blockedTypes.isEmpty()) return;
+
+        ListFilter.removeMatching(timelineObjects, timelineElement -> {
+            if (timelineElement == null) return false;
+
+            TimelineObjectType elementType = timelineElement.getData().getTimelineObjectType();
+            return elementType != null && blockedTypes.contains(elementType);
+        });
     }
 }
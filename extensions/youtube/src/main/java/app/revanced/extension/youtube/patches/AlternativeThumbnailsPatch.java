@@ -25,6 +25,7 @@ import java.util.concurrent.ExecutionException;
 
 import app.revanced.extension.shared.Logger;
 import app.revanced.extension.shared.Utils;
+import app.revanced.extension.shared.requests.RequestMetrics;
 import app.revanced.extension.shared.settings.Setting;
 import app.revanced.extension.youtube.settings.Settings;
 import app.revanced.extension.youtube.shared.NavigationBar;
@@ -524,6 +525,11 @@ public final class AlternativeThumbnailsPatch {
          */
         private static final long NOT_AVAILABLE_TIMEOUT_MILLISECONDS = 10 * 60 * 1000; // 10 minutes.
 
+        /**
+         * Name used for {@link RequestMetrics} statistics of verification calls.
+         */
+        private static final String THUMBNAIL_VERIFY_METRICS_NAME = "HEAD i.ytimg.com thumbnail verify";
+
         /**
          * Cache used to verify if an alternative thumbnails exists for a given video id.
          */
@@ -632,7 +638,15 @@ public final class AlternativeThumbnailsPatch {
                     // Even with a HEAD request, the response is the same size as a full GET request.
                     // Using an empty range fixes this.
                     connection.setRequestProperty("Range", "bytes=0-0");
-                    final int responseCode = connection.getResponseCode();
+                    RequestMetrics.Sample sample = RequestMetrics.start(THUMBNAIL_VERIFY_METRICS_NAME);
+                    final int responseCode;
+                    try {
+                        responseCode = connection.getResponseCode();
+                        sample.complete(responseCode, -1);
+                    } catch (IOException ex) {
+                        sample.fail(ex);
+                        throw ex;
+                    }
                     if (responseCode == HttpURLConnection.HTTP_PARTIAL) {
                         String contentType = connection.getContentType();
                         return (contentType != null && contentType.startsWith("image"));
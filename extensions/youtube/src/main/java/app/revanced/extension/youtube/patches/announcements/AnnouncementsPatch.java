@@ -40,7 +40,7 @@ public final class AnnouncementsPatch {
 
         try {
             // Do not show the announcement if the request failed.
-            if (connection.getResponseCode() != 200) {
+            if (!Requester.isSuccessResponseCode(connection.getResponseCode())) {
                 if (Settings.ANNOUNCEMENT_LAST_ID.isSetToDefault())
                     return true;
 
@@ -54,7 +54,8 @@ public final class AnnouncementsPatch {
             return true;
         }
 
-        var jsonString = Requester.parseStringAndDisconnect(connection);
+        // Do not disconnect, the same server connection is used to fetch the announcement.
+        var jsonString = Requester.parseString(connection);
 
         // Parse the ID. Fall-back to raw string if it fails.
         int id = Settings.ANNOUNCEMENT_LAST_ID.defaultValue;
@@ -17,6 +17,6 @@ public class AnnouncementsRoutes {
     }
 
     public static HttpURLConnection getAnnouncementsConnectionFromRoute(Route route, String... params) throws IOException {
-        return Requester.getConnectionFromRoute(ANNOUNCEMENTS_PROVIDER, route, params);
+        return Requester.getConditionalConnectionFromRoute(ANNOUNCEMENTS_PROVIDER, route, params);
     }
 }
\ No newline at end of file
@@ -164,7 +164,7 @@ public final class AdsFilter extends Filter {
         }
 
         if (matchedGroup == fullscreenAd) {
-            if (path.contains("|ImageType|")) closeFullscreenAd();
+            if (path.contains("|ImageType|") && sideEffectsEnabled()) closeFullscreenAd();
 
             // Do not actually filter the fullscreen ad otherwise it will leave a dimmed screen.
             return false;
@@ -21,7 +21,9 @@ public final class AdvancedVideoQualityMenuFilter extends Filter {
     @Override
     boolean isFiltered(String identifier, String path, byte[] buffer,
                        StringFilterGroup matchedGroup, FilterContentType contentType, int contentIndex) {
-        isVideoQualityMenuVisible = true;
+        if (sideEffectsEnabled()) {
+            isVideoQualityMenuVisible = true;
+        }
 
         return false;
     }
@@ -3,160 +3,363 @@ package app.revanced.extension.youtube.patches.components;
 import static app.revanced.extension.shared.StringRef.str;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import app.revanced.extension.shared.Logger;
 import app.revanced.extension.shared.Utils;
-import app.revanced.extension.shared.ByteTrieSearch;
 import app.revanced.extension.youtube.settings.Settings;
 
 /**
  * Allows custom filtering using a path and optionally a proto buffer string.
+ * <p>
+ * Syntax of each line: <code>^path${field.path}bufferString</code>
+ * <ul>
+ *     <li>The optional <code>^</code> indicates the path must match the start of the component path.</li>
+ *     <li>The optional <code>$</code> separates the path from a buffer string
+ *         the proto buffer must also contain.</li>
+ *     <li>The optional <code>{field.path}</code> limits the buffer string to a single protobuf field,
+ *         such as <code>{1.4.2}</code>. Field paths are shown in the debug log
+ *         if proto buffer debugging is enabled.</li>
+ * </ul>
+ * The path and buffer string are {@link GlobPattern}, and can use <code>*</code>, <code>?</code>,
+ * <code>[a-z]</code> and <code>\</code> to escape a special character.
+ * Paths can not use characters after U+00FF. Filters saved before the wildcard syntax
+ * are escaped once by {@link Settings}, so they still match the same components.
+ * <p>
+ * All paths are searched with one {@link GlobPatternSearch}, and all buffer strings with another.
+ * The filters are parsed again when the custom filter setting changes.
  */
 @SuppressWarnings("unused")
 final class CustomFilter extends Filter {
 
+    /**
+     * Optional character for the path that indicates the custom filter path must match the start.
+     * Must be the first character of the expression.
+     */
+    private static final char SYNTAX_STARTS_WITH = '^';
+
+    /**
+     * Optional character that separates the path from a proto buffer string pattern.
+     */
+    private static final char SYNTAX_BUFFER_SYMBOL = '$';
+
+    /**
+     * Optional start and end characters of a protobuf field path, at the start of the buffer string.
+     */
+    private static final char SYNTAX_FIELD_PATH_START = '{';
+    private static final char SYNTAX_FIELD_PATH_END = '}';
+
     private static void showInvalidSyntaxToast(@NonNull String expression) {
         Utils.showToastLong(str("revanced_custom_filter_toast_invalid_syntax", expression));
     }
 
-    private static class CustomFilterGroup extends StringFilterGroup {
-        /**
-         * Optional character for the path that indicates the custom filter path must match the start.
-         * Must be the first character of the expression.
-         */
-        public static final String SYNTAX_STARTS_WITH = "^";
+    /**
+     * Parsed custom filters. Immutable.
+     */
+    private static final class CustomFilters {
+        final GlobPatternSearch pathSearch;
+        final GlobPatternSearch bufferSearch;
 
         /**
-         * Optional character that separates the path from a proto buffer string pattern.
+         * For each path pattern, the buffer patterns the buffer must also match.
+         * Null if the path alone is filtered.
          */
-        public static final String SYNTAX_BUFFER_SYMBOL = "$";
+        final int[][] pathBufferPatterns;
 
         /**
-         * @return the parsed objects
+         * For each buffer pattern, the protobuf field path it must match in, or null to match in any string.
          */
+        final int[][] bufferFieldPaths;
+
+        CustomFilters(GlobPatternSearch pathSearch, GlobPatternSearch bufferSearch,
+                      int[][] pathBufferPatterns, int[][] bufferFieldPaths) {
+            this.pathSearch = pathSearch;
+            this.bufferSearch = bufferSearch;
+            this.pathBufferPatterns = pathBufferPatterns;
+            this.bufferFieldPaths = bufferFieldPaths;
+        }
+
         @NonNull
-        @SuppressWarnings("ConstantConditions")
-        static Collection<CustomFilterGroup> parseCustomFilterGroups() {
-            String rawCustomFilterText = Settings.CUSTOM_FILTER_STRINGS.get();
-            if (rawCustomFilterText.isBlank()) {
-                return Collections.emptyList();
+        @Override
+        public String toString() {
+            String delimitingCharacter = "❙";
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < pathBufferPatterns.length; i++) {
+                builder.append("CustomFilterGroup{path=").append(pathSearch.getPattern(i));
+
+                int[] bufferPatterns = pathBufferPatterns[i];
+                if (bufferPatterns != null) {
+                    builder.append(", bufferStrings=").append(delimitingCharacter);
+                    for (int bufferPattern : bufferPatterns) {
+                        int[] fieldPath = bufferFieldPaths[bufferPattern];
+                        if (fieldPath != null) {
+                            builder.append(Arrays.toString(fieldPath));
+                        }
+                        builder.append(bufferSearch.getPattern(bufferPattern)).append(delimitingCharacter);
+                    }
+                }
+                builder.append("} ");
             }
 
-            // Map key is the path including optional special characters (^ and/or $)
-            Map<String, CustomFilterGroup> result = new HashMap<>();
-            Pattern pattern = Pattern.compile(
-                    "(" // map key group
-                            + "(\\Q" + SYNTAX_STARTS_WITH + "\\E?)" // optional starts with
-                            + "([^\\Q" + SYNTAX_BUFFER_SYMBOL + "\\E]*)" // path
-                            + "(\\Q" + SYNTAX_BUFFER_SYMBOL + "\\E?)" // optional buffer symbol
-                            + ")" // end map key group
-                            + "(.*)"); // optional buffer string
-
-            for (String expression : rawCustomFilterText.split("\n")) {
-                if (expression.isBlank()) continue;
-
-                Matcher matcher = pattern.matcher(expression);
-                if (!matcher.find()) {
-                    showInvalidSyntaxToast(expression);
-                    continue;
+            builder.append("(").append(pathSearch.getEstimatedMemorySize() + bufferSearch.getEstimatedMemorySize())
+                    .append(" KB)");
+            return builder.toString();
+        }
+    }
+
+    /**
+     * @return The parsed custom filters, or null if there are no valid filters.
+     */
+    @Nullable
+    private static CustomFilters parseCustomFilters(String rawCustomFilterText) {
+        if (rawCustomFilterText.isBlank()) {
+            return null;
+        }
+
+        // Map key is the path including the optional starts with character.
+        Map<String, Integer> pathIndexes = new HashMap<>();
+        List<GlobPattern> pathPatterns = new ArrayList<>();
+        List<List<Integer>> pathBufferPatterns = new ArrayList<>();
+
+        // Map key is the buffer string including the optional field path.
+        Map<String, Integer> bufferIndexes = new HashMap<>();
+        List<GlobPattern> bufferPatterns = new ArrayList<>();
+        List<int[]> bufferFieldPaths = new ArrayList<>();
+
+        for (String expression : rawCustomFilterText.split("\n")) {
+            if (expression.isBlank()) continue;
+
+            try {
+                final boolean pathStartsWith = expression.charAt(0) == SYNTAX_STARTS_WITH;
+                final int pathStartIndex = pathStartsWith ? 1 : 0;
+                final int bufferSymbolIndex = indexOfUnescaped(expression, pathStartIndex, SYNTAX_BUFFER_SYMBOL);
+                final String path = bufferSymbolIndex < 0
+                        ? expression.substring(pathStartIndex)
+                        : expression.substring(pathStartIndex, bufferSymbolIndex);
+
+                if (path.isBlank()) {
+                    throw new IllegalArgumentException("Path is empty");
                 }
 
-                final String mapKey = matcher.group(1);
-                final boolean pathStartsWith = !matcher.group(2).isEmpty();
-                final String path = matcher.group(3);
-                final boolean hasBufferSymbol = !matcher.group(4).isEmpty();
-                final String bufferString = matcher.group(5);
+                // Use one path pattern for all expressions with the same path.
+                // This ensures the path is searched exactly once
+                // when multiple paths are used with different buffer strings.
+                final String pathKey = pathStartsWith ? SYNTAX_STARTS_WITH + path : path;
+                Integer pathIndex = pathIndexes.get(pathKey);
+                if (pathIndex == null) {
+                    pathPatterns.add(GlobPattern.parse(path, pathStartsWith, false));
+                    pathIndex = pathPatterns.size() - 1;
+                    pathIndexes.put(pathKey, pathIndex);
+                    pathBufferPatterns.add(new ArrayList<>());
+                }
 
-                if (path.isBlank() || (hasBufferSymbol && bufferString.isBlank())) {
-                    showInvalidSyntaxToast(expression);
+                if (bufferSymbolIndex < 0) {
+                    // Path alone is filtered, and any buffer strings of the same path are not needed.
+                    pathBufferPatterns.set(pathIndex, null);
                     continue;
                 }
 
-                // Use one group object for all expressions with the same path.
-                // This ensures the buffer is searched exactly once
-                // when multiple paths are used with different buffer strings.
-                CustomFilterGroup group = result.get(mapKey);
-                if (group == null) {
-                    group = new CustomFilterGroup(pathStartsWith, path);
-                    result.put(mapKey, group);
+                String bufferString = expression.substring(bufferSymbolIndex + 1);
+                int[] fieldPath = null;
+                if (!bufferString.isEmpty() && bufferString.charAt(0) == SYNTAX_FIELD_PATH_START) {
+                    final int fieldPathEnd = bufferString.indexOf(SYNTAX_FIELD_PATH_END);
+                    if (fieldPathEnd < 0) {
+                        throw new IllegalArgumentException("Field path is not closed");
+                    }
+                    fieldPath = parseFieldPath(bufferString.substring(1, fieldPathEnd));
+                    bufferString = bufferString.substring(fieldPathEnd + 1);
                 }
-                if (hasBufferSymbol) {
-                    group.addBufferString(bufferString);
+
+                if (bufferString.isBlank()) {
+                    throw new IllegalArgumentException("Buffer string is empty");
                 }
-            }
 
-            return result.values();
+                final String bufferKey = Arrays.toString(fieldPath) + bufferString;
+                Integer bufferIndex = bufferIndexes.get(bufferKey);
+                if (bufferIndex == null) {
+                    bufferPatterns.add(GlobPattern.parse(bufferString, false, true));
+                    bufferFieldPaths.add(fieldPath);
+                    bufferIndex = bufferPatterns.size() - 1;
+                    bufferIndexes.put(bufferKey, bufferIndex);
+                }
+
+                List<Integer> buffers = pathBufferPatterns.get(pathIndex);
+                if (buffers != null) {
+                    buffers.add(bufferIndex);
+                }
+            } catch (IllegalArgumentException ex) {
+                Logger.printDebug(() -> "Invalid custom filter: " + expression, ex);
+                showInvalidSyntaxToast(expression);
+            }
         }
 
-        final boolean startsWith;
-        ByteTrieSearch bufferSearch;
+        if (pathPatterns.isEmpty()) {
+            return null;
+        }
 
-        CustomFilterGroup(boolean startsWith, @NonNull String path) {
-            super(Settings.CUSTOM_FILTER, path);
-            this.startsWith = startsWith;
+        int[][] pathBufferArrays = new int[pathBufferPatterns.size()][];
+        for (int i = 0; i < pathBufferArrays.length; i++) {
+            List<Integer> buffers = pathBufferPatterns.get(i);
+            if (buffers != null) {
+                int[] array = new int[buffers.size()];
+                for (int j = 0; j < array.length; j++) {
+                    array[j] = buffers.get(j);
+                }
+                pathBufferArrays[i] = array;
+            }
         }
 
-        void addBufferString(@NonNull String bufferString) {
-            if (bufferSearch == null) {
-                bufferSearch = new ByteTrieSearch();
+        return new CustomFilters(
+                new GlobPatternSearch(pathPatterns),
+                new GlobPatternSearch(bufferPatterns),
+                pathBufferArrays,
+                bufferFieldPaths.toArray(new int[0][]));
+    }
+
+    private static int indexOfUnescaped(String expression, int startIndex, char character) {
+        for (int i = startIndex, length = expression.length(); i < length; i++) {
+            final char c = expression.charAt(i);
+            if (c == '\\') {
+                i++; // Skip the escaped character.
+            } else if (c == character) {
+                return i;
             }
-            bufferSearch.addPattern(bufferString.getBytes());
         }
+        return -1;
+    }
 
-        @NonNull
-        @Override
-        public String toString() {
-            StringBuilder builder = new StringBuilder();
-            builder.append("CustomFilterGroup{");
-            builder.append("path=");
-            if (startsWith) builder.append(SYNTAX_STARTS_WITH);
-            builder.append(filters[0]);
-
-            if (bufferSearch != null) {
-                String delimitingCharacter = "❙";
-                builder.append(", bufferStrings=");
-                builder.append(delimitingCharacter);
-                for (byte[] bufferString : bufferSearch.getPatterns()) {
-                    builder.append(new String(bufferString));
-                    builder.append(delimitingCharacter);
-                }
+    /**
+     * @param fieldPath Field numbers separated by periods, such as <code>1.4.2</code>.
+     */
+    private static int[] parseFieldPath(String fieldPath) {
+        String[] numbers = fieldPath.split("\\.");
+        int[] path = new int[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            path[i] = Integer.parseInt(numbers[i].trim()); // Throws NumberFormatException.
+            if (path[i] <= 0) {
+                throw new IllegalArgumentException("Invalid field number: " + path[i]);
             }
-            builder.append("}");
-            return builder.toString();
         }
+        return path;
     }
 
+    /**
+     * Incremented when the custom filter setting changes.
+     * Allows changing the filters without restarting the app.
+     */
+    private final AtomicInteger filtersVersion = new AtomicInteger();
+
+    /**
+     * The {@link #filtersVersion} parsed and loaded into {@link #customFilters},
+     * or -1 if the filters are not parsed yet.
+     */
+    private volatile int parsedFiltersVersion = -1;
+
+    @Nullable
+    private volatile CustomFilters customFilters;
+
     public CustomFilter() {
-        Collection<CustomFilterGroup> groups = CustomFilterGroup.parseCustomFilterGroups();
+        Settings.CUSTOM_FILTER_STRINGS.addChangeListener(
+                (setting, newValue) -> filtersVersion.incrementAndGet());
+    }
 
-        if (!groups.isEmpty()) {
-            CustomFilterGroup[] groupsArray = groups.toArray(new CustomFilterGroup[0]);
-            Logger.printDebug(()-> "Using Custom filters: " + Arrays.toString(groupsArray));
-            addPathCallbacks(groupsArray);
+    private synchronized void parseFilters() { // Must be synchronized since Litho is multi-threaded.
+        // Read before the setting, so a change while parsing is parsed again.
+        final int version = filtersVersion.get();
+        if (version == parsedFiltersVersion) {
+            return; // Another thread won the race, and filters are already parsed.
         }
+
+        CustomFilters filters = parseCustomFilters(Settings.CUSTOM_FILTER_STRINGS.get());
+        Logger.printDebug(() -> "Using Custom filters: " + filters);
+
+        customFilters = filters;
+        parsedFiltersVersion = version;
     }
 
     @Override
-    boolean isFiltered(String identifier, String path, byte[] buffer,
-                       StringFilterGroup matchedGroup, FilterContentType contentType, int contentIndex) {
-        // All callbacks are custom filter groups.
-        CustomFilterGroup custom = (CustomFilterGroup) matchedGroup;
-        if (custom.startsWith && contentIndex != 0) {
+    boolean filtersAllComponents() {
+        return true;
+    }
+
+    @Override
+    boolean isFiltered(String identifier, String path, byte[] buffer) {
+        if (!Settings.CUSTOM_FILTER.get()) {
             return false;
         }
 
-        if (custom.bufferSearch == null) {
-            return true; // No buffer filter, only path filtering.
+        if (filtersVersion.get() != parsedFiltersVersion) {
+            parseFilters();
+        }
+
+        CustomFilters filters = customFilters;
+        if (filters == null) {
+            return false;
         }
 
-        return custom.bufferSearch.matches(buffer);
+        GlobPatternSearch pathSearch = filters.pathSearch;
+        GlobPatternSearch.SearchState pathState = pathSearch.begin();
+        Arrays.fill(pathState.active, true);
+        if (!pathSearch.search(pathState, path)) {
+            return false;
+        }
+
+        boolean[] bufferPatternsNeeded = null;
+        for (int i = 0, count = pathSearch.getPatternCount(); i < count; i++) {
+            if (!pathState.matched[i]) continue;
+
+            int[] bufferPatterns = filters.pathBufferPatterns[i];
+            if (bufferPatterns == null) {
+                return true; // No buffer filter, only path filtering.
+            }
+
+            if (bufferPatternsNeeded == null) {
+                bufferPatternsNeeded = new boolean[filters.bufferSearch.getPatternCount()];
+            }
+            for (int bufferPattern : bufferPatterns) {
+                bufferPatternsNeeded[bufferPattern] = true;
+            }
+        }
+
+        return bufferPatternsNeeded != null && bufferMatches(filters, buffer, bufferPatternsNeeded);
+    }
+
+    private static boolean bufferMatches(CustomFilters filters, byte[] buffer, boolean[] bufferPatternsNeeded) {
+        GlobPatternSearch bufferSearch = filters.bufferSearch;
+        GlobPatternSearch.SearchState bufferState = bufferSearch.begin();
+
+        ProtobufFieldIndex fieldIndex = LithoFilterPatch.getFieldIndex(buffer);
+        if (fieldIndex == null) {
+            // Not the Litho buffer. Field paths cannot be used.
+            setActiveBufferPatterns(filters, bufferState, bufferPatternsNeeded, null, -1);
+            return bufferSearch.search(bufferState, buffer, 0, buffer.length, true);
+        }
+
+        return fieldIndex.searchStrings((bytes, startIndex, endIndex, field) -> {
+            setActiveBufferPatterns(filters, bufferState, bufferPatternsNeeded, fieldIndex, field);
+            return bufferSearch.search(bufferState, bytes, startIndex, endIndex, true)
+                    ? startIndex
+                    : -1;
+        }) >= 0;
+    }
+
+    /**
+     * Activates the needed buffer patterns that can match in the string field.
+     */
+    private static void setActiveBufferPatterns(CustomFilters filters, GlobPatternSearch.SearchState state,
+                                                boolean[] bufferPatternsNeeded,
+                                                @Nullable ProtobufFieldIndex fieldIndex, int field) {
+        for (int i = 0; i < bufferPatternsNeeded.length; i++) {
+            int[] fieldPath = filters.bufferFieldPaths[i];
+            state.active[i] = bufferPatternsNeeded[i] && (fieldPath == null
+                    || (fieldIndex != null && field >= 0 && fieldIndex.fieldHasPath(field, fieldPath)));
+        }
     }
-}
\ No newline at end of file
+}
@@ -17,6 +17,8 @@ import java.util.List;
  * or a {@link ByteArrayFilterGroupList} (if searching for more than 1 pattern).
  *
  * All callbacks must be registered before the constructor completes.
+ * Filters with patterns that can change while the app is running can instead
+ * override {@link #filtersAllComponents()} and {@link #isFiltered(String, String, byte[])}.
  */
 abstract class Filter {
 
@@ -37,6 +39,8 @@ abstract class Filter {
      */
     protected final List<StringFilterGroup> pathCallbacks = new ArrayList<>();
 
+    private boolean sideEffectsEnabled = true;
+
     /**
      * Adds callbacks to {@link #isFiltered(String, String, byte[], StringFilterGroup, FilterContentType, int)}
      * if any of the groups are found.
@@ -69,5 +73,42 @@ abstract class Filter {
                        StringFilterGroup matchedGroup, FilterContentType contentType, int contentIndex) {
         return true;
     }
+
+    /**
+     * @return If {@link #isFiltered(String, String, byte[])} should be called for every component.
+     */
+    boolean filtersAllComponents() {
+        return false;
+    }
+
+    /**
+     * Called for every component if {@link #filtersAllComponents()} is true,
+     * after no identifier or path callback filtered the component.
+     * <p>
+     * Method is called off the main thread.
+     *
+     * @return True if the litho component should be filtered out.
+     */
+    boolean isFiltered(String identifier, String path, byte[] buffer) {
+        return false;
+    }
+
+    /**
+     * Changes of state outside the verdict of a component, such as closing an ad, loading the data of a video,
+     * showing a toast or updating statistics that change the verdict of later components,
+     * must only be done if this returns true.
+     *
+     * @return False for filters that do not filter the components shown, such as filters replaying a capture.
+     */
+    final boolean sideEffectsEnabled() {
+        return sideEffectsEnabled;
+    }
+
+    /**
+     * Must be called before this filter is used.
+     */
+    final void disableSideEffects() {
+        sideEffectsEnabled = false;
+    }
 }
 
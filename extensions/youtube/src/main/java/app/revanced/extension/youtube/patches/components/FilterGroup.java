@@ -125,17 +125,22 @@ class StringFilterGroup extends FilterGroup<String> {
  * If you have more than 1 filter patterns, then all instances of
  * this class should filtered using {@link ByteArrayFilterGroupList#check(byte[])},
  * which uses a prefix tree to give better performance.
+ * <p>
+ * The entire bytes are searched, unless the group is created to search only string fields.
  */
 class ByteArrayFilterGroup extends FilterGroup<byte[]> {
 
+    private final boolean searchStringFieldsOnly;
+
     private volatile int[][] failurePatterns;
 
     // Modified implementation from https://stackoverflow.com/a/1507813
-    private static int indexOf(final byte[] data, final byte[] pattern, final int[] failure) {
+    private static int indexOf(final byte[] data, final int startIndex, final int endIndex,
+                               final byte[] pattern, final int[] failure) {
         // Finds the first occurrence of the pattern in the byte array using
         // KMP matching algorithm.
         int patternLength = pattern.length;
-        for (int i = 0, j = 0, dataLength = data.length; i < dataLength; i++) {
+        for (int i = startIndex, j = 0; i < endIndex; i++) {
             while (j > 0 && pattern[j] != data[i]) {
                 j = failure[j - 1];
             }
@@ -169,13 +174,26 @@ class ByteArrayFilterGroup extends FilterGroup<byte[]> {
 
     public ByteArrayFilterGroup(BooleanSetting setting, byte[]... filters) {
         super(setting, filters);
+        this.searchStringFieldsOnly = false;
     }
 
     /**
      * Converts the Strings into byte arrays. Used to search for text in binary data.
      */
     public ByteArrayFilterGroup(BooleanSetting setting, String... filters) {
+        this(setting, false, filters);
+    }
+
+    /**
+     * Converts the Strings into byte arrays. Used to search for text in binary data.
+     *
+     * @param searchStringFieldsOnly If only the string fields of the Litho buffer currently being filtered
+     *                               are searched, so the patterns cannot match across two fields.
+     *                               See {@link ProtobufFieldIndex}.
+     */
+    public ByteArrayFilterGroup(BooleanSetting setting, boolean searchStringFieldsOnly, String... filters) {
         super(setting, ByteTrieSearch.convertStringsToBytes(filters));
+        this.searchStringFieldsOnly = searchStringFieldsOnly;
     }
 
     private synchronized void buildFailurePatterns() {
@@ -199,9 +217,18 @@ class ByteArrayFilterGroup extends FilterGroup<byte[]> {
                 buildFailurePatterns(); // Lazy load.
                 failures = failurePatterns;
             }
+            ProtobufFieldIndex fieldIndex = searchStringFieldsOnly
+                    ? LithoFilterPatch.getFieldIndex(bytes)
+                    : null;
             for (int i = 0, length = filters.length; i < length; i++) {
-                byte[] filter = filters[i];
-                matchedIndex = indexOf(bytes, filter, failures[i]);
+                final byte[] filter = filters[i];
+                final int[] failure = failures[i];
+                if (fieldIndex == null) {
+                    matchedIndex = indexOf(bytes, 0, bytes.length, filter, failure);
+                } else {
+                    matchedIndex = fieldIndex.searchStrings((buffer, startIndex, endIndex, field) ->
+                            indexOf(buffer, startIndex, endIndex, filter, failure));
+                }
                 if (matchedIndex >= 0) {
                     matchedLength = filter.length;
                     break;
@@ -59,6 +59,13 @@ abstract class FilterGroupList<V, T extends FilterGroup<V>> implements Iterable<
 
     }
 
+    /**
+     * Searches a range of the stack, and sets the values of the result if any pattern matched.
+     */
+    protected final boolean matches(V stack, int startIndex, int endIndex, FilterGroup.FilterGroupResult result) {
+        return search.matches(stack, startIndex, endIndex, result);
+    }
+
     protected abstract TrieSearch<V> createSearchGraph();
 }
 
@@ -72,9 +79,42 @@ final class StringFilterGroupList extends FilterGroupList<String, StringFilterGr
  * If searching for a single byte pattern, then it is slightly better to use
  * {@link ByteArrayFilterGroup#check(byte[])} as it uses KMP which is faster
  * than a prefix tree to search for only 1 pattern.
+ * <p>
+ * The entire bytes are searched, unless the list is created to search only string fields.
  */
 final class ByteArrayFilterGroupList extends FilterGroupList<byte[], ByteArrayFilterGroup> {
+    private final boolean searchStringFieldsOnly;
+
+    ByteArrayFilterGroupList() {
+        this(false);
+    }
+
+    /**
+     * @param searchStringFieldsOnly If only the string fields of the Litho buffer currently being filtered
+     *                               are searched, so the patterns cannot match across two fields.
+     *                               The same option of the groups added to this list is not used.
+     *                               See {@link ProtobufFieldIndex}.
+     */
+    ByteArrayFilterGroupList(boolean searchStringFieldsOnly) {
+        this.searchStringFieldsOnly = searchStringFieldsOnly;
+    }
+
     protected ByteTrieSearch createSearchGraph() {
         return new ByteTrieSearch();
     }
+
+    @Override
+    protected FilterGroup.FilterGroupResult check(byte[] bytes) {
+        ProtobufFieldIndex fieldIndex = searchStringFieldsOnly
+                ? LithoFilterPatch.getFieldIndex(bytes)
+                : null;
+        if (fieldIndex == null) {
+            return super.check(bytes);
+        }
+
+        FilterGroup.FilterGroupResult result = new FilterGroup.FilterGroupResult();
+        fieldIndex.searchStrings((buffer, startIndex, endIndex, field) ->
+                matches(buffer, startIndex, endIndex, result) ? startIndex : -1);
+        return result;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,457 @@
+package app.revanced.extension.youtube.patches.components;
+
+import androidx.annotation.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pattern with wildcards and character classes.
+ * <p>
+ * Syntax:
+ * <pre>
+ * *      Any number of characters, including none.
+ * ?      Any single character.
+ * [abc]  Any of the characters. Ranges such as [a-z] and negated classes such as [^0-9] can be used.
+ * \      Escapes the next character, such as \* or \[
+ * </pre>
+ * All other characters match themselves.
+ * <p>
+ * A pattern matches anywhere in the text, unless the pattern is anchored to the start of the text.
+ */
+final class GlobPattern {
+
+    /**
+     * Characters are matched by their value if less than this value,
+     * and all larger characters of the text are matched as {@link #OTHER_CHARACTER}.
+     * Only wildcards and negated character classes match larger characters,
+     * so patterns of text can not use them as literals.
+     */
+    static final int OTHER_CHARACTER = 256;
+    static final int ALPHABET_SIZE = OTHER_CHARACTER + 1;
+
+    final String expression;
+    final boolean anchored;
+
+    /**
+     * Parts of the pattern separated by <code>*</code>.
+     * Each position of a segment is the set of characters it matches.
+     */
+    final List<boolean[][]> segments;
+
+    private GlobPattern(String expression, boolean anchored, List<boolean[][]> segments) {
+        this.expression = expression;
+        this.anchored = anchored;
+        this.segments = segments;
+    }
+
+    /**
+     * @param anchored If the pattern must match the start of the text.
+     * @param bytes    If the pattern searches UTF-8 bytes instead of characters.
+     *                 Non ASCII characters can be used as literals, but not in character classes.
+     *                 Otherwise characters after U+00FF can not be used, because the search can not tell them apart.
+     * @throws IllegalArgumentException If the syntax is not valid.
+     */
+    static GlobPattern parse(String expression, boolean anchored, boolean bytes) {
+        List<boolean[][]> segments = new ArrayList<>();
+        List<boolean[]> positions = new ArrayList<>();
+
+        final int length = expression.length();
+        int i = 0;
+        while (i < length) {
+            final char c = expression.charAt(i);
+            switch (c) {
+                case '*':
+                    addSegment(segments, positions);
+                    i++;
+                    break;
+                case '?':
+                    boolean[] any = new boolean[ALPHABET_SIZE];
+                    Arrays.fill(any, true);
+                    positions.add(any);
+                    i++;
+                    break;
+                case '[':
+                    i = parseCharacterClass(expression, i + 1, bytes, positions);
+                    break;
+                case '\\':
+                    if (i + 1 == length) {
+                        throw new IllegalArgumentException("Escape character at end of pattern");
+                    }
+                    i = addLiteral(expression, i + 1, bytes, positions);
+                    break;
+                default:
+                    i = addLiteral(expression, i, bytes, positions);
+            }
+        }
+        addSegment(segments, positions);
+
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("Pattern matches everything");
+        }
+
+        // A leading * removes the anchor.
+        final boolean isAnchored = anchored && !expression.startsWith("*");
+        return new GlobPattern(expression, isAnchored, segments);
+    }
+
+    private static void addSegment(List<boolean[][]> segments, List<boolean[]> positions) {
+        if (!positions.isEmpty()) {
+            segments.add(positions.toArray(new boolean[0][]));
+            positions.clear();
+        }
+    }
+
+    /**
+     * @return The index after the literal.
+     */
+    private static int addLiteral(String expression, int index, boolean bytes, List<boolean[]> positions) {
+        final int codePoint = expression.codePointAt(index);
+        final int endIndex = index + Character.charCount(codePoint);
+
+        if (bytes && codePoint >= 0x80) {
+            for (byte b : expression.substring(index, endIndex).getBytes(StandardCharsets.UTF_8)) {
+                positions.add(singleCharacter(b & 0xFF));
+            }
+        } else if (codePoint >= OTHER_CHARACTER) {
+            throw new IllegalArgumentException("Characters after U+00FF can only be used in buffer strings");
+        } else {
+            positions.add(singleCharacter(characterIndex(codePoint)));
+        }
+
+        return endIndex;
+    }
+
+    /**
+     * @param index Index after the opening bracket.
+     * @return The index after the closing bracket.
+     */
+    private static int parseCharacterClass(String expression, int index, boolean bytes, List<boolean[]> positions) {
+        boolean[] matches = new boolean[ALPHABET_SIZE];
+        final int length = expression.length();
+
+        final boolean negated = index < length && expression.charAt(index) == '^';
+        if (negated) index++;
+
+        boolean empty = true;
+        while (true) {
+            if (index >= length) {
+                throw new IllegalArgumentException("Character class is not closed");
+            }
+
+            char c = expression.charAt(index);
+            if (c == ']' && !empty) break;
+            if (c == '\\' && index + 1 < length) {
+                c = expression.charAt(++index);
+            }
+            index++;
+
+            char last = c;
+            if (index + 1 < length && expression.charAt(index) == '-' && expression.charAt(index + 1) != ']') {
+                last = expression.charAt(index + 1);
+                if (last == '\\' && index + 2 < length) {
+                    last = expression.charAt(index + 2);
+                    index++;
+                }
+                index += 2;
+                if (last < c) {
+                    throw new IllegalArgumentException("Character range is reversed: " + c + "-" + last);
+                }
+            }
+
+            if (bytes && last >= 0x80) {
+                throw new IllegalArgumentException("Character classes of buffer strings must be ASCII");
+            }
+            if (last >= OTHER_CHARACTER) {
+                throw new IllegalArgumentException("Character classes can not use characters after U+00FF");
+            }
+            for (int value = c; value <= last; value++) {
+                matches[characterIndex(value)] = true;
+            }
+            empty = false;
+        }
+
+        if (negated) {
+            for (int value = 0; value < ALPHABET_SIZE; value++) {
+                matches[value] = !matches[value];
+            }
+        }
+
+        positions.add(matches);
+        return index + 1;
+    }
+
+    private static boolean[] singleCharacter(int index) {
+        boolean[] matches = new boolean[ALPHABET_SIZE];
+        matches[index] = true;
+        return matches;
+    }
+
+    static int characterIndex(int character) {
+        return character < OTHER_CHARACTER ? character : OTHER_CHARACTER;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return anchored ? "^" + expression : expression;
+    }
+}
+
+/**
+ * Searches for many {@link GlobPattern} at once, using a single bit parallel automaton.
+ * <p>
+ * Each position of each pattern is one bit of the automaton state, and each character of the text
+ * updates all positions with a few bitwise operations for every 64 positions.
+ * A pattern with <code>*</code> is searched one segment at a time, and the next segment can only
+ * start after the previous segment matched.
+ * <p>
+ * Instances are immutable and thread safe.
+ */
+final class GlobPatternSearch {
+
+    /**
+     * State of a search. Each thread uses its own state, see {@link #begin()}.
+     */
+    static final class SearchState {
+        private final long[] state;
+        private final long[] starts;
+        private final long[] anchoredStarts;
+        private final int[] progress;
+
+        /**
+         * Patterns to search. Set by the caller before each search.
+         */
+        final boolean[] active;
+
+        /**
+         * Patterns that matched in any region searched since {@link #begin()}.
+         */
+        final boolean[] matched;
+
+        private SearchState(int words, int patternCount) {
+            state = new long[words];
+            starts = new long[words];
+            anchoredStarts = new long[words];
+            progress = new int[patternCount];
+            active = new boolean[patternCount];
+            matched = new boolean[patternCount];
+        }
+    }
+
+    private final GlobPattern[] patterns;
+    private final int words;
+
+    /**
+     * For each character, the bits of the positions that match the character.
+     */
+    private final long[][] characterMasks;
+
+    /**
+     * First and last position of each segment.
+     */
+    private final long[] firstBits;
+    private final long[] lastBits;
+
+    /**
+     * Pattern and segment of each bit.
+     */
+    private final int[] bitPattern;
+    private final int[] bitSegment;
+
+    /**
+     * Bit of the first position of each segment of each pattern.
+     */
+    private final int[][] segmentFirstBits;
+
+    private final ThreadLocal<SearchState> searchState;
+
+    GlobPatternSearch(List<GlobPattern> patternList) {
+        patterns = patternList.toArray(new GlobPattern[0]);
+
+        int bitCount = 0;
+        for (GlobPattern pattern : patterns) {
+            for (boolean[][] segment : pattern.segments) {
+                bitCount += segment.length;
+            }
+        }
+
+        words = Math.max(1, (bitCount + 63) / 64);
+        characterMasks = new long[GlobPattern.ALPHABET_SIZE][words];
+        firstBits = new long[words];
+        lastBits = new long[words];
+        bitPattern = new int[bitCount];
+        bitSegment = new int[bitCount];
+        segmentFirstBits = new int[patterns.length][];
+
+        int bit = 0;
+        for (int patternIndex = 0; patternIndex < patterns.length; patternIndex++) {
+            List<boolean[][]> segments = patterns[patternIndex].segments;
+            segmentFirstBits[patternIndex] = new int[segments.size()];
+
+            for (int segmentIndex = 0; segmentIndex < segments.size(); segmentIndex++) {
+                boolean[][] segment = segments.get(segmentIndex);
+                segmentFirstBits[patternIndex][segmentIndex] = bit;
+                setBit(firstBits, bit);
+                setBit(lastBits, bit + segment.length - 1);
+
+                for (boolean[] position : segment) {
+                    for (int character = 0; character < GlobPattern.ALPHABET_SIZE; character++) {
+                        if (position[character]) setBit(characterMasks[character], bit);
+                    }
+                    bitPattern[bit] = patternIndex;
+                    bitSegment[bit] = segmentIndex;
+                    bit++;
+                }
+            }
+        }
+
+        searchState = ThreadLocal.withInitial(() -> new SearchState(words, patterns.length));
+    }
+
+    private static void setBit(long[] bits, int bit) {
+        bits[bit >>> 6] |= 1L << bit;
+    }
+
+    private static void clearBit(long[] bits, int bit) {
+        bits[bit >>> 6] &= ~(1L << bit);
+    }
+
+    int getPatternCount() {
+        return patterns.length;
+    }
+
+    GlobPattern getPattern(int index) {
+        return patterns[index];
+    }
+
+    /**
+     * @return The search state of the calling thread, with no active or matched patterns.
+     */
+    SearchState begin() {
+        SearchState search = searchState.get();
+        Arrays.fill(search.active, false);
+        Arrays.fill(search.matched, false);
+        return search;
+    }
+
+    /**
+     * Searches the text for the active patterns that have not matched yet.
+     *
+     * @return If any pattern matched.
+     */
+    boolean search(SearchState search, String text) {
+        if (!beginRegion(search)) return false;
+
+        boolean matched = false;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            matched |= step(search, GlobPattern.characterIndex(text.charAt(i)), i == 0);
+        }
+        return matched;
+    }
+
+    /**
+     * Searches a region of the bytes for the active patterns that have not matched yet.
+     * A pattern must match within the region.
+     *
+     * @param stopAtFirstMatch If the search should stop when any pattern matched.
+     * @return If any pattern matched.
+     */
+    boolean search(SearchState search, byte[] bytes, int startIndex, int endIndex, boolean stopAtFirstMatch) {
+        if (!beginRegion(search)) return false;
+
+        boolean matched = false;
+        for (int i = startIndex; i < endIndex; i++) {
+            if (step(search, bytes[i] & 0xFF, i == startIndex)) {
+                if (stopAtFirstMatch) return true;
+                matched = true;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * @return If any pattern can match.
+     */
+    private boolean beginRegion(SearchState search) {
+        Arrays.fill(search.state, 0);
+        Arrays.fill(search.starts, 0);
+        Arrays.fill(search.anchoredStarts, 0);
+
+        boolean anyActive = false;
+        for (int patternIndex = 0; patternIndex < patterns.length; patternIndex++) {
+            search.progress[patternIndex] = 0;
+            if (!search.active[patternIndex] || search.matched[patternIndex]) continue;
+
+            final int firstBit = segmentFirstBits[patternIndex][0];
+            setBit(patterns[patternIndex].anchored ? search.anchoredStarts : search.starts, firstBit);
+            anyActive = true;
+        }
+        return anyActive;
+    }
+
+    /**
+     * Advances the automaton by one character.
+     *
+     * @return If any pattern matched at this character.
+     */
+    private boolean step(SearchState search, int character, boolean firstCharacter) {
+        final long[] state = search.state;
+        final long[] starts = search.starts;
+        final long[] mask = characterMasks[character];
+
+        long carry = 0;
+        boolean segmentCompleted = false;
+        for (int word = 0; word < words; word++) {
+            final long previous = state[word];
+            // Positions advance by one, but a segment can only start from the start bits.
+            long next = (((previous << 1) | carry) & ~firstBits[word]) | starts[word];
+            if (firstCharacter) next |= search.anchoredStarts[word];
+            next &= mask[word];
+
+            carry = previous >>> 63;
+            state[word] = next;
+            if ((next & lastBits[word]) != 0) segmentCompleted = true;
+        }
+
+        if (!segmentCompleted) return false;
+
+        boolean patternMatched = false;
+        for (int word = 0; word < words; word++) {
+            long completed = state[word] & lastBits[word];
+            while (completed != 0) {
+                final int bit = (word << 6) + Long.numberOfTrailingZeros(completed);
+                completed &= completed - 1;
+
+                final int patternIndex = bitPattern[bit];
+                final int segmentIndex = bitSegment[bit];
+                if (search.progress[patternIndex] != segmentIndex || search.matched[patternIndex]) {
+                    continue; // Segment is not searched, or the pattern already matched.
+                }
+
+                final int[] firstBitsOfSegments = segmentFirstBits[patternIndex];
+                clearBit(starts, firstBitsOfSegments[segmentIndex]);
+
+                final int nextSegment = segmentIndex + 1;
+                search.progress[patternIndex] = nextSegment;
+                if (nextSegment == firstBitsOfSegments.length) {
+                    search.matched[patternIndex] = true;
+                    patternMatched = true;
+                } else {
+                    setBit(starts, firstBitsOfSegments[nextSegment]);
+                }
+            }
+        }
+
+        return patternMatched;
+    }
+
+    /**
+     * @return Estimated memory size (in kilobytes) of this instance.
+     */
+    int getEstimatedMemorySize() {
+        return (int) Math.ceil((GlobPattern.ALPHABET_SIZE + 2) * words * 8 / 1024.0);
+    }
+}
@@ -10,6 +10,7 @@ import androidx.annotation.Nullable;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import app.revanced.extension.shared.Logger;
@@ -172,11 +173,16 @@ final class KeywordContentFilter extends Filter {
     private volatile long timeToResumeFiltering;
 
     /**
-     * The last value of {@link Settings#HIDE_KEYWORD_CONTENT_PHRASES}
-     * parsed and loaded into {@link #bufferSearch}.
+     * Incremented when {@link Settings#HIDE_KEYWORD_CONTENT_PHRASES} changes.
      * Allows changing the keywords without restarting the app.
      */
-    private volatile String lastKeywordPhrasesParsed;
+    private final AtomicInteger keywordsVersion = new AtomicInteger();
+
+    /**
+     * The {@link #keywordsVersion} parsed and loaded into {@link #bufferSearch},
+     * or -1 if the keywords are not parsed yet.
+     */
+    private volatile int parsedKeywordsVersion = -1;
 
     private volatile ByteTrieSearch bufferSearch;
 
@@ -375,14 +381,15 @@ final class KeywordContentFilter extends Filter {
     }
 
     private synchronized void parseKeywords() { // Must be synchronized since Litho is multi-threaded.
-        String rawKeywords = Settings.HIDE_KEYWORD_CONTENT_PHRASES.get();
-
-        //noinspection StringEquality
-        if (rawKeywords == lastKeywordPhrasesParsed) {
+        // Read before the setting, so a change while parsing is parsed again.
+        final int version = keywordsVersion.get();
+        if (version == parsedKeywordsVersion) {
             Logger.printDebug(() -> "Using previously initialized search");
             return; // Another thread won the race, and search is already initialized.
         }
 
+        String rawKeywords = Settings.HIDE_KEYWORD_CONTENT_PHRASES.get();
+
         ByteTrieSearch search = new ByteTrieSearch();
         String[] split = rawKeywords.split("\n");
         if (split.length != 0) {
@@ -483,12 +490,15 @@ final class KeywordContentFilter extends Filter {
         bufferSearch = search;
         timeToResumeFiltering = 0;
         filteredVideosPercentage = 0;
-        lastKeywordPhrasesParsed = rawKeywords; // Must set last.
+        parsedKeywordsVersion = version; // Must set last.
     }
 
     public KeywordContentFilter() {
         // Keywords are parsed on first call to isFiltered()
         addPathCallbacks(startsWithFilter, containsFilter);
+
+        Settings.HIDE_KEYWORD_CONTENT_PHRASES.addChangeListener(
+                (setting, newValue) -> keywordsVersion.incrementAndGet());
     }
 
     private boolean hideKeywordSettingIsActive() {
@@ -534,6 +544,10 @@ final class KeywordContentFilter extends Filter {
     }
 
     private void updateStats(boolean videoWasHidden, @Nullable String keyword) {
+        if (!sideEffectsEnabled()) {
+            return;
+        }
+
         float updatedAverage = filteredVideosPercentage
                 * ((ALL_VIDEOS_FILTERED_SAMPLE_SIZE - 1) / ALL_VIDEOS_FILTERED_SAMPLE_SIZE);
         if (videoWasHidden) {
@@ -560,9 +574,7 @@ final class KeywordContentFilter extends Filter {
             return false;
         }
 
-        // Field is intentionally compared using reference equality.
-        //noinspection StringEquality
-        if (Settings.HIDE_KEYWORD_CONTENT_PHRASES.get() != lastKeywordPhrasesParsed) {
+        if (keywordsVersion.get() != parsedKeywordsVersion) {
             // User changed the keywords or whole word setting.
             parseKeywords();
         }
@@ -574,7 +586,7 @@ final class KeywordContentFilter extends Filter {
         }
 
         MutableReference<String> matchRef = new MutableReference<>();
-        if (bufferSearch.matches(buffer, matchRef)) {
+        if (ProtobufFieldIndex.bufferMatches(buffer, bufferSearch, matchRef)) {
             updateStats(true, matchRef.value);
             return true;
         }
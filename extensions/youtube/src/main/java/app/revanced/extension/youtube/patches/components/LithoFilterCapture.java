@@ -0,0 +1,247 @@
+package app.revanced.extension.youtube.patches.components;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import app.revanced.extension.shared.Logger;
+import app.revanced.extension.shared.Utils;
+import app.revanced.extension.youtube.settings.Settings;
+
+/**
+ * Records a sample of the components filtered by {@link LithoFilterPatch} to an app private file,
+ * so the filters can be replayed with {@link LithoFilterReplay} using the exact same input.
+ * <p>
+ * Capture file format, all values big endian:
+ * <pre>
+ * int     magic
+ * int     version
+ * records until the end of the file:
+ *   byte  1 if the component was filtered, otherwise 0
+ *   int   identifier length, followed by the UTF-8 identifier
+ *   int   path length, followed by the UTF-8 path
+ *   int   buffer length, followed by the buffer
+ * </pre>
+ * Records are written on a separate thread, and records are dropped if writing
+ * cannot keep up, so recording does not slow down the litho threads.
+ */
+final class LithoFilterCapture {
+
+    private static final String CAPTURE_FILE_NAME = "litho_filter_capture.bin";
+
+    private static final int MAGIC = 0x4C465443; // "LFTC"
+    private static final int VERSION = 1;
+
+    /**
+     * Only 1 of this many components is recorded.
+     */
+    private static final int SAMPLE_INTERVAL = 4;
+
+    /**
+     * Recording stops after this size, to prevent filling up the device storage.
+     */
+    private static final long MAXIMUM_CAPTURE_SIZE = 64 * 1024 * 1024;
+
+    private static final int MAXIMUM_PENDING_RECORDS = 256;
+
+    /**
+     * A recorded component.
+     */
+    static final class Record {
+        final boolean filtered;
+        final String identifier;
+        final String path;
+        final byte[] buffer;
+
+        Record(boolean filtered, String identifier, String path, byte[] buffer) {
+            this.filtered = filtered;
+            this.identifier = identifier;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final ThreadPoolExecutor writeExecutor = new ThreadPoolExecutor(
+            0, 1, 10, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(MAXIMUM_PENDING_RECORDS),
+            r -> new Thread(r, "revanced-litho-capture"),
+            new ThreadPoolExecutor.DiscardPolicy()
+    );
+
+    private static final AtomicLong componentCount = new AtomicLong();
+
+    @GuardedBy("LithoFilterCapture.class")
+    @Nullable
+    private static DataOutputStream captureStream;
+
+    @GuardedBy("LithoFilterCapture.class")
+    private static long captureSize;
+
+    /**
+     * If the current capture is closed and nothing more is recorded until recording is enabled again.
+     */
+    @GuardedBy("LithoFilterCapture.class")
+    private static boolean captureFinished;
+
+    static {
+        // Start a new capture each time recording is enabled.
+        Settings.DEBUG_LITHO_CAPTURE.addChangeListener((setting, enabled) -> {
+            synchronized (LithoFilterCapture.class) {
+                closeCapture();
+                captureFinished = false;
+            }
+        });
+    }
+
+    private LithoFilterCapture() {
+    }
+
+    static File getCaptureFile() {
+        return new File(Utils.getContext().getFilesDir(), CAPTURE_FILE_NAME);
+    }
+
+    /**
+     * @return If components should be passed to {@link #record(String, String, byte[], boolean)}.
+     */
+    static boolean isRecording() {
+        return Settings.DEBUG_LITHO_CAPTURE.get();
+    }
+
+    static void record(String identifier, String path, byte[] buffer, boolean filtered) {
+        if (componentCount.incrementAndGet() % SAMPLE_INTERVAL != 0) {
+            return;
+        }
+
+        // Copy the buffer since it's written later and the app may reuse the array.
+        Record record = new Record(filtered, identifier, path, buffer.clone());
+        writeExecutor.execute(() -> write(record));
+    }
+
+    private static synchronized void write(Record record) {
+        if (captureFinished || !isRecording()) {
+            return;
+        }
+
+        try {
+            if (captureStream == null) {
+                File file = getCaptureFile();
+                captureStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+                captureStream.writeInt(MAGIC);
+                captureStream.writeInt(VERSION);
+                captureSize = 8;
+                Logger.printDebug(() -> "Recording litho filter capture to: " + file);
+            }
+
+            DataOutputStream out = captureStream;
+            out.writeBoolean(record.filtered);
+            captureSize += 1;
+            captureSize += writeBytes(out, record.identifier.getBytes(StandardCharsets.UTF_8));
+            captureSize += writeBytes(out, record.path.getBytes(StandardCharsets.UTF_8));
+            captureSize += writeBytes(out, record.buffer);
+
+            if (captureSize >= MAXIMUM_CAPTURE_SIZE) {
+                Logger.printInfo(() -> "Litho filter capture reached maximum size");
+                finishCapture();
+            } else if (writeExecutor.getQueue().isEmpty()) {
+                // Flush while idle, so the capture is complete if the app is closed.
+                out.flush();
+            }
+        } catch (IOException ex) {
+            Logger.printException(() -> "Could not write litho filter capture", ex);
+            finishCapture();
+        }
+    }
+
+    @GuardedBy("LithoFilterCapture.class")
+    private static void closeCapture() {
+        if (captureStream != null) {
+            try {
+                captureStream.close();
+            } catch (IOException ex) {
+                Logger.printInfo(() -> "Could not close litho filter capture", ex);
+            }
+            captureStream = null;
+        }
+    }
+
+    /**
+     * Closes the capture being recorded, so it can be read.
+     * Nothing more is recorded until recording is turned off and on again,
+     * otherwise the capture would be overwritten by the next record.
+     */
+    static synchronized void finishCapture() {
+        closeCapture();
+        captureFinished = true;
+    }
+
+    /**
+     * @return The number of bytes written.
+     */
+    private static int writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return 4 + bytes.length;
+    }
+
+    /**
+     * Sequential reader of a capture file.
+     */
+    static final class Reader implements Closeable {
+        private final DataInputStream in;
+
+        Reader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                in.close();
+                throw new IOException("Unknown capture format");
+            }
+        }
+
+        /**
+         * @return The next record, or null at the end of the capture.
+         *         A partially written last record is ignored.
+         */
+        @Nullable
+        Record read() throws IOException {
+            try {
+                final int filtered = in.read();
+                if (filtered < 0) return null;
+                String identifier = new String(readBytes(), StandardCharsets.UTF_8);
+                String path = new String(readBytes(), StandardCharsets.UTF_8);
+                return new Record(filtered != 0, identifier, path, readBytes());
+            } catch (EOFException ex) {
+                return null;
+            }
+        }
+
+        private byte[] readBytes() throws IOException {
+            final int length = in.readInt();
+            if (length < 0 || length > MAXIMUM_CAPTURE_SIZE) {
+                throw new IOException("Invalid record length: " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return bytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package app.revanced.extension.youtube.patches.components;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import app.revanced.extension.youtube.settings.Settings;
+
+/**
+ * Invocation count, time, match count and buffer size statistics of each litho filter and filter group.
+ * <p>
+ * Counters are striped, so recording from multiple litho threads does not contend.
+ * Nothing is recorded while {@link Settings#DEBUG_LITHO_FILTER_METRICS} is off,
+ * and the filters then only check the setting.
+ * Components replayed by {@link LithoFilterReplay} are not recorded, as they are not shown.
+ * Values do not persist on app shut down.
+ */
+public final class LithoFilterMetrics {
+
+    private static final int MAXIMUM_REPORTED = 10;
+
+    /**
+     * Statistics of a filter group, or of a filter that filters all components.
+     */
+    static final class Counters {
+        final String filterName;
+        final String groupName;
+
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder nanoseconds = new LongAdder();
+        private final LongAdder matches = new LongAdder();
+        private final LongAdder bufferBytes = new LongAdder();
+
+        private Counters(String filterName, String groupName) {
+            this.filterName = filterName;
+            this.groupName = groupName;
+        }
+
+        void record(long elapsedNanoseconds, boolean matched, int bufferLength) {
+            invocations.increment();
+            nanoseconds.add(elapsedNanoseconds);
+            if (matched) matches.increment();
+            bufferBytes.add(bufferLength);
+        }
+
+        private void reset() {
+            invocations.reset();
+            nanoseconds.reset();
+            matches.reset();
+            bufferBytes.reset();
+        }
+    }
+
+    /**
+     * Sums of the counters, as of when the summary is created.
+     */
+    private static final class Totals {
+        final String name;
+        long invocations;
+        long nanoseconds;
+        long matches;
+        long bufferBytes;
+
+        Totals(String name) {
+            this.name = name;
+        }
+
+        void add(Counters counters) {
+            invocations += counters.invocations.sum();
+            nanoseconds += counters.nanoseconds.sum();
+            matches += counters.matches.sum();
+            bufferBytes += counters.bufferBytes.sum();
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s\n%.1f ms, %d calls, %d matches, %d KB buffers",
+                    name, nanoseconds / 1_000_000.0, invocations, matches, bufferBytes / 1024);
+        }
+    }
+
+    /**
+     * Counters by filter group, or by filter for filters that filter all components.
+     */
+    private static final Map<Object, Counters> countersByKey = new ConcurrentHashMap<>();
+
+    /**
+     * All components searched by {@link LithoFilterPatch}.
+     */
+    private static final Counters componentCounters = new Counters("", "");
+
+    private LithoFilterMetrics() {
+    }
+
+    static boolean isEnabled() {
+        return Settings.DEBUG_LITHO_FILTER_METRICS.get();
+    }
+
+    /**
+     * @return The counters of a filter group.
+     */
+    static Counters getCounters(Filter filter, StringFilterGroup group, Filter.FilterContentType type) {
+        Counters counters = countersByKey.get(group);
+        if (counters == null) {
+            String groupName = type.name().toLowerCase(Locale.US) + " " + (group.setting == null
+                    ? '"' + group.filters[0] + '"'
+                    : group.setting.key);
+            Counters newCounters = new Counters(filter.getClass().getSimpleName(), groupName);
+            counters = countersByKey.putIfAbsent(group, newCounters);
+            if (counters == null) counters = newCounters;
+        }
+        return counters;
+    }
+
+    /**
+     * @return The counters of a filter that filters all components.
+     */
+    static Counters getCounters(Filter filter) {
+        Counters counters = countersByKey.get(filter);
+        if (counters == null) {
+            Counters newCounters = new Counters(filter.getClass().getSimpleName(), "all components");
+            counters = countersByKey.putIfAbsent(filter, newCounters);
+            if (counters == null) counters = newCounters;
+        }
+        return counters;
+    }
+
+    static void recordComponent(long elapsedNanoseconds, boolean filtered, int bufferLength) {
+        componentCounters.record(elapsedNanoseconds, filtered, bufferLength);
+    }
+
+    /**
+     * @return A summary of the filters and filter groups that used the most time,
+     *         or an empty string if nothing is recorded.
+     */
+    public static String getSummary() {
+        Totals components = new Totals("All components");
+        components.add(componentCounters);
+        if (components.invocations == 0) {
+            return "";
+        }
+
+        Map<String, Totals> filterTotals = new LinkedHashMap<>();
+        List<Totals> groupTotals = new ArrayList<>();
+        for (Counters counters : countersByKey.values()) {
+            Totals filter = filterTotals.get(counters.filterName);
+            if (filter == null) {
+                filter = new Totals(counters.filterName);
+                filterTotals.put(counters.filterName, filter);
+            }
+            filter.add(counters);
+
+            Totals group = new Totals(counters.filterName + ": " + counters.groupName);
+            group.add(counters);
+            if (group.invocations > 0) {
+                groupTotals.add(group);
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(components);
+
+        builder.append("\n\nFilters by time:");
+        appendSlowest(builder, new ArrayList<>(filterTotals.values()));
+
+        builder.append("\n\nFilter groups by time:");
+        appendSlowest(builder, groupTotals);
+
+        return builder.toString();
+    }
+
+    private static void appendSlowest(StringBuilder builder, List<Totals> totals) {
+        Collections.sort(totals, (first, second) -> Long.compare(second.nanoseconds, first.nanoseconds));
+        for (int i = 0, size = Math.min(MAXIMUM_REPORTED, totals.size()); i < size; i++) {
+            Totals total = totals.get(i);
+            if (total.invocations == 0) break;
+            builder.append("\n\n").append(total);
+        }
+    }
+
+    /**
+     * Clears all statistics.
+     */
+    public static void reset() {
+        componentCounters.reset();
+        for (Counters counters : countersByKey.values()) {
+            counters.reset();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 import app.revanced.extension.shared.Logger;
@@ -16,15 +17,24 @@ public final class LithoFilterPatch {
     /**
      * Simple wrapper to pass the litho parameters through the prefix search.
      */
-    private static final class LithoFilterParameters {
+    static final class LithoFilterParameters {
+        /**
+         * Non ascii character, to allow easier log filtering.
+         */
+        private static final String DELIMITING_CHARACTER = "❙";
+
         final String identifier;
         final String path;
         final byte[] buffer;
+        @Nullable
+        final ProtobufFieldIndex fieldIndex;
 
-        LithoFilterParameters(String lithoIdentifier, String lithoPath, byte[] buffer) {
+        LithoFilterParameters(String lithoIdentifier, String lithoPath, byte[] buffer,
+                              @Nullable ProtobufFieldIndex fieldIndex) {
             this.identifier = lithoIdentifier;
             this.path = lithoPath;
             this.buffer = buffer;
+            this.fieldIndex = fieldIndex;
         }
 
         @NonNull
@@ -38,7 +48,11 @@ public final class LithoFilterPatch {
             builder.append(path);
             if (Settings.DEBUG_PROTOBUFFER.get()) {
                 builder.append(" BufferStrings: ");
-                findAsciiStrings(builder, buffer);
+                if (fieldIndex != null && fieldIndex.isSearchable()) {
+                    fieldIndex.appendStrings(builder, DELIMITING_CHARACTER);
+                } else {
+                    findAsciiStrings(builder, buffer);
+                }
             }
 
             return builder.toString();
@@ -52,7 +66,6 @@ public final class LithoFilterPatch {
             final int minimumAscii = 32;  // 32 = space character
             final int maximumAscii = 126; // 127 = delete character
             final int minimumAsciiStringLength = 4; // Minimum length of an ASCII string to include.
-            String delimitingCharacter = "❙"; // Non ascii character, to allow easier log filtering.
 
             final int length = buffer.length;
             int start = 0;
@@ -64,7 +77,7 @@ public final class LithoFilterPatch {
                         for (int i = start; i < end; i++) {
                             builder.append((char) buffer[i]);
                         }
-                        builder.append(delimitingCharacter);
+                        builder.append(DELIMITING_CHARACTER);
                     }
                     start = end + 1;
                 }
@@ -98,6 +111,12 @@ public final class LithoFilterPatch {
             new DummyFilter() // Replaced patching, do not touch.
     };
 
+    /**
+     * Filters called for every component.
+     */
+    private static final Filter[] allComponentFilters;
+    private static final LithoFilterMetrics.Counters[] allComponentCounters;
+
     private static final StringTrieSearch pathSearchTree = new StringTrieSearch();
     private static final StringTrieSearch identifierSearchTree = new StringTrieSearch();
 
@@ -106,15 +125,25 @@ public final class LithoFilterPatch {
     /**
      * Because litho filtering is multi-threaded and the buffer is passed in from a different injection point,
      * the buffer is saved to a ThreadLocal so each calling thread does not interfere with other threads.
+     * The buffer is saved with its field index, so all filters share the index of the buffer.
      */
-    private static final ThreadLocal<byte[]> bufferThreadLocal = new ThreadLocal<>();
+    private static final ThreadLocal<ProtobufFieldIndex> bufferThreadLocal = new ThreadLocal<>();
 
     static {
+        List<Filter> allComponents = new ArrayList<>();
         for (Filter filter : filters) {
             filterUsingCallbacks(identifierSearchTree, filter,
-                    filter.identifierCallbacks, Filter.FilterContentType.IDENTIFIER);
+                    filter.identifierCallbacks, Filter.FilterContentType.IDENTIFIER, true);
             filterUsingCallbacks(pathSearchTree, filter,
-                    filter.pathCallbacks, Filter.FilterContentType.PATH);
+                    filter.pathCallbacks, Filter.FilterContentType.PATH, true);
+            if (filter.filtersAllComponents()) {
+                allComponents.add(filter);
+            }
+        }
+        allComponentFilters = allComponents.toArray(new Filter[0]);
+        allComponentCounters = new LithoFilterMetrics.Counters[allComponentFilters.length];
+        for (int i = 0; i < allComponentFilters.length; i++) {
+            allComponentCounters[i] = LithoFilterMetrics.getCounters(allComponentFilters[i]);
         }
 
         Logger.printDebug(() -> "Using: "
@@ -124,9 +153,13 @@ public final class LithoFilterPatch {
                 + " (" + pathSearchTree.getEstimatedMemorySize() + " KB)");
     }
 
-    private static void filterUsingCallbacks(StringTrieSearch pathSearchTree,
-                                             Filter filter, List<StringFilterGroup> groups,
-                                             Filter.FilterContentType type) {
+    /**
+     * @param recordMetrics If the callbacks record to {@link LithoFilterMetrics}.
+     *                      False for search trees that do not filter the components shown.
+     */
+    static void filterUsingCallbacks(StringTrieSearch pathSearchTree,
+                                     Filter filter, List<StringFilterGroup> groups,
+                                     Filter.FilterContentType type, boolean recordMetrics) {
         String filterSimpleName = filter.getClass().getSimpleName();
 
         for (StringFilterGroup group : groups) {
@@ -134,14 +167,25 @@ public final class LithoFilterPatch {
                 continue;
             }
 
+            LithoFilterMetrics.Counters counters = recordMetrics
+                    ? LithoFilterMetrics.getCounters(filter, group, type)
+                    : null;
             for (String pattern : group.filters) {
                 pathSearchTree.addPattern(pattern, (textSearched, matchedStartIndex,
                                                     matchedLength, callbackParameter) -> {
                             if (!group.isEnabled()) return false;
 
                             LithoFilterParameters parameters = (LithoFilterParameters) callbackParameter;
-                            final boolean isFiltered = filter.isFiltered(parameters.identifier,
-                                    parameters.path, parameters.buffer, group, type, matchedStartIndex);
+                            final boolean isFiltered;
+                            if (counters != null && LithoFilterMetrics.isEnabled()) {
+                                final long start = System.nanoTime();
+                                isFiltered = filter.isFiltered(parameters.identifier,
+                                        parameters.path, parameters.buffer, group, type, matchedStartIndex);
+                                counters.record(System.nanoTime() - start, isFiltered, parameters.buffer.length);
+                            } else {
+                                isFiltered = filter.isFiltered(parameters.identifier,
+                                        parameters.path, parameters.buffer, group, type, matchedStartIndex);
+                            }
 
                             if (isFiltered && BaseSettings.DEBUG.get()) {
                                 if (type == Filter.FilterContentType.IDENTIFIER) {
@@ -160,6 +204,10 @@ public final class LithoFilterPatch {
         }
     }
 
+    static Filter[] getFilters() {
+        return filters;
+    }
+
     /**
      * Injection point.  Called off the main thread.
      * Targets 20.22+
@@ -169,7 +217,34 @@ public final class LithoFilterPatch {
         // This is intentional, as it appears the buffer can be set once and then filtered multiple times.
         // The buffer will be cleared from memory after a new buffer is set by the same thread,
         // or when the calling thread eventually dies.
-        bufferThreadLocal.set(buffer);
+        setProtoBuffer(buffer, 0, buffer.length);
+    }
+
+    /**
+     * @param offset Index of the protobuf data in the buffer.
+     * @param length Length of the protobuf data.
+     */
+    private static void setProtoBuffer(byte[] buffer, int offset, int length) {
+        ProtobufFieldIndex fieldIndex = bufferThreadLocal.get();
+        if (fieldIndex == null) {
+            bufferThreadLocal.set(new ProtobufFieldIndex(buffer, offset, length));
+        } else {
+            // Reuse the index of the thread, so the index arrays are not allocated for each buffer.
+            fieldIndex.setBuffer(buffer, offset, length);
+        }
+    }
+
+    /**
+     * @return The field index of the buffer currently being filtered by the calling thread,
+     *         or null if the buffer is not the current buffer or did not parse as protobuf data.
+     *         If null, then the entire buffer must be searched.
+     */
+    @Nullable
+    static ProtobufFieldIndex getFieldIndex(byte[] buffer) {
+        ProtobufFieldIndex fieldIndex = bufferThreadLocal.get();
+        return fieldIndex != null && fieldIndex.getBuffer() == buffer && fieldIndex.isSearchable()
+                ? fieldIndex
+                : null;
     }
 
     /**
@@ -186,7 +261,9 @@ public final class LithoFilterPatch {
             // Ignore this null value and retain the last buffer that was set.
             Logger.printDebug(() -> "Ignoring null or empty buffer: " + buffer);
         } else {
-            setProtoBuffer(buffer.array());
+            // Only the remaining bytes are the protobuf data, the backing array can be larger.
+            // Filters are still passed the entire array, as they always have been.
+            setProtoBuffer(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
         }
     }
 
@@ -199,24 +276,22 @@ public final class LithoFilterPatch {
                 return false;
             }
 
-            byte[] buffer = bufferThreadLocal.get();
-            // Potentially the buffer may have been null or never set up until now.
-            // Use an empty buffer so the litho id/path filters still work correctly.
-            if (buffer == null) {
-                buffer = EMPTY_BYTE_ARRAY;
-            }
-
-            LithoFilterParameters parameter = new LithoFilterParameters(
-                    lithoIdentifier, pathBuilder.toString(), buffer);
+            LithoFilterParameters parameter = createParameters(lithoIdentifier, pathBuilder.toString());
             Logger.printDebug(() -> "Searching " + parameter);
 
-            if (identifierSearchTree.matches(parameter.identifier, parameter)) {
-                return true;
+            final boolean isFiltered;
+            if (LithoFilterMetrics.isEnabled()) {
+                final long start = System.nanoTime();
+                isFiltered = isFiltered(parameter);
+                LithoFilterMetrics.recordComponent(System.nanoTime() - start, isFiltered, parameter.buffer.length);
+            } else {
+                isFiltered = isFiltered(parameter);
             }
 
-            if (pathSearchTree.matches(parameter.path, parameter)) {
-                return true;
+            if (LithoFilterCapture.isRecording()) {
+                LithoFilterCapture.record(parameter.identifier, parameter.path, parameter.buffer, isFiltered);
             }
+            return isFiltered;
         } catch (Exception ex) {
             Logger.printException(() -> "isFiltered failure", ex);
         }
@@ -224,6 +299,54 @@ public final class LithoFilterPatch {
         return false;
     }
 
+    /**
+     * @return Parameters using the buffer of the calling thread.
+     */
+    static LithoFilterParameters createParameters(String lithoIdentifier, String lithoPath) {
+        ProtobufFieldIndex fieldIndex = bufferThreadLocal.get();
+        // Potentially the buffer may have been null or never set up until now.
+        // Use an empty buffer so the litho id/path filters still work correctly.
+        byte[] buffer = fieldIndex == null
+                ? EMPTY_BYTE_ARRAY
+                : fieldIndex.getBuffer();
+
+        return new LithoFilterParameters(lithoIdentifier, lithoPath, buffer, fieldIndex);
+    }
+
+    /**
+     * Runs all filters.
+     */
+    static boolean isFiltered(LithoFilterParameters parameter) {
+        if (identifierSearchTree.matches(parameter.identifier, parameter)) {
+            return true;
+        }
+
+        if (pathSearchTree.matches(parameter.path, parameter)) {
+            return true;
+        }
+
+        final boolean recordMetrics = LithoFilterMetrics.isEnabled();
+        for (int i = 0, length = allComponentFilters.length; i < length; i++) {
+            Filter filter = allComponentFilters[i];
+            final boolean isFiltered;
+            if (recordMetrics) {
+                final long start = System.nanoTime();
+                isFiltered = filter.isFiltered(parameter.identifier, parameter.path, parameter.buffer);
+                allComponentCounters[i].record(System.nanoTime() - start, isFiltered, parameter.buffer.length);
+            } else {
+                isFiltered = filter.isFiltered(parameter.identifier, parameter.path, parameter.buffer);
+            }
+
+            if (isFiltered) {
+                Logger.printDebug(() -> "Filtered " + filter.getClass().getSimpleName()
+                        + " path: " + parameter.path);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Injection point.
      */
@@ -0,0 +1,339 @@
+package app.revanced.extension.youtube.patches.components;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+import app.revanced.extension.shared.Logger;
+import app.revanced.extension.shared.StringTrieSearch;
+import app.revanced.extension.shared.Utils;
+
+/**
+ * Replays a capture recorded by {@link LithoFilterCapture} through all filters,
+ * using the current settings of the filters.
+ * <p>
+ * Reports the throughput of the complete filter chain, the time and matches of each filter,
+ * and the components with a different verdict than when recorded.
+ * The verdicts of each replay are saved, so replaying the same capture after updating
+ * the patches also reports the components with a different verdict than the previous replay.
+ * <p>
+ * Components are replayed through copies of the filters with side effects disabled
+ * (see {@link Filter#sideEffectsEnabled()}), so replaying does not change the state of the app,
+ * and the verdicts do not depend on the components shown before the replay.
+ */
+public final class LithoFilterReplay {
+
+    private static final String VERDICTS_FILE_NAME = "litho_filter_replay_verdicts.bin";
+
+    /**
+     * Number of times the capture is replayed for the timings,
+     * after a first replay that warms up the filters and collects the verdicts.
+     */
+    private static final int MEASURED_PASSES = 3;
+
+    private static final int MAXIMUM_REPORTED_DIFFERENCES = 10;
+
+    /**
+     * Copies of the filters, created by the first replay.
+     * Filters register setting listeners when created, so the copies are reused by later replays.
+     */
+    @Nullable
+    private static Filter[] replayFilters;
+
+    /**
+     * The filter chain of {@link LithoFilterPatch}, using the copies of the filters.
+     */
+    private static final class FilterChain {
+        final StringTrieSearch identifierSearchTree = new StringTrieSearch();
+        final StringTrieSearch pathSearchTree = new StringTrieSearch();
+        final Filter[] allComponentFilters;
+
+        FilterChain(Filter[] filters) {
+            List<Filter> allComponents = new ArrayList<>();
+            for (Filter filter : filters) {
+                LithoFilterPatch.filterUsingCallbacks(identifierSearchTree, filter,
+                        filter.identifierCallbacks, Filter.FilterContentType.IDENTIFIER, false);
+                LithoFilterPatch.filterUsingCallbacks(pathSearchTree, filter,
+                        filter.pathCallbacks, Filter.FilterContentType.PATH, false);
+                if (filter.filtersAllComponents()) {
+                    allComponents.add(filter);
+                }
+            }
+            allComponentFilters = allComponents.toArray(new Filter[0]);
+        }
+
+        boolean isFiltered(LithoFilterPatch.LithoFilterParameters parameter) {
+            if (identifierSearchTree.matches(parameter.identifier, parameter)
+                    || pathSearchTree.matches(parameter.path, parameter)) {
+                return true;
+            }
+
+            for (Filter filter : allComponentFilters) {
+                if (filter.isFiltered(parameter.identifier, parameter.path, parameter.buffer)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A filter with its own search trees, to time it separately from the other filters.
+     */
+    private static final class FilterTimer {
+        final Filter filter;
+        final String name;
+        final StringTrieSearch identifierSearchTree = new StringTrieSearch();
+        final StringTrieSearch pathSearchTree = new StringTrieSearch();
+        final boolean filtersAllComponents;
+        long nanoseconds;
+        long matches;
+
+        FilterTimer(Filter filter) {
+            this.filter = filter;
+            name = filter.getClass().getSimpleName();
+            LithoFilterPatch.filterUsingCallbacks(identifierSearchTree, filter,
+                    filter.identifierCallbacks, Filter.FilterContentType.IDENTIFIER, false);
+            LithoFilterPatch.filterUsingCallbacks(pathSearchTree, filter,
+                    filter.pathCallbacks, Filter.FilterContentType.PATH, false);
+            filtersAllComponents = filter.filtersAllComponents();
+        }
+
+        void run(LithoFilterPatch.LithoFilterParameters parameter) {
+            final long start = System.nanoTime();
+            final boolean filtered = identifierSearchTree.matches(parameter.identifier, parameter)
+                    || pathSearchTree.matches(parameter.path, parameter)
+                    || (filtersAllComponents
+                    && filter.isFiltered(parameter.identifier, parameter.path, parameter.buffer));
+            nanoseconds += System.nanoTime() - start;
+            if (filtered) matches++;
+        }
+    }
+
+    /**
+     * Verdicts of a replay.
+     */
+    private static final class Verdicts {
+        final long captureLength;
+        final long captureLastModified;
+        final String version;
+        final BitSet filtered;
+
+        Verdicts(long captureLength, long captureLastModified, String version, BitSet filtered) {
+            this.captureLength = captureLength;
+            this.captureLastModified = captureLastModified;
+            this.version = version;
+            this.filtered = filtered;
+        }
+
+        boolean isSameCapture(File captureFile) {
+            return captureLength == captureFile.length() && captureLastModified == captureFile.lastModified();
+        }
+
+        void write(File file) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.writeLong(captureLength);
+                out.writeLong(captureLastModified);
+                out.writeUTF(version);
+                byte[] bytes = filtered.toByteArray();
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        @Nullable
+        static Verdicts read(File file) {
+            if (!file.isFile()) return null;
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                final long captureLength = in.readLong();
+                final long captureLastModified = in.readLong();
+                String version = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new Verdicts(captureLength, captureLastModified, version, BitSet.valueOf(bytes));
+            } catch (IOException ex) {
+                Logger.printInfo(() -> "Could not read previous replay verdicts", ex);
+                return null;
+            }
+        }
+    }
+
+    private LithoFilterReplay() {
+    }
+
+    private static String getVersion() {
+        return Utils.getAppVersionName() + " / " + Utils.getPatchesReleaseVersion();
+    }
+
+    /**
+     * Replays the last capture. Must be called off the main thread.
+     *
+     * @return A summary of the replay, or null if nothing is captured.
+     */
+    @Nullable
+    public static synchronized String replayCapture() throws IOException {
+        Utils.verifyOffMainThread();
+
+        // Stop recording, otherwise the capture is changed while reading it.
+        LithoFilterCapture.finishCapture();
+        File captureFile = LithoFilterCapture.getCaptureFile();
+        if (!captureFile.isFile()) {
+            return null;
+        }
+
+        File verdictsFile = new File(captureFile.getParentFile(), VERDICTS_FILE_NAME);
+        Verdicts previous = Verdicts.read(verdictsFile);
+        if (previous != null && !previous.isSameCapture(captureFile)) {
+            previous = null;
+        }
+
+        Filter[] filters = getReplayFilters();
+        FilterChain chain = new FilterChain(filters);
+        StringBuilder report = new StringBuilder();
+
+        // First replay warms up the filters and collects the verdicts.
+        BitSet filtered = new BitSet();
+        int recordCount = 0;
+        long bufferBytes = 0;
+        int recordedDifferences = 0;
+        int previousDifferences = 0;
+        StringBuilder differences = new StringBuilder();
+        try (LithoFilterCapture.Reader reader = new LithoFilterCapture.Reader(captureFile)) {
+            LithoFilterCapture.Record record;
+            while ((record = reader.read()) != null) {
+                final boolean isFiltered = chain.isFiltered(createParameters(record));
+                if (isFiltered) filtered.set(recordCount);
+
+                String difference = null;
+                if (isFiltered != record.filtered) {
+                    recordedDifferences++;
+                    difference = "recorded";
+                }
+                if (previous != null && isFiltered != previous.filtered.get(recordCount)) {
+                    previousDifferences++;
+                    difference = difference == null ? "previous" : difference + ", previous";
+                }
+                if (difference != null && (recordedDifferences + previousDifferences) <= MAXIMUM_REPORTED_DIFFERENCES) {
+                    differences.append('\n').append(isFiltered ? "Now filtered" : "Now shown")
+                            .append(" (").append(difference).append("): ")
+                            .append(record.identifier).append(' ').append(record.path);
+                }
+
+                recordCount++;
+                bufferBytes += record.buffer.length;
+            }
+        }
+
+        if (recordCount == 0) {
+            return null;
+        }
+
+        FilterTimer[] timers = createTimers(filters);
+        long chainNanoseconds = 0;
+        for (int pass = 0; pass < MEASURED_PASSES; pass++) {
+            try (LithoFilterCapture.Reader reader = new LithoFilterCapture.Reader(captureFile)) {
+                LithoFilterCapture.Record record;
+                while ((record = reader.read()) != null) {
+                    LithoFilterPatch.LithoFilterParameters parameter = createParameters(record);
+
+                    final long start = System.nanoTime();
+                    chain.isFiltered(parameter);
+                    chainNanoseconds += System.nanoTime() - start;
+
+                    for (FilterTimer timer : timers) {
+                        timer.run(parameter);
+                    }
+                }
+            }
+        }
+
+        final long componentsReplayed = (long) recordCount * MEASURED_PASSES;
+        final double chainMilliseconds = chainNanoseconds / 1_000_000.0;
+        report.append(String.format(Locale.US,
+                "Components: %d (%d filtered), buffers: %d KB"
+                        + "\nFilter chain: %.1f ms per pass, %.2f µs per component, %.0f components per second",
+                recordCount, filtered.cardinality(), bufferBytes / 1024,
+                chainMilliseconds / MEASURED_PASSES,
+                chainNanoseconds / 1000.0 / componentsReplayed,
+                componentsReplayed / (chainMilliseconds / 1000)));
+
+        // Slowest filters first.
+        Arrays.sort(timers, (first, second) -> Long.compare(second.nanoseconds, first.nanoseconds));
+        report.append("\n\nTime per filter:");
+        for (FilterTimer timer : timers) {
+            report.append(String.format(Locale.US, "\n%s: %.1f ms per pass, %d matches",
+                    timer.name, timer.nanoseconds / 1_000_000.0 / MEASURED_PASSES, timer.matches / MEASURED_PASSES));
+        }
+
+        report.append("\n\nVerdict changes since recorded: ").append(recordedDifferences);
+        if (previous != null) {
+            report.append("\nVerdict changes since previous replay (")
+                    .append(previous.version).append("): ").append(previousDifferences);
+        }
+        report.append(differences);
+
+        try {
+            new Verdicts(captureFile.length(), captureFile.lastModified(), getVersion(), filtered)
+                    .write(verdictsFile);
+        } catch (IOException ex) {
+            Logger.printInfo(() -> "Could not save replay verdicts", ex);
+        }
+
+        String summary = report.toString();
+        Logger.printInfo(() -> "Litho filter replay:\n" + summary);
+        return summary;
+    }
+
+    private static Filter[] getReplayFilters() {
+        if (replayFilters == null) {
+            Filter[] filters = LithoFilterPatch.getFilters();
+            Filter[] copies = new Filter[filters.length];
+            for (int i = 0; i < filters.length; i++) {
+                copies[i] = createReplayFilter(filters[i]);
+            }
+            replayFilters = copies;
+        }
+        return replayFilters;
+    }
+
+    private static Filter createReplayFilter(Filter filter) {
+        try {
+            Constructor<? extends Filter> constructor = filter.getClass().getDeclaredConstructor();
+            constructor.setAccessible(true);
+            Filter copy = constructor.newInstance();
+            copy.disableSideEffects();
+            return copy;
+        } catch (ReflectiveOperationException ex) {
+            // All filters are created by the patch with a constructor without parameters.
+            throw new IllegalStateException("Could not copy filter: " + filter.getClass().getSimpleName(), ex);
+        }
+    }
+
+    private static FilterTimer[] createTimers(Filter[] filters) {
+        FilterTimer[] timers = new FilterTimer[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            timers[i] = new FilterTimer(filters[i]);
+        }
+        return timers;
+    }
+
+    private static LithoFilterPatch.LithoFilterParameters createParameters(LithoFilterCapture.Record record) {
+        // Filters look up the field index of the buffer of the calling thread.
+        LithoFilterPatch.setProtoBuffer(record.buffer);
+        return LithoFilterPatch.createParameters(record.identifier, record.path);
+    }
+}
@@ -38,6 +38,10 @@ public final class PlaybackSpeedMenuFilter extends Filter {
     @Override
     boolean isFiltered(String identifier, String path, byte[] buffer,
                        StringFilterGroup matchedGroup, FilterContentType contentType, int contentIndex) {
+        if (!sideEffectsEnabled()) {
+            return false;
+        }
+
         if (matchedGroup == oldPlaybackMenuGroup) {
             isOldPlaybackSpeedMenuVisible = true;
         } else {
@@ -0,0 +1,399 @@
+package app.revanced.extension.youtube.patches.components;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+
+import app.revanced.extension.shared.ByteTrieSearch;
+import app.revanced.extension.shared.TrieSearch;
+
+/**
+ * Index of the length-delimited fields of a Litho protobuffer.
+ * <p>
+ * The buffer is scanned using the protobuf wire format the first time the index is used,
+ * and the offset, length and field number of each length-delimited field is recorded.
+ * Nothing is copied from the buffer. Fields that parse as a nested message are indexed recursively,
+ * and all other length-delimited fields are treated as strings.
+ * <p>
+ * Searching only the string fields skips the tags, numbers and nested message headers of the buffer,
+ * and prevents a pattern from matching across two unrelated fields.
+ * <p>
+ * The buffer does not always contain valid protobuf data. Fields are indexed until the first top level field
+ * that cannot be parsed, and the string fields are searched only if the entire buffer parsed,
+ * see {@link #isSearchable()}.
+ * <p>
+ * Instances are not thread safe. Each Litho thread uses its own instance,
+ * see {@link LithoFilterPatch#getFieldIndex(byte[])}.
+ */
+final class ProtobufFieldIndex {
+
+    private static final int WIRE_TYPE_VARINT = 0;
+    private static final int WIRE_TYPE_FIXED_64 = 1;
+    private static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+    private static final int WIRE_TYPE_FIXED_32 = 5;
+
+    /**
+     * Nested messages deeper than this are treated as strings.
+     */
+    private static final int MAXIMUM_MESSAGE_DEPTH = 32;
+
+    /**
+     * Number of ints used by each field in {@link #fields}.
+     */
+    private static final int FIELD_STRIDE = 4;
+    private static final int FIELD_OFFSET = 0;
+    private static final int FIELD_LENGTH = 1;
+    private static final int FIELD_NUMBER = 2;
+    private static final int FIELD_PARENT = 3;
+
+    /**
+     * Set in {@link #FIELD_NUMBER} if the field is a nested message. Field numbers never use this bit.
+     */
+    private static final int MESSAGE_FLAG = 1 << 30;
+
+    private static final int NO_PARENT = -1;
+
+    private static final int INITIAL_FIELD_CAPACITY = 64;
+
+    private byte[] buffer;
+
+    /**
+     * Index of the first byte of the protobuf data in {@link #buffer}.
+     */
+    private int bufferOffset;
+
+    /**
+     * Index after the last byte of the protobuf data in {@link #buffer}.
+     */
+    private int bufferEnd;
+
+    /**
+     * Fields in the order they appear in the buffer, with {@link #FIELD_STRIDE} ints per field.
+     * Reused between buffers.
+     */
+    private int[] fields = new int[INITIAL_FIELD_CAPACITY * FIELD_STRIDE];
+    private int fieldCount;
+
+    /**
+     * Index of the first byte that could not be parsed, or {@link #bufferEnd} if the entire buffer was parsed.
+     */
+    private int parsedEnd;
+
+    private boolean scanned;
+
+    /**
+     * Position of the scanner in the buffer.
+     */
+    private int position;
+
+    ProtobufFieldIndex(byte[] buffer, int offset, int length) {
+        setBuffer(buffer, offset, length);
+    }
+
+    /**
+     * Replaces the buffer. The new buffer is not scanned until the index is used.
+     *
+     * @param offset Index of the protobuf data in the buffer.
+     * @param length Length of the protobuf data.
+     */
+    void setBuffer(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        bufferOffset = offset;
+        bufferEnd = offset + length;
+        fieldCount = 0;
+        parsedEnd = offset;
+        scanned = false;
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    private void scanIfNeeded() {
+        if (scanned) return;
+        scanned = true;
+
+        final int endIndex = bufferEnd;
+        position = bufferOffset;
+        while (position < endIndex) {
+            final int fieldStart = position;
+            if (!parseField(endIndex, NO_PARENT, 0)) {
+                // Discard any partially parsed nested fields.
+                position = fieldStart;
+                truncateFieldsAfter(fieldStart);
+                break;
+            }
+        }
+        parsedEnd = position;
+    }
+
+    /**
+     * Parses the message between {@link #position} and the end index.
+     *
+     * @return If the entire message parsed.
+     */
+    private boolean parseMessage(int endIndex, int parent, int depth) {
+        while (position < endIndex) {
+            if (!parseField(endIndex, parent, depth)) return false;
+        }
+        return position == endIndex;
+    }
+
+    /**
+     * Parses the field at {@link #position}, and moves the position to the end of the field.
+     *
+     * @return If the field is valid. If not valid, the position and any fields added are undefined.
+     */
+    private boolean parseField(int endIndex, int parent, int depth) {
+        final int tag = readVarint32(endIndex);
+        if (tag <= 0) return false;
+
+        final int fieldNumber = tag >>> 3;
+        if (fieldNumber == 0) return false;
+
+        switch (tag & 0x7) {
+            case WIRE_TYPE_VARINT:
+                return skipVarint(endIndex);
+            case WIRE_TYPE_FIXED_64:
+                return skip(endIndex, 8);
+            case WIRE_TYPE_FIXED_32:
+                return skip(endIndex, 4);
+            case WIRE_TYPE_LENGTH_DELIMITED:
+                final int length = readVarint32(endIndex);
+                if (length < 0 || length > endIndex - position) return false;
+                parseLengthDelimited(position, length, fieldNumber, parent, depth);
+                return true;
+            default:
+                // Groups are deprecated and not used by Litho.
+                return false;
+        }
+    }
+
+    private void parseLengthDelimited(int offset, int length, int fieldNumber, int parent, int depth) {
+        final int field = addField(offset, length, fieldNumber, parent);
+        final int endIndex = offset + length;
+
+        // Text almost never parses as a message, but checking first avoids parsing it.
+        if (depth < MAXIMUM_MESSAGE_DEPTH && !isText(offset, endIndex)) {
+            if (parseMessage(endIndex, field, depth + 1)) {
+                fields[field * FIELD_STRIDE + FIELD_NUMBER] |= MESSAGE_FLAG;
+            } else {
+                // Not a message. Discard any nested fields.
+                fieldCount = field + 1;
+            }
+        }
+
+        position = endIndex;
+    }
+
+    /**
+     * @return If the bytes have no control characters, except tabs and line breaks.
+     *         Message tags of fields 1 to 3 are always control characters.
+     */
+    private boolean isText(int startIndex, int endIndex) {
+        for (int i = startIndex; i < endIndex; i++) {
+            final byte value = buffer[i];
+            if (value >= 0 && value < ' ' && value != '\t' && value != '\n' && value != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a tag or a length.
+     *
+     * @return The varint value, or -1 if the varint is not valid or is larger than a positive int.
+     */
+    private int readVarint32(int endIndex) {
+        long value = 0;
+        for (int shift = 0; shift < 35 && position < endIndex; shift += 7) {
+            final byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value > Integer.MAX_VALUE ? -1 : (int) value;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Skips a varint field value. Negative values use the maximum of 10 bytes.
+     */
+    private boolean skipVarint(int endIndex) {
+        for (int i = 0; i < 10 && position < endIndex; i++) {
+            if (buffer[position++] >= 0) return true;
+        }
+        return false;
+    }
+
+    private boolean skip(int endIndex, int length) {
+        if (endIndex - position < length) return false;
+        position += length;
+        return true;
+    }
+
+    private int addField(int offset, int length, int fieldNumber, int parent) {
+        int index = fieldCount * FIELD_STRIDE;
+        if (index == fields.length) {
+            int[] larger = new int[fields.length * 2];
+            System.arraycopy(fields, 0, larger, 0, fields.length);
+            fields = larger;
+        }
+
+        fields[index + FIELD_OFFSET] = offset;
+        fields[index + FIELD_LENGTH] = length;
+        fields[index + FIELD_NUMBER] = fieldNumber;
+        fields[index + FIELD_PARENT] = parent;
+        return fieldCount++;
+    }
+
+    private void truncateFieldsAfter(int offset) {
+        while (fieldCount > 0 && fields[(fieldCount - 1) * FIELD_STRIDE + FIELD_OFFSET] >= offset) {
+            fieldCount--;
+        }
+    }
+
+    /**
+     * @return Number of length-delimited fields, including nested messages.
+     */
+    int getFieldCount() {
+        scanIfNeeded();
+        return fieldCount;
+    }
+
+    /**
+     * @return If the buffer is not empty and all of it parsed as protobuf data,
+     *         so searching only the string fields does not skip any text of the buffer.
+     */
+    boolean isSearchable() {
+        scanIfNeeded();
+        return bufferEnd > bufferOffset && parsedEnd == bufferEnd;
+    }
+
+    int getFieldOffset(int field) {
+        return fields[field * FIELD_STRIDE + FIELD_OFFSET];
+    }
+
+    int getFieldLength(int field) {
+        return fields[field * FIELD_STRIDE + FIELD_LENGTH];
+    }
+
+    int getFieldNumber(int field) {
+        return fields[field * FIELD_STRIDE + FIELD_NUMBER] & ~MESSAGE_FLAG;
+    }
+
+    /**
+     * @return The nested message containing the field, or -1 if the field is not nested.
+     */
+    int getFieldParent(int field) {
+        return fields[field * FIELD_STRIDE + FIELD_PARENT];
+    }
+
+    boolean isMessage(int field) {
+        return (fields[field * FIELD_STRIDE + FIELD_NUMBER] & MESSAGE_FLAG) != 0;
+    }
+
+    String getFieldString(int field) {
+        return new String(buffer, getFieldOffset(field), getFieldLength(field), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param fieldPath Field numbers from the top level message to the field.
+     * @return If the field has the path.
+     */
+    boolean fieldHasPath(int field, int... fieldPath) {
+        for (int i = fieldPath.length - 1; i >= 0; i--) {
+            if (field == NO_PARENT || getFieldNumber(field) != fieldPath[i]) {
+                return false;
+            }
+            field = getFieldParent(field);
+        }
+        return field == NO_PARENT;
+    }
+
+    /**
+     * Callback for each string field of the buffer.
+     */
+    interface StringRegionSearch {
+        /**
+         * @param field The string field.
+         * @return The index of a match, or -1 to continue searching.
+         */
+        int search(byte[] buffer, int startIndex, int endIndex, int field);
+    }
+
+    /**
+     * Searches all string fields. Must only be used if {@link #isSearchable()}.
+     *
+     * @return The first match found, or -1 if nothing matched.
+     */
+    int searchStrings(StringRegionSearch search) {
+        scanIfNeeded();
+        for (int field = 0; field < fieldCount; field++) {
+            if (isMessage(field)) continue;
+
+            final int offset = getFieldOffset(field);
+            final int matchedIndex = search.search(buffer, offset, offset + getFieldLength(field), field);
+            if (matchedIndex >= 0) return matchedIndex;
+        }
+        return -1;
+    }
+
+    /**
+     * @return If any pattern matched in a string field.
+     */
+    boolean stringsMatch(TrieSearch<byte[]> search, @Nullable Object callbackParameter) {
+        return searchStrings((bytes, startIndex, endIndex, field) ->
+                search.matches(bytes, startIndex, endIndex, callbackParameter) ? startIndex : -1) >= 0;
+    }
+
+    /**
+     * Searches the string fields if the buffer is the Litho buffer currently being filtered
+     * and the buffer parsed as protobuf data, otherwise searches the entire buffer.
+     *
+     * @return If any pattern matched.
+     */
+    static boolean bufferMatches(byte[] buffer, ByteTrieSearch search, @Nullable Object callbackParameter) {
+        ProtobufFieldIndex fieldIndex = LithoFilterPatch.getFieldIndex(buffer);
+        if (fieldIndex == null) {
+            return search.matches(buffer, 0, buffer.length, callbackParameter);
+        }
+        return fieldIndex.stringsMatch(search, callbackParameter);
+    }
+
+    /**
+     * Appends all printable string fields with their field path, such as <code>1.4.2=text</code>.
+     * Used for debugging and to find the field paths of new filters.
+     */
+    void appendStrings(StringBuilder builder, String delimitingCharacter) {
+        scanIfNeeded();
+        for (int field = 0; field < fieldCount; field++) {
+            if (isMessage(field) || getFieldLength(field) == 0) continue;
+
+            final int offset = getFieldOffset(field);
+            if (!isText(offset, offset + getFieldLength(field))) continue;
+
+            appendFieldPath(builder, field);
+            builder.append('=').append(getFieldString(field)).append(delimitingCharacter);
+        }
+    }
+
+    private void appendFieldPath(StringBuilder builder, int field) {
+        final int parent = getFieldParent(field);
+        if (parent != NO_PARENT) {
+            appendFieldPath(builder, parent);
+            builder.append('.');
+        }
+        builder.append(getFieldNumber(field));
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ProtobufFieldIndex{bufferOffset=" + bufferOffset + ", bufferEnd=" + bufferEnd
+                + (scanned ? ", fields=" + fieldCount + ", parsedEnd=" + parsedEnd : ", not scanned")
+                + '}';
+    }
+}
@@ -1,18 +1,15 @@
 package app.revanced.extension.youtube.patches.components;
 
-import androidx.annotation.GuardedBy;
-import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import app.revanced.extension.youtube.patches.ReturnYouTubeDislikePatch;
 import app.revanced.extension.youtube.patches.VideoInformation;
 import app.revanced.extension.youtube.settings.Settings;
 import app.revanced.extension.shared.Logger;
-import app.revanced.extension.shared.TrieSearch;
 
 /**
  * Searches for video id's in the proto buffer of Shorts dislike.
@@ -22,29 +19,45 @@ import app.revanced.extension.shared.TrieSearch;
  * that makes the value of {@link VideoInformation#getVideoId()} and {@link VideoInformation#getPlayerResponseVideoId()}
  * unreliable to determine which video id a Shorts litho span belongs to.
  *
- * But the correct video id does appear in the protobuffer just before a Shorts litho span is created.
+ * But the correct video id does appear in the protobuffer just before a Shorts litho span is created,
+ * shortly after the identifier of the like or dislike button.
  *
  * Once a way to asynchronously update litho text is found, this strategy will no longer be needed.
  */
 public final class ReturnYouTubeDislikeFilter extends Filter {
 
     /**
-     * Last unique video id's loaded.  Value is ignored and Map is treated as a Set.
-     * Cannot use {@link LinkedHashSet} because it's missing #removeEldestEntry().
+     * Number of video id's to keep track of for searching thru the buffer.
+     * A minimum value of 3 should be sufficient, but check a few more just in case.
      */
-    @GuardedBy("itself")
-    private static final Map<String, Boolean> lastVideoIds = new LinkedHashMap<>() {
-        /**
-         * Number of video id's to keep track of for searching thru the buffer.
-         * A minimum value of 3 should be sufficient, but check a few more just in case.
-         */
-        private static final int NUMBER_OF_LAST_VIDEO_IDS_TO_TRACK = 5;
-
-        @Override
-        protected boolean removeEldestEntry(Entry eldest) {
-            return size() > NUMBER_OF_LAST_VIDEO_IDS_TO_TRACK;
+    private static final int NUMBER_OF_LAST_VIDEO_IDS_TO_TRACK = 5;
+
+    /**
+     * Maximum number of bytes after the button identifier that are searched for the video id.
+     */
+    private static final int VIDEO_ID_SEARCH_LENGTH = 4096;
+
+    /**
+     * A video id with its ASCII bytes, to compare with the buffer.
+     */
+    private static final class RecentVideoId {
+        final String videoId;
+        final byte[] bytes;
+
+        RecentVideoId(String videoId) {
+            this.videoId = videoId;
+            this.bytes = videoId.getBytes(StandardCharsets.US_ASCII);
         }
-    };
+    }
+
+    /**
+     * Last unique video id's loaded, as a ring where the oldest entry is replaced.
+     * Entries are immutable, so the ring is read without locking.
+     */
+    private static final AtomicReferenceArray<RecentVideoId> lastVideoIds
+            = new AtomicReferenceArray<>(NUMBER_OF_LAST_VIDEO_IDS_TO_TRACK);
+
+    private static final AtomicInteger lastVideoIdsNextIndex = new AtomicInteger();
 
     /**
      * Injection point.
@@ -55,17 +68,26 @@ public final class ReturnYouTubeDislikeFilter extends Filter {
             if (!isShortAndOpeningOrPlaying || !Settings.RYD_ENABLED.get() || !Settings.RYD_SHORTS.get()) {
                 return;
             }
-            synchronized (lastVideoIds) {
-                if (lastVideoIds.put(videoId, Boolean.TRUE) == null) {
-                    Logger.printDebug(() -> "New Short video id: " + videoId);
+            for (int i = 0; i < NUMBER_OF_LAST_VIDEO_IDS_TO_TRACK; i++) {
+                RecentVideoId recent = lastVideoIds.get(i);
+                if (recent != null && recent.videoId.equals(videoId)) {
+                    return;
                 }
             }
+
+            // If two threads add the same id at once then it's stored twice, which is harmless.
+            final int index = Math.floorMod(lastVideoIdsNextIndex.getAndIncrement(), NUMBER_OF_LAST_VIDEO_IDS_TO_TRACK);
+            lastVideoIds.set(index, new RecentVideoId(videoId));
+            Logger.printDebug(() -> "New Short video id: " + videoId);
         } catch (Exception ex) {
             Logger.printException(() -> "newPlayerResponseVideoId failure", ex);
         }
     }
 
-    private final ByteArrayFilterGroupList videoIdFilterGroup = new ByteArrayFilterGroupList();
+    /**
+     * The button identifiers are string fields, so only the string fields are searched.
+     */
+    private final ByteArrayFilterGroupList videoIdFilterGroup = new ByteArrayFilterGroupList(true);
 
     public ReturnYouTubeDislikeFilter() {
         // When a new Short is opened, the like buttons always seem to load before the dislike.
@@ -92,48 +114,61 @@ public final class ReturnYouTubeDislikeFilter extends Filter {
 
         FilterGroup.FilterGroupResult result = videoIdFilterGroup.check(buffer);
         if (result.isFiltered()) {
-            String matchedVideoId = findVideoId(buffer);
+            String matchedVideoId = findVideoId(buffer, result.getMatchedIndex() + result.getMatchedLength());
             // Matched video will be null if in incognito mode.
             // Must pass a null id to correctly clear out the current video data.
             // Otherwise if a Short is opened in non-incognito, then incognito is enabled and another Short is opened,
             // the new incognito Short will show the old prior data.
-            ReturnYouTubeDislikePatch.setLastLithoShortsVideoId(matchedVideoId);
+            if (sideEffectsEnabled()) {
+                ReturnYouTubeDislikePatch.setLastLithoShortsVideoId(matchedVideoId);
+            }
         }
 
         return false;
     }
 
+    /**
+     * Searches the bytes after the button identifier for any of the last video ids, in a single pass.
+     *
+     * @param startIndex Index after the button identifier.
+     * @return The first video id found, or null if none is found.
+     */
     @Nullable
-    private String findVideoId(byte[] protobufBufferArray) {
-        synchronized (lastVideoIds) {
-            for (String videoId : lastVideoIds.keySet()) {
-                if (byteArrayContainsString(protobufBufferArray, videoId)) {
-                    return videoId;
-                }
+    private static String findVideoId(byte[] buffer, int startIndex) {
+        RecentVideoId[] videoIds = new RecentVideoId[NUMBER_OF_LAST_VIDEO_IDS_TO_TRACK];
+        int videoIdCount = 0;
+        for (int i = 0; i < NUMBER_OF_LAST_VIDEO_IDS_TO_TRACK; i++) {
+            RecentVideoId recent = lastVideoIds.get(i);
+            if (recent != null) {
+                videoIds[videoIdCount++] = recent;
             }
-
+        }
+        if (videoIdCount == 0) {
             return null;
         }
-    }
 
-    /**
-     * This could use {@link TrieSearch}, but since the patterns are constantly changing
-     * the overhead of updating the Trie might negate the search performance gain.
-     */
-    private static boolean byteArrayContainsString(@NonNull byte[] array, @NonNull String text) {
-        for (int i = 0, lastArrayStartIndex = array.length - text.length(); i <= lastArrayStartIndex; i++) {
-            boolean found = true;
-            for (int j = 0, textLength = text.length(); j < textLength; j++) {
-                if (array[i + j] != (byte) text.charAt(j)) {
-                    found = false;
-                    break;
+        final int endIndex = (int) Math.min(buffer.length, (long) startIndex + VIDEO_ID_SEARCH_LENGTH);
+        for (int i = startIndex; i < endIndex; i++) {
+            final byte value = buffer[i];
+            for (int j = 0; j < videoIdCount; j++) {
+                final byte[] videoId = videoIds[j].bytes;
+                if (videoId[0] != value || i + videoId.length > endIndex) {
+                    continue;
+                }
+
+                boolean found = true;
+                for (int k = 1, length = videoId.length; k < length; k++) {
+                    if (buffer[i + k] != videoId[k]) {
+                        found = false;
+                        break;
+                    }
+                }
+                if (found) {
+                    return videoIds[j].videoId;
                 }
-            }
-            if (found) {
-                return true;
             }
         }
 
-        return false;
+        return null;
     }
-}
\ No newline at end of file
+}
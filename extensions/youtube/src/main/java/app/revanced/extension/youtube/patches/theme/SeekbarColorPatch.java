@@ -18,15 +18,12 @@ import java.util.Scanner;
 import app.revanced.extension.shared.Logger;
 import app.revanced.extension.shared.Utils;
 import app.revanced.extension.shared.settings.BaseSettings;
+import app.revanced.extension.shared.settings.Setting;
 import app.revanced.extension.youtube.settings.Settings;
 
 @SuppressWarnings("unused")
 public final class SeekbarColorPatch {
 
-    private static final boolean SEEKBAR_CUSTOM_COLOR_ENABLED = Settings.SEEKBAR_CUSTOM_COLOR.get();
-
-    private static final boolean HIDE_SEEKBAR_THUMBNAIL_ENABLED = Settings.HIDE_SEEKBAR_THUMBNAIL.get();
-
     /**
      * Default color of the litho seekbar.
      * Differs slightly from the default custom seekbar color setting.
@@ -54,51 +51,108 @@ public final class SeekbarColorPatch {
     private static final float ORIGINAL_SEEKBAR_COLOR_BRIGHTNESS;
 
     /**
-     * If {@link Settings#SEEKBAR_CUSTOM_COLOR} is enabled,
-     * this is the color value of {@link Settings#SEEKBAR_CUSTOM_COLOR_PRIMARY}.
-     * Otherwise this is {@link #ORIGINAL_SEEKBAR_COLOR}.
+     * Values derived from the seekbar settings.
+     * Replaced and never modified, so the injection points do not need to synchronize.
      */
-    private static final int customSeekbarColor;
+    private static final class SeekbarColors {
+        final boolean customColorEnabled;
+
+        final boolean hideThumbnailSeekbar;
+
+        /**
+         * If {@link Settings#SEEKBAR_CUSTOM_COLOR} is enabled,
+         * this is the color value of {@link Settings#SEEKBAR_CUSTOM_COLOR_PRIMARY}.
+         * Otherwise this is {@link #ORIGINAL_SEEKBAR_COLOR}.
+         */
+        final int customColor;
+
+        /**
+         * Custom seekbar hue, saturation, and brightness values.
+         */
+        final float[] customColorHSV = new float[3];
+
+        /**
+         * Custom seekbar color, used for linear gradient replacements.
+         */
+        final int[] customColorGradient = new int[2];
+
+        /**
+         * If the custom colors are invalid and the default colors are used instead.
+         * The settings are not reset here, because resetting calls the change listener that creates this class.
+         */
+        boolean customColorInvalid;
+
+        SeekbarColors() {
+            customColorEnabled = Settings.SEEKBAR_CUSTOM_COLOR.get();
+            hideThumbnailSeekbar = Settings.HIDE_SEEKBAR_THUMBNAIL.get();
+            customColor = customColorEnabled
+                    ? loadCustomSeekbarColor()
+                    : ORIGINAL_SEEKBAR_COLOR;
+        }
 
-    /**
-     * Custom seekbar hue, saturation, and brightness values.
-     */
-    private static final float[] customSeekbarColorHSV = new float[3];
+        private int loadCustomSeekbarColor() {
+            try {
+                return loadCustomSeekbarColor(
+                        Settings.SEEKBAR_CUSTOM_COLOR_PRIMARY.get(),
+                        Settings.SEEKBAR_CUSTOM_COLOR_ACCENT.get());
+            } catch (Exception ex) {
+                customColorInvalid = true;
+
+                return loadCustomSeekbarColor(
+                        Settings.SEEKBAR_CUSTOM_COLOR_PRIMARY.defaultValue,
+                        Settings.SEEKBAR_CUSTOM_COLOR_ACCENT.defaultValue);
+            }
+        }
 
-    /**
-     * Custom seekbar color, used for linear gradient replacements.
-     */
-    private static final int[] customSeekbarColorGradient = new int[2];
+        private int loadCustomSeekbarColor(String primaryColor, String accentColor) {
+            final int color = Color.parseColor(primaryColor);
+            Color.colorToHSV(color, customColorHSV);
+            customColorGradient[0] = color;
+            customColorGradient[1] = Color.parseColor(accentColor);
+
+            return color;
+        }
+    }
+
+    private static volatile SeekbarColors colors;
 
     static {
         float[] hsv = new float[3];
         Color.colorToHSV(ORIGINAL_SEEKBAR_COLOR, hsv);
         ORIGINAL_SEEKBAR_COLOR_BRIGHTNESS = hsv[2];
 
-        customSeekbarColor = SEEKBAR_CUSTOM_COLOR_ENABLED
-                ? loadCustomSeekbarColor()
-                : ORIGINAL_SEEKBAR_COLOR;
+        updateColors();
+
+        // Apply changes without restarting the app. Seekbars already drawn keep the old color.
+        Setting.addChangeListener(SeekbarColorPatch::updateColors,
+                Settings.SEEKBAR_CUSTOM_COLOR,
+                Settings.SEEKBAR_CUSTOM_COLOR_PRIMARY,
+                Settings.SEEKBAR_CUSTOM_COLOR_ACCENT,
+                Settings.HIDE_SEEKBAR_THUMBNAIL);
     }
 
-    private static int loadCustomSeekbarColor() {
-        try {
-            final int color = Color.parseColor(Settings.SEEKBAR_CUSTOM_COLOR_PRIMARY.get());
-            Color.colorToHSV(color, customSeekbarColorHSV);
-            customSeekbarColorGradient[0] = color;
-            customSeekbarColorGradient[1] = Color.parseColor(Settings.SEEKBAR_CUSTOM_COLOR_ACCENT.get());
+    private static void updateColors() {
+        SeekbarColors updated = new SeekbarColors();
+        colors = updated;
 
-            return color;
-        } catch (Exception ex) {
-            Utils.showToastShort(str("revanced_seekbar_custom_color_invalid"));
-            Settings.SEEKBAR_CUSTOM_COLOR_PRIMARY.resetToDefault();
-            Settings.SEEKBAR_CUSTOM_COLOR_ACCENT.resetToDefault();
+        if (updated.customColorInvalid) {
+            // Reset later, and not while the change listeners are called.
+            Utils.runOnMainThread(SeekbarColorPatch::resetInvalidCustomColor);
+        }
+    }
 
-            return loadCustomSeekbarColor();
+    private static void resetInvalidCustomColor() {
+        if (!colors.customColorInvalid) {
+            return; // Already reset.
         }
+
+        Utils.showToastShort(str("revanced_seekbar_custom_color_invalid"));
+        Settings.SEEKBAR_CUSTOM_COLOR_PRIMARY.resetToDefault();
+        Settings.SEEKBAR_CUSTOM_COLOR_ACCENT.resetToDefault();
     }
 
     public static int getSeekbarColor() {
-        return customSeekbarColor;
+        return colors.customColor;
     }
 
     /**
@@ -118,7 +172,8 @@ public final class SeekbarColorPatch {
     public static void setSplashAnimationLottie(LottieAnimationView view, int resourceId) {
         try {
             SplashScreenAnimationStyle animationStyle = Settings.SPLASH_SCREEN_ANIMATION_STYLE.get();
-            if (!SEEKBAR_CUSTOM_COLOR_ENABLED
+            SeekbarColors colors = SeekbarColorPatch.colors;
+            if (!colors.customColorEnabled
                     // Black and white animations cannot use color replacements.
                     || animationStyle == SplashScreenAnimationStyle.FPS_30_BLACK_AND_WHITE
                     || animationStyle == SplashScreenAnimationStyle.FPS_60_BLACK_AND_WHITE) {
@@ -131,8 +186,8 @@ public final class SeekbarColorPatch {
             String originalPrimary = originalKey + "[1,0,0.2,1]";
             String originalAccent = originalKey + "[1,0.152941176471,0.56862745098,1]";
 
-            String replacementPrimary = originalKey + getColorStringArray(customSeekbarColor);
-            String replacementAccent = originalKey + getColorStringArray(customSeekbarColorGradient[1]);
+            String replacementPrimary = originalKey + getColorStringArray(colors.customColor);
+            String replacementAccent = originalKey + getColorStringArray(colors.customColorGradient[1]);
 
             String json = loadRawResourceAsString(resourceId);
             String replacement = json
@@ -173,7 +228,7 @@ public final class SeekbarColorPatch {
      * Injection point.
      */
     public static boolean showWatchHistoryProgressDrawable(boolean original) {
-        return !HIDE_SEEKBAR_THUMBNAIL_ENABLED && original;
+        return !colors.hideThumbnailSeekbar && original;
     }
 
     /**
@@ -186,11 +241,12 @@ public final class SeekbarColorPatch {
      */
     public static int getLithoColor(int colorValue) {
         if (colorValue == ORIGINAL_SEEKBAR_COLOR) {
-            if (HIDE_SEEKBAR_THUMBNAIL_ENABLED) {
+            SeekbarColors colors = SeekbarColorPatch.colors;
+            if (colors.hideThumbnailSeekbar) {
                 return 0x0;
             }
 
-            return customSeekbarColor;
+            return colors.customColor;
         }
 
         return colorValue;
@@ -220,7 +276,7 @@ public final class SeekbarColorPatch {
     public static int[] getPlayerLinearGradient(int[] original, int x0, int y1) {
         // This hook is used for both the player and the feed.
         // Feed usage always has x0 and y1 value of zero, and the player is always non zero.
-        if (HIDE_SEEKBAR_THUMBNAIL_ENABLED && x0 == 0 && y1 == 0) {
+        if (colors.hideThumbnailSeekbar && x0 == 0 && y1 == 0) {
             return HIDDEN_SEEKBAR_GRADIENT_COLORS;
         }
         return getPlayerLinearGradient(original);
@@ -231,8 +287,9 @@ public final class SeekbarColorPatch {
      * Pre 19.49
      */
     public static int[] getPlayerLinearGradient(int[] original) {
-        return SEEKBAR_CUSTOM_COLOR_ENABLED
-                ? customSeekbarColorGradient
+        SeekbarColors colors = SeekbarColorPatch.colors;
+        return colors.customColorEnabled
+                ? colors.customColorGradient
                 : original;
     }
 
@@ -240,14 +297,15 @@ public final class SeekbarColorPatch {
      * Injection point.
      */
     public static int[] getLithoLinearGradient(int[] colors, float[] positions) {
-        if (SEEKBAR_CUSTOM_COLOR_ENABLED || HIDE_SEEKBAR_THUMBNAIL_ENABLED) {
+        SeekbarColors seekbarColors = SeekbarColorPatch.colors;
+        if (seekbarColors.customColorEnabled || seekbarColors.hideThumbnailSeekbar) {
             // Most litho usage of linear gradients is hooked here,
             // so must only change if the values are those for the seekbar.
             if ((Arrays.equals(FEED_ORIGINAL_SEEKBAR_GRADIENT_COLORS, colors)
                     && Arrays.equals(FEED_ORIGINAL_SEEKBAR_GRADIENT_POSITIONS, positions))) {
-                return HIDE_SEEKBAR_THUMBNAIL_ENABLED
+                return seekbarColors.hideThumbnailSeekbar
                         ? HIDDEN_SEEKBAR_GRADIENT_COLORS
-                        : customSeekbarColorGradient;
+                        : seekbarColors.customColorGradient;
             }
 
             Logger.printDebug(() -> "Ignoring gradient colors: " + colorArrayToHex(colors)
@@ -263,12 +321,13 @@ public final class SeekbarColorPatch {
      * Overrides color when video player seekbar is clicked.
      */
     public static int getVideoPlayerSeekbarClickedColor(int colorValue) {
-        if (!SEEKBAR_CUSTOM_COLOR_ENABLED) {
+        SeekbarColors colors = SeekbarColorPatch.colors;
+        if (!colors.customColorEnabled) {
             return colorValue;
         }
 
         return colorValue == ORIGINAL_SEEKBAR_COLOR
-                ? customSeekbarColor
+                ? colors.customColor
                 : colorValue;
     }
 
@@ -278,8 +337,9 @@ public final class SeekbarColorPatch {
      * Overrides color used for the video player seekbar.
      */
     public static int getVideoPlayerSeekbarColor(int originalColor) {
-        return SEEKBAR_CUSTOM_COLOR_ENABLED
-                ? getSeekbarColorValue(originalColor)
+        SeekbarColors colors = SeekbarColorPatch.colors;
+        return colors.customColorEnabled
+                ? getSeekbarColorValue(colors, originalColor)
                 : originalColor;
     }
 
@@ -287,7 +347,7 @@ public final class SeekbarColorPatch {
      * Color parameter is changed to the custom seekbar color, while retaining
      * the brightness and alpha changes of the parameter value compared to the original seekbar color.
      */
-    private static int getSeekbarColorValue(int originalColor) {
+    private static int getSeekbarColorValue(SeekbarColors colors, int originalColor) {
         try {
             final int alphaDifference = Color.alpha(originalColor) - Color.alpha(ORIGINAL_SEEKBAR_COLOR);
 
@@ -297,11 +357,11 @@ public final class SeekbarColorPatch {
             final float brightnessDifference = hsv[2] - ORIGINAL_SEEKBAR_COLOR_BRIGHTNESS;
 
             // Apply the brightness difference to the custom seekbar color.
-            hsv[0] = customSeekbarColorHSV[0];
-            hsv[1] = customSeekbarColorHSV[1];
-            hsv[2] = clamp(customSeekbarColorHSV[2] + brightnessDifference, 0, 1);
+            hsv[0] = colors.customColorHSV[0];
+            hsv[1] = colors.customColorHSV[1];
+            hsv[2] = clamp(colors.customColorHSV[2] + brightnessDifference, 0, 1);
 
-            final int replacementAlpha = clamp(Color.alpha(customSeekbarColor) + alphaDifference, 0, 255);
+            final int replacementAlpha = clamp(Color.alpha(colors.customColor) + alphaDifference, 0, 255);
             final int replacementColor = Color.HSVToColor(replacementAlpha, hsv);
             Logger.printDebug(() -> String.format("Original color: #%08X  replacement color: #%08X",
                             originalColor, replacementColor));
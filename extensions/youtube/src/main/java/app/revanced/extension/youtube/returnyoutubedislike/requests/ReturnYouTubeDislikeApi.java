@@ -24,6 +24,7 @@ import java.util.Objects;
 
 import app.revanced.extension.shared.Logger;
 import app.revanced.extension.shared.Utils;
+import app.revanced.extension.shared.requests.RequestMetrics;
 import app.revanced.extension.shared.requests.Requester;
 import app.revanced.extension.youtube.returnyoutubedislike.ReturnYouTubeDislike;
 import app.revanced.extension.youtube.settings.Settings;
@@ -96,29 +97,16 @@ public class ReturnYouTubeDislikeApi {
      */
     private static volatile int numberOfRateLimitRequestsEncountered;
 
-    /**
-     * Number of network calls made in {@link #fetchVotes(String)}
-     */
-    private static volatile int fetchCallCount;
-
     /**
      * Number of times {@link #fetchVotes(String)} failed due to timeout or any other error.
      * This does not include when rate limit requests are encountered.
      */
     private static volatile int fetchCallNumberOfFailures;
 
-    /**
-     * Total time spent waiting for {@link #fetchVotes(String)} network call to complete.
-     * Value does does not persist on app shut down.
-     */
-    private static volatile long fetchCallResponseTimeTotal;
-
     /**
      * Round trip network time for the most recent call to {@link #fetchVotes(String)}
      */
     private static volatile long fetchCallResponseTimeLast;
-    private static volatile long fetchCallResponseTimeMin;
-    private static volatile long fetchCallResponseTimeMax;
 
     public static final int FETCH_CALL_RESPONSE_TIME_VALUE_RATE_LIMIT = -1;
 
@@ -129,16 +117,16 @@ public class ReturnYouTubeDislikeApi {
         return fetchCallResponseTimeLast;
     }
     public static long getFetchCallResponseTimeMin() {
-        return fetchCallResponseTimeMin;
+        return getFetchVotesStats().getLatencyMin();
     }
     public static long getFetchCallResponseTimeMax() {
-        return fetchCallResponseTimeMax;
+        return getFetchVotesStats().getLatencyMax();
     }
     public static long getFetchCallResponseTimeAverage() {
-        return fetchCallCount == 0 ? 0 : (fetchCallResponseTimeTotal / fetchCallCount);
+        return getFetchVotesStats().getLatencyAverage();
     }
     public static int getFetchCallCount() {
-        return fetchCallCount;
+        return (int) getFetchVotesStats().getCallCount();
     }
     public static int getFetchCallNumberOfFailures() {
         return fetchCallNumberOfFailures;
@@ -147,6 +135,13 @@ public class ReturnYouTubeDislikeApi {
         return numberOfRateLimitRequestsEncountered;
     }
 
+    /**
+     * Network call statistics of {@link #fetchVotes(String)}.
+     */
+    private static RequestMetrics.RouteStats getFetchVotesStats() {
+        return RequestMetrics.getStats(ReturnYouTubeDislikeRoutes.GET_DISLIKES.getMetricsName());
+    }
+
     private ReturnYouTubeDislikeApi() {
     } // utility class
 
@@ -216,10 +211,6 @@ public class ReturnYouTubeDislikeApi {
             throw new IllegalArgumentException();
         }
         final long responseTimeOfFetchCall = System.currentTimeMillis() - timeNetworkCallStarted;
-        fetchCallResponseTimeTotal += responseTimeOfFetchCall;
-        fetchCallResponseTimeMin = (fetchCallResponseTimeMin == 0) ? responseTimeOfFetchCall : Math.min(responseTimeOfFetchCall, fetchCallResponseTimeMin);
-        fetchCallResponseTimeMax = Math.max(responseTimeOfFetchCall, fetchCallResponseTimeMax);
-        fetchCallCount++;
         if (connectionError) {
             timeToResumeAPICalls = System.currentTimeMillis() + BACKOFF_CONNECTION_ERROR_MILLISECONDS;
             fetchCallResponseTimeLast = responseTimeOfFetchCall;
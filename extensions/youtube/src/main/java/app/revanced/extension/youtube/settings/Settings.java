@@ -27,8 +27,11 @@ import static app.revanced.extension.youtube.sponsorblock.objects.CategoryBehavi
 import static app.revanced.extension.youtube.sponsorblock.objects.CategoryBehaviour.SKIP_AUTOMATICALLY;
 import static app.revanced.extension.youtube.sponsorblock.objects.CategoryBehaviour.SKIP_AUTOMATICALLY_ONCE;
 
+import android.content.Context;
 import android.graphics.Color;
 
+import androidx.annotation.Nullable;
+
 import app.revanced.extension.shared.Logger;
 import app.revanced.extension.shared.Utils;
 import app.revanced.extension.shared.settings.BaseSettings;
@@ -272,7 +275,11 @@ public class Settings extends BaseSettings {
 
     // Custom filter
     public static final BooleanSetting CUSTOM_FILTER = new BooleanSetting("revanced_custom_filter", FALSE);
-    public static final StringSetting CUSTOM_FILTER_STRINGS = new StringSetting("revanced_custom_filter_strings", "", true, parent(CUSTOM_FILTER));
+    public static final StringSetting CUSTOM_FILTER_STRINGS = new StringSetting("revanced_custom_filter_strings", "", parent(CUSTOM_FILTER));
+    /**
+     * If {@link #CUSTOM_FILTER_STRINGS} uses the wildcard syntax. Not shown in the settings.
+     */
+    private static final BooleanSetting CUSTOM_FILTER_STRINGS_WILDCARD_SYNTAX = new BooleanSetting("revanced_custom_filter_strings_wildcard_syntax", FALSE, false, true);
 
     // Navigation buttons
     public static final BooleanSetting HIDE_HOME_BUTTON = new BooleanSetting("revanced_hide_home_button", FALSE, true);
@@ -333,16 +340,16 @@ public class Settings extends BaseSettings {
     // Seekbar
     public static final BooleanSetting DISABLE_PRECISE_SEEKING_GESTURE = new BooleanSetting("revanced_disable_precise_seeking_gesture", FALSE);
     public static final BooleanSetting HIDE_SEEKBAR = new BooleanSetting("revanced_hide_seekbar", FALSE, true);
-    public static final BooleanSetting HIDE_SEEKBAR_THUMBNAIL = new BooleanSetting("revanced_hide_seekbar_thumbnail", FALSE, true);
+    public static final BooleanSetting HIDE_SEEKBAR_THUMBNAIL = new BooleanSetting("revanced_hide_seekbar_thumbnail", FALSE);
     public static final BooleanSetting HIDE_TIMESTAMP = new BooleanSetting("revanced_hide_timestamp", FALSE);
     public static final BooleanSetting RESTORE_OLD_SEEKBAR_THUMBNAILS = new BooleanSetting("revanced_restore_old_seekbar_thumbnails", TRUE);
     public static final BooleanSetting SEEKBAR_TAPPING = new BooleanSetting("revanced_seekbar_tapping", FALSE);
     public static final BooleanSetting SEEKBAR_THUMBNAILS_HIGH_QUALITY = new BooleanSetting("revanced_seekbar_thumbnails_high_quality", FALSE, true,
             "revanced_seekbar_thumbnails_high_quality_dialog_message", new SeekbarThumbnailsHighQualityAvailability());
     public static final BooleanSetting SLIDE_TO_SEEK = new BooleanSetting("revanced_slide_to_seek", FALSE, true);
-    public static final BooleanSetting SEEKBAR_CUSTOM_COLOR = new BooleanSetting("revanced_seekbar_custom_color", FALSE, true);
-    public static final StringSetting SEEKBAR_CUSTOM_COLOR_PRIMARY = new StringSetting("revanced_seekbar_custom_color_primary", "#FF0033", true, parent(SEEKBAR_CUSTOM_COLOR));
-    public static final StringSetting SEEKBAR_CUSTOM_COLOR_ACCENT = new StringSetting("revanced_seekbar_custom_color_accent", "#FF2791", true, parent(SEEKBAR_CUSTOM_COLOR));
+    public static final BooleanSetting SEEKBAR_CUSTOM_COLOR = new BooleanSetting("revanced_seekbar_custom_color", FALSE);
+    public static final StringSetting SEEKBAR_CUSTOM_COLOR_PRIMARY = new StringSetting("revanced_seekbar_custom_color_primary", "#FF0033", parent(SEEKBAR_CUSTOM_COLOR));
+    public static final StringSetting SEEKBAR_CUSTOM_COLOR_ACCENT = new StringSetting("revanced_seekbar_custom_color_accent", "#FF2791", parent(SEEKBAR_CUSTOM_COLOR));
 
     // Miscellaneous
     public static final BooleanSetting ANNOUNCEMENTS = new BooleanSetting("revanced_announcements", TRUE);
@@ -362,6 +369,9 @@ public class Settings extends BaseSettings {
             "revanced_spoof_video_streams_av1_user_dialog_message", new SpoofClientAv1Availability());
     public static final BooleanSetting DEBUG_PROTOBUFFER = new BooleanSetting("revanced_debug_protobuffer", FALSE, false,
             "revanced_debug_protobuffer_user_dialog_message", parent(BaseSettings.DEBUG));
+    public static final BooleanSetting DEBUG_LITHO_CAPTURE = new BooleanSetting("revanced_debug_litho_capture", FALSE, false,
+            "revanced_debug_litho_capture_user_dialog_message", parent(BaseSettings.DEBUG));
+    public static final BooleanSetting DEBUG_LITHO_FILTER_METRICS = new BooleanSetting("revanced_debug_litho_filter_metrics", FALSE, parent(BaseSettings.DEBUG));
 
     // Swipe controls
     public static final BooleanSetting SWIPE_CHANGE_VIDEO = new BooleanSetting("revanced_swipe_change_video", FALSE, true);
@@ -420,6 +430,7 @@ public class Settings extends BaseSettings {
     public static final BooleanSetting SB_TRACK_SKIP_COUNT = new BooleanSetting("sb_track_skip_count", TRUE, parent(SB_ENABLED));
     public static final FloatSetting SB_SEGMENT_MIN_DURATION = new FloatSetting("sb_min_segment_duration", 0F, parent(SB_ENABLED));
     public static final BooleanSetting SB_VIDEO_LENGTH_WITHOUT_SEGMENTS = new BooleanSetting("sb_video_length_without_segments", FALSE, parent(SB_ENABLED));
+    public static final BooleanSetting SB_LOCAL_DATABASE = new BooleanSetting("sb_local_database", FALSE, parent(SB_ENABLED));
     public static final StringSetting SB_API_URL = new StringSetting("sb_api_url", "https://sponsor.ajay.app", parent(SB_ENABLED));
     public static final BooleanSetting SB_USER_IS_VIP = new BooleanSetting("sb_user_is_vip", FALSE);
     public static final IntegerSetting SB_LOCAL_TIME_SAVED_NUMBER_SEGMENTS = new IntegerSetting("sb_local_time_saved_number_segments", 0, parent(SB_ENABLED));
@@ -531,13 +542,65 @@ public class Settings extends BaseSettings {
         applyOldSbOpacityToColor(SB_CATEGORY_FILLER_COLOR, DEPRECATED_SB_CATEGORY_FILLER_OPACITY);
         applyOldSbOpacityToColor(SB_CATEGORY_MUSIC_OFFTOPIC_COLOR, DEPRECATED_SB_CATEGORY_MUSIC_OFFTOPIC_OPACITY);
 
+        migrateCustomFilterSyntax();
+
         // endregion
 
         // region SB import/export callbacks
 
         Setting.addImportExportCallback(SponsorBlockSettings.SB_IMPORT_EXPORT_CALLBACK);
 
+        // Settings exported before the wildcard syntax do not include the syntax setting,
+        // and importing them resets it.
+        Setting.addImportExportCallback(new Setting.ImportExportCallback() {
+            @Override
+            public void settingsImported(@Nullable Context context) {
+                migrateCustomFilterSyntax();
+            }
+            @Override
+            public void settingsExported(@Nullable Context context) {
+            }
+        });
+
         // endregion
+
+        Logger.printDebug(Setting::getLoadStatistics);
+    }
+
+    /**
+     * Escapes the special characters of the wildcard syntax in custom filters saved before the syntax existed,
+     * where all characters matched themselves.
+     */
+    private static void migrateCustomFilterSyntax() {
+        if (CUSTOM_FILTER_STRINGS_WILDCARD_SYNTAX.get()) {
+            return;
+        }
+
+        String filters = CUSTOM_FILTER_STRINGS.get();
+        StringBuilder escaped = new StringBuilder(filters.length());
+        String[] lines = filters.split("\n", -1);
+        for (int lineIndex = 0; lineIndex < lines.length; lineIndex++) {
+            if (lineIndex > 0) escaped.append('\n');
+            String line = lines[lineIndex];
+
+            // The buffer string starts after the first $, and can now start with a field path.
+            final int bufferStartIndex = line.indexOf('$') + 1;
+            for (int i = 0, length = line.length(); i < length; i++) {
+                final char c = line.charAt(i);
+                if (c == '\\' || c == '*' || c == '?' || c == '['
+                        || (c == '{' && i == bufferStartIndex && bufferStartIndex > 0)) {
+                    escaped.append('\\');
+                }
+                escaped.append(c);
+            }
+        }
+
+        String migrated = escaped.toString();
+        if (!migrated.equals(filters)) {
+            Logger.printInfo(() -> "Escaping custom filters saved before the wildcard syntax");
+            CUSTOM_FILTER_STRINGS.save(migrated);
+        }
+        CUSTOM_FILTER_STRINGS_WILDCARD_SYNTAX.save(true);
     }
 
     private static void applyOldSbOpacityToColor(StringSetting colorSetting, FloatSetting opacitySetting) {
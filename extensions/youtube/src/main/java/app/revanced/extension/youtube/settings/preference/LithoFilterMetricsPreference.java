@@ -0,0 +1,71 @@
+package app.revanced.extension.youtube.settings.preference;
+
+import static app.revanced.extension.shared.StringRef.str;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.preference.Preference;
+import android.util.AttributeSet;
+import android.util.Pair;
+import android.widget.LinearLayout;
+
+import app.revanced.extension.shared.Utils;
+import app.revanced.extension.shared.ui.CustomDialog;
+import app.revanced.extension.youtube.patches.components.LithoFilterMetrics;
+
+/**
+ * A custom preference that shows the litho filter statistics of {@link LithoFilterMetrics},
+ * with options to copy the statistics to the clipboard or reset them.
+ */
+@SuppressWarnings({"deprecation", "unused"})
+public class LithoFilterMetricsPreference extends Preference {
+
+    {
+        setOnPreferenceClickListener(pref -> {
+            showMetricsDialog();
+            return true;
+        });
+    }
+
+    public LithoFilterMetricsPreference(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        super(context, attrs, defStyleAttr, defStyleRes);
+    }
+    public LithoFilterMetricsPreference(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+    public LithoFilterMetricsPreference(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+    public LithoFilterMetricsPreference(Context context) {
+        super(context);
+    }
+
+    private void showMetricsDialog() {
+        String summary = LithoFilterMetrics.getSummary();
+        if (summary.isEmpty()) {
+            Utils.showToastShort(str("revanced_debug_litho_filter_metrics_none_found"));
+            return;
+        }
+
+        Pair<Dialog, LinearLayout> dialogPair = CustomDialog.create(
+                getContext(),
+                getTitle() != null ? getTitle().toString() : "",
+                summary,
+                null,
+                str("revanced_settings_import_copy"),
+                () -> {
+                    Utils.setClipboard(summary);
+                    Utils.showToastShort(str("revanced_debug_litho_filter_metrics_copied_to_clipboard"));
+                },
+                () -> {},
+                str("revanced_settings_reset"),
+                () -> {
+                    LithoFilterMetrics.reset();
+                    Utils.showToastShort(str("revanced_debug_litho_filter_metrics_reset_toast"));
+                },
+                true
+        );
+
+        dialogPair.first.show();
+    }
+}
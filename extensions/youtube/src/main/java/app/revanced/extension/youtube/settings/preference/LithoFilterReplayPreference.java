@@ -0,0 +1,86 @@
+package app.revanced.extension.youtube.settings.preference;
+
+import static app.revanced.extension.shared.StringRef.str;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.preference.Preference;
+import android.util.AttributeSet;
+import android.util.Pair;
+import android.widget.LinearLayout;
+
+import app.revanced.extension.shared.Logger;
+import app.revanced.extension.shared.Utils;
+import app.revanced.extension.shared.ui.CustomDialog;
+import app.revanced.extension.youtube.patches.components.LithoFilterReplay;
+
+/**
+ * Replays the recorded litho filter capture and shows the results.
+ */
+@SuppressWarnings({"deprecation", "unused"})
+public class LithoFilterReplayPreference extends Preference {
+
+    private static volatile boolean replayRunning;
+
+    {
+        setOnPreferenceClickListener(pref -> {
+            replayCapture();
+            return true;
+        });
+    }
+
+    public LithoFilterReplayPreference(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        super(context, attrs, defStyleAttr, defStyleRes);
+    }
+    public LithoFilterReplayPreference(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+    public LithoFilterReplayPreference(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+    public LithoFilterReplayPreference(Context context) {
+        super(context);
+    }
+
+    private void replayCapture() {
+        if (replayRunning) {
+            return;
+        }
+        replayRunning = true;
+        Utils.showToastShort(str("revanced_debug_litho_replay_started"));
+
+        Utils.runOnBackgroundThread(() -> {
+            try {
+                String summary = LithoFilterReplay.replayCapture();
+                Utils.runOnMainThread(() -> {
+                    if (summary == null) {
+                        Utils.showToastShort(str("revanced_debug_litho_replay_none_found"));
+                    } else {
+                        showReplayDialog(summary);
+                    }
+                });
+            } catch (Exception ex) {
+                Logger.printException(() -> "Litho filter replay failure", ex);
+            } finally {
+                replayRunning = false;
+            }
+        });
+    }
+
+    private void showReplayDialog(String summary) {
+        Pair<Dialog, LinearLayout> dialogPair = CustomDialog.create(
+                getContext(),
+                getTitle() != null ? getTitle().toString() : "",
+                summary,
+                null,
+                str("revanced_settings_import_copy"),
+                () -> Utils.setClipboard(summary),
+                () -> {},
+                null,
+                null,
+                true
+        );
+
+        dialogPair.first.show();
+    }
+}
@@ -0,0 +1,772 @@
+package app.revanced.extension.youtube.sponsorblock;
+
+import static app.revanced.extension.shared.StringRef.str;
+
+import android.content.Context;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import app.revanced.extension.shared.Logger;
+import app.revanced.extension.shared.Utils;
+import app.revanced.extension.youtube.settings.Settings;
+import app.revanced.extension.youtube.sponsorblock.objects.CategoryBehaviour;
+import app.revanced.extension.youtube.sponsorblock.objects.SegmentCategory;
+import app.revanced.extension.youtube.sponsorblock.objects.SponsorSegment;
+
+/**
+ * On device index of SponsorBlock segments, imported from a SponsorBlock database dump.
+ * Allows skipping segments without a network connection.
+ * <p>
+ * The dump is the <code>sponsorTimes.csv</code> file published by SponsorBlock, or any subset of it
+ * with the same header. It is imported by streaming the rows into sorted runs, then merging the runs
+ * into the index, so the import only keeps a small part of the dump in memory.
+ * <p>
+ * Index file format, all values big endian:
+ * <pre>
+ * int     magic
+ * int     version
+ * int     number of videos
+ * int     number of segments
+ * byte    number of categories, followed by each category key as a length byte and ASCII bytes
+ * videos  sorted by video id: 11 bytes ASCII video id, 1 byte padding, int index of the first segment
+ * segments sorted by start time: int start milliseconds, int end milliseconds, byte category, byte flags, 2 bytes padding
+ * </pre>
+ * The index is memory mapped, and looking up a video is a binary search over the video table.
+ * <p>
+ * Segment UUIDs are not included in the index to keep it small,
+ * so segments of the index cannot be voted on and skips are not sent to the server.
+ */
+public final class LocalSegmentDatabase {
+
+    /**
+     * Name of the dump file, in the app specific external files directory.
+     */
+    public static final String IMPORT_FILE_NAME = "sponsorTimes.csv";
+
+    private static final String INDEX_FILE_NAME = "sponsorblock_segments.index";
+
+    private static final int MAGIC = 0x53424442; // "SBDB"
+    private static final int VERSION = 1;
+
+    private static final int VIDEO_ID_LENGTH = 11;
+    private static final int VIDEO_ENTRY_SIZE = 16;
+    private static final int SEGMENT_ENTRY_SIZE = 12;
+
+    private static final int SEGMENT_FLAG_LOCKED = 1;
+
+    /**
+     * Segments with this many votes or fewer are not used, the same as the SponsorBlock API.
+     */
+    private static final int MINIMUM_VOTES_EXCLUSIVE = -2;
+
+    /**
+     * Number of rows sorted in memory before writing a sorted run to storage.
+     * Each row uses {@link ImportRecord#SIZE} bytes, plus the object overhead.
+     */
+    private static final int RUN_SIZE = 200_000;
+
+    /**
+     * Opened index, or null if no index exists or it is not opened yet.
+     */
+    @GuardedBy("LocalSegmentDatabase.class")
+    @Nullable
+    private static Index index;
+
+    @GuardedBy("LocalSegmentDatabase.class")
+    private static boolean indexOpened;
+
+    private static final AtomicBoolean importRunning = new AtomicBoolean();
+
+    private LocalSegmentDatabase() {
+    }
+
+    /**
+     * Memory mapped index file.
+     */
+    private static final class Index {
+        final MappedByteBuffer buffer;
+        final int videoCount;
+        final int segmentCount;
+        /**
+         * Category of each category index, or null if the category is unknown to this version of ReVanced.
+         */
+        final SegmentCategory[] categories;
+        final int videosOffset;
+        final int segmentsOffset;
+
+        Index(MappedByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Unknown index format");
+            }
+            videoCount = buffer.getInt(8);
+            segmentCount = buffer.getInt(12);
+
+            int position = 16;
+            final int categoryCount = buffer.get(position++) & 0xFF;
+            categories = new SegmentCategory[categoryCount];
+            for (int i = 0; i < categoryCount; i++) {
+                final int length = buffer.get(position++) & 0xFF;
+                byte[] key = new byte[length];
+                for (int j = 0; j < length; j++) {
+                    key[j] = buffer.get(position++);
+                }
+                categories[i] = SegmentCategory.byCategoryKey(new String(key, StandardCharsets.US_ASCII));
+            }
+
+            videosOffset = position;
+            segmentsOffset = videosOffset + videoCount * VIDEO_ENTRY_SIZE;
+            if ((long) segmentsOffset + (long) segmentCount * SEGMENT_ENTRY_SIZE > buffer.capacity()) {
+                throw new IOException("Index is truncated");
+            }
+        }
+
+        /**
+         * @return The index of the video entry, or -1 if the video is not in the index.
+         */
+        int findVideo(byte[] videoId) {
+            int low = 0;
+            int high = videoCount - 1;
+            while (low <= high) {
+                final int middle = (low + high) >>> 1;
+                final int compare = compareVideoId(videosOffset + middle * VIDEO_ENTRY_SIZE, videoId);
+                if (compare < 0) {
+                    low = middle + 1;
+                } else if (compare > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        private int compareVideoId(int offset, byte[] videoId) {
+            for (int i = 0; i < VIDEO_ID_LENGTH; i++) {
+                final int compare = (buffer.get(offset + i) & 0xFF) - (videoId[i] & 0xFF);
+                if (compare != 0) return compare;
+            }
+            return 0;
+        }
+
+        int getFirstSegment(int video) {
+            return video == videoCount
+                    ? segmentCount
+                    : buffer.getInt(videosOffset + video * VIDEO_ENTRY_SIZE + 12);
+        }
+    }
+
+    private static File getIndexFile() {
+        return new File(Utils.getContext().getFilesDir(), INDEX_FILE_NAME);
+    }
+
+    /**
+     * @return The dump file to import, in a directory that can be written to with a file manager or a computer,
+     *         without any storage permissions.
+     */
+    @Nullable
+    public static File getImportFile() {
+        Context context = Utils.getContext();
+        File directory = context == null ? null : context.getExternalFilesDir(null);
+        return directory == null ? null : new File(directory, IMPORT_FILE_NAME);
+    }
+
+    public static boolean isEnabled() {
+        return Settings.SB_LOCAL_DATABASE.get();
+    }
+
+    @Nullable
+    private static synchronized Index getIndex() {
+        if (!indexOpened) {
+            indexOpened = true;
+            index = openIndex();
+        }
+        return index;
+    }
+
+    @Nullable
+    private static Index openIndex() {
+        File file = getIndexFile();
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            // Mapping remains valid after the channel is closed.
+            Index opened = new Index(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            Logger.printDebug(() -> "Opened local segment database with " + opened.videoCount
+                    + " videos and " + opened.segmentCount + " segments");
+            return opened;
+        } catch (IOException ex) {
+            Logger.printException(() -> "Could not open local segment database", ex);
+            return null;
+        }
+    }
+
+    /**
+     * @return The video and segment count of the index, or null if no index is imported.
+     */
+    @Nullable
+    public static int[] getStatistics() {
+        Index current = getIndex();
+        return current == null
+                ? null
+                : new int[]{current.videoCount, current.segmentCount};
+    }
+
+    /**
+     * Looks up the segments of a video, using the same category and duration filters as the SponsorBlock API.
+     *
+     * @return The segments of the video, or null if the video is not in the index
+     *         or the local database is not enabled. An empty array if the video is in the index
+     *         but has no segments of the enabled categories.
+     */
+    @Nullable
+    public static SponsorSegment[] getSegments(@NonNull String videoId) {
+        if (!isEnabled() || videoId.length() != VIDEO_ID_LENGTH) {
+            return null;
+        }
+
+        Index current = getIndex();
+        if (current == null) {
+            return null;
+        }
+
+        final int video = current.findVideo(videoId.getBytes(StandardCharsets.US_ASCII));
+        if (video < 0) {
+            Logger.printDebug(() -> "Video is not in the local segment database: " + videoId);
+            return null;
+        }
+
+        final long minSegmentDuration = (long) (Settings.SB_SEGMENT_MIN_DURATION.get() * 1000);
+        final int firstSegment = current.getFirstSegment(video);
+        final int lastSegment = current.getFirstSegment(video + 1);
+        List<SponsorSegment> segments = new ArrayList<>(lastSegment - firstSegment);
+
+        for (int i = firstSegment; i < lastSegment; i++) {
+            final int offset = current.segmentsOffset + i * SEGMENT_ENTRY_SIZE;
+            final int categoryIndex = current.buffer.get(offset + 8) & 0xFF;
+            if (categoryIndex >= current.categories.length) continue;
+
+            SegmentCategory category = current.categories[categoryIndex];
+            if (category == null || category.behaviour == CategoryBehaviour.IGNORE) continue;
+
+            final long start = current.buffer.getInt(offset);
+            final long end = current.buffer.getInt(offset + 4);
+            if ((end - start) < minSegmentDuration && category != SegmentCategory.HIGHLIGHT) continue;
+
+            final boolean locked = (current.buffer.get(offset + 9) & SEGMENT_FLAG_LOCKED) != 0;
+            segments.add(new SponsorSegment(category, null, start, end, locked));
+        }
+
+        Logger.printDebug(() -> "Found " + segments.size() + " segments in local segment database for: " + videoId);
+        return segments.toArray(new SponsorSegment[0]);
+    }
+
+    /**
+     * Imports {@link #getImportFile()} on a background thread, and shows a toast when done.
+     *
+     * @param onCompletion Called on the main thread after the import succeeds or fails.
+     */
+    public static void importDatabaseInBackground(@Nullable Runnable onCompletion) {
+        File importFile = getImportFile();
+        if (importFile == null || !importFile.isFile()) {
+            Utils.showToastLong(str("revanced_sb_local_database_import_file_not_found",
+                    importFile == null ? IMPORT_FILE_NAME : importFile.getAbsolutePath()));
+            return;
+        }
+
+        if (!importRunning.compareAndSet(false, true)) {
+            Utils.showToastShort(str("revanced_sb_local_database_import_running"));
+            return;
+        }
+
+        Utils.showToastShort(str("revanced_sb_local_database_import_started"));
+        Utils.runOnBackgroundThread(() -> {
+            try {
+                final long start = System.currentTimeMillis();
+                int[] counts = importDatabase(importFile);
+                Logger.printInfo(() -> "Imported local segment database with " + counts[0] + " videos and "
+                        + counts[1] + " segments in " + (System.currentTimeMillis() - start) + "ms");
+                Utils.showToastLong(str("revanced_sb_local_database_import_succeeded", counts[0], counts[1]));
+            } catch (Exception ex) {
+                Logger.printInfo(() -> "Local segment database import failed", ex);
+                Utils.showToastLong(str("revanced_sb_local_database_import_failed", ex.getMessage()));
+            } finally {
+                importRunning.set(false);
+                if (onCompletion != null) {
+                    Utils.runOnMainThread(onCompletion);
+                }
+            }
+        });
+    }
+
+    /**
+     * A row of the dump, as written to a sorted run.
+     */
+    private static final class ImportRecord {
+        static final int SIZE = VIDEO_ID_LENGTH + 4 + 4 + 4 + 1 + 1;
+
+        static final Comparator<ImportRecord> ORDER = (first, second) -> {
+            final int compare = compareVideoIds(first.videoId, second.videoId);
+            if (compare != 0) return compare;
+            return Integer.compare(first.start, second.start);
+        };
+
+        /**
+         * Order of the segments of a single video, grouped by category.
+         */
+        static final Comparator<ImportRecord> CATEGORY_ORDER = (first, second) -> {
+            final int compare = Integer.compare(first.category, second.category);
+            if (compare != 0) return compare;
+            final int startCompare = Integer.compare(first.start, second.start);
+            if (startCompare != 0) return startCompare;
+            return Integer.compare(first.end, second.end);
+        };
+
+        final byte[] videoId;
+        final int start;
+        final int end;
+        final int votes;
+        final byte category;
+        final boolean locked;
+
+        ImportRecord(byte[] videoId, int start, int end, int votes, byte category, boolean locked) {
+            this.videoId = videoId;
+            this.start = start;
+            this.end = end;
+            this.votes = votes;
+            this.category = category;
+            this.locked = locked;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.write(videoId);
+            out.writeInt(start);
+            out.writeInt(end);
+            out.writeInt(votes);
+            out.writeByte(category);
+            out.writeBoolean(locked);
+        }
+
+        @Nullable
+        static ImportRecord read(DataInputStream in) throws IOException {
+            byte[] videoId = new byte[VIDEO_ID_LENGTH];
+            try {
+                in.readFully(videoId);
+            } catch (EOFException ex) {
+                return null; // End of run.
+            }
+            return new ImportRecord(videoId, in.readInt(), in.readInt(), in.readInt(),
+                    in.readByte(), in.readBoolean());
+        }
+
+        /**
+         * @return If this segment should replace the other segment of the same category it overlaps.
+         */
+        boolean isBetterThan(ImportRecord other) {
+            if (locked != other.locked) return locked;
+            if (votes != other.votes) return votes > other.votes;
+            // Ties use the segment times, so the result does not depend on the order of the rows.
+            if (start != other.start) return start < other.start;
+            return end < other.end;
+        }
+    }
+
+    private static int compareVideoIds(byte[] first, byte[] second) {
+        for (int i = 0; i < VIDEO_ID_LENGTH; i++) {
+            final int compare = (first[i] & 0xFF) - (second[i] & 0xFF);
+            if (compare != 0) return compare;
+        }
+        return 0;
+    }
+
+    /**
+     * Column indexes of the dump header.
+     */
+    private static final class DumpColumns {
+        final int videoId;
+        final int startTime;
+        final int endTime;
+        final int votes;
+        final int locked;
+        final int category;
+        final int actionType;
+        final int service;
+        final int hidden;
+        final int shadowHidden;
+
+        DumpColumns(List<String> header) throws IOException {
+            videoId = required(header, "videoID");
+            startTime = required(header, "startTime");
+            endTime = required(header, "endTime");
+            category = required(header, "category");
+            votes = header.indexOf("votes");
+            locked = header.indexOf("locked");
+            actionType = header.indexOf("actionType");
+            service = header.indexOf("service");
+            hidden = header.indexOf("hidden");
+            shadowHidden = header.indexOf("shadowHidden");
+        }
+
+        private static int required(List<String> header, String column) throws IOException {
+            final int index = header.indexOf(column);
+            if (index < 0) throw new IOException("Missing column: " + column);
+            return index;
+        }
+    }
+
+    /**
+     * @return The number of videos and segments imported.
+     */
+    private static int[] importDatabase(File dumpFile) throws IOException {
+        Utils.verifyOffMainThread();
+
+        File workDirectory = new File(Utils.getContext().getCacheDir(), "sponsorblock_import");
+        deleteRecursively(workDirectory);
+        if (!workDirectory.mkdirs()) {
+            throw new IOException("Could not create directory: " + workDirectory);
+        }
+
+        try {
+            // Category indexes of the index file are the order of this array.
+            SegmentCategory[] categories = SegmentCategory.categoriesWithoutUnsubmitted();
+            List<File> runs = writeSortedRuns(dumpFile, workDirectory, categories);
+
+            File indexFile = getIndexFile();
+            File newIndexFile = new File(workDirectory, INDEX_FILE_NAME);
+            int[] counts = mergeRuns(runs, workDirectory, newIndexFile, categories);
+
+            synchronized (LocalSegmentDatabase.class) {
+                if (!newIndexFile.renameTo(indexFile)) {
+                    throw new IOException("Could not move index to: " + indexFile);
+                }
+                // The previous mapping remains valid until it's garbage collected.
+                index = null;
+                indexOpened = false;
+            }
+            return counts;
+        } finally {
+            deleteRecursively(workDirectory);
+        }
+    }
+
+    private static List<File> writeSortedRuns(File dumpFile, File workDirectory,
+                                              SegmentCategory[] categories) throws IOException {
+        List<File> runs = new ArrayList<>();
+        List<ImportRecord> records = new ArrayList<>(RUN_SIZE);
+
+        try (CsvReader reader = new CsvReader(new FileInputStream(dumpFile))) {
+            List<String> header = reader.readRow();
+            if (header == null) throw new IOException("File is empty");
+            DumpColumns columns = new DumpColumns(header);
+
+            List<String> row;
+            long rowCount = 0;
+            while ((row = reader.readRow()) != null) {
+                rowCount++;
+                ImportRecord record = parseRow(row, columns, categories);
+                if (record == null) continue;
+
+                records.add(record);
+                if (records.size() == RUN_SIZE) {
+                    runs.add(writeRun(records, workDirectory, runs.size()));
+                    records.clear();
+                }
+            }
+            if (!records.isEmpty()) {
+                runs.add(writeRun(records, workDirectory, runs.size()));
+            }
+
+            final long finalRowCount = rowCount;
+            Logger.printDebug(() -> "Read " + finalRowCount + " rows into " + runs.size() + " sorted runs");
+        }
+
+        return runs;
+    }
+
+    @Nullable
+    private static ImportRecord parseRow(List<String> row, DumpColumns columns, SegmentCategory[] categories) {
+        try {
+            if (columns.service >= 0 && !"YouTube".equals(column(row, columns.service))) return null;
+            if (columns.hidden >= 0 && "1".equals(column(row, columns.hidden))) return null;
+            if (columns.shadowHidden >= 0 && "1".equals(column(row, columns.shadowHidden))) return null;
+
+            String actionType = columns.actionType >= 0 ? column(row, columns.actionType) : "skip";
+            if (!"skip".equals(actionType) && !"poi".equals(actionType)) return null;
+
+            final int votes = columns.votes >= 0 ? Integer.parseInt(column(row, columns.votes)) : 0;
+            if (votes <= MINIMUM_VOTES_EXCLUSIVE) return null;
+
+            String videoId = column(row, columns.videoId);
+            if (videoId.length() != VIDEO_ID_LENGTH) return null;
+
+            SegmentCategory category = SegmentCategory.byCategoryKey(column(row, columns.category));
+            if (category == null) return null;
+            final int categoryIndex = Arrays.asList(categories).indexOf(category);
+
+            final int start = (int) (Double.parseDouble(column(row, columns.startTime)) * 1000);
+            final int end = (int) (Double.parseDouble(column(row, columns.endTime)) * 1000);
+            if (start < 0 || end < start) return null;
+
+            final boolean locked = columns.locked >= 0 && "1".equals(column(row, columns.locked));
+            return new ImportRecord(videoId.getBytes(StandardCharsets.US_ASCII),
+                    start, end, votes, (byte) categoryIndex, locked);
+        } catch (NumberFormatException ex) {
+            return null; // Malformed row.
+        }
+    }
+
+    private static String column(List<String> row, int index) {
+        return index < row.size() ? row.get(index) : "";
+    }
+
+    private static File writeRun(List<ImportRecord> records, File workDirectory, int runNumber) throws IOException {
+        records.sort(ImportRecord.ORDER);
+        File run = new File(workDirectory, "run" + runNumber);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)))) {
+            for (ImportRecord record : records) {
+                record.write(out);
+            }
+        }
+        return run;
+    }
+
+    /**
+     * A sorted run being merged.
+     */
+    private static final class RunReader {
+        final DataInputStream in;
+        ImportRecord current;
+
+        RunReader(File run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+        }
+
+        boolean advance() throws IOException {
+            current = ImportRecord.read(in);
+            return current != null;
+        }
+    }
+
+    /**
+     * Merges the sorted runs into the index file.
+     * The video table is only known after merging, so videos and segments are first written to separate files.
+     */
+    private static int[] mergeRuns(List<File> runs, File workDirectory, File indexFile,
+                                   SegmentCategory[] categories) throws IOException {
+        File videosFile = new File(workDirectory, "videos");
+        File segmentsFile = new File(workDirectory, "segments");
+
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runs.size()),
+                (first, second) -> ImportRecord.ORDER.compare(first.current, second.current));
+        List<RunReader> readers = new ArrayList<>(runs.size());
+
+        int videoCount = 0;
+        int segmentCount = 0;
+        try (DataOutputStream videos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(videosFile)));
+             DataOutputStream segments = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segmentsFile)))) {
+            for (File run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance()) queue.add(reader);
+            }
+
+            List<ImportRecord> videoRecords = new ArrayList<>();
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                ImportRecord record = reader.current;
+                if (reader.advance()) queue.add(reader);
+
+                if (!videoRecords.isEmpty() && compareVideoIds(videoRecords.get(0).videoId, record.videoId) != 0) {
+                    segmentCount += writeVideo(videoRecords, segmentCount, videos, segments);
+                    videoCount++;
+                    videoRecords.clear();
+                }
+                videoRecords.add(record);
+            }
+            if (!videoRecords.isEmpty()) {
+                segmentCount += writeVideo(videoRecords, segmentCount, videos, segments);
+                videoCount++;
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(indexFile))) {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            header.putInt(MAGIC).putInt(VERSION).putInt(videoCount).putInt(segmentCount);
+            out.write(header.array());
+
+            out.write(categories.length);
+            for (SegmentCategory category : categories) {
+                byte[] key = category.keyValue.getBytes(StandardCharsets.US_ASCII);
+                out.write(key.length);
+                out.write(key);
+            }
+
+            copy(videosFile, out);
+            copy(segmentsFile, out);
+        }
+
+        return new int[]{videoCount, segmentCount};
+    }
+
+    /**
+     * Writes the segments of one video, sorted by start time.
+     * Overlapping segments of the same category are reduced to the locked or most voted segment,
+     * similar to how the SponsorBlock API chooses between similar segments.
+     * A segment is only compared to the segment chosen so far, so segments that do not overlap each other
+     * are never reduced because a third segment overlaps both of them.
+     *
+     * @return The number of segments written.
+     */
+    private static int writeVideo(List<ImportRecord> records, int firstSegment,
+                                  DataOutputStream videos, DataOutputStream segments) throws IOException {
+        List<ImportRecord> byCategory = new ArrayList<>(records);
+        byCategory.sort(ImportRecord.CATEGORY_ORDER);
+
+        List<ImportRecord> chosen = new ArrayList<>(records.size());
+        ImportRecord best = null;
+        for (ImportRecord record : byCategory) {
+            if (best != null && best.category == record.category && record.start < best.end) {
+                if (record.isBetterThan(best)) {
+                    best = record;
+                }
+                continue;
+            }
+
+            if (best != null) chosen.add(best);
+            best = record;
+        }
+        if (best != null) chosen.add(best);
+        chosen.sort(ImportRecord.ORDER);
+
+        videos.write(chosen.get(0).videoId);
+        videos.writeByte(0);
+        videos.writeInt(firstSegment);
+
+        for (ImportRecord record : chosen) {
+            segments.writeInt(record.start);
+            segments.writeInt(record.end);
+            segments.writeByte(record.category);
+            segments.writeByte(record.locked ? SEGMENT_FLAG_LOCKED : 0);
+            segments.writeShort(0);
+        }
+
+        return chosen.size();
+    }
+
+    private static void copy(File file, OutputStream out) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    /**
+     * Streaming reader of RFC 4180 CSV, where quoted values can contain commas, quotes and line breaks.
+     */
+    private static final class CsvReader implements AutoCloseable {
+        private final BufferedReader reader;
+        private final StringBuilder value = new StringBuilder();
+
+        CsvReader(InputStream in) {
+            reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        /**
+         * @return The values of the next row, or null at the end of the file.
+         */
+        @Nullable
+        List<String> readRow() throws IOException {
+            int c = reader.read();
+            if (c < 0) return null;
+
+            List<String> row = new ArrayList<>();
+            boolean quoted = false;
+            value.setLength(0);
+            while (true) {
+                if (c < 0) {
+                    row.add(value.toString());
+                    return row;
+                }
+
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            value.append('"'); // Escaped quote.
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        value.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    row.add(value.toString());
+                    value.setLength(0);
+                } else if (c == '\n') {
+                    row.add(value.toString());
+                    return row;
+                } else if (c != '\r') {
+                    value.append((char) c);
+                }
+
+                c = reader.read();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package app.revanced.extension.youtube.sponsorblock;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import app.revanced.extension.youtube.sponsorblock.objects.SegmentCategory;
+import app.revanced.extension.youtube.sponsorblock.objects.SponsorSegment;
+
+/**
+ * Precomputed seekbar positions of the segments of a video.
+ * <p>
+ * The positions only change if the segments, video length or seekbar bounds change,
+ * so drawing a frame only translates the canvas to the seekbar and draws the cached lines.
+ * Segments of the same category are drawn with a single call where possible.
+ * <p>
+ * Only used on the main thread.
+ */
+final class SegmentBarGeometry {
+
+    /**
+     * Segments of the same category, drawn with one call.
+     */
+    private static final class Batch {
+        final SegmentCategory category;
+        final Paint paint;
+        /**
+         * Horizontal lines at y = 0, in the format of {@link Canvas#drawLines(float[], int, int, Paint)}.
+         */
+        float[] lines = new float[8];
+        int lineCount;
+
+        Batch(SegmentCategory category, Paint paint) {
+            this.category = category;
+            this.paint = paint;
+        }
+
+        void add(float left, float right) {
+            final int index = lineCount * 4;
+            if (index == lines.length) {
+                float[] larger = new float[lines.length * 2];
+                System.arraycopy(lines, 0, larger, 0, lines.length);
+                lines = larger;
+            }
+            lines[index] = left;
+            lines[index + 2] = right;
+            lineCount++;
+        }
+
+        boolean overlaps(float left, float right) {
+            for (int i = 0, length = lineCount * 4; i < length; i += 4) {
+                if (lines[i] < right && left < lines[i + 2]) return true;
+            }
+            return false;
+        }
+    }
+
+    private final SponsorSegment[] segments;
+    private final long videoLength;
+    private final int barLeft;
+    private final int barRight;
+
+    /**
+     * Batches in the order they are drawn.
+     */
+    private final Batch[] batches;
+
+    private SegmentBarGeometry(SponsorSegment[] segments, long videoLength, int barLeft, int barRight,
+                               Batch[] batches) {
+        this.segments = segments;
+        this.videoLength = videoLength;
+        this.barLeft = barLeft;
+        this.barRight = barRight;
+        this.batches = batches;
+    }
+
+    /**
+     * @return If this geometry was calculated with the same values.
+     *         Segments arrays are never modified, so the array instance identifies the segments.
+     */
+    boolean isCurrent(SponsorSegment[] segments, long videoLength, int barLeft, int barRight) {
+        return this.segments == segments && this.videoLength == videoLength
+                && this.barLeft == barLeft && this.barRight == barRight;
+    }
+
+    /**
+     * @param segments Segments sorted by start time.
+     */
+    static SegmentBarGeometry calculate(SponsorSegment[] segments, long videoLength,
+                                        int barLeft, int barRight, float highlightWidth) {
+        final float videoMillisecondsToPixels = (1f / videoLength) * (barRight - barLeft);
+
+        // Segments are drawn in order of start time, and later segments are drawn on top.
+        // A segment can be drawn with an earlier batch of the same category,
+        // unless a batch drawn after that batch overlaps the segment.
+        List<Batch> batches = new ArrayList<>();
+        Map<SegmentCategory, Paint> paints = new HashMap<>();
+        for (SponsorSegment segment : segments) {
+            final SegmentCategory category = segment.category;
+            final float left = barLeft + segment.start * videoMillisecondsToPixels;
+            final float right = category == SegmentCategory.HIGHLIGHT
+                    ? left + highlightWidth
+                    : barLeft + segment.end * videoMillisecondsToPixels;
+
+            Batch batch = null;
+            for (int i = batches.size() - 1; i >= 0; i--) {
+                Batch existing = batches.get(i);
+                if (existing.category == category) {
+                    batch = existing;
+                    break;
+                }
+                if (existing.overlaps(left, right)) {
+                    break;
+                }
+            }
+
+            if (batch == null) {
+                Paint paint = paints.get(category);
+                if (paint == null) {
+                    paint = new Paint(category.paint);
+                    paint.setStyle(Paint.Style.STROKE);
+                    paint.setStrokeCap(Paint.Cap.BUTT);
+                    paints.put(category, paint);
+                }
+                batch = new Batch(category, paint);
+                batches.add(batch);
+            }
+            batch.add(left, right);
+        }
+
+        return new SegmentBarGeometry(segments, videoLength, barLeft, barRight,
+                batches.toArray(new Batch[0]));
+    }
+
+    /**
+     * @param top    Top of the segment bars.
+     * @param bottom Bottom of the segment bars.
+     */
+    void draw(Canvas canvas, float top, float bottom) {
+        final float thickness = bottom - top;
+        if (thickness <= 0) return;
+
+        final int saveCount = canvas.save();
+        canvas.translate(0, (top + bottom) / 2);
+        for (Batch batch : batches) {
+            final Paint paint = batch.paint;
+            // Category colors can change at any time.
+            final int color = batch.category.paint.getColor();
+            if (paint.getColor() != color) paint.setColor(color);
+            if (paint.getStrokeWidth() != thickness) paint.setStrokeWidth(thickness);
+
+            canvas.drawLines(batch.lines, 0, batch.lineCount * 4, paint);
+        }
+        canvas.restoreToCount(saveCount);
+    }
+}
@@ -154,6 +154,12 @@ public class SegmentPlaybackController {
     private static int sponsorAbsoluteBarRight;
     private static int sponsorBarThickness;
 
+    /**
+     * Seekbar positions of {@link #segments}, calculated when drawing.
+     */
+    @Nullable
+    private static SegmentBarGeometry segmentBarGeometry;
+
     @Nullable
     private static SponsorSegment lastSegmentSkipped;
     private static long lastSegmentSkippedTime;
@@ -269,6 +275,7 @@ public class SegmentPlaybackController {
     private static void clearData() {
         currentVideoId = null;
         segments = null;
+        segmentBarGeometry = null;
         highlightSegment = null;
         highlightSegmentInitialShowEndTime = 0;
         timeWithoutSegments = null;
@@ -316,7 +323,7 @@ public class SegmentPlaybackController {
                 Logger.printDebug(() -> "Ignoring Short");
                 return;
             }
-            if (!Utils.isNetworkConnected()) {
+            if (!Utils.isNetworkConnected() && !LocalSegmentDatabase.isEnabled()) {
                 Logger.printDebug(() -> "Network not connected, ignoring video");
                 return;
             }
@@ -343,8 +350,38 @@ public class SegmentPlaybackController {
         Objects.requireNonNull(videoId);
         Utils.verifyOffMainThread();
 
-        SponsorSegment[] segments = SBRequester.getSegments(videoId);
+        // The local database is used first, so segments are available without waiting for the server,
+        // even if the server is slow or cannot be reached.
+        SponsorSegment[] localSegments = LocalSegmentDatabase.getSegments(videoId);
+        final boolean networkConnected = Utils.isNetworkConnected();
+        if (localSegments != null) {
+            applySegments(videoId, localSegments, true);
+
+            if (networkConnected) {
+                // Update with the latest segments of the server, which also have the UUIDs needed for voting.
+                SponsorSegment[] serverSegments = SBRequester.getSegments(videoId);
+                if (serverSegments != null) {
+                    applySegments(videoId, serverSegments, false);
+                }
+            }
+            return;
+        }
+
+        if (!networkConnected) {
+            Logger.printDebug(() -> "Network not connected and video is not in local database: " + videoId);
+            return;
+        }
+
+        // Videos not in the local database can still have segments on the server.
+        SponsorSegment[] serverSegments = SBRequester.getSegments(videoId);
+        applySegments(videoId, serverSegments != null ? serverSegments : new SponsorSegment[0], true);
+    }
 
+    /**
+     * @param initialSegments If these are the first segments of the video,
+     *                        or an update of segments already applied.
+     */
+    private static void applySegments(String videoId, SponsorSegment[] segments, boolean initialSegments) {
         Utils.runOnMainThread(() -> {
             if (!videoId.equals(currentVideoId)) {
                 // user changed videos before get segments network call could complete
@@ -354,7 +391,7 @@ public class SegmentPlaybackController {
             setSegments(segments);
 
             final long videoTime = VideoInformation.getVideoTime();
-            if (highlightSegment != null) {
+            if (initialSegments && highlightSegment != null) {
                 // If the current video time is before the highlight.
                 final long timeUntilHighlight = highlightSegment.start - videoTime;
                 if (timeUntilHighlight > 0) {
@@ -1013,26 +1050,25 @@ public class SegmentPlaybackController {
     @SuppressWarnings("unused")
     public static void drawSponsorTimeBars(final Canvas canvas, final float posY) {
         try {
-            if (segments == null || isAdProgressTextVisible()) return;
+            final SponsorSegment[] currentSegments = segments;
+            if (currentSegments == null || isAdProgressTextVisible()) return;
             final long videoLength = VideoInformation.getVideoLength();
             if (videoLength <= 0) return;
 
             final int thicknessDiv2 = sponsorBarThickness / 2; // rounds down
             final float top = posY - (sponsorBarThickness - thicknessDiv2);
             final float bottom = posY + thicknessDiv2;
-            final float videoMillisecondsToPixels = (1f / videoLength) * (sponsorAbsoluteBarRight - sponsorBarAbsoluteLeft);
-            final float leftPadding = sponsorBarAbsoluteLeft;
 
-            for (SponsorSegment segment : segments) {
-                final float left = leftPadding + segment.start * videoMillisecondsToPixels;
-                final float right;
-                if (segment.category == SegmentCategory.HIGHLIGHT) {
-                    right = left + HIGHLIGHT_SEGMENT_DRAW_BAR_WIDTH;
-                } else {
-                    right = leftPadding + segment.end * videoMillisecondsToPixels;
-                }
-                canvas.drawRect(left, top, right, bottom, segment.category.paint);
+            // Called for every seekbar frame. Only calculate the segment positions if something changed.
+            SegmentBarGeometry geometry = segmentBarGeometry;
+            if (geometry == null || !geometry.isCurrent(currentSegments, videoLength,
+                    sponsorBarAbsoluteLeft, sponsorAbsoluteBarRight)) {
+                geometry = SegmentBarGeometry.calculate(currentSegments, videoLength,
+                        sponsorBarAbsoluteLeft, sponsorAbsoluteBarRight, HIGHLIGHT_SEGMENT_DRAW_BAR_WIDTH);
+                segmentBarGeometry = geometry;
             }
+
+            geometry.draw(canvas, top, bottom);
         } catch (Exception ex) {
             Logger.printException(() -> "drawSponsorTimeBars failure", ex);
         }
@@ -296,7 +296,8 @@ public class SponsorBlockUtils {
             CharSequence[] titles = new CharSequence[numberOfSegments];
             for (int i = 0; i < numberOfSegments; i++) {
                 SponsorSegment segment = segments[i];
-                if (segment.category == SegmentCategory.UNSUBMITTED) {
+                if (segment.category == SegmentCategory.UNSUBMITTED || segment.UUID == null) {
+                    // Unsubmitted and local database segments cannot be voted on.
                     continue;
                 }
 
@@ -377,7 +378,7 @@ public class SponsorBlockUtils {
         Settings.SB_LOCAL_TIME_SAVED_MILLISECONDS.save(totalTimeSkipped);
         Settings.SB_LOCAL_TIME_SAVED_NUMBER_SEGMENTS.save(Settings.SB_LOCAL_TIME_SAVED_NUMBER_SEGMENTS.get() + 1);
 
-        if (Settings.SB_TRACK_SKIP_COUNT.get()) {
+        if (Settings.SB_TRACK_SKIP_COUNT.get() && segment.UUID != null) {
             Utils.runOnBackgroundThread(() -> SBRequester.sendSegmentSkippedViewedRequest(segment));
         }
     }
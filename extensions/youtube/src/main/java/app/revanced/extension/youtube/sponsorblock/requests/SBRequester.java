@@ -2,10 +2,11 @@ package app.revanced.extension.youtube.sponsorblock.requests;
 
 import static app.revanced.extension.shared.StringRef.str;
 
+import android.util.JsonReader;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -62,32 +63,30 @@ public class SBRequester {
         }
     }
 
-    @NonNull
+    /**
+     * @return The segments of the video, or NULL if the request failed.
+     */
+    @Nullable
     public static SponsorSegment[] getSegments(String videoId) {
         Utils.verifyOffMainThread();
         List<SponsorSegment> segments = new ArrayList<>();
+        boolean requestFailed = true;
         try {
             HttpURLConnection connection = getConnectionFromRoute(SBRoutes.GET_SEGMENTS, videoId, SegmentCategory.sponsorBlockAPIFetchCategories);
             final int responseCode = connection.getResponseCode();
 
             if (responseCode == HTTP_STATUS_CODE_SUCCESS) {
-                JSONArray responseArray = Requester.parseJSONArray(connection);
                 final long minSegmentDuration = (long) (Settings.SB_SEGMENT_MIN_DURATION.get() * 1000);
-                for (int i = 0, length = responseArray.length(); i < length; i++) {
-                    JSONObject obj = (JSONObject) responseArray.get(i);
-                    JSONArray segment = obj.getJSONArray("segment");
-                    final long start = (long) (segment.getDouble(0) * 1000);
-                    final long end = (long) (segment.getDouble(1) * 1000);
-
-                    String uuid = obj.getString("UUID");
-                    final boolean locked = obj.getInt("locked") == 1;
-                    String categoryKey = obj.getString("category");
-                    SegmentCategory category = SegmentCategory.byCategoryKey(categoryKey);
-                    if (category == null) {
-                        Logger.printException(() -> "Received unknown category: " + categoryKey); // should never happen
-                    } else if ((end - start) >= minSegmentDuration || category == SegmentCategory.HIGHLIGHT) {
-                        segments.add(new SponsorSegment(category, uuid, start, end, locked));
+                // Do not disconnect, the same server connection will likely be used again soon.
+                try (JsonReader reader = Requester.parseJsonReader(connection)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        SponsorSegment segment = parseSegment(reader, minSegmentDuration);
+                        if (segment != null) {
+                            segments.add(segment);
+                        }
                     }
+                    reader.endArray();
                 }
                 Logger.printDebug(() -> {
                     StringBuilder builder = new StringBuilder("Downloaded segments:");
@@ -97,9 +96,11 @@ public class SBRequester {
                     return builder.toString();
                 });
                 runVipCheckInBackgroundIfNeeded();
+                requestFailed = false;
             } else if (responseCode == 404) {
                 // no segments are found.  a normal response
                 Logger.printDebug(() -> "No segments found for video: " + videoId);
+                requestFailed = false;
             } else {
                 handleConnectionError(str("revanced_sb_sponsorblock_connection_failure_status", responseCode), null);
                 connection.disconnect(); // something went wrong, might as well disconnect
@@ -160,7 +161,58 @@ public class SBRequester {
             segments.add(new SponsorSegment(SegmentCategory.INTRO, "debug", 22000, 23000, false));
         }
 
-        return segments.toArray(new SponsorSegment[0]);
+        return requestFailed
+                ? null
+                : segments.toArray(new SponsorSegment[0]);
+    }
+
+    /**
+     * Parses a single segment of the {@link SBRoutes#GET_SEGMENTS} response.
+     *
+     * @return The segment, or NULL if the segment is filtered out.
+     */
+    @Nullable
+    private static SponsorSegment parseSegment(JsonReader reader, long minSegmentDuration) throws IOException {
+        long start = -1;
+        long end = -1;
+        String uuid = null;
+        boolean locked = false;
+        String categoryKey = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "segment" -> {
+                    reader.beginArray();
+                    start = (long) (reader.nextDouble() * 1000);
+                    end = (long) (reader.nextDouble() * 1000);
+                    while (reader.hasNext()) {
+                        reader.skipValue();
+                    }
+                    reader.endArray();
+                }
+                case "UUID" -> uuid = reader.nextString();
+                case "locked" -> locked = reader.nextInt() == 1;
+                case "category" -> categoryKey = reader.nextString();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (start < 0 || uuid == null || categoryKey == null) {
+            throw new IllegalStateException("Incomplete segment data"); // Should never happen.
+        }
+
+        SegmentCategory category = SegmentCategory.byCategoryKey(categoryKey);
+        if (category == null) {
+            String unknownKey = categoryKey;
+            Logger.printException(() -> "Received unknown category: " + unknownKey); // should never happen
+            return null;
+        }
+        if ((end - start) >= minSegmentDuration || category == SegmentCategory.HIGHLIGHT) {
+            return new SponsorSegment(category, uuid, start, end, locked);
+        }
+        return null;
     }
 
     public static void submitSegments(String videoId, String category,
@@ -347,7 +399,14 @@ public class SBRequester {
         return connection;
     }
 
+    /**
+     * Fetches using a conditional request. If the data is unchanged since
+     * the last fetch, the server sends no response body and the previous response is used.
+     */
     private static JSONObject getJSONObject(Route route, String... params) throws IOException, JSONException {
-        return Requester.parseJSONObject(getConnectionFromRoute(route, params));
+        HttpURLConnection connection = Requester.getConditionalConnectionFromRoute(Settings.SB_API_URL.get(), route, params);
+        connection.setConnectTimeout(TIMEOUT_TCP_DEFAULT_MILLISECONDS);
+        connection.setReadTimeout(TIMEOUT_HTTP_DEFAULT_MILLISECONDS);
+        return Requester.parseJSONObject(connection);
     }
 }
@@ -23,6 +23,7 @@ import android.view.ViewGroup;
 import android.widget.EditText;
 import android.widget.LinearLayout;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -35,6 +36,7 @@ import app.revanced.extension.shared.settings.preference.ResettableEditTextPrefe
 import app.revanced.extension.shared.ui.CustomDialog;
 import app.revanced.extension.shared.ui.Dim;
 import app.revanced.extension.youtube.settings.Settings;
+import app.revanced.extension.youtube.sponsorblock.LocalSegmentDatabase;
 import app.revanced.extension.youtube.sponsorblock.SegmentPlaybackController;
 import app.revanced.extension.youtube.sponsorblock.SponsorBlockSettings;
 import app.revanced.extension.youtube.sponsorblock.objects.SegmentCategory;
@@ -59,6 +61,8 @@ public class SponsorBlockPreferenceGroup extends PreferenceGroup {
 
     private EditTextPreference importExport;
 
+    private Preference localDatabaseImport;
+
     private final List<SegmentCategoryPreference> segmentCategories = new ArrayList<>();
 
     public SponsorBlockPreferenceGroup(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
@@ -102,6 +106,17 @@ public class SponsorBlockPreferenceGroup extends PreferenceGroup {
                     : str("revanced_sb_settings_ie_sum");
             importExport.setSummary(importExportSummary);
 
+            File localDatabaseFile = LocalSegmentDatabase.getImportFile();
+            int[] localDatabaseStatistics = LocalSegmentDatabase.getStatistics();
+            String localDatabaseStatus = localDatabaseStatistics == null
+                    ? str("revanced_sb_local_database_import_status_none")
+                    : str("revanced_sb_local_database_import_status",
+                    localDatabaseStatistics[0], localDatabaseStatistics[1]);
+            localDatabaseImport.setSummary(str("revanced_sb_local_database_import_sum",
+                    localDatabaseFile == null ? LocalSegmentDatabase.IMPORT_FILE_NAME : localDatabaseFile.getAbsolutePath(),
+                    localDatabaseStatus));
+            localDatabaseImport.setEnabled(Settings.SB_LOCAL_DATABASE.isAvailable() && Settings.SB_LOCAL_DATABASE.get());
+
             for (SegmentCategoryPreference category : segmentCategories) {
                 category.updateUI();
             }
@@ -393,6 +408,25 @@ public class SponsorBlockPreferenceGroup extends PreferenceGroup {
             });
             generalCategory.addPreference(minSegmentDuration);
 
+            SwitchPreference localDatabase = new SwitchPreference(context);
+            initializePreference(localDatabase, Settings.SB_LOCAL_DATABASE,
+                    "revanced_sb_local_database");
+            localDatabase.setOnPreferenceChangeListener((preference1, newValue) -> {
+                Settings.SB_LOCAL_DATABASE.save((Boolean) newValue);
+                updateUIDelayed();
+                return true;
+            });
+            generalCategory.addPreference(localDatabase);
+
+            localDatabaseImport = new Preference(context);
+            localDatabaseImport.setTitle(str("revanced_sb_local_database_import"));
+            // Summary is set in updateUI().
+            localDatabaseImport.setOnPreferenceClickListener(preference1 -> {
+                LocalSegmentDatabase.importDatabaseInBackground(this::updateUIDelayed);
+                return true;
+            });
+            generalCategory.addPreference(localDatabaseImport);
+
             EditTextPreference privateUserId = new EditTextPreference(context) {
                 @Override
                 protected void showDialog(Bundle state) {
@@ -12,6 +12,11 @@ patches {
     }
 }
 
+sourceSets {
+    // Benchmarks of patches on a generated dex file. Not part of the published patches.
+    create("benchmark")
+}
+
 dependencies {
     // Required due to smali, or build fails. Can be removed once smali is bumped.
     implementation(libs.guava)
@@ -20,9 +25,15 @@ dependencies {
 
     // Android API stubs defined here.
     compileOnly(project(":patches:stub"))
+
+    testImplementation(kotlin("test"))
 }
 
 tasks {
+    test {
+        useJUnitPlatform()
+    }
+
     register<JavaExec>("preprocessCrowdinStrings") {
         description = "Preprocess strings for Crowdin push"
 
@@ -39,12 +50,48 @@ tasks {
             "src/main/resources/addresources/values/strings.xml"
         )
     }
+
+    register<JavaExec>("benchmarkPatches") {
+        description = "Benchmark patches on a generated dex file and append the results to a CSV file"
+        group = "verification"
+
+        classpath = sourceSets["benchmark"].runtimeClasspath
+        mainClass.set("app.revanced.benchmark.PatchBenchmarkKt")
+
+        // For example: ./gradlew :patches:benchmarkPatches -Pbenchmark.classes=10000 -Pbenchmark.iterations=20
+        // Add -Pbenchmark.parallelAnalysis=false to compare with sequential class analysis.
+        args = listOf(
+            "classes",
+            "methods",
+            "instructions",
+            "strings",
+            "literals",
+            "literalSkew",
+            "seed",
+            "hexFileMiB",
+            "iterations",
+            "warmupIterations",
+            "history",
+            "revision",
+        ).mapNotNull { name ->
+            providers.gradleProperty("benchmark.$name").orNull?.let { value -> "$name=$value" }
+        } + "workingDirectory=${layout.buildDirectory.dir("benchmark").get().asFile}"
+
+        jvmArgs = listOf("-Xmx4g")
+
+        providers.gradleProperty("benchmark.parallelAnalysis").orNull?.let {
+            systemProperty("app.revanced.patches.parallelAnalysis", it)
+        }
+    }
 }
 
 kotlin {
     compilerOptions {
         freeCompilerArgs = listOf("-Xcontext-receivers")
     }
+
+    // Allows benchmarks to use internal declarations and the dependencies of the patches.
+    target.compilations.getByName("benchmark").associateWith(target.compilations.getByName("main"))
 }
 
 publishing {
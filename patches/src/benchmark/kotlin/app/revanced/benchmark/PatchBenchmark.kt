@@ -0,0 +1,288 @@
+package app.revanced.benchmark
+
+import app.revanced.patches.all.misc.transformation.InstructionTransformation
+import app.revanced.patches.all.misc.transformation.findInstructionTransformation
+import app.revanced.patches.shared.misc.gms.StringReferenceIndex
+import app.revanced.patches.shared.misc.hex.Replacement
+import app.revanced.patches.shared.misc.hex.applyReplacements
+import app.revanced.patches.shared.misc.mapping.parseResourceMappings
+import app.revanced.util.ParallelClassAnalysis
+import app.revanced.util.findLiteralValueIndices
+import app.revanced.util.findLiteralValueMethods
+import com.android.tools.smali.dexlib2.ReferenceType
+import com.android.tools.smali.dexlib2.iface.ClassDef
+import com.android.tools.smali.dexlib2.iface.instruction.Instruction
+import com.android.tools.smali.dexlib2.iface.instruction.ReferenceInstruction
+import com.android.tools.smali.dexlib2.iface.reference.FieldReference
+import com.android.tools.smali.dexlib2.iface.reference.MethodReference
+import com.android.tools.smali.dexlib2.iface.reference.StringReference
+import java.io.File
+import java.io.RandomAccessFile
+import java.time.Instant
+import javax.xml.parsers.DocumentBuilderFactory
+import kotlin.random.Random
+
+/**
+ * Benchmarks the parts of patches that scan all classes or whole files, using a generated dex file
+ * instead of a real app, so results are comparable between revisions and machines.
+ *
+ * Arguments are `name=value` pairs. See [main] for the names and default values.
+ * The results are printed and appended to a CSV file to track throughput over time.
+ */
+fun main(args: Array<String>) {
+    val arguments = args.associate { argument ->
+        argument.split('=', limit = 2).let { it[0] to it.getOrElse(1) { "" } }
+    }
+
+    fun argument(name: String, default: String) = arguments[name]?.takeIf { it.isNotEmpty() } ?: default
+
+    val parameters = SyntheticDexParameters(
+        classCount = argument("classes", "4000").toInt(),
+        methodCount = argument("methods", "8").toInt(),
+        instructionCount = argument("instructions", "64").toInt(),
+        stringCount = argument("strings", "20000").toInt(),
+        literalCount = argument("literals", "10000").toInt(),
+        literalSkew = argument("literalSkew", "1.1").toDouble(),
+        seed = argument("seed", "0").toLong(),
+    )
+    val hexFileSize = argument("hexFileMiB", "64").toLong() shl 20
+    val iterations = argument("iterations", "10").toInt()
+    val warmupIterations = argument("warmupIterations", "3").toInt()
+    val workingDirectory = File(argument("workingDirectory", "build/benchmark")).apply { mkdirs() }
+    val historyFile = File(argument("history", "build/benchmark/history.csv"))
+    val revision = argument("revision", System.getenv("GITHUB_SHA") ?: "local")
+
+    println("Generating synthetic dex file: $parameters parallelAnalysis=${ParallelClassAnalysis.isEnabled}")
+    val dexFile = generateSyntheticDex(parameters, File(workingDirectory, "synthetic.dex"))
+    val classes = dexFile.classes.toList()
+    val instructionCount = parameters.classCount.toLong() * parameters.methodCount * parameters.instructionCount
+
+    val benchmarks = listOf(
+        Benchmark("transformInstructions", instructionCount) { transformInstructions(classes) },
+        Benchmark("forEachLiteralValueInstruction", instructionCount * LITERAL_LOOKUPS) {
+            forEachLiteralValueInstruction(classes, parameters.literalCount)
+        },
+        Benchmark("GmsCore transformStringReferences", instructionCount) { transformStringReferences(classes) },
+        generateSyntheticPublicXml(parameters.literalCount).let { publicXml ->
+            Benchmark("resourceMappingPatch", parameters.literalCount.toLong()) { parsePublicXml(publicXml) }
+        },
+        File(workingDirectory, "synthetic.bin").let { hexFile ->
+            Benchmark(
+                "hexPatch",
+                hexFileSize,
+                // The patterns are replaced by every run, so the file is generated again.
+                prepare = { generateHexFile(hexFile, hexFileSize, parameters.seed) },
+            ) { hexPatch(hexFile) }
+        },
+    )
+
+    val timestamp = Instant.now()
+    val results = benchmarks.map { benchmark ->
+        repeat(warmupIterations) { benchmark.run() }
+        val nanos = LongArray(iterations) { benchmark.run() }.sorted()
+
+        // The median is less affected by garbage collection and other processes than the mean.
+        val medianNanos = nanos[nanos.size / 2]
+        val itemsPerSecond = benchmark.items * 1_000_000_000.0 / medianNanos
+
+        println("%-36s %10.2f ms %16.0f items/s".format(benchmark.name, medianNanos / 1_000_000.0, itemsPerSecond))
+
+        listOf(
+            timestamp,
+            revision,
+            benchmark.name,
+            parameters.classCount,
+            parameters.methodCount,
+            parameters.instructionCount,
+            parameters.stringCount,
+            parameters.literalCount,
+            parameters.literalSkew,
+            ParallelClassAnalysis.isEnabled,
+            benchmark.items,
+            "%.3f".format(medianNanos / 1_000_000.0),
+            "%.0f".format(itemsPerSecond),
+        ).joinToString(",")
+    }
+
+    historyFile.parentFile?.mkdirs()
+    if (!historyFile.exists()) {
+        historyFile.writeText(
+            "timestamp,revision,benchmark,classes,methods,instructions,strings,literals,literalSkew," +
+                "parallelAnalysis,items,medianMs,itemsPerSecond\n",
+        )
+    }
+    historyFile.appendText(results.joinToString("\n", postfix = "\n"))
+
+    println("Appended results to ${historyFile.absolutePath}")
+}
+
+/**
+ * @param items The number of items processed by a run, such as instructions or bytes.
+ * @param prepare Prepares a run. Not part of the duration of the run.
+ * @param block Runs the benchmark once and returns a value depending on all work, so it is not optimized away.
+ */
+private class Benchmark(
+    val name: String,
+    val items: Long,
+    private val prepare: () -> Unit = {},
+    private val block: () -> Any,
+) {
+    /**
+     * @return The duration of the run in nanoseconds.
+     */
+    fun run(): Long {
+        prepare()
+
+        val start = System.nanoTime()
+        val result = block()
+        val nanos = System.nanoTime() - start
+
+        blackhole = blackhole xor result.hashCode()
+        return nanos
+    }
+
+    private companion object {
+        @Volatile
+        var blackhole = 0
+    }
+}
+
+/**
+ * Searches the classes for the same kinds of instructions as the patches using `transformInstructionsPatch`.
+ */
+private fun transformInstructions(classes: List<ClassDef>): Int {
+    fun Instruction.reference() = (this as? ReferenceInstruction)?.reference
+
+    val transformations = listOf(
+        InstructionTransformation(
+            { _, _, instruction, _ ->
+                (instruction.reference() as? StringReference)?.string?.takeIf { it == "string1" }
+            },
+            { _, _: String -> },
+            ReferenceType.STRING,
+        ),
+        InstructionTransformation(
+            { _, _, instruction, _ ->
+                (instruction.reference() as? MethodReference)?.takeIf {
+                    it.definingClass == "Landroid/provider/Settings\$Global;" && it.name == "getInt"
+                }
+            },
+            { _, _: MethodReference -> },
+            ReferenceType.METHOD,
+        ),
+        InstructionTransformation(
+            { _, _, instruction, _ ->
+                (instruction.reference() as? MethodReference)?.takeIf {
+                    it.definingClass == "Landroid/telephony/TelephonyManager;" && it.name == "getSimCountryIso"
+                }
+            },
+            { _, _: MethodReference -> },
+            ReferenceType.METHOD,
+        ),
+        InstructionTransformation(
+            { _, _, instruction, _ ->
+                (instruction.reference() as? FieldReference)?.takeIf { it.definingClass == "Landroid/os/Build;" }
+            },
+            { _, _: FieldReference -> },
+            ReferenceType.FIELD,
+        ),
+    )
+
+    return transformations.sumOf { findInstructionTransformation(classes, it).size }
+}
+
+/**
+ * Number of literals looked up by [forEachLiteralValueInstruction], like a patch using many resource ids.
+ */
+private const val LITERAL_LOOKUPS = 16
+
+/**
+ * Finds the methods and instructions of literals without creating mutable methods.
+ */
+private fun forEachLiteralValueInstruction(classes: List<ClassDef>, literalCount: Int): Int {
+    val matchingIndexes = ArrayList<Int>()
+    var matches = 0
+
+    // Literals of different frequency, from the most common to the rarest.
+    for (lookup in 0 until LITERAL_LOOKUPS) {
+        val literal = FIRST_LITERAL + lookup.toLong() * literalCount / LITERAL_LOOKUPS
+
+        findLiteralValueMethods(classes, literal).forEach { (_, method) ->
+            method.implementation!!.instructions.findLiteralValueIndices(literal, matchingIndexes)
+            matches += matchingIndexes.size
+        }
+    }
+
+    return matches
+}
+
+/**
+ * Looks up the transformed string of every string reference, like GmsCore support does.
+ */
+private fun transformStringReferences(classes: List<ClassDef>): Int {
+    val index = StringReferenceIndex { string ->
+        if (string.startsWith(TRANSFORMED_STRING_PREFIX)) string.replace("google", "revanced") else null
+    }
+    var transformed = 0
+
+    classes.forEach { classDef ->
+        if (!index.mayReferenceTransformedString(classDef)) return@forEach
+
+        classDef.methods.forEach { method ->
+            method.implementation?.instructions?.forEach { instruction ->
+                val reference = (instruction as? ReferenceInstruction)?.reference as? StringReference
+                    ?: return@forEach
+
+                if (index.getTransformedString(reference) != null) transformed++
+            }
+        }
+    }
+
+    return transformed
+}
+
+private val documentBuilderFactory = DocumentBuilderFactory.newInstance()
+
+private fun parsePublicXml(publicXml: ByteArray) =
+    parseResourceMappings(publicXml) { documentBuilderFactory.newDocumentBuilder().parse(it) }.size
+
+private val hexPatterns = List(8) { index -> ByteArray(16) { (index * 16 + it).toByte() } }
+
+/**
+ * Generates a file of the [size] with the [hexPatterns] in its second half, so most of the file must be searched.
+ */
+private fun generateHexFile(file: File, size: Long, seed: Long) {
+    require(size >= hexPatterns.size * 16L * 2) { "Hex file is too small: $size" }
+
+    val random = Random(seed)
+    file.outputStream().buffered().use { output ->
+        val chunk = ByteArray(1 shl 20)
+        var written = 0L
+
+        while (written < size) {
+            random.nextBytes(chunk)
+            // Patterns only contain bytes below 0x80, so they do not occur by chance.
+            for (index in chunk.indices) chunk[index] = (chunk[index].toInt() or 0x80).toByte()
+
+            val length = minOf(chunk.size.toLong(), size - written).toInt()
+            output.write(chunk, 0, length)
+            written += length
+        }
+    }
+
+    RandomAccessFile(file, "rw").use { randomAccessFile ->
+        val spacing = size / 2 / hexPatterns.size
+        hexPatterns.forEachIndexed { index, pattern ->
+            randomAccessFile.seek(size / 2 + index * spacing)
+            randomAccessFile.write(pattern)
+        }
+    }
+}
+
+/**
+ * Replaces patterns spread over a file, like patches of native libraries do.
+ */
+private fun hexPatch(file: File): Int {
+    file.applyReplacements(hexPatterns.map { Replacement(it, ByteArray(it.size), file.name) })
+    return hexPatterns.size
+}
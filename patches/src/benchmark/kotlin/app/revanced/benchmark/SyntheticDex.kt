@@ -0,0 +1,211 @@
+package app.revanced.benchmark
+
+import com.android.tools.smali.dexlib2.AccessFlags
+import com.android.tools.smali.dexlib2.DexFileFactory
+import com.android.tools.smali.dexlib2.Opcode
+import com.android.tools.smali.dexlib2.Opcodes
+import com.android.tools.smali.dexlib2.dexbacked.DexBackedDexFile
+import com.android.tools.smali.dexlib2.iface.instruction.Instruction
+import com.android.tools.smali.dexlib2.immutable.ImmutableClassDef
+import com.android.tools.smali.dexlib2.immutable.ImmutableMethod
+import com.android.tools.smali.dexlib2.immutable.ImmutableMethodImplementation
+import com.android.tools.smali.dexlib2.immutable.instruction.ImmutableInstruction10x
+import com.android.tools.smali.dexlib2.immutable.instruction.ImmutableInstruction21c
+import com.android.tools.smali.dexlib2.immutable.instruction.ImmutableInstruction35c
+import com.android.tools.smali.dexlib2.immutable.instruction.ImmutableInstruction51l
+import com.android.tools.smali.dexlib2.immutable.reference.ImmutableFieldReference
+import com.android.tools.smali.dexlib2.immutable.reference.ImmutableMethodReference
+import com.android.tools.smali.dexlib2.immutable.reference.ImmutableStringReference
+import com.android.tools.smali.dexlib2.writer.io.FileDataStore
+import com.android.tools.smali.dexlib2.writer.pool.DexPool
+import java.io.File
+import kotlin.math.pow
+import kotlin.random.Random
+
+/**
+ * Parameters of a generated dex file.
+ *
+ * @param classCount The number of classes.
+ * @param methodCount The number of methods of each class.
+ * @param instructionCount The number of instructions of each method.
+ * @param stringCount The number of distinct strings referenced by instructions.
+ * @param literalCount The number of distinct literal values, such as resource ids.
+ * @param literalSkew The exponent of the Zipf distribution of the literal values.
+ * Higher values make a few literals occur in most literal instructions, like common resource ids of apps.
+ * @param seed The seed of the random values.
+ */
+internal class SyntheticDexParameters(
+    val classCount: Int,
+    val methodCount: Int,
+    val instructionCount: Int,
+    val stringCount: Int,
+    val literalCount: Int,
+    val literalSkew: Double,
+    val seed: Long,
+) {
+    init {
+        // Instructions referencing strings, methods or fields use 16-bit indices.
+        require(stringCount in 1..MAX_INDEX - SYNTHETIC_STRING_OVERHEAD) { "Too many strings: $stringCount" }
+        require(classCount.toLong() * methodCount + INVOKED_METHODS.size <= MAX_INDEX) {
+            "Too many methods: ${classCount.toLong() * methodCount}"
+        }
+        require(instructionCount >= 1) { "At least one instruction is required" }
+        require(literalCount >= 1) { "At least one literal is required" }
+    }
+
+    override fun toString() = "classes=$classCount methods=$methodCount instructions=$instructionCount " +
+        "strings=$stringCount literals=$literalCount literalSkew=$literalSkew seed=$seed"
+
+    internal companion object {
+        private const val MAX_INDEX = 0xFFFF
+
+        /**
+         * Strings of the generated dex file that are not referenced by instructions, such as type names.
+         */
+        private const val SYNTHETIC_STRING_OVERHEAD = 0x1000
+    }
+}
+
+/**
+ * Prefix of a fraction of the generated strings, so string transformations have strings to match.
+ */
+internal const val TRANSFORMED_STRING_PREFIX = "com.google.android.gms."
+
+/**
+ * The first literal value, like the first resource id of an app.
+ */
+internal const val FIRST_LITERAL = 0x7f000000L
+
+/**
+ * Methods invoked by the generated instructions, with the same references as real patches match.
+ */
+internal val INVOKED_METHODS = listOf(
+    ImmutableMethodReference(
+        "Landroid/provider/Settings\$Global;",
+        "getInt",
+        listOf("Landroid/content/ContentResolver;", "Ljava/lang/String;"),
+        "I",
+    ),
+    ImmutableMethodReference(
+        "Landroid/telephony/TelephonyManager;",
+        "getSimCountryIso",
+        emptyList(),
+        "Ljava/lang/String;",
+    ),
+    ImmutableMethodReference("Ljava/lang/String;", "length", emptyList(), "I"),
+    ImmutableMethodReference("Ljava/lang/Object;", "hashCode", emptyList(), "I"),
+)
+
+/**
+ * Fields read by the generated instructions, with the same references as real patches match.
+ */
+internal val READ_FIELDS = listOf(
+    ImmutableFieldReference("Landroid/os/Build;", "MODEL", "Ljava/lang/String;"),
+    ImmutableFieldReference("Landroid/os/Build;", "MANUFACTURER", "Ljava/lang/String;"),
+    ImmutableFieldReference("Landroid/os/Build\$VERSION;", "SDK_INT", "I"),
+)
+
+/**
+ * Generates a dex file with the [parameters] to the [file] and loads it.
+ *
+ * Instructions are a mix of string constants, literal constants, method invocations and field reads,
+ * so all kinds of reference types are present like in the dex files of real apps.
+ */
+internal fun generateSyntheticDex(parameters: SyntheticDexParameters, file: File): DexBackedDexFile {
+    val random = Random(parameters.seed)
+
+    val strings = Array(parameters.stringCount) { index ->
+        // Every 64th string is transformed, like GmsCore strings in apps.
+        if (index % 64 == 0) "$TRANSFORMED_STRING_PREFIX$index" else "string$index"
+    }
+
+    // Cumulative Zipf distribution of the literal values.
+    val literalWeights = DoubleArray(parameters.literalCount) { 1.0 / (it + 1.0).pow(parameters.literalSkew) }
+    for (index in 1 until literalWeights.size) literalWeights[index] += literalWeights[index - 1]
+
+    fun randomLiteral(): Long {
+        val weight = random.nextDouble() * literalWeights.last()
+        val index = literalWeights.binarySearch(weight).let { if (it < 0) -it - 1 else it }
+        return FIRST_LITERAL + index.coerceAtMost(literalWeights.size - 1)
+    }
+
+    fun randomInstruction(): Instruction = when (random.nextInt(4)) {
+        0 -> ImmutableInstruction21c(
+            Opcode.CONST_STRING,
+            0,
+            ImmutableStringReference(strings[random.nextInt(strings.size)]),
+        )
+
+        1 -> ImmutableInstruction51l(Opcode.CONST_WIDE, 0, randomLiteral())
+
+        2 -> ImmutableInstruction35c(
+            Opcode.INVOKE_STATIC,
+            0,
+            0,
+            0,
+            0,
+            0,
+            0,
+            INVOKED_METHODS[random.nextInt(INVOKED_METHODS.size)],
+        )
+
+        else -> ImmutableInstruction21c(
+            Opcode.SGET_OBJECT,
+            0,
+            READ_FIELDS[random.nextInt(READ_FIELDS.size)],
+        )
+    }
+
+    val classes = (0 until parameters.classCount).map { classIndex ->
+        val type = "Lapp/revanced/benchmark/Synthetic$classIndex;"
+
+        val methods = (0 until parameters.methodCount).map { methodIndex ->
+            val instructions = List(parameters.instructionCount - 1) { randomInstruction() } +
+                ImmutableInstruction10x(Opcode.RETURN_VOID)
+
+            ImmutableMethod(
+                type,
+                "method$methodIndex",
+                emptyList(),
+                "V",
+                AccessFlags.PUBLIC.value or AccessFlags.STATIC.value,
+                emptySet(),
+                emptySet(),
+                ImmutableMethodImplementation(2, instructions, emptyList(), emptyList()),
+            )
+        }
+
+        ImmutableClassDef(
+            type,
+            AccessFlags.PUBLIC.value,
+            "Ljava/lang/Object;",
+            emptyList(),
+            null,
+            emptySet(),
+            emptyList(),
+            methods,
+        )
+    }
+
+    DexPool(Opcodes.getDefault()).apply {
+        classes.forEach(::internClass)
+        writeTo(FileDataStore(file))
+    }
+
+    return DexFileFactory.loadDexFile(file, Opcodes.getDefault())
+}
+
+/**
+ * Generates a public.xml file with the [count] resources.
+ */
+internal fun generateSyntheticPublicXml(count: Int) = buildString {
+    val types = listOf("id", "string", "layout", "drawable", "dimen", "color")
+
+    append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<resources>\n")
+    for (index in 0 until count) {
+        append("    <public type=\"").append(types[index % types.size])
+            .append("\" name=\"resource_").append(index)
+            .append("\" id=\"0x").append((FIRST_LITERAL + index).toString(16)).append("\" />\n")
+    }
+    append("</resources>\n")
+}.toByteArray()
@@ -8,6 +8,7 @@ import app.revanced.patches.all.misc.transformation.IMethodCall
 import app.revanced.patches.all.misc.transformation.fromMethodReference
 import app.revanced.patches.all.misc.transformation.transformInstructionsPatch
 import app.revanced.util.getReference
+import com.android.tools.smali.dexlib2.ReferenceType
 import com.android.tools.smali.dexlib2.iface.instruction.FiveRegisterInstruction
 import com.android.tools.smali.dexlib2.iface.reference.MethodReference
 
@@ -35,6 +36,7 @@ val hideMockLocationPatch = bytecodePatch(
                     "const/4 v${instruction.registerC}, 0x0",
                 )
             },
+            referenceType = ReferenceType.METHOD,
         ),
     )
 }
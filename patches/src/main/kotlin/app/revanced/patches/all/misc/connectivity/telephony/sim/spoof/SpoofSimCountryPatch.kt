@@ -6,6 +6,7 @@ import app.revanced.patcher.patch.bytecodePatch
 import app.revanced.patcher.patch.stringOption
 import app.revanced.patcher.util.proxy.mutableTypes.MutableMethod
 import app.revanced.patches.all.misc.transformation.transformInstructionsPatch
+import com.android.tools.smali.dexlib2.ReferenceType
 import com.android.tools.smali.dexlib2.iface.instruction.OneRegisterInstruction
 import com.android.tools.smali.dexlib2.iface.instruction.ReferenceInstruction
 import com.android.tools.smali.dexlib2.iface.reference.MethodReference
@@ -65,6 +66,7 @@ val spoofSimCountryPatch = bytecodePatch(
             transform = { mutableMethod, entry: Pair<Int, String> ->
                 transformMethodCall(entry, mutableMethod)
             },
+            referenceType = ReferenceType.METHOD,
         ),
     )
 }
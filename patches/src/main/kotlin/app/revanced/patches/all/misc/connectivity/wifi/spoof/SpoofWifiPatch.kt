@@ -4,6 +4,7 @@ import app.revanced.patcher.patch.bytecodePatch
 import app.revanced.patches.all.misc.transformation.IMethodCall
 import app.revanced.patches.all.misc.transformation.filterMapInstruction35c
 import app.revanced.patches.all.misc.transformation.transformInstructionsPatch
+import com.android.tools.smali.dexlib2.ReferenceType
 
 private const val EXTENSION_CLASS_DESCRIPTOR_PREFIX =
     "Lapp/revanced/extension/all/misc/connectivity/wifi/spoof/SpoofWifiPatch"
@@ -37,6 +38,7 @@ val spoofWifiPatch = bytecodePatch(
                     instructionIndex,
                 )
             },
+            referenceType = ReferenceType.METHOD,
         ),
     )
 }
@@ -3,12 +3,14 @@ package app.revanced.patches.all.misc.resources
 import app.revanced.patcher.patch.Patch
 import app.revanced.patcher.patch.PatchException
 import app.revanced.patcher.patch.resourcePatch
-import app.revanced.patcher.util.Document
 import app.revanced.util.*
 import app.revanced.util.resource.ArrayResource
 import app.revanced.util.resource.BaseResource
 import app.revanced.util.resource.StringResource
-import org.w3c.dom.Node
+import java.io.InputStream
+import java.util.stream.Collectors
+import javax.xml.stream.XMLStreamConstants
+import javax.xml.stream.XMLStreamReader
 
 /**
  * An identifier of an app. For example, `youtube`.
@@ -276,66 +278,59 @@ val addResourcesPatch = resourcePatch(
     addResourcesPatch#finalize is finally called to add all staged resources to the app.
      */
     execute {
-        stagedResources = buildMap {
-            /**
-             * Puts resources under `/resources/addresources/<value>/<resourceKind>.xml` into the map.
-             *
-             * @param sourceValue The source value of the resource. For example, `values` or `values-de-rDE`.
-             * @param destValue The destination value of the resource. For example, 'values' or 'values-de'.
-             * @param resourceKind The kind of the resource. For example, `strings` or `arrays`.
-             * @param transform A function that transforms the [Node]s from the XML files to a [BaseResource].
-             */
-            fun addResources(
-                sourceValue: Value,
-                destValue: Value = sourceValue,
-                resourceKind: String,
-                transform: (Node) -> BaseResource,
-            ) {
+        /**
+         * A bundled resource file under `/resources/addresources/<value>/<resourceKind>.xml`.
+         *
+         * @param sourceValue The source value of the resource. For example, `values` or `values-de-rDE`.
+         * @param destValue The destination value of the resource. For example, 'values' or 'values-de'.
+         * @param resourceKind The kind of the resource. For example, `strings` or `arrays`.
+         * @param transform A function that reads a resource element to a [BaseResource].
+         */
+        class BundledResourceFile(
+            val sourceValue: Value,
+            val destValue: Value,
+            val resourceKind: String,
+            val transform: (XMLStreamReader) -> BaseResource,
+        )
+
+        val files = locales.map { (source, dest) ->
+            BundledResourceFile("values-$source", "values-$dest", "strings", StringResource::fromXml)
+        } + BundledResourceFile("values", "values", "strings", StringResource::fromXml) +
+            BundledResourceFile("values", "values", "arrays", ArrayResource::fromXml)
+
+        // Stage all resources to a temporary map.
+        // Staged resources consumed by addResourcesPatch#invoke(Patch)
+        // are later used in addResourcesPatch#finalize.
+        try {
+            // Files are read in parallel, but merged in order,
+            // because multiple files can have the same destination value.
+            val fileResources = files.parallelStream().map { file ->
                 inputStreamFromBundledResource(
                     "addresources",
-                    "$sourceValue/$resourceKind.xml",
-                )?.let { stream ->
+                    "${file.sourceValue}/${file.resourceKind}.xml",
+                )?.use { stream -> readResources(stream, file.transform) }
+            }.collect(Collectors.toList())
+
+            stagedResources = buildMap {
+                files.forEachIndexed { index, file ->
+                    val resources = fileResources[index] ?: return@forEachIndexed
+
                     // Add the resources associated with the given value to the map,
                     // instead of overwriting it.
                     // This covers the example case such as adding strings and arrays of the same value.
-                    getOrPut(destValue, ::mutableMapOf).apply {
-                        document(stream).use { document ->
-                            document.getElementsByTagName("app").asSequence().forEach { app ->
-                                val appId = app.attributes.getNamedItem("id").textContent
-
-                                getOrPut(appId, ::mutableMapOf).apply {
-                                    app.forEachChildElement { patch ->
-                                        val patchId = patch.attributes.getNamedItem("id").textContent
-
-                                        getOrPut(patchId, ::mutableSetOf).apply {
-                                            patch.forEachChildElement { resourceNode ->
-                                                val resource = transform(resourceNode)
-
-                                                add(resource)
-                                            }
-                                        }
-                                    }
+                    getOrPut(file.destValue, ::mutableMapOf).apply {
+                        resources.forEach { (appId, appResources) ->
+                            getOrPut(appId, ::mutableMapOf).apply {
+                                appResources.forEach { (patchId, patchResources) ->
+                                    getOrPut(patchId, ::mutableSetOf).addAll(patchResources)
                                 }
                             }
                         }
                     }
                 }
             }
-
-            // Stage all resources to a temporary map.
-            // Staged resources consumed by addResourcesPatch#invoke(Patch)
-            // are later used in addResourcesPatch#finalize.
-            try {
-                val addStringResources = { source: Value, dest: Value ->
-                    addResources(source, dest, "strings", StringResource::fromNode)
-                }
-                locales.forEach { (source, dest) -> addStringResources("values-$source", "values-$dest") }
-                addStringResources("values", "values")
-
-                addResources("values", "values", "arrays", ArrayResource::fromNode)
-            } catch (e: Exception) {
-                throw PatchException("Failed to read resources", e)
-            }
+        } catch (e: Exception) {
+            throw PatchException("Failed to read resources", e)
         }
     }
 
@@ -344,53 +339,74 @@ val addResourcesPatch = resourcePatch(
      * This is called after all patches that depend on [addResourcesPatch] have been executed.
      */
     finalize {
-        operator fun MutableMap<String, Pair<Document, Node>>.invoke(
-            value: Value,
-            resource: BaseResource,
-        ) {
-            // TODO: Fix open-closed principle violation by modifying BaseResource#serialize so that it accepts
-            //  a Value and the map of documents. It will then get or put the document suitable for its resource type
-            //  to serialize itself to it.
-            val resourceFileName =
-                when (resource) {
-                    is StringResource -> "strings"
-                    is ArrayResource -> "arrays"
-                    else -> throw NotImplementedError("Unsupported resource type")
+        /**
+         * Gets the resource file of the [value] for resources of the [resourceFileName].
+         * Synchronized, because files of different values are written in parallel.
+         */
+        fun resourceFile(value: Value, resourceFileName: String) = synchronized(this@finalize) {
+            this@finalize["res/$value/$resourceFileName.xml"].also {
+                it.parentFile?.mkdirs()
+
+                if (it.createNewFile()) {
+                    it.writeText("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<resources>\n</resources>")
                 }
+            }
+        }
 
-            getOrPut(resourceFileName) {
-                this@finalize["res/$value/$resourceFileName.xml"].also {
-                    it.parentFile?.mkdirs()
+        // Each value has its own files, so the files of different values are written in parallel.
+        // The files are streamed instead of opened as documents,
+        // so only the added resources are kept in memory.
+        resources.entries.toList().parallelStream().forEach { (value, valueResources) ->
+            // Resources of the value mapped by the name of their file (e.g. strings, arrays).
+            // Resources of another file can be added while a file is written.
+            val pendingResources = mutableMapOf<String, MutableSet<BaseResource>>()
+            valueResources.forEach { resource ->
+                pendingResources.getOrPut(resource.resourceFileName, ::mutableSetOf).add(resource)
+            }
 
-                    if (it.createNewFile()) {
-                        it.writeText("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<resources>\n</resources>")
-                    }
-                }
- 
-                document("res/$value/$resourceFileName.xml").let { document ->
+            while (pendingResources.isNotEmpty()) {
+                val resourceFileName = pendingResources.keys.first()
+                val fileResources = pendingResources.remove(resourceFileName)!!
 
-                    // Save the target node here as well
-                    // in order to avoid having to call document.getNode("resources")
-                    // but also save the document so that it can be closed later.
-                    document to document.getNode("resources")
+                resourceFile(value, resourceFileName).appendResources(fileResources) { resource ->
+                    pendingResources.getOrPut(resource.resourceFileName, ::mutableSetOf).add(resource)
                 }
-            }.let { (_, targetNode) ->
-                targetNode.addResource(resource) { invoke(value, it) }
             }
         }
+    }
+}
 
-        resources.forEach { (value, resources) ->
-            // A map of document associated by their kind (e.g. strings, arrays).
-            // Each document is accompanied by the target node to which resources are added.
-            // A map is used because Map#getOrPut allows opening a new document for the duration of a resource value.
-            // This is done to prevent having to open the files for every resource that is added.
-            // Instead, it is cached once and reused for resources of the same value.
-            // This map is later accessed to close all documents for the current resource value.
-            val documents = mutableMapOf<String, Pair<Document, Node>>()
-
-            resources.forEach { resource -> documents(value, resource) }
+// TODO: Fix open-closed principle violation by adding the name of the resource file to BaseResource.
+private val BaseResource.resourceFileName
+    get() = when (this) {
+        is StringResource -> "strings"
+        is ArrayResource -> "arrays"
+        else -> throw NotImplementedError("Unsupported resource type")
+    }
 
-            documents.values.forEach { (document, _) -> document.close() }
+/**
+ * Reads the resources of a bundled resource file without loading it as a document.
+ *
+ * @param stream The stream of the file.
+ * @param transform A function that reads a resource element to a [BaseResource].
+ */
+private fun readResources(stream: InputStream, transform: (XMLStreamReader) -> BaseResource): Resources {
+    val resources: Resources = mutableMapOf()
+
+    val reader = stream.xmlStreamReader()
+    try {
+        while (reader.hasNext()) {
+            if (reader.next() != XMLStreamConstants.START_ELEMENT || reader.localName != "app") continue
+
+            val appResources = resources.getOrPut(reader.getAttributeValue(null, "id"), ::mutableMapOf)
+            reader.forEachChildElement {
+                val patchResources = appResources.getOrPut(reader.getAttributeValue(null, "id"), ::mutableSetOf)
+                reader.forEachChildElement { patchResources.add(transform(reader)) }
+            }
         }
+    } finally {
+        reader.close()
     }
+
+    return resources
 }
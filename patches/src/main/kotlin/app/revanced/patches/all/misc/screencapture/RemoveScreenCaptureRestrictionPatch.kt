@@ -5,6 +5,7 @@ import app.revanced.patcher.patch.resourcePatch
 import app.revanced.patches.all.misc.transformation.IMethodCall
 import app.revanced.patches.all.misc.transformation.filterMapInstruction35c
 import app.revanced.patches.all.misc.transformation.transformInstructionsPatch
+import com.android.tools.smali.dexlib2.ReferenceType
 import org.w3c.dom.Element
 
 private val removeCaptureRestrictionResourcePatch = resourcePatch(
@@ -56,6 +57,7 @@ val removeScreenCaptureRestrictionPatch = bytecodePatch(
                     instructionIndex,
                 )
             },
+            referenceType = ReferenceType.METHOD,
         ),
     )
 }
@@ -6,6 +6,7 @@ import app.revanced.patches.all.misc.transformation.IMethodCall
 import app.revanced.patches.all.misc.transformation.filterMapInstruction35c
 import app.revanced.patches.all.misc.transformation.transformInstructionsPatch
 import com.android.tools.smali.dexlib2.Opcode
+import com.android.tools.smali.dexlib2.ReferenceType
 import com.android.tools.smali.dexlib2.iface.instruction.formats.Instruction22c
 import com.android.tools.smali.dexlib2.iface.reference.FieldReference
 
@@ -41,6 +42,7 @@ val removeScreenshotRestrictionPatch = bytecodePatch(
                     instructionIndex,
                 )
             },
+            referenceType = ReferenceType.METHOD,
         ),
         // Modify layout params.
         transformInstructionsPatch(
@@ -70,6 +72,7 @@ val removeScreenshotRestrictionPatch = bytecodePatch(
                     "and-int/lit16 v$register, v$register, -0x2001",
                 )
             },
+            referenceType = ReferenceType.FIELD,
         ),
     )
 }
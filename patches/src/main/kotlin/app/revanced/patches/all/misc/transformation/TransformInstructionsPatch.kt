@@ -1,49 +1,105 @@
 package app.revanced.patches.all.misc.transformation
 
 import app.revanced.patcher.patch.bytecodePatch
+import app.revanced.patcher.util.proxy.mutableTypes.MutableClass
 import app.revanced.patcher.util.proxy.mutableTypes.MutableMethod
+import app.revanced.util.ParallelClassAnalysis
+import app.revanced.util.PatchProfiler
 import app.revanced.util.findMutableMethodOf
+import com.android.tools.smali.dexlib2.ReferenceType
 import com.android.tools.smali.dexlib2.iface.ClassDef
 import com.android.tools.smali.dexlib2.iface.Method
 import com.android.tools.smali.dexlib2.iface.instruction.Instruction
 
+/**
+ * Transforms all instructions matched by [filterMap].
+ *
+ * Classes are searched for matching methods in parallel, then the matching methods are transformed.
+ *
+ * @param filterMap Returns a value to pass to [transform] if the instruction should be transformed, or null.
+ * @param transform Transforms the method for a value returned by [filterMap].
+ * Called in reverse order of the instruction indices, so the indices of values not yet transformed stay valid.
+ * @param referenceType The [ReferenceType] of all instructions [filterMap] can match,
+ * or null if [filterMap] must be called for every instruction.
+ */
 fun <T> transformInstructionsPatch(
     filterMap: (ClassDef, Method, Instruction, Int) -> T?,
     transform: (MutableMethod, T) -> Unit,
+    referenceType: Int? = null,
 ) = bytecodePatch {
-    // Returns the patch indices as a Sequence, which will execute lazily.
-    fun findPatchIndices(classDef: ClassDef, method: Method): Sequence<T>? =
-        method.implementation?.instructions?.asSequence()?.withIndex()?.mapNotNull { (index, instruction) ->
-        filterMap(classDef, method, instruction, index)
+    execute {
+        val transformation = InstructionTransformation(filterMap, transform, referenceType)
+
+        // Transforming modifies the class proxies, which is not thread safe.
+        PatchProfiler.section("transformInstructions", classes.size) {
+            applyInstructionTransformation(classes, transformation) { proxy(it).mutableClass }
+        }
     }
+}
 
-    execute {
-        // Find all methods to patch
-        buildMap {
-            classes.forEach { classDef ->
-                val methods = buildList {
-                    classDef.methods.forEach { method ->
-                        // Since the Sequence executes lazily,
-                        // using any() results in only calling
-                        // filterMap until the first index has been found.
-                        if (findPatchIndices(classDef, method)?.any() == true) add(method)
-                    }
-                }
+/**
+ * The filter and transform of a [transformInstructionsPatch].
+ */
+internal class InstructionTransformation<T>(
+    private val filterMap: (ClassDef, Method, Instruction, Int) -> T?,
+    private val transform: (MutableMethod, T) -> Unit,
+    val referenceType: Int?,
+) {
+    fun matches(classDef: ClassDef, method: Method, instruction: Instruction, index: Int) =
+        (referenceType == null || instruction.opcode.referenceType == referenceType) &&
+            filterMap(classDef, method, instruction, index) != null
 
-                if (methods.isNotEmpty()) {
-                    put(classDef, methods)
+    fun transform(mutableClass: MutableClass, mutableMethod: MutableMethod) {
+        val patchIndices = mutableMethod.implementation?.instructions?.withIndex()
+            ?.mapNotNullTo(ArrayDeque()) { (index, instruction) ->
+                if (referenceType != null && instruction.opcode.referenceType != referenceType) {
+                    null
+                } else {
+                    filterMap(mutableClass, mutableMethod, instruction, index)
                 }
-            }
-        }.forEach { (classDef, methods) ->
-            // And finally transform the methods...
-            val mutableClass = proxy(classDef).mutableClass
+            } ?: return
+
+        while (patchIndices.isNotEmpty()) transform(mutableMethod, patchIndices.removeLast())
+    }
+}
 
-            methods.map(mutableClass::findMutableMethodOf).forEach methods@{ mutableMethod ->
-                val patchIndices = findPatchIndices(mutableClass, mutableMethod)?.toCollection(ArrayDeque())
-                    ?: return@methods
+/**
+ * Transforms the methods found by [findInstructionTransformation].
+ *
+ * The methods are found in [classes], but transformed in their mutable class,
+ * so instructions changed by patches that executed before are transformed as they are now.
+ */
+internal fun applyInstructionTransformation(
+    classes: List<ClassDef>,
+    transformation: InstructionTransformation<*>,
+    mutableClassOf: (ClassDef) -> MutableClass,
+) {
+    findInstructionTransformation(classes, transformation).forEach { (classDef, methods) ->
+        val mutableClass = mutableClassOf(classDef)
 
-                while (!patchIndices.isEmpty()) transform(mutableMethod, patchIndices.removeLast())
-            }
+        methods.forEach { method ->
+            transformation.transform(mutableClass, mutableClass.findMutableMethodOf(method))
         }
     }
 }
+
+/**
+ * Finds the methods with any instruction matched by the [transformation].
+ * Classes are searched with [ParallelClassAnalysis], since searching only reads the classes.
+ *
+ * @return The classes with matching methods, in the order of [classes].
+ */
+internal fun findInstructionTransformation(
+    classes: List<ClassDef>,
+    transformation: InstructionTransformation<*>,
+): List<Pair<ClassDef, List<Method>>> {
+    fun findMethods(classDef: ClassDef) = classDef.methods.filter { method ->
+        method.implementation?.instructions?.withIndex()?.any { (index, instruction) ->
+            transformation.matches(classDef, method, instruction, index)
+        } == true
+    }
+
+    return ParallelClassAnalysis.analyze(classes) { classDef, results ->
+        findMethods(classDef).takeIf { it.isNotEmpty() }?.let { results += classDef to it }
+    }
+}
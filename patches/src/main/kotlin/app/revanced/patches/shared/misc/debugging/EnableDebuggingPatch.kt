@@ -92,6 +92,12 @@ internal fun enableDebuggingPatch(
                     "revanced_debug_feature_flags_manager",
                     tag = "app.revanced.extension.shared.settings.preference.FeatureFlagsManagerPreference",
                     selectable = true
+                ),
+                SwitchPreference("revanced_debug_feature_flag_access_counts"),
+                NonInteractivePreference(
+                    "revanced_debug_network_metrics",
+                    tag = "app.revanced.extension.shared.settings.preference.RequestMetricsPreference",
+                    selectable = true
                 )
             )
         )
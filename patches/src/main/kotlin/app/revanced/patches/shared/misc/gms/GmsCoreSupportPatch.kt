@@ -20,10 +20,15 @@ import app.revanced.patches.all.misc.resources.addResourcesPatch
 import app.revanced.patches.shared.misc.gms.Constants.ACTIONS
 import app.revanced.patches.shared.misc.gms.Constants.AUTHORITIES
 import app.revanced.patches.shared.misc.gms.Constants.PERMISSIONS
+import app.revanced.util.PatchProfiler
 import app.revanced.util.getReference
 import app.revanced.util.returnEarly
 import com.android.tools.smali.dexlib2.Opcode
 import com.android.tools.smali.dexlib2.builder.instruction.BuilderInstruction21c
+import com.android.tools.smali.dexlib2.dexbacked.DexBackedClassDef
+import com.android.tools.smali.dexlib2.dexbacked.DexBackedDexFile
+import com.android.tools.smali.dexlib2.dexbacked.reference.DexBackedStringReference
+import com.android.tools.smali.dexlib2.iface.ClassDef
 import com.android.tools.smali.dexlib2.iface.instruction.OneRegisterInstruction
 import com.android.tools.smali.dexlib2.iface.instruction.formats.Instruction21c
 import com.android.tools.smali.dexlib2.iface.reference.StringReference
@@ -31,6 +36,8 @@ import com.android.tools.smali.dexlib2.immutable.reference.ImmutableStringRefere
 import com.android.tools.smali.dexlib2.util.MethodUtil
 import org.w3c.dom.Element
 import org.w3c.dom.Node
+import java.util.BitSet
+import java.util.IdentityHashMap
 
 internal const val EXTENSION_CLASS_DESCRIPTOR = "Lapp/revanced/extension/shared/GmsCoreSupport;"
 
@@ -87,27 +94,39 @@ fun gmsCoreSupportPatch(
     val gmsCoreVendorGroupId by gmsCoreVendorGroupIdOption
 
     execute {
-        fun transformStringReferences(transform: (str: String) -> String?) = classes.forEach {
+        fun transformStringReferences(transform: (str: String) -> String?) =
+            PatchProfiler.section("GmsCore transformStringReferences", classes.size) {
+                val index = StringReferenceIndex(transform)
+
+                classes.forEach {
+                    // Most classes are in dex files without any string to transform.
+                    if (!index.mayReferenceTransformedString(it)) return@forEach
+
+                    transformClassStringReferences(it, index)
+                }
+            }
+
+        fun transformClassStringReferences(classDef: ClassDef, index: StringReferenceIndex) {
             val mutableClass by lazy {
-                proxy(it).mutableClass
+                proxy(classDef).mutableClass
             }
 
-            it.methods.forEach classLoop@{ method ->
+            classDef.methods.forEach classLoop@{ method ->
                 val implementation = method.implementation ?: return@classLoop
 
                 val mutableMethod by lazy {
                     mutableClass.methods.first { MethodUtil.methodSignaturesMatch(it, method) }
                 }
 
-                implementation.instructions.forEachIndexed insnLoop@{ index, instruction ->
-                    val string = ((instruction as? Instruction21c)?.reference as? StringReference)?.string
+                implementation.instructions.forEachIndexed insnLoop@{ instructionIndex, instruction ->
+                    val reference = (instruction as? Instruction21c)?.reference as? StringReference
                         ?: return@insnLoop
 
                     // Apply transformation.
-                    val transformedString = transform(string) ?: return@insnLoop
+                    val transformedString = index.getTransformedString(reference) ?: return@insnLoop
 
                     mutableMethod.replaceInstruction(
-                        index,
+                        instructionIndex,
                         BuilderInstruction21c(
                             Opcode.CONST_STRING,
                             instruction.registerA,
@@ -120,17 +139,14 @@ fun gmsCoreSupportPatch(
 
         // region Collection of transformations that are applied to all strings.
 
-        fun commonTransform(referencedString: String): String? = when (referencedString) {
-            "com.google",
-            "com.google.android.gms",
-            in PERMISSIONS,
-            in ACTIONS,
-            in AUTHORITIES,
-            -> referencedString.replace("com.google", gmsCoreVendorGroupId!!)
+        // Strings that are transformed as a whole, mapped to the transformed string.
+        fun commonReplacements() = buildMap {
+            (listOf("com.google", "com.google.android.gms") + PERMISSIONS + ACTIONS + AUTHORITIES).forEach {
+                put(it, it.replace("com.google", gmsCoreVendorGroupId!!))
+            }
 
             // No vendor prefix for whatever reason...
-            "subscribedfeeds" -> "$gmsCoreVendorGroupId.subscribedfeeds"
-            else -> null
+            put("subscribedfeeds", "$gmsCoreVendorGroupId.subscribedfeeds")
         }
 
         fun contentUrisTransform(str: String): String? {
@@ -157,15 +173,10 @@ fun gmsCoreSupportPatch(
             return null
         }
 
-        fun packageNameTransform(fromPackageName: String, toPackageName: String): (String) -> String? = { string ->
-            when (string) {
-                "$fromPackageName.SuggestionProvider",
-                "$fromPackageName.fileprovider",
-                -> string.replace(fromPackageName, toPackageName)
-
-                else -> null
+        fun packageNameReplacements(fromPackageName: String, toPackageName: String) =
+            listOf("$fromPackageName.SuggestionProvider", "$fromPackageName.fileprovider").associateWith {
+                it.replace(fromPackageName, toPackageName)
             }
-        }
 
         fun transformPrimeMethod(packageName: String) {
             primeMethodFingerprint!!.method.apply {
@@ -186,18 +197,12 @@ fun gmsCoreSupportPatch(
 
         val packageName = setOrGetFallbackPackageName(toPackageName)
 
-        // Transform all strings using all provided transforms, first match wins.
-        val transformations = arrayOf(
-            ::commonTransform,
-            ::contentUrisTransform,
-            packageNameTransform(fromPackageName, packageName),
-        )
-        transformStringReferences transform@{ string ->
-            transformations.forEach { transform ->
-                transform(string)?.let { transformedString -> return@transform transformedString }
-            }
+        // Common replacements take precedence over package name replacements.
+        val replacements = packageNameReplacements(fromPackageName, packageName) + commonReplacements()
 
-            return@transform null
+        // Transform all strings, most strings are neither replaced nor a content URI.
+        transformStringReferences { string ->
+            replacements[string] ?: contentUrisTransform(string)
         }
 
         // Specific method that needs to be patched.
@@ -231,6 +236,54 @@ fun gmsCoreSupportPatch(
     block()
 }
 
+/**
+ * Checks each unique string of the app once instead of the string of every instruction.
+ *
+ * The strings of each dex file are transformed once, and instructions
+ * then only look up the index of their string reference.
+ *
+ * @param transform Returns the transformed string, or null if the string is not transformed.
+ */
+internal class StringReferenceIndex(private val transform: (String) -> String?) {
+    private val transformedStringIndices = IdentityHashMap<DexBackedDexFile, BitSet>()
+    private val transformedStrings = HashMap<String, String?>()
+
+    private fun getTransformedStringIndices(dexFile: DexBackedDexFile) =
+        transformedStringIndices.getOrPut(dexFile) {
+            val strings = dexFile.stringSection
+            BitSet(strings.size).apply {
+                for (stringIndex in 0 until strings.size) {
+                    val string = strings[stringIndex]
+                    val transformedString = transform(string) ?: continue
+
+                    set(stringIndex)
+                    transformedStrings[string] = transformedString
+                }
+            }
+        }
+
+    /**
+     * @return False if the class can not reference any string that is transformed.
+     */
+    fun mayReferenceTransformedString(classDef: ClassDef) =
+        classDef !is DexBackedClassDef || !getTransformedStringIndices(classDef.dexFile).isEmpty
+
+    /**
+     * @return The transformed string, or null if the string is not transformed.
+     */
+    fun getTransformedString(reference: StringReference): String? {
+        if (reference is DexBackedStringReference) {
+            if (!getTransformedStringIndices(reference.dexFile)[reference.stringIndex]) return null
+            return transformedStrings[reference.string]
+        }
+
+        // Strings added by other patches are not in the string section of a dex file.
+        val string = reference.string
+        if (string !in transformedStrings) transformedStrings[string] = transform(string)
+        return transformedStrings[string]
+    }
+}
+
 /**
  * A collection of permissions, intents and content provider authorities
  * that are present in GmsCore which need to be transformed.
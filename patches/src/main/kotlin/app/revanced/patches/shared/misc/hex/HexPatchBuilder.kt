@@ -2,9 +2,9 @@ package app.revanced.patches.shared.misc.hex
 
 import app.revanced.patcher.patch.PatchException
 import app.revanced.patcher.patch.rawResourcePatch
+import app.revanced.util.PatchProfiler
 import kotlin.collections.component1
 import kotlin.collections.component2
-import kotlin.math.max
 
 fun hexPatch(ignoreMissingTargetFiles: Boolean = false, block: HexPatchBuilder.() -> Unit) =
     hexPatch(ignoreMissingTargetFiles, fun(): Set<Replacement> = HexPatchBuilder().apply(block))
@@ -48,11 +48,9 @@ fun hexPatch(ignoreMissingTargetFiles: Boolean = false, replacementsSupplier: ()
                 val targetFile = get(targetFilePath, true)
                 if (ignoreMissingTargetFiles && !targetFile.exists()) return@forEach
 
-                // TODO: Use a file channel to read and write the file instead of reading the whole file into memory,
-                //  in order to reduce memory usage.
-                val targetFileBytes = targetFile.readBytes()
-                replacements.forEach { it.replacePattern(targetFileBytes) }
-                targetFile.writeBytes(targetFileBytes)
+                PatchProfiler.section("hexPatch") {
+                    targetFile.applyReplacements(replacements)
+                }
             }
         }
     }
@@ -65,7 +63,7 @@ fun hexPatch(ignoreMissingTargetFiles: Boolean = false, replacementsSupplier: ()
  * @property targetFilePath The path to the file to make the changes in relative to the APK root.
  */
 class Replacement(
-    private val bytes: ByteArray,
+    internal val bytes: ByteArray,
     replacementBytes: ByteArray,
     internal val targetFilePath: String,
 ) {
@@ -81,60 +79,6 @@ class Replacement(
         byteArrayOf(replacementPattern),
         targetFilePath
     )
-
-    /**
-     * Replaces the [bytes] with the [replacementBytes] in the [targetFileBytes].
-     *
-     * @param targetFileBytes The bytes of the file to make the changes in.
-     */
-    internal fun replacePattern(targetFileBytes: ByteArray) {
-        val startIndex = indexOfPatternIn(targetFileBytes)
-
-        if (startIndex == -1) {
-            throw PatchException(
-                "Pattern not found in target file: " +
-                        bytes.joinToString(" ") { "%02x".format(it) }
-            )
-        }
-
-        replacementBytesPadded.copyInto(targetFileBytes, startIndex)
-    }
-
-    // TODO: Allow searching in a file channel instead of a byte array to reduce memory usage.
-    /**
-     * Returns the index of the first occurrence of [bytes] in the haystack
-     * using the Boyer-Moore algorithm.
-     *
-     * @param haystack The array to search in.
-     *
-     * @return The index of the first occurrence of the [bytes] in the haystack or -1
-     * if the [bytes] is not found.
-     */
-    private fun indexOfPatternIn(haystack: ByteArray): Int {
-        val needle = bytes
-
-        val haystackLength = haystack.size - 1
-        val needleLength = needle.size - 1
-        val right = IntArray(256) { -1 }
-
-        for (i in 0 until needleLength) right[needle[i].toInt().and(0xFF)] = i
-
-        var skip: Int
-        for (i in 0..haystackLength - needleLength) {
-            skip = 0
-
-            for (j in needleLength - 1 downTo 0) {
-                if (needle[j] != haystack[i + j]) {
-                    skip = max(1, j - right[haystack[i + j].toInt().and(0xFF)])
-
-                    break
-                }
-            }
-
-            if (skip == 0) return i
-        }
-        return -1
-    }
 }
 
 /**
@@ -0,0 +1,228 @@
+package app.revanced.patches.shared.misc.hex
+
+import app.revanced.patcher.patch.PatchException
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import kotlin.math.max
+
+/**
+ * Size of the buffer used to read the target file.
+ */
+private const val CHUNK_SIZE = 1 shl 20
+
+/**
+ * Applies the [replacements] to this file.
+ *
+ * The first occurrence of every pattern is found in a single read of the file,
+ * and only the replaced bytes are written back.
+ * The result is the same as applying the replacements one after another
+ * to the whole file in the order of the list.
+ *
+ * @param replacements The replacements to apply.
+ * @throws PatchException If a pattern is not found.
+ */
+internal fun File.applyReplacements(replacements: List<Replacement>) {
+    FileChannel.open(toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE).use { channel ->
+        val positions = MultiPatternMatcher(replacements.map { it.bytes }).findFirstOccurrences(channel)
+
+        replacements.forEachIndexed { index, replacement ->
+            val position = positions[index]
+            if (position == -1L) {
+                throw PatchException(
+                    "Pattern not found in target file: " +
+                        replacement.bytes.joinToString(" ") { "%02x".format(it) },
+                )
+            }
+
+            channel.writeFully(replacement.replacementBytesPadded, position)
+
+            // A later pattern may now occur earlier than found, or its first occurrence may have been replaced.
+            // Search again only if any window of the later pattern that overlaps the written bytes
+            // starts before or at the later pattern's first occurrence.
+            for (laterIndex in index + 1 until replacements.size) {
+                val laterPattern = replacements[laterIndex].bytes
+                val windowStart = max(0L, position - laterPattern.size + 1)
+                val laterPosition = positions[laterIndex]
+
+                if (laterPosition == -1L || windowStart <= laterPosition) {
+                    positions[laterIndex] = channel.indexOf(
+                        laterPattern,
+                        windowStart,
+                        // If the pattern was not found before, it can only occur overlapping the written bytes.
+                        if (laterPosition == -1L) position + replacement.bytes.size else Long.MAX_VALUE,
+                    )
+                }
+            }
+        }
+    }
+}
+
+/**
+ * Finds the first occurrence of multiple byte patterns in a single pass using the Aho-Corasick algorithm.
+ *
+ * @param patterns The patterns to search for.
+ */
+private class MultiPatternMatcher(private val patterns: List<ByteArray>) {
+    /**
+     * State transitions for every byte value. The transitions of state `s` start at index `s * 256`.
+     */
+    private val transitions: IntArray
+
+    /**
+     * The indices of the patterns that end at each state, including patterns that are suffixes of other patterns.
+     */
+    private val outputs: Array<IntArray>
+
+    init {
+        val trie = mutableListOf(IntArray(256) { -1 })
+        val trieOutputs = mutableListOf(mutableListOf<Int>())
+
+        patterns.forEachIndexed { patternIndex, pattern ->
+            var state = 0
+            for (byte in pattern) {
+                val value = byte.toInt() and 0xFF
+                if (trie[state][value] == -1) {
+                    trie[state][value] = trie.size
+                    trie += IntArray(256) { -1 }
+                    trieOutputs += mutableListOf<Int>()
+                }
+                state = trie[state][value]
+            }
+            trieOutputs[state].add(patternIndex)
+        }
+
+        // Breadth first, so the failure state of each state is complete before it is used.
+        val failure = IntArray(trie.size)
+        val queue = ArrayDeque<Int>()
+        for (value in 0 until 256) {
+            val next = trie[0][value]
+            if (next == -1) {
+                trie[0][value] = 0
+            } else {
+                queue += next
+            }
+        }
+
+        while (queue.isNotEmpty()) {
+            val state = queue.removeFirst()
+            trieOutputs[state].addAll(trieOutputs[failure[state]])
+
+            for (value in 0 until 256) {
+                val next = trie[state][value]
+                if (next == -1) {
+                    trie[state][value] = trie[failure[state]][value]
+                } else {
+                    failure[next] = trie[failure[state]][value]
+                    queue += next
+                }
+            }
+        }
+
+        transitions = IntArray(trie.size * 256)
+        trie.forEachIndexed { state, stateTransitions -> stateTransitions.copyInto(transitions, state * 256) }
+        outputs = Array(trie.size) { trieOutputs[it].toIntArray() }
+    }
+
+    /**
+     * @return The position of the first occurrence of each pattern in the channel, or -1 if not found.
+     */
+    fun findFirstOccurrences(channel: FileChannel): LongArray {
+        val positions = LongArray(patterns.size) { -1 }
+        var remaining = patterns.size
+
+        // An empty pattern is found at the start.
+        patterns.forEachIndexed { index, pattern ->
+            if (pattern.isEmpty()) {
+                positions[index] = 0
+                remaining--
+            }
+        }
+
+        val buffer = ByteArray(CHUNK_SIZE)
+        var chunkStart = 0L
+        var state = 0
+
+        while (remaining > 0) {
+            val length = channel.readFully(buffer, chunkStart)
+            if (length <= 0) break
+
+            for (i in 0 until length) {
+                state = transitions[(state shl 8) or (buffer[i].toInt() and 0xFF)]
+
+                for (patternIndex in outputs[state]) {
+                    if (positions[patternIndex] != -1L) continue
+
+                    positions[patternIndex] = chunkStart + i - patterns[patternIndex].size + 1
+                    if (--remaining == 0) return positions
+                }
+            }
+
+            chunkStart += length
+        }
+
+        return positions
+    }
+}
+
+/**
+ * Returns the position of the first occurrence of the [pattern] in this channel
+ * using the Boyer-Moore-Horspool algorithm.
+ *
+ * @param pattern The pattern to search for.
+ * @param from The position to start searching at.
+ * @param untilStart Occurrences starting at or after this position are ignored.
+ * @return The position of the first occurrence of the [pattern] or -1 if the [pattern] is not found.
+ */
+private fun FileChannel.indexOf(pattern: ByteArray, from: Long, untilStart: Long): Long {
+    val patternLength = pattern.size
+    if (patternLength == 0) return from
+
+    val skip = IntArray(256) { patternLength }
+    for (i in 0 until patternLength - 1) skip[pattern[i].toInt() and 0xFF] = patternLength - 1 - i
+
+    val size = size()
+    val buffer = ByteArray(max(CHUNK_SIZE, patternLength))
+    var chunkStart = from
+
+    while (chunkStart + patternLength <= size && chunkStart < untilStart) {
+        val length = readFully(buffer, chunkStart)
+
+        var i = 0
+        while (i + patternLength <= length) {
+            if (chunkStart + i >= untilStart) return -1
+
+            var j = patternLength - 1
+            while (j >= 0 && buffer[i + j] == pattern[j]) j--
+            if (j < 0) return chunkStart + i
+
+            i += skip[buffer[i + patternLength - 1].toInt() and 0xFF]
+        }
+
+        // Continue at the first position that was not checked.
+        chunkStart += i
+    }
+
+    return -1
+}
+
+/**
+ * Reads bytes into the [buffer] until it is full or the end of the channel is reached.
+ *
+ * @return The number of bytes read.
+ */
+private fun FileChannel.readFully(buffer: ByteArray, position: Long): Int {
+    val byteBuffer = ByteBuffer.wrap(buffer)
+    while (byteBuffer.hasRemaining()) {
+        if (read(byteBuffer, position + byteBuffer.position()) < 0) break
+    }
+    return byteBuffer.position()
+}
+
+private fun FileChannel.writeFully(bytes: ByteArray, position: Long) {
+    val byteBuffer = ByteBuffer.wrap(bytes)
+    while (byteBuffer.hasRemaining()) {
+        write(byteBuffer, position + byteBuffer.position())
+    }
+}
@@ -2,7 +2,12 @@ package app.revanced.patches.shared.misc.mapping
 
 import app.revanced.patcher.patch.PatchException
 import app.revanced.patcher.patch.resourcePatch
+import app.revanced.util.PatchCache
+import app.revanced.util.PatchProfiler
+import org.w3c.dom.Document
 import org.w3c.dom.Element
+import java.io.Closeable
+import java.io.InputStream
 import java.util.*
 import java.util.concurrent.Executors
 import java.util.concurrent.TimeUnit
@@ -12,53 +17,86 @@ lateinit var resourceMappings: List<ResourceElement>
     private set
 
 val resourceMappingPatch = resourcePatch {
-    val resourceMappings = Collections.synchronizedList(mutableListOf<ResourceElement>())
-
     execute {
-        val threadCount = Runtime.getRuntime().availableProcessors()
-        val threadPoolExecutor = Executors.newFixedThreadPool(threadCount)
-
         // Save the file in memory to concurrently read from it.
         val resourceXmlFile = get("res/values/public.xml").readBytes()
 
-        for (threadIndex in 0 until threadCount) {
-            threadPoolExecutor.execute thread@{
-                document(resourceXmlFile.inputStream()).use { document ->
+        resourceMappings = PatchCache.getOrPut(
+            "resourceMappings",
+            { PatchCache.sha256(resourceXmlFile) },
+            readValue = { List(readInt()) { ResourceElement(readUTF(), readUTF(), readLong()) } },
+            writeValue = { resourceMappings ->
+                writeInt(resourceMappings.size)
+                resourceMappings.forEach {
+                    writeUTF(it.type)
+                    writeUTF(it.name)
+                    writeLong(it.id)
+                }
+            },
+        ) {
+            parseResourceMappings(resourceXmlFile) { document(it) }
+        }
+    }
+}
 
-                    val resources = document.documentElement.childNodes
-                    val resourcesLength = resources.length
-                    val jobSize = resourcesLength / threadCount
+/**
+ * Parses the resource mappings of a public.xml file using all processors.
+ *
+ * @param resourceXmlFile The contents of the public.xml file.
+ * @param openDocument Opens a document of the file for each thread.
+ * The document is closed after parsing if it is [Closeable].
+ */
+internal fun parseResourceMappings(
+    resourceXmlFile: ByteArray,
+    openDocument: (InputStream) -> Document,
+): List<ResourceElement> {
+    val resourceMappings = Collections.synchronizedList(mutableListOf<ResourceElement>())
+
+    val threadCount = Runtime.getRuntime().availableProcessors()
+    val threadPoolExecutor = Executors.newFixedThreadPool(threadCount)
+
+    for (threadIndex in 0 until threadCount) {
+        threadPoolExecutor.execute thread@{
+            val document = openDocument(resourceXmlFile.inputStream())
 
-                    val batchStart = jobSize * threadIndex
-                    val batchEnd = jobSize * (threadIndex + 1)
-                    element@ for (i in batchStart until batchEnd) {
-                        // Prevent out of bounds.
-                        if (i >= resourcesLength) return@thread
+            try {
+                val resources = document.documentElement.childNodes
+                val resourcesLength = resources.length
+                val jobSize = resourcesLength / threadCount
 
-                        val node = resources.item(i)
-                        if (node !is Element) continue
+                val batchStart = jobSize * threadIndex
+                val batchEnd = jobSize * (threadIndex + 1)
+                element@ for (i in batchStart until batchEnd) {
+                    // Prevent out of bounds.
+                    if (i >= resourcesLength) return@thread
 
-                        val nameAttribute = node.getAttribute("name")
-                        val typeAttribute = node.getAttribute("type")
+                    val node = resources.item(i)
+                    if (node !is Element) continue
 
-                        if (node.nodeName != "public" || nameAttribute.startsWith("APKTOOL")) continue
+                    val nameAttribute = node.getAttribute("name")
+                    val typeAttribute = node.getAttribute("type")
 
-                        val id = node.getAttribute("id").substring(2).toLong(16)
+                    if (node.nodeName != "public" || nameAttribute.startsWith("APKTOOL")) continue
 
-                        resourceMappings.add(ResourceElement(typeAttribute, nameAttribute, id))
-                    }
+                    val id = node.getAttribute("id").substring(2).toLong(16)
+
+                    resourceMappings.add(ResourceElement(typeAttribute, nameAttribute, id))
                 }
+            } finally {
+                (document as? Closeable)?.close()
             }
         }
+    }
 
-        threadPoolExecutor.also { it.shutdown() }.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS)
+    threadPoolExecutor.also { it.shutdown() }.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS)
 
-        app.revanced.patches.shared.misc.mapping.resourceMappings = resourceMappings
-    }
+    return resourceMappings
 }
 
-operator fun List<ResourceElement>.get(type: String, name: String) = resourceMappings.firstOrNull {
-    it.type == type && it.name == name
-}?.id ?: throw PatchException("Could not find resource type: $type name: $name")
+operator fun List<ResourceElement>.get(type: String, name: String) = PatchProfiler.section("resourceMappings[]") {
+    resourceMappings.firstOrNull {
+        it.type == type && it.name == name
+    }?.id
+} ?: throw PatchException("Could not find resource type: $type name: $name")
 
 data class ResourceElement internal constructor(val type: String, val name: String, val id: Long)
@@ -8,6 +8,7 @@ import app.revanced.patches.all.misc.transformation.transformInstructionsPatch
 import app.revanced.util.getReference
 import app.revanced.util.indexOfFirstInstruction
 import com.android.tools.smali.dexlib2.Opcode
+import com.android.tools.smali.dexlib2.ReferenceType
 import com.android.tools.smali.dexlib2.iface.instruction.OneRegisterInstruction
 import com.android.tools.smali.dexlib2.iface.reference.MethodReference
 import com.android.tools.smali.dexlib2.iface.reference.StringReference
@@ -63,6 +64,7 @@ fun userAgentClientSpoofPatch(originalPackageName: String) = transformInstructio
             )
         }
     },
+    referenceType = ReferenceType.METHOD,
 )
 
 @Suppress("unused")
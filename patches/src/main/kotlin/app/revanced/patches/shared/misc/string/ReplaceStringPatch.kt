@@ -34,6 +34,7 @@ fun replaceStringPatch(
                     "${instruction.opcode.name} v${instruction.registerA}, \"$newString\"",
                 )
             },
+            referenceType = ReferenceType.STRING,
         )
     )
 }
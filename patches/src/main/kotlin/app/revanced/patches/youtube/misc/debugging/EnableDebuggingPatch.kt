@@ -2,6 +2,7 @@ package app.revanced.patches.youtube.misc.debugging
 
 import app.revanced.patches.all.misc.resources.addResources
 import app.revanced.patches.shared.misc.debugging.enableDebuggingPatch
+import app.revanced.patches.shared.misc.settings.preference.NonInteractivePreference
 import app.revanced.patches.shared.misc.settings.preference.SwitchPreference
 import app.revanced.patches.youtube.misc.extension.sharedExtensionPatch
 import app.revanced.patches.youtube.misc.settings.PreferenceScreen
@@ -29,5 +30,19 @@ val enableDebuggingPatch = enableDebuggingPatch(
     },
     hookStringFeatureFlag = true,
     preferenceScreen = PreferenceScreen.MISC,
-    additionalDebugPreferences = listOf(SwitchPreference("revanced_debug_protobuffer"))
+    additionalDebugPreferences = listOf(
+        SwitchPreference("revanced_debug_protobuffer"),
+        SwitchPreference("revanced_debug_litho_capture"),
+        NonInteractivePreference(
+            "revanced_debug_litho_replay",
+            tag = "app.revanced.extension.youtube.settings.preference.LithoFilterReplayPreference",
+            selectable = true
+        ),
+        SwitchPreference("revanced_debug_litho_filter_metrics"),
+        NonInteractivePreference(
+            "revanced_debug_litho_filter_metrics_show",
+            tag = "app.revanced.extension.youtube.settings.preference.LithoFilterMetricsPreference",
+            selectable = true
+        ),
+    )
 )
@@ -6,6 +6,7 @@ import app.revanced.patches.all.misc.resources.addResources
 import app.revanced.patches.all.misc.transformation.transformInstructionsPatch
 import app.revanced.patches.shared.misc.settings.preference.SwitchPreference
 import app.revanced.patches.youtube.misc.settings.PreferenceScreen
+import com.android.tools.smali.dexlib2.ReferenceType
 import com.android.tools.smali.dexlib2.iface.instruction.OneRegisterInstruction
 import com.android.tools.smali.dexlib2.iface.instruction.ReferenceInstruction
 import com.android.tools.smali.dexlib2.iface.reference.StringReference
@@ -36,6 +37,7 @@ val openLinksExternallyPatch = bytecodePatch(
                     """,
                 )
             },
+            referenceType = ReferenceType.STRING,
         ),
     )
 
@@ -23,6 +23,8 @@ import app.revanced.util.InstructionUtils.Companion.writeOpcodes
 import com.android.tools.smali.dexlib2.AccessFlags
 import com.android.tools.smali.dexlib2.Opcode
 import com.android.tools.smali.dexlib2.Opcode.*
+import com.android.tools.smali.dexlib2.dexbacked.DexBackedClassDef
+import com.android.tools.smali.dexlib2.iface.ClassDef
 import com.android.tools.smali.dexlib2.iface.Method
 import com.android.tools.smali.dexlib2.iface.instruction.FiveRegisterInstruction
 import com.android.tools.smali.dexlib2.iface.instruction.Instruction
@@ -38,7 +40,9 @@ import com.android.tools.smali.dexlib2.iface.reference.Reference
 import com.android.tools.smali.dexlib2.iface.reference.StringReference
 import com.android.tools.smali.dexlib2.immutable.ImmutableField
 import com.android.tools.smali.dexlib2.util.MethodUtil
+import com.android.tools.smali.dexlib2.util.ReferenceUtil
 import java.util.EnumSet
+import java.util.WeakHashMap
 
 /**
  * Starting from and including the instruction at index [startIndex],
@@ -540,12 +544,66 @@ fun Method.containsLiteralInstruction(literal: Double) = indexOfFirstLiteralInst
  * @param callback function that is called for every class in the hierarchy.
  */
 fun BytecodePatchContext.traverseClassHierarchy(targetClass: MutableClass, callback: MutableClass.() -> Unit) {
+    PatchProfiler.section("traverseClassHierarchy") {
+        traverseClassHierarchyRecursively(targetClass, callback)
+    }
+}
+
+private fun BytecodePatchContext.traverseClassHierarchyRecursively(
+    targetClass: MutableClass,
+    callback: MutableClass.() -> Unit,
+) {
     callback(targetClass)
 
-    targetClass.superclass ?: return
+    val superclass = targetClass.superclass ?: return
+
+    classByType(superclass)?.let {
+        traverseClassHierarchyRecursively(proxy(it).mutableClass, callback)
+    }
+}
+
+/**
+ * The positions of the classes of a [BytecodePatchContext] by their type.
+ *
+ * Positions are indexed instead of the classes, so a class replaced in the list, such as by its mutable class,
+ * is found without indexing again, and the index does not keep any class in memory.
+ */
+private class ClassTypeIndex(classes: List<ClassDef>) {
+    /**
+     * The number of classes when indexed. Used to index again when classes are added or removed.
+     */
+    val size = classes.size
+
+    val positionsByType = HashMap<String, Int>(size * 2).apply {
+        // Same as classBy, the first class with a type is used.
+        classes.forEachIndexed { position, classDef -> putIfAbsent(classDef.type, position) }
+    }
+}
+
+/**
+ * The class type index of each context.
+ * Weak keys, so the index is removed when the context is no longer used.
+ */
+private val classTypeIndexes = WeakHashMap<BytecodePatchContext, ClassTypeIndex>()
 
-    classBy { targetClass.superclass == it.type }?.mutableClass?.let {
-        traverseClassHierarchy(it, callback)
+/**
+ * Find a class by its type without searching all classes.
+ *
+ * @return The class with the type or null if not found.
+ */
+private fun BytecodePatchContext.classByType(type: String): ClassDef? {
+    return synchronized(classTypeIndexes) {
+        val index = classTypeIndexes[this]
+        if (index != null && index.size == classes.size) {
+            val position = index.positionsByType[type] ?: return null
+            val classDef = classes[position]
+            if (classDef.type == type) return classDef
+
+            // The class at the position was replaced by a class with a different type.
+        }
+
+        val positionsByType = ClassTypeIndex(classes).also { classTypeIndexes[this] = it }.positionsByType
+        positionsByType[type]?.let { classes[it] }
     }
 }
 
@@ -794,48 +852,101 @@ internal fun MutableMethod.insertLiteralOverride(literal: Long, override: Boolea
 /**
  * Called for _all_ methods with the given literal value.
  * Method indices are iterated from last to first.
+ *
+ * Methods are found in parallel, then the [block] is called sequentially in the order of the classes.
  */
 fun BytecodePatchContext.forEachLiteralValueInstruction(
     literal: Long,
     block: MutableMethod.(matchingIndex: Int) -> Unit,
-) {
+) = PatchProfiler.section("forEachLiteralValueInstruction", classes.size) {
+    val matchingMethods = findLiteralValueMethods(classes, literal)
+
     val matchingIndexes = ArrayList<Int>()
+    matchingMethods.forEach { (classDef, method) ->
+        val mutableMethod = proxy(classDef).mutableClass.findMutableMethodOf(method)
+
+        // FIXME: Until patcher V22 is merged, this workaround is needed
+        //        because if multiple patches modify the same class
+        //        then after modifying the method indexes of immutable classes
+        //        are no longer correct.
+        mutableMethod.instructions.findLiteralValueIndices(literal, matchingIndexes)
+        if (matchingIndexes.isEmpty()) return@forEach
+        // FIXME Remove code above after V22 merge.
+
+        matchingIndexes.asReversed().forEach { index ->
+            block.invoke(mutableMethod, index)
+        }
+    }
+}
 
-    classes.forEach { classDef ->
+/**
+ * Finds all methods with an instruction with the [literal] value using [ParallelClassAnalysis].
+ * The methods of classes in dex files are cached with [PatchCache], if enabled.
+ *
+ * @return The classes and methods, in the order of the [classes] and their methods.
+ */
+internal fun findLiteralValueMethods(classes: List<ClassDef>, literal: Long): List<Pair<ClassDef, Method>> {
+    fun MutableList<Pair<ClassDef, Method>>.addLiteralValueMethods(classDef: ClassDef) {
         classDef.methods.forEach { method ->
-            method.implementation?.instructions?.let { instructions ->
-                matchingIndexes.clear()
+            val instructions = method.implementation?.instructions ?: return@forEach
 
-                instructions.forEachIndexed { index, instruction ->
-                    if ((instruction as? WideLiteralInstruction)?.wideLiteral == literal) {
-                        matchingIndexes.add(index)
-                    }
-                }
+            if (instructions.any { (it as? WideLiteralInstruction)?.wideLiteral == literal }) {
+                add(classDef to method)
+            }
+        }
+    }
 
-                if (matchingIndexes.isNotEmpty()) {
-                    val mutableMethod = proxy(classDef).mutableClass.findMutableMethodOf(method)
-
-                    // FIXME: Until patcher V22 is merged, this workaround is needed
-                    //        because if multiple patches modify the same class
-                    //        then after modifying the method indexes of immutable classes
-                    //        are no longer correct.
-                    matchingIndexes.clear()
-                    mutableMethod.instructions.forEachIndexed { index, instruction ->
-                        if ((instruction as? WideLiteralInstruction)?.wideLiteral == literal) {
-                            matchingIndexes.add(index)
-                        }
-                    }
-                    if (matchingIndexes.isEmpty()) return@forEach
-                    // FIXME Remove code above after V22 merge.
+    if (!PatchCache.isEnabled) {
+        return ParallelClassAnalysis.analyze(classes) { classDef, results -> results.addLiteralValueMethods(classDef) }
+    }
 
-                    matchingIndexes.asReversed().forEach { index ->
-                        block.invoke(mutableMethod, index)
-                    }
-                }
+    // Method descriptors by class type.
+    val dexClasses = classes.filterIsInstance<DexBackedClassDef>()
+    val cachedMethods = PatchCache.getOrPut(
+        "literalValueMethods",
+        { dexClasses.map { it.dexFile }.distinct().joinToString(":") { PatchCache.hashOf(it) } + ":$literal" },
+        readValue = {
+            List(readInt()) { readUTF() to List(readInt()) { readUTF() }.toSet() }.toMap()
+        },
+        writeValue = { methods ->
+            writeInt(methods.size)
+            methods.forEach { (type, descriptors) ->
+                writeUTF(type)
+                writeInt(descriptors.size)
+                descriptors.forEach { writeUTF(it) }
             }
+        },
+    ) {
+        ParallelClassAnalysis.analyze<Pair<ClassDef, Method>>(dexClasses) { classDef, results ->
+            results.addLiteralValueMethods(classDef)
+        }.groupBy({ it.first.type }, { ReferenceUtil.getMethodDescriptor(it.second) }).mapValues { it.value.toSet() }
+    }
+
+    return ParallelClassAnalysis.analyze(classes) { classDef, results ->
+        // Classes not in dex files, such as classes added by patches, are always searched.
+        if (classDef !is DexBackedClassDef) {
+            results.addLiteralValueMethods(classDef)
+            return@analyze
+        }
+
+        val descriptors = cachedMethods[classDef.type] ?: return@analyze
+        classDef.methods.forEach { method ->
+            if (ReferenceUtil.getMethodDescriptor(method) in descriptors) results += classDef to method
         }
     }
+}
+
+/**
+ * Replaces the contents of [matchingIndexes] with the indices of all instructions with the [literal] value.
+ */
+internal fun Iterable<Instruction>.findLiteralValueIndices(literal: Long, matchingIndexes: MutableList<Int>) {
+    matchingIndexes.clear()
 
+    forEachIndexed { index, instruction ->
+        if ((instruction as? WideLiteralInstruction)?.wideLiteral == literal) {
+            matchingIndexes.add(index)
+        }
+    }
 }
 
 private const val RETURN_TYPE_MISMATCH = "Mismatch between override type and Method return type"
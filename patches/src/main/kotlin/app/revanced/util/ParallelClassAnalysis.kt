@@ -0,0 +1,70 @@
+package app.revanced.util
+
+import com.android.tools.smali.dexlib2.iface.ClassDef
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveTask
+
+/**
+ * Analyzes classes on all processors using fork/join.
+ *
+ * Only for analysis that reads classes. Classes must be modified sequentially after the analysis,
+ * because proxies of classes are not thread safe.
+ *
+ * Results are in the order of the classes, no matter how the classes were split between threads,
+ * so patches modify the same classes in the same order with and without parallelism.
+ *
+ * Parallelism can be disabled to compare results and timings by setting the system property
+ * `app.revanced.patches.parallelAnalysis` to `false`.
+ */
+internal object ParallelClassAnalysis {
+    private const val PARALLEL_ANALYSIS_PROPERTY = "app.revanced.patches.parallelAnalysis"
+
+    /**
+     * Number of classes analyzed by a single task.
+     * Small enough to balance the work if some classes are much larger than others.
+     */
+    private const val BATCH_SIZE = 256
+
+    val isEnabled = System.getProperty(PARALLEL_ANALYSIS_PROPERTY)?.toBooleanStrictOrNull() ?: true
+
+    /**
+     * Analyzes the [classes].
+     *
+     * @param analyze Adds the results of a class to the list. Called concurrently for different classes.
+     * @return The results of all classes, in the order of the [classes].
+     */
+    fun <T> analyze(classes: List<ClassDef>, analyze: (ClassDef, MutableList<T>) -> Unit): List<T> =
+        if (!isEnabled || classes.size <= BATCH_SIZE) {
+            analyzeSequentially(classes, 0, classes.size, analyze)
+        } else {
+            ForkJoinPool.commonPool().invoke(AnalysisTask(classes, 0, classes.size, analyze))
+        }
+
+    private class AnalysisTask<T>(
+        private val classes: List<ClassDef>,
+        private val from: Int,
+        private val to: Int,
+        private val analyze: (ClassDef, MutableList<T>) -> Unit,
+    ) : RecursiveTask<MutableList<T>>() {
+        override fun compute(): MutableList<T> {
+            if (to - from <= BATCH_SIZE) return analyzeSequentially(classes, from, to, analyze)
+
+            val middle = (from + to) ushr 1
+            val first = AnalysisTask(classes, from, middle, analyze).fork()
+            val second = AnalysisTask(classes, middle, to, analyze).compute()
+
+            return first.join().apply { addAll(second) }
+        }
+    }
+
+    private fun <T> analyzeSequentially(
+        classes: List<ClassDef>,
+        from: Int,
+        to: Int,
+        analyze: (ClassDef, MutableList<T>) -> Unit,
+    ): MutableList<T> {
+        val results = mutableListOf<T>()
+        for (index in from until to) analyze(classes[index], results)
+        return results
+    }
+}
@@ -0,0 +1,140 @@
+package app.revanced.util
+
+import com.android.tools.smali.dexlib2.dexbacked.DexBackedDexFile
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import java.util.logging.Logger
+
+/**
+ * Opt-in on-disk cache of analysis results, to speed up patching the same app repeatedly,
+ * for example while trying out patch options.
+ *
+ * Enabled by setting the system property `app.revanced.patches.cache` to the path of a directory.
+ *
+ * Only results derived from the input app are cached, and never results of patch options,
+ * so changing options does not invalidate the cache.
+ * A cached value is keyed by the hash of the patches and the hash of all input it was computed from.
+ * Entries of other patches or input are therefore never read,
+ * and entries that can not be read completely are deleted and computed again.
+ *
+ * Cached are the resource mappings of [app.revanced.patches.shared.misc.mapping.resourceMappingPatch]
+ * and the methods found by [forEachLiteralValueInstruction].
+ * Fingerprints are not cached, because they are matched by the patcher when a patch first uses them,
+ * and the patcher has no way to provide a match found in an earlier run.
+ */
+object PatchCache {
+    private const val CACHE_DIRECTORY_PROPERTY = "app.revanced.patches.cache"
+
+    /**
+     * Changed if the format of entries changes.
+     */
+    private const val FORMAT_VERSION = 1
+
+    private val logger = Logger.getLogger(PatchCache::class.java.name)
+
+    private val directory = System.getProperty(CACHE_DIRECTORY_PROPERTY)?.let(::File)
+
+    /**
+     * Hash of the file the patches are loaded from, so that entries are not used with other patches.
+     * Null if the patches are not loaded from a file, such as when running from compiled classes.
+     */
+    private val patchesHash by lazy {
+        val location = PatchCache::class.java.protectionDomain?.codeSource?.location
+        val file = location?.let { runCatching { File(it.toURI()) }.getOrNull() }?.takeIf { it.isFile }
+
+        if (file == null) {
+            logger.warning("Patch cache is disabled, because the patches are not loaded from a file")
+            null
+        } else {
+            file.inputStream().use { input ->
+                val digest = MessageDigest.getInstance("SHA-256")
+                val buffer = ByteArray(1 shl 16)
+                while (true) {
+                    val length = input.read(buffer)
+                    if (length < 0) break
+                    digest.update(buffer, 0, length)
+                }
+                digest.digest().toHexString()
+            }
+        }
+    }
+
+    val isEnabled get() = directory != null && patchesHash != null
+
+    /**
+     * Gets the cached value or computes and caches it.
+     *
+     * @param name The name of the kind of value. For example `resourceMappings`.
+     * @param inputHash Returns the hash of all input the value is computed from. Only called if enabled.
+     * @param readValue Reads a value written by [writeValue].
+     * @param writeValue Writes a value.
+     * @param compute Computes the value if it is not cached.
+     */
+    fun <T> getOrPut(
+        name: String,
+        inputHash: () -> String,
+        readValue: DataInputStream.() -> T,
+        writeValue: DataOutputStream.(T) -> Unit,
+        compute: () -> T,
+    ): T {
+        val directory = directory ?: return compute()
+        val patchesHash = patchesHash ?: return compute()
+
+        val key = "$FORMAT_VERSION:$patchesHash:$name:${inputHash()}"
+        val file = directory.resolve(name).resolve("${sha256(key.toByteArray())}.bin")
+
+        if (file.exists()) {
+            try {
+                DataInputStream(file.inputStream().buffered()).use { input ->
+                    // The full key is stored, in case two keys have the same file name.
+                    if (input.readUTF() == key) {
+                        val value = input.readValue()
+                        // An entry with more data than the value is invalid.
+                        if (input.read() == -1) return value
+                    }
+                }
+            } catch (e: Exception) {
+                logger.warning("Failed to read patch cache entry $file: $e")
+            }
+
+            file.delete()
+        }
+
+        val value = compute()
+
+        try {
+            file.parentFile.mkdirs()
+
+            // Written to a temporary file first, so other runs never read an incomplete entry.
+            val temporaryFile = File.createTempFile(file.name, ".tmp", file.parentFile)
+            DataOutputStream(temporaryFile.outputStream().buffered()).use { output ->
+                output.writeUTF(key)
+                output.writeValue(value)
+            }
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        } catch (e: Exception) {
+            logger.warning("Failed to write patch cache entry $file: $e")
+        }
+
+        return value
+    }
+
+    fun sha256(bytes: ByteArray) = MessageDigest.getInstance("SHA-256").digest(bytes).toHexString()
+
+    /**
+     * @return An identifier of the contents of the dex file,
+     * using the SHA-1 signature and size stored in the header of the dex file.
+     */
+    fun hashOf(dexFile: DexBackedDexFile): String {
+        val buffer = dexFile.buffer
+        val header = buffer.buf.copyOfRange(buffer.baseOffset + 8, buffer.baseOffset + 36)
+
+        return header.toHexString()
+    }
+
+    private fun ByteArray.toHexString() = joinToString("") { "%02x".format(it) }
+}
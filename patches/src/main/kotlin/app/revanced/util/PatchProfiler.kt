@@ -0,0 +1,240 @@
+package app.revanced.util
+
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.logging.Logger
+
+/**
+ * Opt-in profiler to find which patches, fingerprints and helper functions take the most time while patching.
+ *
+ * Enabled by setting the system property `app.revanced.patches.profile` to the path of the report without extension.
+ * For example `-Dapp.revanced.patches.profile=profile` writes `profile.json` and `profile.html`
+ * when the patching process exits.
+ *
+ * Two kinds of measurements are made:
+ * - Helper functions wrapped in [section] are measured exactly: calls, wall time,
+ *   allocated bytes of the calling thread and classes scanned.
+ * - Patches and fingerprints are measured by sampling the stack of all threads every few milliseconds,
+ *   because patch execution and fingerprint matching are done by the patcher and cannot be wrapped.
+ *   A sample is attributed to the innermost patch file on the stack,
+ *   and also to a fingerprint if the patcher is matching one.
+ *   Sampling starts when the first section is measured.
+ *
+ * If not enabled, [section] only checks a boolean and calls the block,
+ * and no management classes are loaded, since they are not available on all platforms, such as Android.
+ */
+object PatchProfiler {
+    private const val REPORT_PATH_PROPERTY = "app.revanced.patches.profile"
+    private const val SAMPLE_INTERVAL_MS = 5L
+
+    private const val PATCHES_PACKAGE = "app.revanced.patches."
+    private const val PATCHER_FINGERPRINT_CLASS = "app.revanced.patcher.Fingerprint"
+
+    private val reportPath: String? = System.getProperty(REPORT_PATH_PROPERTY)
+
+    val isEnabled = reportPath != null
+
+    private class SectionStatistics {
+        val calls = AtomicLong()
+        val wallNanos = AtomicLong()
+        val allocatedBytes = AtomicLong()
+        val classesScanned = AtomicLong()
+    }
+
+    private val sections = ConcurrentHashMap<String, SectionStatistics>()
+    private val patchSamples = ConcurrentHashMap<String, AtomicLong>()
+    private val fingerprintSamples = ConcurrentHashMap<String, AtomicLong>()
+
+    // Only read if enabled.
+    private val threadMXBean by lazy {
+        try {
+            ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean
+        } catch (e: Throwable) {
+            // LinkageError if the management classes are not available.
+            Logger.getLogger(this::class.java.name).warning("Allocated bytes are not measured: $e")
+            null
+        }
+    }
+
+    private val sampling = lazy {
+        Thread(::sample, "Patch profiler").apply {
+            isDaemon = true
+            start()
+        }
+
+        Runtime.getRuntime().addShutdownHook(Thread(::writeReport))
+    }
+
+    /**
+     * Measures the [block] as a section with the [name].
+     *
+     * @param classesScanned The number of classes the [block] scans.
+     */
+    inline fun <T> section(name: String, classesScanned: Int = 0, crossinline block: () -> T): T =
+        // Inlined, so the block is called directly if not enabled.
+        if (isEnabled) measure(name, classesScanned) { block() } else block()
+
+    @PublishedApi
+    internal fun <T> measure(name: String, classesScanned: Int, block: () -> T): T {
+        sampling.value
+
+        val threadId = Thread.currentThread().id
+        val startAllocatedBytes = threadMXBean?.getThreadAllocatedBytes(threadId) ?: 0
+        val startNanos = System.nanoTime()
+
+        try {
+            return block()
+        } finally {
+            val wallNanos = System.nanoTime() - startNanos
+            val allocatedBytes = (threadMXBean?.getThreadAllocatedBytes(threadId) ?: 0) - startAllocatedBytes
+
+            sections.getOrPut(name) { SectionStatistics() }.apply {
+                calls.incrementAndGet()
+                this.wallNanos.addAndGet(wallNanos)
+                this.allocatedBytes.addAndGet(allocatedBytes)
+                this.classesScanned.addAndGet(classesScanned.toLong())
+            }
+        }
+    }
+
+    private fun sample() {
+        val currentThread = Thread.currentThread()
+
+        while (true) {
+            Thread.getAllStackTraces().forEach { (thread, stack) ->
+                if (thread != currentThread) sampleStack(stack)
+            }
+
+            try {
+                Thread.sleep(SAMPLE_INTERVAL_MS)
+            } catch (_: InterruptedException) {
+                return
+            }
+        }
+    }
+
+    private fun sampleStack(stack: Array<StackTraceElement>) {
+        // Stack is ordered from the innermost frame.
+        fun indexOfPatchFrame(startIndex: Int) =
+            (startIndex until stack.size).firstOrNull { stack[it].className.startsWith(PATCHES_PACKAGE) } ?: -1
+
+        val fingerprintFrameIndex = stack.indexOfFirst { it.className == PATCHER_FINGERPRINT_CLASS }
+
+        // While matching a fingerprint, the patch is the caller of the patcher,
+        // and not a custom block of the fingerprint called by the patcher.
+        val patchFrameIndex = indexOfPatchFrame(fingerprintFrameIndex + 1)
+        if (patchFrameIndex < 0) return
+
+        val patchName = stack[patchFrameIndex].className.substringBefore('$')
+        patchSamples.getOrPut(patchName) { AtomicLong() }.incrementAndGet()
+
+        if (fingerprintFrameIndex < 0) return
+
+        // Custom blocks are compiled to classes named after the fingerprint property.
+        val customBlockFrameIndex = indexOfPatchFrame(0).takeIf { it in 0 until fingerprintFrameIndex }
+        val fingerprintName = customBlockFrameIndex?.let { stack[it].className }?.takeIf { it.contains('$') }?.let {
+            it.substringBefore('$') + "." + it.substringAfter('$').substringBefore('$')
+        } ?: "$patchName (fingerprints without a custom block)"
+
+        fingerprintSamples.getOrPut(fingerprintName) { AtomicLong() }.incrementAndGet()
+    }
+
+    private fun writeReport() {
+        val reportPath = reportPath ?: return
+
+        val sortedSections = sections.entries.sortedByDescending { it.value.wallNanos.get() }
+        val sortedPatches = patchSamples.entries.sortedByDescending { it.value.get() }
+        val sortedFingerprints = fingerprintSamples.entries.sortedByDescending { it.value.get() }
+
+        fun samplesToMillis(samples: AtomicLong) = samples.get() * SAMPLE_INTERVAL_MS
+
+        val json = buildString {
+            append("{\n  \"sampleIntervalMs\": ").append(SAMPLE_INTERVAL_MS).append(",\n")
+
+            append("  \"patches\": [")
+            sortedPatches.forEachIndexed { index, (name, samples) ->
+                if (index > 0) append(',')
+                append("\n    {\"name\": ").append(name.toJsonString())
+                    .append(", \"estimatedMs\": ").append(samplesToMillis(samples)).append('}')
+            }
+            append("\n  ],\n")
+
+            append("  \"fingerprints\": [")
+            sortedFingerprints.forEachIndexed { index, (name, samples) ->
+                if (index > 0) append(',')
+                append("\n    {\"name\": ").append(name.toJsonString())
+                    .append(", \"estimatedMs\": ").append(samplesToMillis(samples)).append('}')
+            }
+            append("\n  ],\n")
+
+            append("  \"sections\": [")
+            sortedSections.forEachIndexed { index, (name, statistics) ->
+                if (index > 0) append(',')
+                append("\n    {\"name\": ").append(name.toJsonString())
+                    .append(", \"calls\": ").append(statistics.calls.get())
+                    .append(", \"wallMs\": ").append(statistics.wallNanos.get() / 1_000_000)
+                    .append(", \"allocatedBytes\": ").append(statistics.allocatedBytes.get())
+                    .append(", \"classesScanned\": ").append(statistics.classesScanned.get())
+                    .append('}')
+            }
+            append("\n  ]\n}\n")
+        }
+
+        val html = buildString {
+            append("<!DOCTYPE html>\n<html>\n<head><meta charset=\"utf-8\"><title>Patch profile</title></head>\n<body>\n")
+
+            append("<h2>Patches (sampled every ").append(SAMPLE_INTERVAL_MS).append(" ms)</h2>\n")
+            append("<table border=\"1\">\n<tr><th>Patch</th><th>Estimated ms</th></tr>\n")
+            sortedPatches.forEach { (name, samples) ->
+                append("<tr><td>").append(name.toHtmlString()).append("</td><td>")
+                    .append(samplesToMillis(samples)).append("</td></tr>\n")
+            }
+            append("</table>\n")
+
+            append("<h2>Fingerprints (sampled)</h2>\n")
+            append("<table border=\"1\">\n<tr><th>Fingerprint</th><th>Estimated ms</th></tr>\n")
+            sortedFingerprints.forEach { (name, samples) ->
+                append("<tr><td>").append(name.toHtmlString()).append("</td><td>")
+                    .append(samplesToMillis(samples)).append("</td></tr>\n")
+            }
+            append("</table>\n")
+
+            append("<h2>Sections</h2>\n")
+            append("<table border=\"1\">\n<tr><th>Section</th><th>Calls</th><th>Wall ms</th>")
+            append("<th>Allocated bytes</th><th>Classes scanned</th></tr>\n")
+            sortedSections.forEach { (name, statistics) ->
+                append("<tr><td>").append(name.toHtmlString())
+                    .append("</td><td>").append(statistics.calls.get())
+                    .append("</td><td>").append(statistics.wallNanos.get() / 1_000_000)
+                    .append("</td><td>").append(statistics.allocatedBytes.get())
+                    .append("</td><td>").append(statistics.classesScanned.get())
+                    .append("</td></tr>\n")
+            }
+            append("</table>\n</body>\n</html>\n")
+        }
+
+        try {
+            File("$reportPath.json").writeText(json)
+            File("$reportPath.html").writeText(html)
+        } catch (e: Exception) {
+            Logger.getLogger(this::class.java.name).warning("Failed to write patch profile report: $e")
+        }
+    }
+
+    private fun String.toJsonString() = buildString {
+        append('"')
+        this@toJsonString.forEach { char ->
+            when (char) {
+                '"' -> append("\\\"")
+                '\\' -> append("\\\\")
+                '\n' -> append("\\n")
+                else -> if (char < ' ') append("\\u%04x".format(char.code)) else append(char)
+            }
+        }
+        append('"')
+    }
+
+    private fun String.toHtmlString() = replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+}
@@ -8,9 +8,15 @@ import org.w3c.dom.Attr
 import org.w3c.dom.Element
 import org.w3c.dom.Node
 import org.w3c.dom.NodeList
+import java.io.File
 import java.io.InputStream
 import java.nio.file.Files
 import java.nio.file.StandardCopyOption
+import javax.xml.stream.XMLInputFactory
+import javax.xml.stream.XMLOutputFactory
+import javax.xml.stream.XMLStreamConstants
+import javax.xml.stream.XMLStreamReader
+import javax.xml.stream.XMLStreamWriter
 
 private val classLoader = object {}.javaClass.classLoader
 
@@ -158,6 +164,128 @@ internal fun Node.addResource(
 
 internal fun Document.getNode(tagName: String) = getElementsByTagName(tagName).item(0)
 
+/**
+ * Creates a reader of a stream of XML.
+ * Readers are created for each stream, because factories are not thread safe.
+ */
+internal fun InputStream.xmlStreamReader(): XMLStreamReader = XMLInputFactory.newInstance().apply {
+    setProperty(XMLInputFactory.SUPPORT_DTD, false)
+}.createXMLStreamReader(this)
+
+/**
+ * Calls the [action] for each child element of the current element of this reader.
+ * The reader is positioned at the start of the child element when the [action] is called,
+ * and the [action] must read until the end of the child element.
+ * The reader is positioned at the end of the current element afterwards.
+ */
+internal inline fun XMLStreamReader.forEachChildElement(action: () -> Unit) {
+    while (true) {
+        when (next()) {
+            XMLStreamConstants.START_ELEMENT -> action()
+            XMLStreamConstants.END_ELEMENT -> return
+        }
+    }
+}
+
+/**
+ * Reads the text of the current element and all its descendants, same as [Node.getTextContent].
+ * The reader is positioned at the end of the current element afterwards.
+ */
+internal fun XMLStreamReader.readTextContent() = buildString {
+    var depth = 1
+    while (depth > 0) {
+        when (next()) {
+            XMLStreamConstants.START_ELEMENT -> depth++
+            XMLStreamConstants.END_ELEMENT -> depth--
+            XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> append(text)
+        }
+    }
+}
+
+/**
+ * Appends resources to the root element of this XML resource file,
+ * without loading the whole file into memory like a [Document].
+ * The file is streamed to a temporary file with the resources added, which then replaces this file.
+ *
+ * @param resources The resources to append.
+ * @param resourceCallback Called when a resource has been processed.
+ */
+internal fun File.appendResources(
+    resources: Iterable<BaseResource>,
+    resourceCallback: (BaseResource) -> Unit = { },
+) {
+    val temporaryFile = resolveSibling("$name.tmp")
+
+    inputStream().buffered().use { input ->
+        temporaryFile.bufferedWriter().use { output ->
+            output.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n")
+
+            val reader = input.xmlStreamReader()
+            val writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output)
+
+            try {
+                var depth = 0
+                while (reader.hasNext()) {
+                    when (reader.next()) {
+                        XMLStreamConstants.START_ELEMENT -> {
+                            depth++
+                            writer.copyStartElement(reader)
+                        }
+
+                        XMLStreamConstants.END_ELEMENT -> {
+                            if (--depth == 0) {
+                                resources.forEach { resource ->
+                                    writer.writeCharacters("    ")
+                                    resource.serialize(writer, resourceCallback)
+                                    writer.writeEndElement()
+                                    writer.writeCharacters("\n")
+                                }
+                            }
+
+                            writer.writeEndElement()
+                        }
+
+                        XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE -> writer.writeCharacters(reader.text)
+                        XMLStreamConstants.CDATA -> writer.writeCData(reader.text)
+                        XMLStreamConstants.COMMENT -> writer.writeComment(reader.text)
+                        XMLStreamConstants.PROCESSING_INSTRUCTION ->
+                            writer.writeProcessingInstruction(reader.piTarget, reader.piData)
+                    }
+                }
+
+                writer.flush()
+            } finally {
+                writer.close()
+                reader.close()
+            }
+        }
+    }
+
+    Files.move(temporaryFile.toPath(), toPath(), StandardCopyOption.REPLACE_EXISTING)
+}
+
+private fun XMLStreamWriter.copyStartElement(reader: XMLStreamReader) {
+    writeStartElement(reader.prefix.orEmpty(), reader.localName, reader.namespaceURI.orEmpty())
+
+    for (index in 0 until reader.namespaceCount) {
+        writeNamespace(reader.getNamespacePrefix(index).orEmpty(), reader.getNamespaceURI(index))
+    }
+
+    for (index in 0 until reader.attributeCount) {
+        val prefix = reader.getAttributePrefix(index)
+        if (prefix.isNullOrEmpty()) {
+            writeAttribute(reader.getAttributeLocalName(index), reader.getAttributeValue(index))
+        } else {
+            writeAttribute(
+                prefix,
+                reader.getAttributeNamespace(index),
+                reader.getAttributeLocalName(index),
+                reader.getAttributeValue(index),
+            )
+        }
+    }
+}
+
 internal fun NodeList.findElementByAttributeValue(attributeName: String, value: String): Element? {
     for (i in 0 until length) {
         val node = item(i)
@@ -1,8 +1,12 @@
 package app.revanced.util.resource
 
 import app.revanced.util.childElementsSequence
+import app.revanced.util.forEachChildElement
+import app.revanced.util.readTextContent
 import org.w3c.dom.Document
 import org.w3c.dom.Node
+import javax.xml.stream.XMLStreamReader
+import javax.xml.stream.XMLStreamWriter
 
 /**
  *  An array resource.
@@ -26,6 +30,16 @@ class ArrayResource(
             }
         }
 
+    override fun serialize(writer: XMLStreamWriter, resourceCallback: (BaseResource) -> Unit) {
+        super.serialize(writer, resourceCallback)
+
+        items.forEach { item ->
+            writer.writeStartElement("item")
+            writer.writeCharacters(item)
+            writer.writeEndElement()
+        }
+    }
+
     companion object {
         fun fromNode(node: Node): ArrayResource {
             val key = node.attributes.getNamedItem("name").textContent
@@ -33,5 +47,17 @@ class ArrayResource(
 
             return ArrayResource(key, items)
         }
+
+        /**
+         * @param reader A reader positioned at the start of the array element.
+         * Positioned at the end of the array element afterwards.
+         */
+        fun fromXml(reader: XMLStreamReader): ArrayResource {
+            val key = reader.getAttributeValue(null, "name")
+            val items = mutableListOf<String>()
+            reader.forEachChildElement { items += reader.readTextContent() }
+
+            return ArrayResource(key, items)
+        }
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package app.revanced.util.resource
 
 import org.w3c.dom.Document
 import org.w3c.dom.Element
+import javax.xml.stream.XMLStreamWriter
 
 /**
  * Base resource class for all resources.
@@ -26,6 +27,18 @@ abstract class BaseResource(
         }
     }
 
+    /**
+     * Serialize resource element to a stream of XML.
+     * Overriding methods should invoke super and then write the attributes and content of the element.
+     * The element is ended by the caller.
+     * @param writer Target writer to write the element to.
+     * @param resourceCallback Called when a resource has been processed.
+     */
+    open fun serialize(writer: XMLStreamWriter, resourceCallback: (BaseResource) -> Unit = { }) {
+        writer.writeStartElement(tag)
+        writer.writeAttribute("name", name)
+    }
+
     override fun hashCode(): Int {
         var result = name.hashCode()
         result = 31 * result + tag.hashCode()
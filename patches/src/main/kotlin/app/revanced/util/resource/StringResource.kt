@@ -1,8 +1,11 @@
 package app.revanced.util.resource
 
+import app.revanced.util.readTextContent
 import org.w3c.dom.Document
 import org.w3c.dom.Node
 import java.util.logging.Logger
+import javax.xml.stream.XMLStreamReader
+import javax.xml.stream.XMLStreamWriter
 
 /**
  * A string value.
@@ -19,38 +22,46 @@ class StringResource(
 ) : BaseResource(name, "string") {
     override fun serialize(ownerDocument: Document, resourceCallback: (BaseResource) -> Unit) =
         super.serialize(ownerDocument, resourceCallback).apply {
+            // if the string is un-formatted, explicitly add the formatted attribute
+            if (!formatted) setAttribute("formatted", "false")
 
-            fun String.validateAndroidStringEscaping() : String {
-                if (value.startsWith('"') && value.endsWith('"')) {
-                    // Raw strings allow unescaped single quote but not double quote.
-                    if (!value.substring(1, value.length - 1).contains(Regex("(?<!\\\\)[\"]"))) {
-                        return this
-                    }
-                } else {
-                    if (value.contains('\n')) {
-                        // Don't throw an exception, otherwise unnoticed mistakes
-                        // in Crowdin can cause patching failures.
-                        // Incorrectly escaped strings still work but do not display as intended.
-                        Logger.getLogger(StringResource.javaClass.name).warning(
-                            "String $name is not raw but contains encoded new line characters: $value")
-                    }
-                    if (!value.contains(Regex("(?<!\\\\)['\"]"))) {
-                        return this
-                    }
-                }
+            textContent = validateAndroidStringEscaping()
+        }
 
-                Logger.getLogger(StringResource.javaClass.name).warning(
-                    "String $name cannot contain unescaped quotes in value: $value")
+    override fun serialize(writer: XMLStreamWriter, resourceCallback: (BaseResource) -> Unit) {
+        super.serialize(writer, resourceCallback)
 
-                return this
-            }
+        // if the string is un-formatted, explicitly add the formatted attribute
+        if (!formatted) writer.writeAttribute("formatted", "false")
 
-            // if the string is un-formatted, explicitly add the formatted attribute
-            if (!formatted) setAttribute("formatted", "false")
+        writer.writeCharacters(validateAndroidStringEscaping())
+    }
 
-            textContent = value.validateAndroidStringEscaping()
+    private fun validateAndroidStringEscaping() : String {
+        if (value.startsWith('"') && value.endsWith('"')) {
+            // Raw strings allow unescaped single quote but not double quote.
+            if (!value.substring(1, value.length - 1).contains(Regex("(?<!\\\\)[\"]"))) {
+                return value
+            }
+        } else {
+            if (value.contains('\n')) {
+                // Don't throw an exception, otherwise unnoticed mistakes
+                // in Crowdin can cause patching failures.
+                // Incorrectly escaped strings still work but do not display as intended.
+                Logger.getLogger(StringResource.javaClass.name).warning(
+                    "String $name is not raw but contains encoded new line characters: $value")
+            }
+            if (!value.contains(Regex("(?<!\\\\)['\"]"))) {
+                return value
+            }
         }
 
+        Logger.getLogger(StringResource.javaClass.name).warning(
+            "String $name cannot contain unescaped quotes in value: $value")
+
+        return value
+    }
+
     companion object {
         fun fromNode(node: Node): StringResource {
             val name = node.attributes.getNamedItem("name").textContent
@@ -60,5 +71,17 @@ class StringResource(
 
             return StringResource(name, value, formatted)
         }
+
+        /**
+         * @param reader A reader positioned at the start of the string element.
+         * Positioned at the end of the string element afterwards.
+         */
+        fun fromXml(reader: XMLStreamReader): StringResource {
+            val name = reader.getAttributeValue(null, "name")
+            val formatted = reader.getAttributeValue(null, "formatted")?.toBoolean() ?: true
+            val value = reader.readTextContent()
+
+            return StringResource(name, value, formatted)
+        }
     }
 }
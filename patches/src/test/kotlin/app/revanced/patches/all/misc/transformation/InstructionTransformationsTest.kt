@@ -0,0 +1,188 @@
+package app.revanced.patches.all.misc.transformation
+
+import app.revanced.patcher.extensions.InstructionExtensions.replaceInstruction
+import app.revanced.patcher.util.proxy.mutableTypes.MutableClass
+import app.revanced.patcher.util.proxy.mutableTypes.MutableMethod
+import app.revanced.util.findMutableMethodOf
+import com.android.tools.smali.dexlib2.AccessFlags
+import com.android.tools.smali.dexlib2.Opcode
+import com.android.tools.smali.dexlib2.ReferenceType
+import com.android.tools.smali.dexlib2.iface.ClassDef
+import com.android.tools.smali.dexlib2.iface.Method
+import com.android.tools.smali.dexlib2.iface.instruction.Instruction
+import com.android.tools.smali.dexlib2.iface.instruction.ReferenceInstruction
+import com.android.tools.smali.dexlib2.iface.reference.MethodReference
+import com.android.tools.smali.dexlib2.immutable.ImmutableClassDef
+import com.android.tools.smali.dexlib2.immutable.ImmutableMethod
+import com.android.tools.smali.dexlib2.immutable.ImmutableMethodImplementation
+import com.android.tools.smali.dexlib2.immutable.instruction.ImmutableInstruction10x
+import com.android.tools.smali.dexlib2.immutable.instruction.ImmutableInstruction35c
+import com.android.tools.smali.dexlib2.immutable.reference.ImmutableMethodReference
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNotEquals
+
+/**
+ * Compares applying the transformations of multiple patches with the parallel search of [transformInstructionsPatch]
+ * with applying them the way each patch did before, one patch after another.
+ */
+class InstructionTransformationsTest {
+    /**
+     * The filter and transform of a [transformInstructionsPatch].
+     */
+    private class RegisteredPatch<T>(
+        val filterMap: (ClassDef, Method, Instruction, Int) -> T?,
+        val transform: (MutableMethod, T) -> Unit,
+    ) {
+        fun toTransformation() = InstructionTransformation(filterMap, transform, ReferenceType.METHOD)
+    }
+
+    private fun replaceInvoke(fromClass: String, fromName: String, to: String) = RegisteredPatch(
+        filterMap = { _, _, instruction, index ->
+            val reference = (instruction as? ReferenceInstruction)?.reference as? MethodReference
+            index.takeIf { reference?.definingClass == fromClass && reference.name == fromName }
+        },
+        transform = { method, index -> method.replaceInstruction(index, "invoke-static {}, $to") },
+    )
+
+    private val redirectToExtension = replaceInvoke("LTarget;", "a", "LExtension;->a()V")
+
+    private val renameExtensionCall = replaceInvoke("LExtension;", "a", "LExtension;->b()V")
+
+    private fun invoke(definingClass: String, name: String) = ImmutableInstruction35c(
+        Opcode.INVOKE_STATIC,
+        0,
+        0,
+        0,
+        0,
+        0,
+        0,
+        ImmutableMethodReference(definingClass, name, emptyList(), "V"),
+    )
+
+    private fun method(type: String, name: String, vararg instructions: Instruction) = ImmutableMethod(
+        type,
+        name,
+        emptyList(),
+        "V",
+        AccessFlags.PUBLIC.value or AccessFlags.STATIC.value,
+        emptySet(),
+        emptySet(),
+        ImmutableMethodImplementation(1, instructions.toList() + ImmutableInstruction10x(Opcode.RETURN_VOID), emptyList(), emptyList()),
+    )
+
+    private fun classDef(type: String, vararg methods: (String) -> ImmutableMethod) = ImmutableClassDef(
+        type,
+        AccessFlags.PUBLIC.value,
+        "Ljava/lang/Object;",
+        emptyList(),
+        null,
+        emptySet(),
+        emptyList(),
+        methods.map { it(type) },
+    )
+
+    private val classes: List<ClassDef> = listOf(
+        classDef(
+            "LFirst;",
+            // Matched by the first patch, and by the second patch only after the first patch transformed it.
+            { method(it, "target", invoke("LTarget;", "a"), invoke("LOther;", "a"), invoke("LTarget;", "a")) },
+            // Matched by both patches.
+            { method(it, "both", invoke("LExtension;", "a"), invoke("LTarget;", "a")) },
+            { method(it, "unmatched", invoke("LOther;", "a")) },
+        ),
+        classDef(
+            "LSecond;",
+            // Matched by the second patch only.
+            { method(it, "extension", invoke("LExtension;", "a")) },
+        ),
+        classDef(
+            "LUnmatched;",
+            { method(it, "unmatched", invoke("LOther;", "b")) },
+        ),
+    )
+
+    @Test
+    fun `transformations of two patches produce the same instructions as before`() {
+        val patches = listOf(redirectToExtension, renameExtensionCall)
+
+        val expected = transformPatchAfterPatch(patches)
+        assertEquals(expected, transformWithParallelSearch(patches))
+
+        // The second patch transformed the calls added by the first patch.
+        assertEquals(
+            listOf(
+                invoke("LExtension;", "b"),
+                invoke("LOther;", "a"),
+                invoke("LExtension;", "b"),
+                ImmutableInstruction10x(Opcode.RETURN_VOID),
+            ).map { it.describe() },
+            expected.getValue("LFirst;").getValue("target"),
+        )
+    }
+
+    @Test
+    fun `transformations of two patches in the other order produce the same instructions as before`() {
+        val patches = listOf(renameExtensionCall, redirectToExtension)
+
+        val expected = transformPatchAfterPatch(patches)
+        assertEquals(expected, transformWithParallelSearch(patches))
+
+        // The calls added by the second patch are not transformed by the first patch.
+        assertNotEquals(expected, transformPatchAfterPatch(patches.reversed()))
+    }
+
+    /**
+     * Applies the patches the way each patch applied its transformation before,
+     * with a class replaced by its mutable class when a patch transformed it.
+     */
+    private fun transformPatchAfterPatch(patches: List<RegisteredPatch<*>>): Map<String, Map<String, List<String>>> {
+        val current = classes.toMutableList()
+        patches.forEach { patch -> current.transformWith(patch) }
+        return current.describe()
+    }
+
+    private fun <T> MutableList<ClassDef>.transformWith(patch: RegisteredPatch<T>) {
+        fun findPatchIndices(classDef: ClassDef, method: Method): Sequence<T>? =
+            method.implementation?.instructions?.asSequence()?.withIndex()?.mapNotNull { (index, instruction) ->
+                patch.filterMap(classDef, method, instruction, index)
+            }
+
+        indices.forEach { classIndex ->
+            val classDef = this[classIndex]
+            val methods = classDef.methods.filter { findPatchIndices(classDef, it)?.any() == true }
+            if (methods.isEmpty()) return@forEach
+
+            val mutableClass = classDef as? MutableClass ?: MutableClass(classDef).also { this[classIndex] = it }
+            methods.map(mutableClass::findMutableMethodOf).forEach { mutableMethod ->
+                val patchIndices = findPatchIndices(mutableClass, mutableMethod)!!.toCollection(ArrayDeque())
+                while (!patchIndices.isEmpty()) patch.transform(mutableMethod, patchIndices.removeLast())
+            }
+        }
+    }
+
+    private fun transformWithParallelSearch(patches: List<RegisteredPatch<*>>): Map<String, Map<String, List<String>>> {
+        val current = classes.toMutableList()
+        patches.forEach { patch ->
+            applyInstructionTransformation(current.toList(), patch.toTransformation()) { classDef ->
+                classDef as? MutableClass ?: MutableClass(classDef).also { current[current.indexOf(classDef)] = it }
+            }
+        }
+        return current.describe()
+    }
+
+    private fun List<ClassDef>.describe() = associate { classDef ->
+        classDef.type to classDef.methods.associate { method ->
+            method.name to method.implementation!!.instructions.map { it.describe() }
+        }
+    }
+
+    private companion object {
+        fun Instruction.describe(): String {
+            val reference = (this as? ReferenceInstruction)?.reference as? MethodReference
+                ?: return "$opcode"
+
+            return "$opcode ${reference.definingClass}->${reference.name}()${reference.returnType}"
+        }
+    }
+}